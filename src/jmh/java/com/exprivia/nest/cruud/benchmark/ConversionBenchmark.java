@@ -0,0 +1,111 @@
+package com.exprivia.nest.cruud.benchmark;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.PropertyFilterDto;
+import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
+import com.exprivia.nest.cruud.service.ExtractionService;
+import com.exprivia.nest.cruud.service.PropertyService;
+import com.exprivia.nest.cruud.service.SyntheticDataset;
+import com.exprivia.nest.cruud.service.TimeNormalizationService;
+import com.exprivia.nest.cruud.service.TransformerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversione completa di un CSV (lettura, mapping, normalizzazione DST, fasce, end esclusivo)
+ * tramite {@link TransformerService#executeConversionFromUpload}, per ogni forma del CSV.
+ * Il servizio gira in un contesto Spring minimo: property ed estrazione arrivano da servizi fissi
+ * invece che da Mongo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final String NAME = "synthetic";
+
+    @Param({"PLAIN", "PERIOD", "SLOT"})
+    public SyntheticDataset.Layout layout;
+
+    /** Valori da convertire; per il layout SLOT diventano giorni da {@link SyntheticDataset#SLOTS} fasce. */
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"0", "8"})
+    public int width;
+
+    private Path workDir;
+    private AnnotationConfigApplicationContext context;
+    private TransformerService transformerService;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("cruud-bench");
+        SyntheticDataset dataset = SyntheticDataset.of(layout, width);
+        int dataRows = layout == SyntheticDataset.Layout.SLOT ? Math.max(1, rows / SyntheticDataset.SLOTS) : rows;
+        csv = Files.readAllBytes(dataset.write(workDir.resolve(NAME + ".csv"), dataRows));
+
+        PropertyDto property = dataset.property(NAME);
+        ExtractionDto extraction = dataset.extraction(NAME, workDir, workDir.resolve("output"));
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("temp-folder", workDir.resolve("temp") + "/")));
+        context.getBeanFactory().registerSingleton("propertyService", new PropertyService() {
+            @Override
+            public List<PropertyDto> getFilteredProperties(PropertyFilterDto dto) {
+                return List.of(property);
+            }
+        });
+        context.getBeanFactory().registerSingleton("extractionService", new ExtractionService() {
+            @Override
+            public Optional<ExtractionDto> getByExtractionName(String extractionName) {
+                return Optional.of(extraction);
+            }
+        });
+        context.register(TransformerService.class, TimeNormalizationService.class, ObjectMapper.class);
+        context.refresh();
+        transformerService = context.getBean(TransformerService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public ResultUrbanDataset convert() {
+        return transformerService.executeConversionFromUpload(
+                new MockMultipartFile("file", NAME + ".csv", "text/csv", csv), NAME);
+    }
+}
@@ -0,0 +1,73 @@
+package com.exprivia.nest.cruud.benchmark;
+
+import com.exprivia.nest.cruud.utils.MathFunction;
+import com.exprivia.nest.cruud.utils.Maths;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Funzioni di mapping su valori decimali sintetici, con separatore punto o virgola e qualche
+ * valore non numerico: {@link Maths#execute}, che compila la funzione a ogni chiamata, e la
+ * {@link MathFunction} gia compilata usata dalla conversione.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathsBenchmark {
+
+    private static final int VALUES = 1024;
+
+    @Param({"num", ">0", "*3.6", "/1000", "num; *3.6 ;/1000"})
+    public String function;
+
+    private String[] values;
+    private MathFunction compiled;
+
+    @Setup
+    public void setUp() {
+        compiled = MathFunction.compile(function, "null", true);
+        SplittableRandom random = new SplittableRandom(42);
+        values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            int value = random.nextInt(-100_000, 100_000);
+            values[i] = switch (i % 16) {
+                case 0 -> "n/a";
+                case 1 -> (value / 100) + "," + Math.abs(value % 100);
+                default -> (value / 100) + "." + Math.abs(value % 100);
+            };
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void execute(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(Maths.execute(value, function, "null"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void compiled(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(compiled.apply(value));
+        }
+    }
+}
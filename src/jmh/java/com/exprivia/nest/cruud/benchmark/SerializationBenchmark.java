@@ -0,0 +1,130 @@
+package com.exprivia.nest.cruud.benchmark;
+
+import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
+import com.exprivia.nest.cruud.dto.urbandataset.UrbanDatasetDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ValuesDto;
+import com.exprivia.nest.cruud.utils.UrbanDatasetWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializzazione JSON degli UD: scrittura in streaming con {@link UrbanDatasetWriter} su file e
+ * serializzazione dell'intero {@link ResultUrbanDataset} con l'ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    /** Property per riga. */
+    @Param({"2", "10"})
+    public int width;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<ResultValueDto> values;
+    private ResultUrbanDataset urbanDataset;
+    private SpecificationDto specification;
+    private ContextDto context;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            List<PropertyValueDto> properties = new ArrayList<>(width);
+            for (int p = 0; p < width; p++) {
+                properties.add(PropertyValueDto.builder()
+                        .name("Property" + p)
+                        .val(random.nextInt(1000) + "." + random.nextInt(10, 100))
+                        .build());
+            }
+            HashMap<String, Object> period = new HashMap<>();
+            period.put("start_ts", start.plusMinutes(15L * i) + ":00");
+            period.put("end_ts", start.plusMinutes(15L * i + 14) + ":59");
+            values.add(ResultValueDto.builder().id(i + 1).period(period).property(properties).build());
+        }
+        specification = SpecificationDto.builder().name("synthetic").version("1.0").build();
+        context = ContextDto.builder().timeZone("UTC+2").build();
+        urbanDataset = ResultUrbanDataset.builder()
+                .urbanDataset(UrbanDatasetDto.builder()
+                        .specification(specification)
+                        .context(context)
+                        .values(ValuesDto.builder().line(values).build())
+                        .build())
+                .build();
+        output = Files.createTempFile("cruud-bench", ".json");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public Path writeStreaming() throws IOException {
+        try (UrbanDatasetWriter writer = UrbanDatasetWriter.open(output.toString(), specification, context, objectMapper)) {
+            int id = 1;
+            for (ResultValueDto value : values) {
+                writer.writeLine(value, id++);
+            }
+        }
+        return output;
+    }
+
+    @Benchmark
+    public long writeObjectMapper() throws IOException {
+        CountingStream stream = new CountingStream();
+        objectMapper.writeValue(stream, urbanDataset);
+        return stream.count;
+    }
+
+    /** Conta i byte senza conservarli. */
+    private static final class CountingStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
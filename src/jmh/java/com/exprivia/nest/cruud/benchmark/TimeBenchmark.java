@@ -0,0 +1,107 @@
+package com.exprivia.nest.cruud.benchmark;
+
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.service.SyntheticDataset;
+import com.exprivia.nest.cruud.service.TimeNormalizationService;
+import com.exprivia.nest.cruud.utils.TimeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcolo dei periodi dalle colonne CSV ({@link TimeUtils#getStartAndEndTimeFromString}) e
+ * normalizzazione DST di righe a 15 minuti che attraversano il cambio d'ora autunnale.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeBenchmark {
+
+    /** Periodo di una riga: data, header e valore della colonna periodo, durata dello slot. */
+    @State(Scope.Benchmark)
+    public static class PeriodInput {
+
+        @Param({"slot", "range", "merge"})
+        public String shape;
+
+        String date;
+        String header;
+        String value;
+        int slice;
+
+        @Setup
+        public void setUp() {
+            switch (shape) {
+                case "slot" -> {
+                    date = "27/10/2024";
+                    header = "ea37";
+                    slice = 15;
+                }
+                case "range" -> {
+                    date = "2024-10-27";
+                    header = "02:15-02:30";
+                    slice = -1;
+                }
+                default -> {
+                    date = "2024-10-27";
+                    header = "orario";
+                    value = "02:15:00";
+                    slice = 0;
+                }
+            }
+        }
+    }
+
+    /** Righe da normalizzare, ricreate per ogni invocazione perche la normalizzazione le modifica. */
+    @State(Scope.Benchmark)
+    public static class NormalizationInput {
+
+        @Param({"2880"})
+        public int rows;
+
+        @Param({"true", "false"})
+        public boolean handleDst;
+
+        final TimeNormalizationService service = new TimeNormalizationService();
+        List<ResultValueDto> values;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            values = new ArrayList<>(rows);
+            LocalDateTime start = LocalDateTime.of(2024, 10, 26, 0, 0);
+            for (int i = 0; i < rows; i++) {
+                HashMap<String, Object> period = new HashMap<>();
+                period.put("start_ts", start.plusMinutes(15L * i).toString() + ":00");
+                period.put("end_ts", start.plusMinutes(15L * i + 15).toString() + ":00");
+                values.add(ResultValueDto.builder().id(i + 1).period(period).build());
+            }
+        }
+    }
+
+    @Benchmark
+    public HashMap<String, Object> startAndEndFromColumns(PeriodInput input) {
+        return TimeUtils.getStartAndEndTimeFromString(input.date, input.header, input.value, input.slice);
+    }
+
+    @Benchmark
+    public List<ResultValueDto> normalizePeriods(NormalizationInput input) {
+        return input.service.normalizePeriods(input.values, SyntheticDataset.TIME_ZONE, SyntheticDataset.UD_UTC, input.handleDst);
+    }
+}
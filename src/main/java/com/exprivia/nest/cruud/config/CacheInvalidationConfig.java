@@ -0,0 +1,67 @@
+package com.exprivia.nest.cruud.config;
+
+import com.exprivia.nest.cruud.model.Extraction;
+import com.exprivia.nest.cruud.model.Property;
+import com.exprivia.nest.cruud.service.ExtractionService;
+import com.exprivia.nest.cruud.service.PropertyService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+
+import java.util.List;
+
+/**
+ * Invalidazione delle cache di property ed estrazioni tramite change stream Mongo:
+ * le scritture fatte da altre istanze (o direttamente sul database) svuotano la cache
+ * locale senza attendere il TTL. I change stream richiedono un replica set; su un Mongo
+ * standalone l'ascolto fallisce con un warning e le voci restano valide fino al TTL.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "ud.cache.changeStreams", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationConfig {
+
+    /**
+     * Container che ascolta le collection Properties ed Extractions. Il container di Spring Data
+     * non parte da solo (isAutoStartup false), quindi viene avviato e fermato con il bean.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public MessageListenerContainer cacheInvalidationContainer(MongoTemplate mongoTemplate,
+                                                               PropertyService propertyService,
+                                                               ExtractionService extractionService) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ud-cache-events-");
+        executor.setDaemon(true);
+
+        DefaultMessageListenerContainer container = new DefaultMessageListenerContainer(mongoTemplate, executor,
+                e -> log.warn("Cache invalidation: change stream not available ({}), cached lookups expire after the TTL",
+                        e.getMessage()));
+
+        invalidationRequests(mongoTemplate, propertyService, extractionService)
+                .forEach(request -> container.register(request, Document.class));
+
+        return container;
+    }
+
+    /** Richieste di change stream: ogni evento su una collection svuota la cache del servizio. */
+    static List<ChangeStreamRequest<Document>> invalidationRequests(MongoTemplate mongoTemplate,
+                                                                    PropertyService propertyService,
+                                                                    ExtractionService extractionService) {
+        return List.of(
+                ChangeStreamRequest.builder()
+                        .collection(mongoTemplate.getCollectionName(Property.class))
+                        .publishTo(message -> propertyService.invalidateCache())
+                        .build(),
+                ChangeStreamRequest.builder()
+                        .collection(mongoTemplate.getCollectionName(Extraction.class))
+                        .publishTo(message -> extractionService.invalidateCache())
+                        .build());
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.exprivia.nest.cruud.config;
 
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,12 +16,34 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class RabbitConfig {
 
+    /** Nome del container factory dei consumer della coda di conversione. */
+    public static final String CONVERT_LISTENER_FACTORY = "convertListenerContainerFactory";
+
+    /** Nome del container factory dei consumer della coda dei file da convertire (ack manuale). */
+    public static final String FILE_LISTENER_FACTORY = "fileListenerContainerFactory";
+
     @Value("${spring.rabbitmq.queues.convert_csv}")
     private String convert_csv_queue;
 
     @Value("${spring.rabbitmq.queues.clean_csv}")
     private String clean_csv_queue;
 
+    @Value("${spring.rabbitmq.queues.convert_file:convert_file}")
+    private String convert_file_queue;
+
+    // Consumers of the convert and file queues on this instance: each one handles one message at a
+    // time, more consumers (and instances) discover extractions and convert files in parallel.
+    @Value("${ud.conversion.consumers:1}")
+    private int convertConsumers;
+
+    @Value("${ud.conversion.maxConsumers:0}")
+    private int convertMaxConsumers;
+
+    // Messages delivered to a consumer before it acknowledges the previous one. Conversions are
+    // long, so 1 leaves the queued files to the idle consumers.
+    @Value("${ud.conversion.prefetch:1}")
+    private int convertPrefetch;
+
     /**
      * Coda per le richieste di conversione CSV→UD.
      */
@@ -34,4 +60,46 @@ public class RabbitConfig {
         return new Queue(clean_csv_queue, true);
     }
 
+    /**
+     * Coda dei singoli file da convertire, pubblicati dalla scoperta delle cartelle sorgente.
+     */
+    @Bean
+    public Queue createQueueConvertFile() {
+        return new Queue(convert_file_queue, true);
+    }
+
+    /**
+     * Container factory della coda di conversione: impostazioni Spring Boot di base con
+     * numero di consumer e prefetch configurabili.
+     */
+    @Bean(CONVERT_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory convertListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return listenerContainerFactory(configurer, connectionFactory);
+    }
+
+    /**
+     * Container factory della coda dei file: come quella di conversione, con ack manuale dato
+     * dal listener solo a conversione conclusa.
+     */
+    @Bean(FILE_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory fileListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = listenerContainerFactory(configurer, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory listenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+
+        int consumers = Math.max(1, convertConsumers);
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(Math.max(consumers, convertMaxConsumers));
+        factory.setPrefetchCount(Math.max(1, convertPrefetch));
+        return factory;
+    }
+
 }
@@ -69,4 +69,22 @@ public class ExtractionDto {
     @Builder.Default
     private Boolean fasce = Boolean.FALSE;
 
+    /**
+     * Numero massimo di file di questa estrazione convertiti in parallelo. Se assente
+     * vale ud.conversion.maxFilesPerExtraction.
+     */
+    private Integer maxParallelFiles;
+
+    /**
+     * Motore di lettura del CSV: "opencsv" oppure "mapped" (file mappato in memoria, vengono
+     * costruite solo le colonne usate). Se assente vale ud.parsing.engine.
+     */
+    private String csvEngine;
+
+    /**
+     * Compressione dei file UD prodotti: "none" (default), "gzip" (.json.gz) oppure
+     * "zstd" (.json.zst). Un valore diverso viene rifiutato al salvataggio.
+     */
+    private String outputCompression;
+
 }
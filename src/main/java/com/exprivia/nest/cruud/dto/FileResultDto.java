@@ -0,0 +1,36 @@
+package com.exprivia.nest.cruud.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Esito della conversione di un singolo file: nome del file, completamento
+ * e messaggio d'errore quando la conversione non e andata a buon fine. Per i file
+ * convertiti riporta i file UD prodotti, i byte JSON, i byte scritti su disco e il
+ * rapporto di compressione (byte JSON / byte su disco).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileResultDto {
+
+    private String fileName;
+
+    private Boolean completed;
+
+    private String error;
+
+    private List<String> outputFiles;
+
+    private Long jsonBytes;
+
+    private Long storedBytes;
+
+    private Double compressionRatio;
+
+}
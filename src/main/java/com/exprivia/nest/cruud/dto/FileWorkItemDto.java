@@ -0,0 +1,29 @@
+package com.exprivia.nest.cruud.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Unita di lavoro della coda di conversione per file: un CSV trovato nella cartella
+ * sorgente di un'estrazione, con dimensione e data di ultima modifica al momento della
+ * scoperta (se cambiano il messaggio e superato e il file verra riproposto).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileWorkItemDto {
+
+    private String extractionName;
+
+    private String sourceFilesPath;
+
+    private String fileName;
+
+    private long size;
+
+    private long lastModified;
+
+}
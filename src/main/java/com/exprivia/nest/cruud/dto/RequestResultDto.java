@@ -17,8 +17,10 @@ public class RequestResultDto {
 
     private List<String> filesCompleted;
 
+    private List<FileResultDto> files;
+
 }
 /**
- * Risultato sintetico di una richiesta di trasformazione: descrizione e lista
- * dei file completati con successo.
+ * Risultato sintetico di una richiesta di trasformazione: descrizione, lista
+ * dei file completati con successo ed esito per singolo file.
  */
@@ -1,12 +1,16 @@
 package com.exprivia.nest.cruud.dto.urbandataset.values;
 
 import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
+import com.exprivia.nest.cruud.utils.EpochPeriod;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import java.util.HashMap;
 import java.util.List;
 
@@ -32,4 +36,19 @@ public class ResultValueDto {
 
     private Object timestamp;
 
+    /**
+     * Periodo in forma numerica usato dalle fasi temporali; le sue modifiche vengono riportate in
+     * period da {@link EpochPeriod#flush(ResultValueDto)} prima della serializzazione.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private EpochPeriod epochPeriod;
+
+    /** Sostituisce il periodo; il periodo numerico verra ricreato dalla nuova mappa. */
+    public void setPeriod(HashMap<String, Object> period) {
+        this.period = period;
+        this.epochPeriod = null;
+    }
+
 }
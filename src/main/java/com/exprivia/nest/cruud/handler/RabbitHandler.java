@@ -1,16 +1,29 @@
 package com.exprivia.nest.cruud.handler;
 
+import com.exprivia.nest.cruud.config.RabbitConfig;
 import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileResultDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
 import com.exprivia.nest.cruud.service.ExternalService;
 import com.exprivia.nest.cruud.service.ExtractionService;
+import com.exprivia.nest.cruud.service.LeaseService;
+import com.exprivia.nest.cruud.service.RabbitPublisher;
 import com.exprivia.nest.cruud.service.TransformerService;
 import com.exprivia.nest.cruud.utils.FileUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
+
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Listener per le code RabbitMQ: attiva conversioni automatiche e cleaning
@@ -20,6 +33,12 @@ import java.util.List;
 @Component
 public class RabbitHandler {
 
+    private static final String EXTRACTION_LEASE = "extraction:";
+
+    // Extractions being discovered by this instance: the lease is held per instance, so it does
+    // not keep two consumer threads of the same instance from discovering the same extraction.
+    private final Set<String> discovering = ConcurrentHashMap.newKeySet();
+
     @Autowired
     private ExtractionService extractionService;
 
@@ -29,42 +48,110 @@ public class RabbitHandler {
     @Autowired
     private TransformerService transformerService;
 
+    @Autowired
+    private RabbitPublisher rabbitPublisher;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private LeaseService leaseService;
+
     /**
-     * Consuma i messaggi dalla coda di conversione: per ogni estrazione con
-     * autoConvert attivo esegue la trasformazione dai file sorgente.
+     * Consuma i messaggi dalla coda di conversione: ogni messaggio porta il nome di una
+     * estrazione con autoConvert attivo, di cui vengono pubblicati i file sorgente sulla
+     * coda dei file. Un lease per estrazione evita che due istanze scoprano la stessa cartella
+     * in parallelo, un insieme locale che lo facciano due consumer della stessa istanza.
      */
-    @RabbitListener(queues = "${spring.rabbitmq.queues.convert_csv}")
-    public void consumeConvertCsv(String msg) {
-        log.debug("Message convert received. {}", msg);
-        log.debug("Start convert from csv");
+    @RabbitListener(queues = "${spring.rabbitmq.queues.convert_csv}", containerFactory = RabbitConfig.CONVERT_LISTENER_FACTORY)
+    public void consumeConvertCsv(String extractionName) {
+        log.debug("Message convert received. {}", extractionName);
 
-        List<ExtractionDto> extractions = extractionService.getAll().stream()
-                .filter(extractionDto -> extractionDto.getAutoConvert() == Boolean.TRUE)
-                .toList();
+        Optional<ExtractionDto> found = extractionService.getByExtractionName(extractionName);
+        if (found.isEmpty() || found.get().getAutoConvert() != Boolean.TRUE) {
+            log.warn("Convert event ignored: no extraction with autoConvert named {}", extractionName);
+            return;
+        }
+        if (!discovering.add(extractionName)) {
+            log.info("Convert event ignored: extraction {} is already being discovered", extractionName);
+            return;
+        }
+        String lease = EXTRACTION_LEASE + extractionName;
+        if (!leaseService.tryAcquire(lease)) {
+            discovering.remove(extractionName);
+            log.info("Convert event ignored: extraction {} is already being discovered", extractionName);
+            return;
+        }
 
-        extractions.forEach(object -> {
-            log.info("execute event transform for: {}", object.getPropertyName());
+        try {
+            ExtractionDto extraction = found.get();
+            log.info("execute event transform for: {}", extraction.getPropertyName());
 
-            if (object.getSourceFilesPath() != null) {
-                transformerService.executeConversionFromFolder(object);
+            if (extraction.getSourceFilesPath() != null) {
+                rabbitPublisher.publishFileWork(transformerService.discoverFiles(extraction));
             }
 
-            if (object.getSourceRestApi() != null) {
+            if (extraction.getSourceRestApi() != null) {
                 //TODO: After integration, remove JSONDto parameter. And add getSourceRestApi. end remove under comment
-                /*ResultUrbanDataset resultUrbanDataset = externalService.executeConversionFromOpenCruise(JSONDto.builder().build(), object.getPropertyName());
+                /*ResultUrbanDataset resultUrbanDataset = externalService.executeConversionFromOpenCruise(JSONDto.builder().build(), extraction.getPropertyName());
                 try {
                     SimpleDateFormat formatter = new SimpleDateFormat("ddMMyyyy");
                     String formattedDate = formatter.format(new Date());
-                    FileUtils.createFile(object.getPropertyName() + "_" + formattedDate + "_" + UUID.randomUUID(), resultUrbanDataset, objectMapper);
+                    FileUtils.createFile(extraction.getPropertyName() + "_" + formattedDate + "_" + UUID.randomUUID(), resultUrbanDataset, objectMapper);
                 } catch (IOException e) {
                     log.error("Errore durante la creazione del file JSON!", e);
                     throw new RuntimeException(e);
                 }*/
             }
-        });
+        } finally {
+            leaseService.release(lease);
+            discovering.remove(extractionName);
+        }
+    }
+
+    /**
+     * Consuma i messaggi della coda dei file: converte un file per messaggio e conferma il
+     * messaggio a conversione conclusa. Un file fallito torna in coda una volta; se fallisce
+     * anche alla riconsegna il messaggio viene scartato e il file, rimasto nella cartella
+     * sorgente, viene ripubblicato dalla scoperta successiva.
+     */
+    @RabbitListener(queues = "${spring.rabbitmq.queues.convert_file:convert_file}", containerFactory = RabbitConfig.FILE_LISTENER_FACTORY)
+    public void consumeConvertFile(String msg, Channel channel,
+                                   @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                   @Header(AmqpHeaders.REDELIVERED) boolean redelivered) throws IOException {
+        log.debug("Message convert file received. {}", msg);
+
+        FileWorkItemDto item;
+        try {
+            item = objectMapper.readValue(msg, FileWorkItemDto.class);
+        } catch (IOException e) {
+            log.error("Convert file event discarded, invalid content: {}", e.getMessage());
+            channel.basicReject(deliveryTag, false);
+            return;
+        }
+
+        Optional<FileResultDto> result;
+        try {
+            result = extractionService.getByExtractionName(item.getExtractionName())
+                    .flatMap(extraction -> transformerService.executeConversionOfFile(extraction, item));
+        } catch (RuntimeException e) {
+            log.error("Error during conversion of file {}", item.getFileName(), e);
+            result = Optional.of(FileResultDto.builder().fileName(item.getFileName()).completed(false).build());
+        }
+
+        if (result.isEmpty()) {
+            log.debug("Convert file event ignored: {} no longer available", item.getFileName());
+            channel.basicAck(deliveryTag, false);
+        } else if (Boolean.TRUE.equals(result.get().getCompleted())) {
+            log.info("execute event transform for file: {}", item.getFileName());
+            channel.basicAck(deliveryTag, false);
+        } else if (!redelivered) {
+            log.warn("Conversion of file {} failed, retrying: {}", item.getFileName(), result.get().getError());
+            channel.basicNack(deliveryTag, false, true);
+        } else {
+            log.error("Conversion of file {} failed again, left in the source folder: {}", item.getFileName(), result.get().getError());
+            channel.basicReject(deliveryTag, false);
+        }
     }
 
     /**
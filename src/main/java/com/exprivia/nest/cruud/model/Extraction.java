@@ -61,6 +61,15 @@ public class Extraction {
     @Builder.Default
     private Boolean fasce = Boolean.FALSE;
 
+    /** Numero massimo di file convertiti in parallelo per questa estrazione. */
+    private Integer maxParallelFiles;
+
+    /** Motore di lettura del CSV (opencsv o mapped). */
+    private String csvEngine;
+
+    /** Compressione dei file UD in uscita (none, gzip o zstd). */
+    private String outputCompression;
+
     @Builder.Default
     private Date createdAt = new Date();
 
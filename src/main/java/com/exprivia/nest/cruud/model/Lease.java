@@ -0,0 +1,29 @@
+package com.exprivia.nest.cruud.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Documento Mongo di un lease condiviso tra le istanze: nome del lease, istanza che lo
+ * detiene e scadenza. L'indice TTL rimuove i lease scaduti non rilasciati.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Document("Leases")
+public class Lease {
+
+    @Id
+    private String id;
+
+    private String holder;
+
+    @Indexed(expireAfter = "0s")
+    private Date expiresAt;
+
+}
@@ -0,0 +1,14 @@
+package com.exprivia.nest.cruud.repository;
+
+import java.util.Date;
+
+/**
+ * Repository custom per i lease: acquisizione e rilascio atomici.
+ */
+public interface CustomLeaseRepository {
+
+    boolean tryAcquire(String name, String holder, Date now, Date expiresAt);
+
+    void release(String name, String holder);
+
+}
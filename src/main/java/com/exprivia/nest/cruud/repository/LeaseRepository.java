@@ -0,0 +1,12 @@
+package com.exprivia.nest.cruud.repository;
+
+import com.exprivia.nest.cruud.model.Lease;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository Mongo per i lease; estende il custom repo per acquisizione e rilascio atomici.
+ */
+@Repository
+public interface LeaseRepository extends MongoRepository<Lease, String>, CustomLeaseRepository {
+}
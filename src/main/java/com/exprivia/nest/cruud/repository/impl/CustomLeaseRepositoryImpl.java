@@ -0,0 +1,49 @@
+package com.exprivia.nest.cruud.repository.impl;
+
+import com.exprivia.nest.cruud.model.Lease;
+import com.exprivia.nest.cruud.repository.CustomLeaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+
+/**
+ * Implementazione custom dei lease con MongoTemplate. L'acquisizione e un upsert
+ * condizionato: aggiorna il lease se e scaduto o gia dell'istanza, altrimenti l'inserimento
+ * con lo stesso id fallisce per chiave duplicata e il lease resta al detentore attuale.
+ */
+public class CustomLeaseRepositoryImpl implements CustomLeaseRepository {
+
+    private static final String HOLDER = "holder";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /** Acquisisce o rinnova il lease fino a expiresAt; false se e di un'altra istanza. */
+    public boolean tryAcquire(String name, String holder, Date now, Date expiresAt) {
+
+        Query query = new Query(Criteria.where("id").is(name)
+                .orOperator(Criteria.where(EXPIRES_AT).lt(now), Criteria.where(HOLDER).is(holder)));
+
+        try {
+            mongoTemplate.upsert(query, new Update().set(HOLDER, holder).set(EXPIRES_AT, expiresAt), Lease.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+
+    }
+
+    /** Rilascia il lease se e ancora dell'istanza. */
+    public void release(String name, String holder) {
+
+        mongoTemplate.remove(new Query(Criteria.where("id").is(name).and(HOLDER).is(holder)), Lease.class);
+
+    }
+
+}
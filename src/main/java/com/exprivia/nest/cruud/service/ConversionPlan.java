@@ -0,0 +1,529 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.PropertiesDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.utils.DateColumnFormat;
+import com.exprivia.nest.cruud.utils.MappingUtils;
+import com.exprivia.nest.cruud.utils.MathFunction;
+import com.exprivia.nest.cruud.utils.PeriodTemplate;
+import com.exprivia.nest.cruud.utils.PropertyNames;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Piano di conversione compilato una sola volta per coppia (property, header CSV).
+ * Risolve in anticipo gli indici di colonna, l'instradamento dei valori negativi
+ * (name / nameForNegative), il ValueDto di ogni colonna e la sua funzione gia compilata
+ * ({@link MathFunction}), cosi il ciclo sulle righe lavora solo su indici interi senza
+ * costruire mappe intermedie ne rileggere la stringa della funzione.
+ * Anche gli header delle colonne periodo sono compilati in {@link PeriodTemplate}.
+ * I nomi delle property sono registrati in un dizionario ({@link PropertyNames}) con un id per
+ * colonna: le righe riusano le stesse stringhe e confrontano i nomi per id, senza equalsIgnoreCase.
+ * L'istanza e immutabile e puo essere condivisa tra conversioni concorrenti.
+ */
+@Slf4j
+public final class ConversionPlan {
+
+    /** Come viene letto il valore grezzo di una colonna mappata. */
+    private enum Routing {
+        /** Mapping senza nameForNegative: valore letto cosi com'e. */
+        PLAIN,
+        /** Colonna name con nameForNegative: i negativi diventano "null". */
+        POSITIVE,
+        /** Colonna nameForNegative: i non negativi diventano "null". */
+        NEGATIVE,
+        /** Chiave senza instradamento: nessun valore. */
+        NONE
+    }
+
+    /** Colonna mappata (chiave di destinazione) con gli indici sorgente e il mapping gia risolto. */
+    private record MappedColumn(String name, int fold, int[] columns, Routing routing, ValueDto valueDto, MathFunction function) { }
+
+    /** Property di specifica con le colonne mappate che la valorizzano, in ordine di elaborazione. */
+    private record PropertyBinding(int fold, MappedColumn[] columns) { }
+
+    /** Oltre questo numero di nomi la presenza dei campi null non sta in un long e si usa il confronto per nome. */
+    private static final int MAX_MASK_NAMES = Long.SIZE;
+
+    private final String[] header;
+    private final PropertyNames names = new PropertyNames();
+    private final String[] columnNames;
+    private final int[] columnFolds;
+    private final ValueDto[] columnValueDtos;
+    private final MathFunction[] columnFunctions;
+    private final PropertyBinding[] properties;
+    private final int maxMappedColumn;
+    private final Map<String, String> nullsField;
+    private final String[] nullNames;
+    private final String[] nullValues;
+    private final int[] nullFolds;
+    private final boolean maskNulls;
+    private final List<String> periods;
+    private final int[] periodColumns;
+    private final int[] periodDataColumns;
+    private final PeriodTemplate[] periodTemplates;
+    private final int dateColumn;
+    private final Object dateConfig;
+    private final int slice;
+    private final int firstPropertyColumn;
+    private final boolean elaborateCoordinates;
+    private final int formatColumn;
+    private final int heightColumn;
+    private final int longitudeColumn;
+    private final int latitudeColumn;
+    private final boolean[] referencedColumns;
+
+    private ConversionPlan(String[] header, PropertyDto propertyDto, SpecificationDto specificationDto,
+                           List<String> periods, int slice, boolean exactDecimal) {
+        this.header = Arrays.copyOf(header, header.length);
+        this.periods = List.copyOf(periods);
+        this.slice = slice;
+
+        // header -> indici, con la stessa semantica del vecchio finalHeaderToLine
+        HashMap<String, LinkedList<Integer>> headerToLine = new HashMap<>();
+        HashMap<String, ValueDto> mappings = propertyDto.getMappings();
+        for (int i = 0; i < header.length; i++) {
+            ValueDto valueDto = mappings.get(header[i]);
+            if (valueDto == null) {
+                continue;
+            }
+            headerToLine.computeIfAbsent(valueDto.getName(), k -> new LinkedList<>()).add(i);
+            if (valueDto.getNameForNegative() != null) {
+                LinkedList<Integer> listIndex = new LinkedList<>();
+                listIndex.add(i);
+                headerToLine.put(valueDto.getNameForNegative(), listIndex);
+            }
+        }
+
+        List<ValueDto> dictionary = mappings.values().stream().toList();
+        Set<String> withoutNegative = new HashSet<>();
+        Set<String> withNegative = new HashSet<>();
+        Set<String> negative = new HashSet<>();
+        for (ValueDto dto : dictionary) {
+            if (dto.getNameForNegative() == null || dto.getNameForNegative().isBlank()) {
+                withoutNegative.add(dto.getName());
+            } else {
+                withNegative.add(dto.getName());
+                negative.add(dto.getNameForNegative());
+            }
+        }
+
+        // Ordine delle chiavi fissato una volta: e quello usato per risolvere nomi e property
+        List<MappedColumn> mapped = new ArrayList<>();
+        int maxColumn = -1;
+        for (Map.Entry<String, LinkedList<Integer>> entry : headerToLine.entrySet()) {
+            String key = entry.getKey();
+            Routing routing = withoutNegative.contains(key) ? Routing.PLAIN
+                    : withNegative.contains(key) ? Routing.POSITIVE
+                    : negative.contains(key) ? Routing.NEGATIVE
+                    : Routing.NONE;
+            int[] columns = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            for (int column : columns) {
+                maxColumn = Math.max(maxColumn, column);
+            }
+            ValueDto valueDto = MappingUtils.resolveValueDto(key, dictionary);
+            MathFunction function = valueDto != null
+                    ? MathFunction.compile(valueDto.getFunction(), valueDto.getAlternativeValue(), exactDecimal)
+                    : null;
+            int nameId = names.intern(key);
+            mapped.add(new MappedColumn(names.name(nameId), names.fold(nameId), columns, routing, valueDto, function));
+        }
+        this.maxMappedColumn = maxColumn;
+
+        this.columnNames = new String[header.length];
+        this.columnFolds = new int[header.length];
+        Arrays.fill(columnFolds, -1);
+        this.columnValueDtos = new ValueDto[header.length];
+        this.columnFunctions = new MathFunction[header.length];
+        for (MappedColumn column : mapped) {
+            for (int index : column.columns()) {
+                if (columnNames[index] == null) {
+                    columnNames[index] = column.name();
+                    columnFolds[index] = column.fold();
+                    columnValueDtos[index] = column.valueDto();
+                    columnFunctions[index] = column.function();
+                }
+            }
+        }
+
+        List<String> propertiesWithoutSubs = new ArrayList<>(specificationDto.getProperties().getPropertyDefinition().stream()
+                .filter(prp -> prp.getSubProperties() == null)
+                .map(PropertiesDto::getPropertyName)
+                .toList());
+        List<String> subProperties = specificationDto.getProperties().getPropertyDefinition().stream()
+                .filter(prp -> prp.getSubProperties() != null)
+                .flatMap(prp -> prp.getSubProperties().getPropertyName().stream())
+                .toList();
+        propertiesWithoutSubs.removeAll(subProperties);
+
+        this.properties = propertiesWithoutSubs.stream()
+                .map(property -> new PropertyBinding(names.fold(names.intern(property)), mapped.stream()
+                        .filter(column -> column.name().equalsIgnoreCase(property))
+                        .toArray(MappedColumn[]::new)))
+                .toArray(PropertyBinding[]::new);
+
+        List<Integer> columnsToRead = columnsForHeader(propertiesWithoutSubs, header);
+        this.firstPropertyColumn = columnsToRead.isEmpty() ? -1 : columnsToRead.getFirst();
+
+        Map<String, Object> configurations = propertyDto.getConfigurations() != null
+                ? propertyDto.getConfigurations()
+                : new HashMap<>();
+
+        this.nullsField = Collections.unmodifiableMap(MappingUtils.toStringMap(configurations.get("nullsField")));
+        this.nullNames = new String[nullsField.size()];
+        this.nullValues = new String[nullsField.size()];
+        this.nullFolds = new int[nullsField.size()];
+        int nullIndex = 0;
+        for (Map.Entry<String, String> entry : nullsField.entrySet()) {
+            int nameId = names.intern(entry.getKey());
+            nullNames[nullIndex] = names.name(nameId);
+            nullValues[nullIndex] = entry.getValue();
+            nullFolds[nullIndex++] = names.fold(nameId);
+        }
+        this.maskNulls = names.foldCount() <= MAX_MASK_NAMES;
+        this.periodColumns = columnsForHeader(periods, header).stream().mapToInt(Integer::intValue).toArray();
+        this.periodDataColumns = new int[periodColumns.length];
+        this.periodTemplates = new PeriodTemplate[periodColumns.length];
+        for (int i = 0; i < periodColumns.length; i++) {
+            periodTemplates[i] = PeriodTemplate.compile(header[periodColumns[i]], slice);
+            // se ci sono piu colonne data, ogni periodo legge la sua
+            periodDataColumns[i] = periods.size() > 1 && i < periods.size() ? firstColumn(periods.get(i), header) : -1;
+        }
+
+        this.dateConfig = configurations.get("date");
+        List<Integer> dateColumns = dateConfig != null ? columnsForHeader(List.of(dateConfig.toString()), header) : List.of();
+        this.dateColumn = dateColumns.isEmpty() ? -1 : dateColumns.getFirst();
+
+        this.elaborateCoordinates = subProperties.stream().anyMatch(string -> string.equalsIgnoreCase(TransformerService.FORMAT)
+                || string.equalsIgnoreCase(TransformerService.LATITUDE)
+                || string.equalsIgnoreCase(TransformerService.HEIGHT)
+                || string.equalsIgnoreCase(TransformerService.LONGITUDE));
+        this.formatColumn = firstIndex(headerToLine, TransformerService.FORMAT);
+        this.heightColumn = firstIndex(headerToLine, TransformerService.HEIGHT);
+        this.longitudeColumn = firstIndex(headerToLine, TransformerService.LONGITUDE);
+        this.latitudeColumn = firstIndex(headerToLine, TransformerService.LATITUDE);
+
+        this.referencedColumns = new boolean[header.length];
+        for (MappedColumn column : mapped) {
+            for (int index : column.columns()) {
+                referencedColumns[index] = true;
+            }
+        }
+        for (int column : periodColumns) {
+            referencedColumns[column] = true;
+        }
+        for (int column : new int[]{dateColumn, firstPropertyColumn, formatColumn, heightColumn, longitudeColumn, latitudeColumn}) {
+            if (column >= 0) {
+                referencedColumns[column] = true;
+            }
+        }
+        for (int column : periodDataColumns) {
+            if (column >= 0) {
+                referencedColumns[column] = true;
+            }
+        }
+    }
+
+    /**
+     * Compila il piano per l'header letto dal CSV.
+     *
+     * @param header header del CSV
+     * @param propertyDto property con mappings e configurations (mappings non vuoti)
+     * @param specificationDto specifica UD della property
+     * @param periods colonne periodo configurate
+     * @param slice durata della fascia in minuti
+     * @return piano pronto all'uso
+     */
+    public static ConversionPlan compile(String[] header, PropertyDto propertyDto, SpecificationDto specificationDto,
+                                         List<String> periods, int slice) {
+        return compile(header, propertyDto, specificationDto, periods, slice, true);
+    }
+
+    /**
+     * Compila il piano per l'header letto dal CSV scegliendo l'aritmetica delle funzioni.
+     *
+     * @param header header del CSV
+     * @param propertyDto property con mappings e configurations (mappings non vuoti)
+     * @param specificationDto specifica UD della property
+     * @param periods colonne periodo configurate
+     * @param slice durata della fascia in minuti
+     * @param exactDecimal true per funzioni decimali esatte, false per l'aritmetica double
+     * @return piano pronto all'uso
+     */
+    public static ConversionPlan compile(String[] header, PropertyDto propertyDto, SpecificationDto specificationDto,
+                                         List<String> periods, int slice, boolean exactDecimal) {
+        return new ConversionPlan(header, propertyDto, specificationDto, periods, slice, exactDecimal);
+    }
+
+    /**
+     * Converte una riga senza fasce: un record per ogni colonna periodo valorizzata oppure, senza
+     * periodi, un unico record. Gli id vengono assegnati da chi riceve i record.
+     * Oltre ai record vengono allocati solo i valori letti dalla riga: la data e letta una volta
+     * per riga dal lettore del thread e la riga non viene copiata, quindi l'array puo essere riusato
+     * dal reader CSV.
+     *
+     * @param line riga del CSV
+     * @param dates lettore della colonna data del thread corrente
+     * @param values destinazione dei record
+     */
+    public void convertLine(String[] line, DateColumnFormat.Reader dates, Consumer<ResultValueDto> values) {
+        if (periodColumns.length > 0) {
+            for (int i = 0; i < periodColumns.length; i++) {
+                int periodIdx = periodColumns[i];
+                if (periodIdx < 0 || periodIdx >= line.length) {
+                    log.warn("Skipping period column {} because line has only {} columns", periodIdx, line.length);
+                    continue;
+                }
+                if (dateColumn >= line.length) {
+                    log.warn("Skipping line because date column {} missing (line has {})", dateColumn, line.length);
+                    continue;
+                }
+                if (line[dateColumn] == null || line[dateColumn].isBlank()) {
+                    continue;
+                }
+                // Effettua le operazioni solo se il datetime è valorizzato
+                ResultValueDto resultValueDto = new ResultValueDto();
+
+                HashMap<String, Object> period = periodTemplates[i].resolve(line[dateColumn], line[periodIdx], dates);
+
+                if (!period.isEmpty()) {
+                    resultValueDto.setPeriod(period);
+                }
+
+                // with more than 1 date column, each period reads its own
+                resultValueDto.setProperty(buildProperties(line, periodDataColumns[i]));
+
+                if (elaborateCoordinates) {
+                    resultValueDto.setCoordinates(buildCoordinates(line));
+                }
+
+                values.accept(resultValueDto);
+            }
+        } else {
+            ResultValueDto resultValueDto = new ResultValueDto();
+
+            resultValueDto.setProperty(buildProperties(line, firstPropertyColumn));
+
+            if (elaborateCoordinates) {
+                resultValueDto.setCoordinates(buildCoordinates(line));
+            }
+
+            values.accept(resultValueDto);
+        }
+    }
+
+    /**
+     * Costruisce le property di una riga.
+     *
+     * @param line riga del CSV
+     * @param columnToRead colonna del valore principale, -1 se non prevista
+     * @return lista property valorizzate, compresi i campi null configurati
+     */
+    public List<PropertyValueDto> buildProperties(String[] line, int columnToRead) {
+        List<PropertyValueDto> propertiesValue = new ArrayList<>(properties.length + nullsField.size());
+        long present = 0L;
+
+        if (maxMappedColumn >= line.length) {
+            log.warn("Skipping mapped columns beyond index {} because line has only {} columns", line.length - 1, line.length);
+        }
+
+        if (columnToRead >= 0) {
+            if (columnToRead >= line.length) {
+                log.warn("Skipping value for column index {} because line has only {} columns", columnToRead, line.length);
+            } else {
+                String headerName = columnToRead < columnNames.length ? columnNames[columnToRead] : null;
+                if (headerName == null) {
+                    throw new IndexOutOfBoundsException("Non ho trovato l'header!");
+                }
+
+                propertiesValue.add(PropertyValueDto.builder()
+                        .name(headerName)
+                        .val(MappingUtils.getCorrectValue(line[columnToRead], columnValueDtos[columnToRead],
+                                columnFunctions[columnToRead]))
+                        .build());
+                int headerFold = columnFolds[columnToRead];
+                present |= bit(headerFold);
+
+                for (PropertyBinding property : properties) {
+                    if (property.fold() != headerFold) {
+                        present |= addPropertyValue(property, line, propertiesValue);
+                    }
+                }
+            }
+        } else {
+            for (PropertyBinding property : properties) {
+                present |= addPropertyValue(property, line, propertiesValue);
+            }
+        }
+
+        addNullFields(propertiesValue, present);
+
+        return propertiesValue;
+    }
+
+    /**
+     * Legge le coordinate della riga dalle colonne format/height/longitude/latitude.
+     *
+     * @param line riga del CSV
+     * @return coordinate, con i valori di default per le colonne non mappate
+     */
+    public CoordinatesDto buildCoordinates(String[] line) {
+        return CoordinatesDto.builder()
+                .format(formatColumn >= 0 ? line[formatColumn] : "WGS84-DD")
+                .height(heightColumn >= 0 ? Double.parseDouble(line[heightColumn]) : 0D)
+                .longitude(longitudeColumn >= 0 ? Double.parseDouble(line[longitudeColumn]) : 0D)
+                .latitude(latitudeColumn >= 0 ? Double.parseDouble(line[latitudeColumn]) : 0D)
+                .build();
+    }
+
+    /** Aggiunge i valori della property e restituisce i bit dei gruppi di nomi aggiunti. */
+    private long addPropertyValue(PropertyBinding property, String[] line, List<PropertyValueDto> propertiesValue) {
+        long added = 0L;
+        for (MappedColumn column : property.columns()) {
+            String raw = routedValue(column, line);
+            if (raw == null) {
+                return added;
+            }
+            propertiesValue.add(PropertyValueDto.builder()
+                    .name(column.name())
+                    .val(MappingUtils.getCorrectValue(raw, column.valueDto(), column.function()))
+                    .build());
+            added |= bit(column.fold());
+        }
+        return added;
+    }
+
+    /**
+     * Come {@link MappingUtils#addNullFields}: aggiunge i campi null il cui nome non e gia tra le
+     * property della riga, confrontando i gruppi di nomi invece delle stringhe.
+     */
+    private void addNullFields(List<PropertyValueDto> propertiesValue, long present) {
+        if (!maskNulls) {
+            MappingUtils.addNullFields(propertiesValue, nullsField);
+            return;
+        }
+        for (int i = 0; i < nullNames.length; i++) {
+            long nullBit = bit(nullFolds[i]);
+            if ((present & nullBit) == 0) {
+                propertiesValue.add(PropertyValueDto.builder().name(nullNames[i]).val(nullValues[i]).build());
+                present |= nullBit;
+            }
+        }
+    }
+
+    private long bit(int fold) {
+        return maskNulls && fold >= 0 ? 1L << fold : 0L;
+    }
+
+    /** Valore della colonna mappata: vince l'ultimo indice presente nella riga. */
+    private String routedValue(MappedColumn column, String[] line) {
+        if (column.routing() == Routing.NONE) {
+            return null;
+        }
+        int[] columns = column.columns();
+        for (int i = columns.length - 1; i >= 0; i--) {
+            if (columns[i] >= line.length) {
+                continue;
+            }
+            String rawValue = line[columns[i]];
+            boolean negativeValue = rawValue != null && !rawValue.isEmpty() && rawValue.charAt(0) == '-';
+            return switch (column.routing()) {
+                case POSITIVE -> negativeValue ? "null" : rawValue;
+                case NEGATIVE -> negativeValue ? rawValue : "null";
+                default -> rawValue;
+            };
+        }
+        return null;
+    }
+
+    /** Header originale del CSV. */
+    public String headerAt(int column) {
+        return header[column];
+    }
+
+    /** Nomi delle colonne periodo configurate. */
+    public List<String> getPeriods() {
+        return periods;
+    }
+
+    /** Indici delle colonne periodo trovate nell'header. */
+    public int[] getPeriodColumns() {
+        return periodColumns;
+    }
+
+    /** Colonna data associata al periodo i-esimo, -1 se si usa la colonna data principale. */
+    public int periodDataColumn(int i) {
+        return periodDataColumns[i];
+    }
+
+    /** Template del periodo i-esimo, compilato dal suo header. */
+    public PeriodTemplate periodTemplate(int i) {
+        return periodTemplates[i];
+    }
+
+    /** Indice della colonna data, -1 se non configurata o assente. */
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    /** Valore grezzo della configurazione date. */
+    public Object getDateConfig() {
+        return dateConfig;
+    }
+
+    /** Durata della fascia in minuti. */
+    public int getSlice() {
+        return slice;
+    }
+
+    /** Prima colonna che corrisponde a una property senza sotto-property, -1 se assente. */
+    public int getFirstPropertyColumn() {
+        return firstPropertyColumn;
+    }
+
+    /** Colonne dell'header lette dalla conversione (mapping, periodi, data e coordinate). */
+    public boolean[] getReferencedColumns() {
+        return Arrays.copyOf(referencedColumns, referencedColumns.length);
+    }
+
+    /** True se la specifica prevede coordinate. */
+    public boolean isElaborateCoordinates() {
+        return elaborateCoordinates;
+    }
+
+    private static int firstIndex(HashMap<String, LinkedList<Integer>> headerToLine, String key) {
+        LinkedList<Integer> indexes = headerToLine.get(key);
+        return indexes != null ? indexes.getFirst() : -1;
+    }
+
+    private static List<Integer> columnsForHeader(List<String> columns, String[] header) {
+        List<Integer> result = new ArrayList<>();
+        if (columns == null) {
+            return result;
+        }
+        for (String string : columns) {
+            for (int j = 0; j < header.length; j++) {
+                if (string.equalsIgnoreCase(header[j])) {
+                    result.add(j);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int firstColumn(String column, String[] header) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -4,16 +4,25 @@ import com.exprivia.nest.cruud.dto.ExtractionDto;
 import com.exprivia.nest.cruud.mapper.ExtractionMapper;
 import com.exprivia.nest.cruud.model.Extraction;
 import com.exprivia.nest.cruud.repository.ExtractionRepository;
+import com.exprivia.nest.cruud.utils.OutputCompression;
+import com.exprivia.nest.cruud.utils.TtlCache;
+import com.exprivia.nest.cruud.utils.TtlCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Servizio applicativo per gestire le configurazioni di estrazione: CRUD e
  * ricerca per nome/property, con mapping tra DTO e modello Mongo.
+ * getAll e getByExtractionName passano da una cache con TTL: i DTO restituiti
+ * sono condivisi e vanno trattati in sola lettura.
  */
 @Slf4j
 @Service
@@ -25,20 +34,53 @@ public class ExtractionService {
     @Autowired
     private ExtractionMapper extractionMapper;
 
-    /** Crea una nuova estrazione e restituisce il DTO persistito. */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Extraction lookups done by the scheduled conversions and by every conversion request: kept
+    // for ttlSeconds and dropped on create/remove or when the change stream reports a write.
+    @Value("${ud.cache.ttlSeconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${ud.cache.maxSize:256}")
+    private int cacheMaxSize;
+
+    private static final String ALL_KEY = "*";
+
+    // Names without an extraction are cached as Optional.empty until the next write.
+    private TtlCache<String, Optional<ExtractionDto>> byName;
+    private TtlCache<String, List<ExtractionDto>> all;
+
+    @PostConstruct
+    void startCache() {
+        byName = new TtlCache<>(cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds));
+        all = new TtlCache<>(Math.min(cacheMaxSize, 1), Duration.ofSeconds(cacheTtlSeconds));
+        TtlCacheMetrics.monitor(meterRegistry, byName, "extractions");
+        TtlCacheMetrics.monitor(meterRegistry, all, "extractions.all");
+    }
+
+    /**
+     * Crea una nuova estrazione e restituisce il DTO persistito. Una compressione di output non
+     * supportata viene rifiutata qui, invece di far fallire la conversione di ogni file.
+     */
     public ExtractionDto create(ExtractionDto dto) {
         log.debug("Extraction Service: Create -> {}", dto);
-
-        return extractionMapper.modelToDto(
-                extractionRepository.save(extractionMapper.dtoToModel(dto))
-        );
+        OutputCompression.of(dto.getOutputCompression());
+
+        try {
+            return extractionMapper.modelToDto(
+                    extractionRepository.save(extractionMapper.dtoToModel(dto))
+            );
+        } finally {
+            invalidateCache();
+        }
     }
 
     /** Restituisce tutte le estrazioni. */
     public List<ExtractionDto> getAll() {
         log.debug("Extraction Service: getAll");
 
-        return convertListInDto(extractionRepository.findAll());
+        return all.get(ALL_KEY, key -> convertListInDto(extractionRepository.findAll()));
     }
 
     /** Restituisce l'estrazione per id (se esiste). */
@@ -52,7 +94,11 @@ public class ExtractionService {
     public Optional<ExtractionDto> getByExtractionName(String extractionName) {
         log.debug("Extraction Service: getByName -> {}", extractionName);
 
-        return extractionRepository.getByExtractionName(extractionName).map(extractionMapper::modelToDto);
+        if (extractionName == null || extractionName.isEmpty()) {
+            return extractionRepository.getByExtractionName(extractionName).map(extractionMapper::modelToDto);
+        }
+        return byName.get(extractionName,
+                name -> extractionRepository.getByExtractionName(name).map(extractionMapper::modelToDto));
     }
 
     /** Restituisce le estrazioni collegate a una property. */
@@ -68,6 +114,13 @@ public class ExtractionService {
     public void remove(String id) {
         log.debug("Extraction Service: remove -> {}", id);
         extractionRepository.deleteById(id);
+        invalidateCache();
+    }
+
+    /** Svuota la cache delle letture (scritture locali o segnalate dal change stream). */
+    public void invalidateCache() {
+        byName.invalidateAll();
+        all.invalidateAll();
     }
 
     private List<ExtractionDto> convertListInDto(List<Extraction> extractions) {
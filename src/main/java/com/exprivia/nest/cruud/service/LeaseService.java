@@ -0,0 +1,65 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.repository.LeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Servizio applicativo per i lease condivisi tra le istanze (collection Leases): una sola
+ * istanza alla volta detiene un lease, fino alla scadenza o al rilascio. Un'istanza che si
+ * ferma senza rilasciarlo lo perde alla scadenza.
+ */
+@Slf4j
+@Service
+public class LeaseService {
+
+    @Autowired
+    private LeaseRepository leaseRepository;
+
+    // Lease duration: an instance holds a lease for ttlMs after the last acquisition or renewal.
+    @Value("${ud.lease.ttlMs:30000}")
+    private long leaseTtlMs;
+
+    private final String holder = instanceName() + '-' + UUID.randomUUID();
+
+    /** Acquisisce o rinnova il lease per la durata configurata; false se e di un'altra istanza. */
+    public boolean tryAcquire(String name) {
+        return tryAcquire(name, Duration.ofMillis(leaseTtlMs));
+    }
+
+    /** Acquisisce o rinnova il lease per la durata indicata; false se e di un'altra istanza. */
+    public boolean tryAcquire(String name, Duration ttl) {
+        long now = System.currentTimeMillis();
+        boolean acquired = leaseRepository.tryAcquire(name, holder, new Date(now), new Date(now + ttl.toMillis()));
+        log.debug("Lease Service: tryAcquire {} -> {}", name, acquired);
+        return acquired;
+    }
+
+    /** Rilascia il lease se e ancora di questa istanza. */
+    public void release(String name) {
+        log.debug("Lease Service: release -> {}", name);
+        leaseRepository.release(name, holder);
+    }
+
+    /** Identificativo di questa istanza come detentore dei lease. */
+    public String getHolder() {
+        return holder;
+    }
+
+    private static String instanceName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "cruud";
+        }
+    }
+
+}
@@ -7,17 +7,26 @@ import com.exprivia.nest.cruud.exception.ExceptionMessage;
 import com.exprivia.nest.cruud.mapper.PropertyMapper;
 import com.exprivia.nest.cruud.model.Property;
 import com.exprivia.nest.cruud.repository.PropertyRepository;
+import com.exprivia.nest.cruud.utils.TtlCache;
+import com.exprivia.nest.cruud.utils.TtlCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Servizio applicativo per gestire le property di mapping: CRUD, filtro dinamico
  * e gestione dell'eccezione per nomi duplicati, con mapping DTO↔modello.
+ * Le ricerche per singolo nome passano da una cache con TTL: i DTO restituiti
+ * sono condivisi e vanno trattati in sola lettura.
  */
 @Slf4j
 @Service
@@ -29,6 +38,25 @@ public class PropertyService {
     @Autowired
     private PropertyMapper propertyMapper;
 
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Property lookups by name done for every converted file: kept for ttlSeconds and dropped on
+    // create/remove or when the change stream reports a write. 0 disables the cache.
+    @Value("${ud.cache.ttlSeconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${ud.cache.maxSize:256}")
+    private int cacheMaxSize;
+
+    private TtlCache<String, PropertyDto> byName;
+
+    @PostConstruct
+    void startCache() {
+        byName = new TtlCache<>(cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds));
+        TtlCacheMetrics.monitor(meterRegistry, byName, "properties");
+    }
+
     /** Crea una property, intercettando l'errore di nome duplicato. */
     public PropertyDto create(PropertyDto dto) throws DuplicateNameException {
         log.debug("Property Service: Create -> {}", dto);
@@ -39,6 +67,9 @@ public class PropertyService {
             );
         } catch (DuplicateKeyException e) {
             throw new DuplicateNameException(ExceptionMessage.DUPLICATE_NAME_EXCEPTION);
+        } finally {
+            // un salvataggio con id esistente puo anche rinominare la property
+            invalidateCache();
         }
 
     }
@@ -59,14 +90,39 @@ public class PropertyService {
     public void remove(String id) {
         log.debug("Property Service: remove -> {}", id);
         propertyRepository.deleteById(id);
+        invalidateCache();
     }
 
-    /** Restituisce le property filtrate secondo i criteri del filtro. */
+    /**
+     * Restituisce le property filtrate secondo i criteri del filtro.
+     * Il filtro per un solo nome (senza id) e servito dalla cache.
+     */
     public List<PropertyDto> getFilteredProperties(PropertyFilterDto dto) {
         log.debug("Property Service: getFilteredProperties -> {}", dto);
+
+        if (isSingleNameFilter(dto)) {
+            PropertyDto property = byName.get(dto.getPropertiesName().get(0),
+                    name -> convertListInDto(propertyRepository.getFilteredProperties(dto)).stream()
+                            .findFirst()
+                            .orElse(null));
+            return property != null ? List.of(property) : List.of();
+        }
         return convertListInDto(propertyRepository.getFilteredProperties(dto));
     }
 
+    /** Svuota la cache delle ricerche per nome (scritture locali o segnalate dal change stream). */
+    public void invalidateCache() {
+        byName.invalidateAll();
+    }
+
+    private static boolean isSingleNameFilter(PropertyFilterDto dto) {
+        return dto != null
+                && CollectionUtils.isEmpty(dto.getIds())
+                && !CollectionUtils.isEmpty(dto.getPropertiesName())
+                && dto.getPropertiesName().size() == 1
+                && dto.getPropertiesName().get(0) != null;
+    }
+
     private List<PropertyDto> convertListInDto(List<Property> properties) {
         return properties
                 .stream()
@@ -1,15 +1,27 @@
 package com.exprivia.nest.cruud.service;
 
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Publisher periodico su RabbitMQ: invia messaggi alle code di conversione e
- * pulizia con una frequenza configurata.
+ * pulizia con una frequenza configurata. La conversione invia un messaggio per
+ * ogni estrazione con autoConvert, cosi i consumer se le dividono. Con piu istanze
+ * pubblica solo quella che detiene il lease dello scheduler.
  */
+@Slf4j
 @Service
 public class RabbitPublisher {
 
@@ -19,17 +31,105 @@ public class RabbitPublisher {
     @Value("${spring.rabbitmq.queues.clean_csv}")
     private String clean_csv_queue;
 
+    @Value("${spring.rabbitmq.queues.convert_file:convert_file}")
+    private String convert_file_queue;
+
+    // A convert or file message still queued at the next tick is superseded by the new one.
+    @Value("${spring.rabbitmq.auto_convert}")
+    private String convertExpiration;
+
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
-    /** Pubblica un messaggio sulla coda di conversione con la frequenza configurata. */
+    @Autowired
+    private ExtractionService extractionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LeaseService leaseService;
+
+    // With several instances only the holder of this lease publishes the scheduled events; it is
+    // renewed every renewMs, so another instance takes over ttlMs after the leader stops.
+    static final String SCHEDULER_LEASE = "scheduler";
+
+    private volatile boolean leader;
+
+    /** Rinnova (o prova ad acquisire) la guida dello scheduler. */
+    @Scheduled(fixedDelayString = "${ud.lease.renewMs:10000}")
+    public void renewLeadership() {
+        isSchedulerLeader();
+    }
+
+    @PreDestroy
+    void releaseLeadership() {
+        if (leader) {
+            leaseService.release(SCHEDULER_LEASE);
+        }
+    }
+
+    private boolean isSchedulerLeader() {
+        boolean acquired;
+        try {
+            acquired = leaseService.tryAcquire(SCHEDULER_LEASE);
+        } catch (DataAccessException e) {
+            log.warn("Scheduler lease not available: {}", e.getMessage());
+            acquired = false;
+        }
+        if (acquired != leader) {
+            log.info(acquired ? "This instance is now the scheduler leader" : "This instance is no longer the scheduler leader");
+        }
+        leader = acquired;
+        return acquired;
+    }
+
+    /**
+     * Pubblica sulla coda di conversione un messaggio per ogni estrazione con autoConvert,
+     * con il nome dell'estrazione come contenuto.
+     */
     @Scheduled(fixedDelayString = "${spring.rabbitmq.auto_convert}")
     public void publishMessageConvert() {
-        rabbitTemplate.convertAndSend(convert_csv_queue, "Publish convert event...");
+        if (!isSchedulerLeader()) {
+            return;
+        }
+        List<String> extractionNames = extractionService.getAll().stream()
+                .filter(extractionDto -> extractionDto.getAutoConvert() == Boolean.TRUE)
+                .map(ExtractionDto::getExtractionName)
+                .toList();
+
+        log.debug("Publish convert event for {}", extractionNames);
+        extractionNames.forEach(extractionName ->
+                rabbitTemplate.convertAndSend(convert_csv_queue, extractionName, message -> {
+                    message.getMessageProperties().setExpiration(convertExpiration);
+                    return message;
+                }));
+    }
+
+    /**
+     * Pubblica sulla coda dei file un messaggio JSON per ogni file scoperto.
+     */
+    public void publishFileWork(List<FileWorkItemDto> items) {
+        for (FileWorkItemDto item : items) {
+            String body;
+            try {
+                body = objectMapper.writeValueAsString(item);
+            } catch (JsonProcessingException e) {
+                log.error("File work item not published for {}: {}", item.getFileName(), e.getMessage());
+                continue;
+            }
+            rabbitTemplate.convertAndSend(convert_file_queue, body, message -> {
+                message.getMessageProperties().setExpiration(convertExpiration);
+                return message;
+            });
+        }
     }
 
     @Scheduled(fixedDelayString = "${spring.rabbitmq.auto_clean}")
     public void publishMessageClean() {
+        if (!isSchedulerLeader()) {
+            return;
+        }
         rabbitTemplate.convertAndSend(clean_csv_queue, "Publish clean event...");
     }
 
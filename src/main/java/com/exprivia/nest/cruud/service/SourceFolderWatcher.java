@@ -0,0 +1,208 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
+import com.exprivia.nest.cruud.utils.FileUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Osserva con un WatchService le cartelle sorgente delle estrazioni con autoConvert e
+ * pubblica sulla coda dei file i CSV nuovi o modificati appena sono stabili, cioe quando
+ * dimensione e data di modifica non cambiano per quietMs (file completamente scritto).
+ * La conversione periodica resta attiva come recupero per gli eventi persi (overflow,
+ * file system remoti senza notifiche, cartelle non registrabili).
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ud.watch.enabled", havingValue = "true")
+public class SourceFolderWatcher {
+
+    @Autowired
+    private ExtractionService extractionService;
+
+    @Autowired
+    private RabbitPublisher rabbitPublisher;
+
+    // Time a file must keep the same size and modification time before it is published.
+    @Value("${ud.watch.quietMs:5000}")
+    private long quietMs;
+
+    private WatchService watchService;
+
+    // Watched folders and the autoConvert extraction that converts the files of each of them. When
+    // several extractions read the same folder a file is published once, for the first of them:
+    // the periodic conversion works the same way, where the first extraction moves the file to
+    // completed/ before the others see it.
+    private final Map<Path, WatchKey> watchedFolders = new ConcurrentHashMap<>();
+    private volatile Map<Path, ExtractionDto> extractionByFolder = Map.of();
+
+    // Files seen by the watcher and not published yet.
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+
+    // Size and modification time of the files already published: a file released after a failed
+    // conversion gets them back and is left to the periodic conversion instead of being retried
+    // at every quiet period.
+    private final Map<Path, Published> published = new ConcurrentHashMap<>();
+
+    private record PendingFile(long size, long lastModified, long stableSince) { }
+
+    private record Published(long size, long lastModified) { }
+
+    @PostConstruct
+    void startWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread.ofPlatform().name("ud-source-watcher").daemon(true).start(this::watchLoop);
+        refreshFolders();
+    }
+
+    @PreDestroy
+    void stopWatcher() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Allinea le cartelle osservate alle estrazioni con autoConvert: registra le nuove
+     * (proponendo i CSV gia presenti) e smette di osservare quelle non piu usate.
+     */
+    @Scheduled(fixedDelayString = "${ud.watch.refreshMs:60000}", initialDelayString = "${ud.watch.refreshMs:60000}")
+    public void refreshFolders() {
+        Map<Path, ExtractionDto> folders = new HashMap<>();
+        for (ExtractionDto extraction : extractionService.getAll()) {
+            if (extraction.getAutoConvert() == Boolean.TRUE && extraction.getSourceFilesPath() != null) {
+                folders.putIfAbsent(Paths.get(extraction.getSourceFilesPath()), extraction);
+            }
+        }
+        extractionByFolder = folders;
+
+        watchedFolders.entrySet().removeIf(watched -> {
+            if (folders.containsKey(watched.getKey())) {
+                return false;
+            }
+            log.info("Source watcher: stop watching {}", watched.getKey());
+            watched.getValue().cancel();
+            return true;
+        });
+        pending.keySet().removeIf(file -> !folders.containsKey(file.getParent()));
+        published.keySet().removeIf(file -> !Files.exists(file));
+
+        for (Path folder : folders.keySet()) {
+            if (!watchedFolders.containsKey(folder)) {
+                try {
+                    watchedFolders.put(folder, folder.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                    log.info("Source watcher: watching {}", folder);
+                    track(folder);
+                } catch (IOException | ClosedWatchServiceException e) {
+                    log.warn("Source watcher: {} not watched, left to the periodic conversion: {}", folder, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Pubblica i file in attesa rimasti invariati per quietMs.
+     */
+    @Scheduled(fixedDelayString = "${ud.watch.checkMs:1000}")
+    public void publishStableFiles() {
+        long now = System.nanoTime();
+        List<FileWorkItemDto> items = new ArrayList<>();
+        for (Map.Entry<Path, PendingFile> entry : pending.entrySet()) {
+            Path file = entry.getKey();
+            PendingFile seen = entry.getValue();
+            try {
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                if (size != seen.size() || lastModified != seen.lastModified()) {
+                    pending.replace(file, seen, new PendingFile(size, lastModified, now));
+                    continue;
+                }
+                if (now - seen.stableSince() < quietMs * 1_000_000L || !pending.remove(file, seen)) {
+                    continue;
+                }
+                Published stable = new Published(size, lastModified);
+                Published previous = published.put(file, stable);
+                ExtractionDto extraction = extractionByFolder.get(file.getParent());
+                if (!stable.equals(previous) && extraction != null) {
+                    items.add(FileWorkItemDto.builder()
+                            .extractionName(extraction.getExtractionName())
+                            .sourceFilesPath(extraction.getSourceFilesPath())
+                            .fileName(file.getFileName().toString())
+                            .size(size)
+                            .lastModified(lastModified)
+                            .build());
+                }
+            } catch (NoSuchFileException e) {
+                pending.remove(file, seen);
+            } catch (IOException e) {
+                log.debug("Source watcher: {} not readable yet: {}", file, e.getMessage());
+            }
+        }
+        if (!items.isEmpty()) {
+            log.debug("Source watcher: publishing {} stable file(s)", items.size());
+            rabbitPublisher.publishFileWork(items);
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path folder = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.debug("Source watcher: events lost for {}, rescanning", folder);
+                        track(folder);
+                    } else if (event.context() instanceof Path name && isCsv(name)) {
+                        trackFile(folder.resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Source watcher: {} no longer watched, left to the periodic conversion", folder);
+                    watchedFolders.remove(folder, key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Source watcher: stopped");
+        }
+    }
+
+    private void track(Path folder) {
+        FileUtils.getFilesFromPath(folder.toString(), ".csv").forEach(this::trackFile);
+    }
+
+    /** Mette il file in attesa, o ne riparte il periodo di stabilita se e gia in attesa. */
+    private void trackFile(Path file) {
+        pending.put(file, new PendingFile(-1, -1, System.nanoTime()));
+    }
+
+    private static boolean isCsv(Path name) {
+        return name.toString().toLowerCase().endsWith(".csv");
+    }
+
+}
@@ -1,15 +1,17 @@
 package com.exprivia.nest.cruud.service;
 
 import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.utils.EpochPeriod;
 import com.exprivia.nest.cruud.utils.TimeUtils;
+import com.exprivia.nest.cruud.utils.TimestampParser;
+import com.exprivia.nest.cruud.utils.ZoneTransitionIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.zone.ZoneRules;
+import java.time.zone.ZoneOffsetTransition;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Central point for temporal normalization. It receives raw periods produced
@@ -18,30 +20,27 @@ import java.util.*;
  * - converte direttamente gli istanti con offset verso l'udUtc target
  * - per input senza offset applica scrubbing DST: rileva overlap, scarta gli
  *   orari ambigui e mappa prima/seconda occorrenza quando disponibili.
+ * I timestamp sono letti e aggiornati nel periodo numerico del record ({@link EpochPeriod}),
+ * il testo ISO viene prodotto quando il periodo viene serializzato.
  */
 @Slf4j
 @Service
 public class TimeNormalizationService {
 
-    /** Formato di output per i timestamp normalizzati. */
-    private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-    private static final List<DateTimeFormatter> LOCAL_PATTERNS = List.of(
-            DateTimeFormatter.ISO_LOCAL_DATE_TIME,
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
-            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
-            DateTimeFormatter.ofPattern("yyyyMMddHHmmss"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS")
-    );
 
     /**
-     * Normalizza i periodi usando le chiavi standard start_ts/end_ts.
+     * Normalizza i periodi usando le chiavi standard start_ts/end_ts; le righe restituite hanno
+     * gia i timestamp normalizzati nella mappa period.
      */
     public List<ResultValueDto> normalizePeriods(List<ResultValueDto> values,
                                                  String timeZone,
                                                  String udUtcOffset,
                                                  boolean handleDst) {
-        return normalizePeriods(values, timeZone, udUtcOffset, handleDst, List.of("start_ts", "end_ts"), false);
+        List<ResultValueDto> normalized = normalizePeriods(values, timeZone, udUtcOffset, handleDst, List.of("start_ts", "end_ts"), false);
+        for (ResultValueDto value : normalized) {
+            EpochPeriod.flush(value);
+        }
+        return normalized;
     }
 
     public List<ResultValueDto> normalizePeriods(List<ResultValueDto> values,
@@ -87,208 +86,387 @@ public class TimeNormalizationService {
                                                           List<String> timestampKeys) {
         List<ResultValueDto> normalized = new ArrayList<>();
         for (ResultValueDto rv : values) {
-            HashMap<String, Object> period = rv.getPeriod();
-            if (period == null) {
-                period = new HashMap<>();
-                rv.setPeriod(period);
+            if (normalizeWithExplicitUtc(rv, targetOffset, timestampKeys)) {
+                normalized.add(rv);
             }
-            boolean drop = false;
-            for (String key : timestampKeys) {
-                String raw = asString(period.get(key));
-                if (raw == null || raw.isBlank()) {
-                    continue;
-                }
-                ZonedDateTime zdt = parseWithOffset(raw);
+        }
+        return normalized;
+    }
+
+    /**
+     * Variante per singolo record dello scenario 1, usata anche dalla conversione in streaming:
+     * converte i timestamp verso l'offset target e restituisce false se il record va scartato.
+     */
+    public boolean normalizeWithExplicitUtc(ResultValueDto rv,
+                                            ZoneOffset targetOffset,
+                                            List<String> timestampKeys) {
+        EpochPeriod period = periodOf(rv);
+        for (String key : timestampKeys) {
+            EpochPeriod.Timestamp timestamp = period.get(key);
+            if (!timestamp.isPresent() || timestamp.isBlank()) {
+                continue;
+            }
+            long instantSecond;
+            int nano;
+            if (timestamp.hasOffset()) {
+                instantSecond = timestamp.getInstantSecond();
+                nano = timestamp.getNano();
+            } else {
+                // un timestamp ISO senza offset non e mai valido qui; gli altri testi passano dal parser completo
+                ZonedDateTime zdt = timestamp.isLocal() ? null : parseWithOffset(timestamp.text());
                 if (zdt == null) {
-                    logDrop(rv, key, raw, "unable to parse timestamp with explicit UTC/offset");
-                    drop = true;
-                    break;
+                    logDrop(rv, key, timestamp.text(), "unable to parse timestamp with explicit UTC/offset");
+                    return false;
                 }
-                LocalDateTime target = LocalDateTime.ofInstant(zdt.toInstant(), targetOffset);
-                period.put(key, target.format(OUTPUT_FORMAT));
-            }
-            if (!drop) {
-                normalized.add(rv);
+                instantSecond = zdt.toEpochSecond();
+                nano = zdt.getNano();
             }
+            timestamp.setLocal(instantSecond + targetOffset.getTotalSeconds(), nano);
         }
-        return normalized;
+        return true;
     }
 
     /**
      * Scenario 2: timestamp locali senza offset. Usa timeZone per creare ZonedDateTime,
      * gestisce overlap DST (prima/seconda occorrenza) e scarta i casi ambigui.
+     * La lista e gia in memoria, quindi gli overlap vengono raggruppati su tutto il dataset
+     * e risolti alla fine come in precedenza.
      */
     private List<ResultValueDto> normalizeWithoutUtc(List<ResultValueDto> values,
                                                      ZoneId sourceZone,
                                                      ZoneOffset targetOffset,
                                                      List<String> timestampKeys,
                                                      boolean allowSingleOverlap) {
-        ZoneRules rules = sourceZone.getRules();
-        Map<ResultValueDto, List<TimestampRef>> refsByRecord = new LinkedHashMap<>();
-        Map<OverlapKey, List<TimestampRef>> overlapGroups = new LinkedHashMap<>();
-
+        List<ResultValueDto> normalized = new ArrayList<>();
+        DstScrubber scrubber = new DstScrubber(sourceZone, targetOffset, timestampKeys, allowSingleOverlap, false, normalized::add);
         for (ResultValueDto rv : values) {
-            HashMap<String, Object> period = rv.getPeriod();
-            if (period == null) {
-                period = new HashMap<>();
-                rv.setPeriod(period);
-            }
-            List<TimestampRef> refs = new ArrayList<>();
-            refsByRecord.put(rv, refs);
+            scrubber.accept(rv);
+        }
+        scrubber.finish();
+        return normalized;
+    }
+
+    /**
+     * Scrubbing DST per la conversione in streaming: i record senza timestamp nell'overlap passano
+     * subito al consumer, quelli nella finestra di un cambio d'ora restano in attesa finche la
+     * finestra non si chiude, cioe finche arriva un record il cui timestamp piu basso e oltre la
+     * fine dell'overlap. La memoria dipende quindi dalle righe di una finestra e non dal file.
+     * L'input deve essere in ordine cronologico: un timestamp che torna in una finestra gia chiusa
+     * apre un nuovo gruppo.
+     *
+     * @param timeZone timeZone dei timestamp locali
+     * @param targetOffset offset target dell'UD
+     * @param timestampKeys chiavi del periodo da normalizzare
+     * @param allowSingleOverlap risolve come prima occorrenza un orario presente una sola volta nell'overlap
+     * @param kept consumer dei record normalizzati, nell'ordine di arrivo
+     * @return scrubber da alimentare con i record e chiudere con {@link DstScrubber#finish()}
+     */
+    public DstScrubber newDstScrubber(String timeZone,
+                                      ZoneOffset targetOffset,
+                                      List<String> timestampKeys,
+                                      boolean allowSingleOverlap,
+                                      Consumer<ResultValueDto> kept) {
+        ZoneId sourceZone = TimeUtils.parseZoneId(timeZone);
+        log.info("Streaming DST scrubbing with timeZone={} (targetOffset={})", sourceZone, targetOffset);
+        return new DstScrubber(sourceZone, targetOffset, timestampKeys, allowSingleOverlap, true, kept);
+    }
+
+    /**
+     * Normalizzazione dei timestamp locali record per record. Ogni orario ambiguo appartiene al
+     * gruppo (chiave, orario locale) del suo overlap: la prima occorrenza prende l'offset
+     * precedente al cambio d'ora, la seconda quello successivo, le altre vengono scartate; un
+     * gruppo con una sola occorrenza viene deciso alla chiusura della finestra. I record vengono
+     * consegnati nell'ordine di arrivo, quindi quelli successivi a un record in attesa restano
+     * in coda con lui.
+     */
+    public static final class DstScrubber implements Consumer<ResultValueDto> {
+
+        private final ZoneId sourceZone;
+        private final ZoneOffset targetOffset;
+        private final List<String> timestampKeys;
+        private final boolean allowSingleOverlap;
+        private final boolean closeWindows;
+        private final Consumer<ResultValueDto> kept;
+        private final ArrayDeque<PendingRecord> queue = new ArrayDeque<>();
+        private final Map<OverlapKey, OverlapGroup> openGroups = new LinkedHashMap<>();
+        private ZoneTransitionIndex index;
+        private long keptCount;
+        private long droppedCount;
+
+        private DstScrubber(ZoneId sourceZone, ZoneOffset targetOffset, List<String> timestampKeys,
+                            boolean allowSingleOverlap, boolean closeWindows, Consumer<ResultValueDto> kept) {
+            this.sourceZone = sourceZone;
+            this.targetOffset = targetOffset;
+            this.timestampKeys = timestampKeys;
+            this.allowSingleOverlap = allowSingleOverlap;
+            this.closeWindows = closeWindows;
+            this.kept = kept;
+        }
+
+        @Override
+        public void accept(ResultValueDto rv) {
+            EpochPeriod period = periodOf(rv);
+            PendingRecord record = new PendingRecord(rv);
+            long clock = Long.MAX_VALUE;
             for (String key : timestampKeys) {
-                String raw = asString(period.get(key));
-                if (raw == null || raw.isBlank()) {
+                EpochPeriod.Timestamp timestamp = period.get(key);
+                if (!timestamp.isPresent() || timestamp.isBlank()) {
                     continue;
                 }
-                LocalDateTime ldt = parseLocal(raw);
-                if (ldt == null) {
-                    refs.add(TimestampRef.drop(key, raw, "unparsable local timestamp"));
-                    continue;
+                String raw = timestamp.text();
+                long localSecond;
+                int nano;
+                if (timestamp.isLocal()) {
+                    localSecond = timestamp.getEpochSecond();
+                    nano = timestamp.getNano();
+                } else {
+                    // un timestamp ISO con offset non e un orario locale valido
+                    LocalDateTime ldt = timestamp.hasOffset() ? null : TimestampParser.parseLocal(raw);
+                    if (ldt == null) {
+                        record.add(TimestampRef.drop(key, raw, "unparsable local timestamp"));
+                        continue;
+                    }
+                    localSecond = ldt.toEpochSecond(ZoneOffset.UTC);
+                    nano = ldt.getNano();
                 }
-                List<ZoneOffset> offsets = rules.getValidOffsets(ldt);
-                if (offsets.isEmpty()) {
-                    refs.add(TimestampRef.drop(key, raw, "gap in timezone rules"));
-                    continue;
+                clock = Math.min(clock, localSecond);
+                TimestampRef ref = TimestampRef.normal(key, raw, localSecond, nano, timestamp);
+                ZoneTransitionIndex transitions = indexFor(localSecond);
+                ZoneOffset offset = transitions.offsetAt(localSecond);
+                if (offset != null) {
+                    ref.resolve(localSecond - offset.getTotalSeconds());
+                } else if (transitions.transition(transitions.windowAt(localSecond)).isGap()) {
+                    ref.dropReason = "gap in timezone rules";
                 }
-                TimestampRef ref = TimestampRef.normal(key, raw, ldt);
-                if (offsets.size() == 1) {
-                    ref.resolved = ldt.atZone(sourceZone);
-                } else {
-                    overlapGroups.computeIfAbsent(new OverlapKey(key, ldt), k -> new ArrayList<>()).add(ref);
+                record.add(ref);
+            }
+
+            if (closeWindows && clock != Long.MAX_VALUE && !openGroups.isEmpty()) {
+                closeWindowsUntil(clock);
+            }
+            for (TimestampRef ref : record.refs) {
+                if (ref.dropReason == null && !ref.resolved) {
+                    addOccurrence(ref);
                 }
-                refs.add(ref);
             }
+            queue.addLast(record);
+            drain();
         }
 
-        for (Map.Entry<OverlapKey, List<TimestampRef>> entry : overlapGroups.entrySet()) {
-            LocalDateTime ldt = entry.getKey().local();
-            List<ZoneOffset> offsets = rules.getValidOffsets(ldt);
-            if (offsets.size() < 2) {
-                entry.getValue().forEach(ref -> ref.dropReason = "overlap detection failed");
-                continue;
+        /** Chiude le finestre ancora aperte e consegna i record in attesa. */
+        public void finish() {
+            for (OverlapGroup group : openGroups.values()) {
+                close(group);
+            }
+            openGroups.clear();
+            drain();
+        }
+
+        public long getKept() {
+            return keptCount;
+        }
+
+        public long getDropped() {
+            return droppedCount;
+        }
+
+        /** Record in attesa della chiusura di una finestra, per i test e le metriche. */
+        public int getBuffered() {
+            return queue.size();
+        }
+
+        /** Transizioni dell'anno dell'orario locale; l'ultimo anno usato resta in mano allo scrubber. */
+        private ZoneTransitionIndex indexFor(long localSecond) {
+            if (index == null || !index.covers(localSecond)) {
+                index = ZoneTransitionIndex.forLocalSecond(sourceZone, localSecond);
             }
-            ZonedDateTime first = ZonedDateTime.ofLocal(ldt, sourceZone, offsets.get(0));
-            ZonedDateTime second = ZonedDateTime.ofLocal(ldt, sourceZone, offsets.get(1));
-            if (second.toInstant().isBefore(first.toInstant())) {
-                ZonedDateTime tmp = first;
-                first = second;
-                second = tmp;
+            return index;
+        }
+
+        private void addOccurrence(TimestampRef ref) {
+            OverlapKey overlapKey = new OverlapKey(ref.key, ref.localSecond, ref.nano);
+            OverlapGroup group = openGroups.get(overlapKey);
+            if (group == null) {
+                group = newGroup(ref.localSecond);
+                if (group == null) {
+                    ref.dropReason = "overlap detection failed";
+                    return;
+                }
+                openGroups.put(overlapKey, group);
             }
-            List<TimestampRef> occurrences = entry.getValue();
-            if (occurrences.size() == 1) {
+            group.count++;
+            if (group.count == 1) {
+                group.firstRef = ref;
+                // con allowSingleOverlap la prima occorrenza prende comunque il primo offset
                 if (allowSingleOverlap) {
-                    occurrences.get(0).resolved = first;
-                    log.info("Resolving single occurrence in DST overlap as first offset key={} ts={}", occurrences.get(0).key, occurrences.get(0).raw);
-                } else {
-                    occurrences.get(0).dropReason = "single occurrence in DST overlap without UTC";
+                    ref.resolve(ref.localSecond - group.firstOffset);
                 }
+            } else if (group.count == 2) {
+                group.firstRef.resolve(group.firstRef.localSecond - group.firstOffset);
+                ref.resolve(ref.localSecond - group.secondOffset);
             } else {
-                occurrences.get(0).resolved = first;
-                occurrences.get(1).resolved = second;
-                if (occurrences.size() > 2) {
-                    for (int i = 2; i < occurrences.size(); i++) {
-                        occurrences.get(i).dropReason = "extra occurrences for same local time in DST overlap";
-                    }
+                ref.dropReason = "extra occurrences for same local time in DST overlap";
+            }
+        }
+
+        private OverlapGroup newGroup(long localSecond) {
+            ZoneTransitionIndex transitions = indexFor(localSecond);
+            int window = transitions.windowAt(localSecond);
+            if (window < 0 || transitions.transition(window).isGap()) {
+                return null;
+            }
+            ZoneOffsetTransition transition = transitions.transition(window);
+            int before = transition.getOffsetBefore().getTotalSeconds();
+            int after = transition.getOffsetAfter().getTotalSeconds();
+            // la prima occorrenza e l'istante piu vecchio, cioe quello con l'offset maggiore
+            return new OverlapGroup(Math.max(before, after), Math.min(before, after), transitions.windowEnd(window));
+        }
+
+        /** Chiude le finestre terminate prima dell'orario locale piu basso dell'ultimo record. */
+        private void closeWindowsUntil(long clock) {
+            Iterator<OverlapGroup> groups = openGroups.values().iterator();
+            while (groups.hasNext()) {
+                OverlapGroup group = groups.next();
+                if (clock >= group.windowEnd) {
+                    close(group);
+                    groups.remove();
                 }
             }
         }
 
-        List<ResultValueDto> normalized = new ArrayList<>();
-        for (Map.Entry<ResultValueDto, List<TimestampRef>> entry : refsByRecord.entrySet()) {
-            ResultValueDto rv = entry.getKey();
-            List<TimestampRef> refs = entry.getValue();
+        private void close(OverlapGroup group) {
+            if (group.count != 1) {
+                return;
+            }
+            TimestampRef ref = group.firstRef;
+            if (allowSingleOverlap) {
+                log.info("Resolving single occurrence in DST overlap as first offset key={} ts={}", ref.key, ref.raw);
+            } else {
+                ref.dropReason = "single occurrence in DST overlap without UTC";
+            }
+        }
+
+        /** Consegna (o scarta) i record in testa alla coda che non hanno piu timestamp in attesa. */
+        private void drain() {
+            while (!queue.isEmpty() && queue.peekFirst().isDecided()) {
+                emit(queue.pollFirst());
+            }
+        }
+
+        private void emit(PendingRecord record) {
             boolean drop = false;
-            for (TimestampRef ref : refs) {
+            for (TimestampRef ref : record.refs) {
                 if (ref.dropReason != null) {
                     drop = true;
-                    logDrop(rv, ref);
-                } else if (ref.resolved == null) {
-                    drop = true;
-                    logDrop(rv, ref.key, ref.raw, "timestamp unresolved after overlap handling");
+                    logDrop(record.value, ref.key, ref.raw, ref.dropReason);
                 }
             }
             if (drop) {
-                continue;
+                droppedCount++;
+                return;
             }
-            for (TimestampRef ref : refs) {
-                if (ref.resolved == null) {
-                    continue;
-                }
-                LocalDateTime target = LocalDateTime.ofInstant(ref.resolved.toInstant(), targetOffset);
-                rv.getPeriod().put(ref.key, target.format(OUTPUT_FORMAT));
+            for (TimestampRef ref : record.refs) {
+                ref.timestamp.setLocal(ref.instantSecond + targetOffset.getTotalSeconds(), ref.nano);
             }
-            normalized.add(rv);
+            keptCount++;
+            kept.accept(record.value);
         }
-
-        return normalized;
     }
 
-    /** Parsing robusto di un timestamp con offset/UTC. */
+    /** Parsing robusto di un timestamp con offset/UTC (offset ISO, zona ISO o istante). */
     private ZonedDateTime parseWithOffset(String raw) {
-        try {
-            return OffsetDateTime.parse(raw).toZonedDateTime();
-        } catch (DateTimeParseException ignored) { }
-        try {
-            return ZonedDateTime.parse(raw);
-        } catch (DateTimeParseException ignored) { }
-        try {
-            return Instant.parse(raw).atZone(ZoneOffset.UTC);
-        } catch (DateTimeParseException ignored) { }
-        return null;
-    }
-
-    /** Parsing di un timestamp locale secondo i pattern noti. */
-    private LocalDateTime parseLocal(String raw) {
-        for (DateTimeFormatter formatter : LOCAL_PATTERNS) {
-            try {
-                return LocalDateTime.parse(raw, formatter);
-            } catch (DateTimeParseException ignored) { }
-        }
-        return null;
+        return TimestampParser.parseWithOffset(raw);
     }
 
-    /** Cast sicuro a stringa. */
-    private String asString(Object val) {
-        if (val == null) {
-            return null;
+    /** Periodo numerico del record; un record senza periodo riceve una mappa vuota. */
+    private static EpochPeriod periodOf(ResultValueDto rv) {
+        if (rv.getPeriod() == null) {
+            rv.setPeriod(new HashMap<>());
         }
-        return val instanceof String s ? s : val.toString();
+        return EpochPeriod.of(rv);
     }
 
     /** Log strutturato per i record scartati. */
-    private void logDrop(ResultValueDto rv, TimestampRef ref) {
-        logDrop(rv, ref.key, ref.raw, ref.dropReason);
-    }
-
-    private void logDrop(ResultValueDto rv, String key, String raw, String reason) {
+    private static void logDrop(ResultValueDto rv, String key, String raw, String reason) {
         log.warn("Dropping record for DST scrubbing id={} key={} timestamp={} reason={}",
                 rv != null ? rv.getId() : null, key, raw, reason);
     }
 
+    /** Timestamp locale di un record: orario in secondi epoch locali e, una volta risolto, istante. */
     private static final class TimestampRef {
         final String key;
         final String raw;
-        final LocalDateTime local;
-        ZonedDateTime resolved;
+        final long localSecond;
+        final int nano;
+        final EpochPeriod.Timestamp timestamp;
+        boolean resolved;
+        long instantSecond;
         String dropReason;
 
-        private TimestampRef(String key, String raw, LocalDateTime local) {
+        private TimestampRef(String key, String raw, long localSecond, int nano, EpochPeriod.Timestamp timestamp) {
             this.key = key;
             this.raw = raw;
-            this.local = local;
+            this.localSecond = localSecond;
+            this.nano = nano;
+            this.timestamp = timestamp;
         }
 
         static TimestampRef drop(String key, String raw, String reason) {
-            TimestampRef ref = new TimestampRef(key, raw, null);
+            TimestampRef ref = new TimestampRef(key, raw, 0, 0, null);
             ref.dropReason = reason;
             return ref;
         }
 
-        static TimestampRef normal(String key, String raw, LocalDateTime local) {
-            return new TimestampRef(key, raw, local);
+        static TimestampRef normal(String key, String raw, long localSecond, int nano, EpochPeriod.Timestamp timestamp) {
+            return new TimestampRef(key, raw, localSecond, nano, timestamp);
+        }
+
+        void resolve(long instantSecond) {
+            this.instantSecond = instantSecond;
+            this.resolved = true;
+        }
+    }
+
+    /** Record con i suoi timestamp, in coda finche ogni timestamp non e risolto o scartato. */
+    private static final class PendingRecord {
+        final ResultValueDto value;
+        final List<TimestampRef> refs = new ArrayList<>(2);
+
+        private PendingRecord(ResultValueDto value) {
+            this.value = value;
+        }
+
+        void add(TimestampRef ref) {
+            refs.add(ref);
+        }
+
+        boolean isDecided() {
+            for (TimestampRef ref : refs) {
+                if (ref.dropReason == null && !ref.resolved) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Occorrenze di un orario locale ambiguo nella finestra di un overlap. */
+    private static final class OverlapGroup {
+        /** Offset in secondi della prima e della seconda occorrenza. */
+        final int firstOffset;
+        final int secondOffset;
+        /** Fine dell'overlap in secondi epoch locali. */
+        final long windowEnd;
+        TimestampRef firstRef;
+        int count;
+
+        private OverlapGroup(int firstOffset, int secondOffset, long windowEnd) {
+            this.firstOffset = firstOffset;
+            this.secondOffset = secondOffset;
+            this.windowEnd = windowEnd;
         }
     }
 
     /** Chiave per raggruppare timestamp locali uguali durante l'overlap. */
-    private record OverlapKey(String key, LocalDateTime local) { }
+    private record OverlapKey(String key, long localSecond, int nano) { }
 }
@@ -5,34 +5,50 @@ import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
 import com.exprivia.nest.cruud.dto.urbandataset.UrbanDatasetDto;
 import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
 import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
-import com.exprivia.nest.cruud.dto.urbandataset.specification.PropertiesDto;
 import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
-import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
 import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
 import com.exprivia.nest.cruud.dto.urbandataset.values.ValuesDto;
+import com.exprivia.nest.cruud.utils.CsvLineReader;
+import com.exprivia.nest.cruud.utils.CsvRangeSplitter;
+import com.exprivia.nest.cruud.utils.DateColumnFormat;
+import com.exprivia.nest.cruud.utils.EpochPeriod;
 import com.exprivia.nest.cruud.utils.FileUtils;
+import com.exprivia.nest.cruud.utils.MappedCsvReader;
 import com.exprivia.nest.cruud.utils.MappingUtils;
+import com.exprivia.nest.cruud.utils.OutputCompression;
+import com.exprivia.nest.cruud.utils.PeriodTemplate;
 import com.exprivia.nest.cruud.utils.TimeUtils;
+import com.exprivia.nest.cruud.utils.UdValueBlock;
+import com.exprivia.nest.cruud.utils.RollingUrbanDatasetWriter;
+import com.exprivia.nest.cruud.utils.ZoneTransitionIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.opencsv.*;
 import com.opencsv.exceptions.CsvValidationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Servizio che orchestra la trasformazione da CSV/JSON sorgente verso l'UrbanDataset.
@@ -45,6 +61,8 @@ import java.util.*;
 public class TransformerService {
 
     private  static final String COMPLETED_PATH = "/completed/";
+    private static final String CSV_ENGINE_OPENCSV = "opencsv";
+    private static final String CSV_ENGINE_MAPPED = "mapped";
     public static final String FORMAT = "format";
     public static final String LATITUDE = "latitude";
     public static final String HEIGHT = "height";
@@ -70,6 +88,105 @@ public class TransformerService {
     @Value("${ud.maxRowsPerUd:0}")
     private int maxRowsPerUd;
 
+    // When enabled, folder conversions whose time normalization works row by row are streamed
+    // straight into the UD files instead of keeping the whole file in memory.
+    @Value("${ud.streaming:true}")
+    private boolean streaming;
+
+    // Arithmetic of the mapping functions (+x, *x, /x, -x): exact decimals give the same values as
+    // BigDecimal, false uses primitive doubles (faster, with binary rounding in the output).
+    @Value("${ud.maths.exactDecimal:true}")
+    private boolean exactDecimal;
+
+    // Conversion plans already compiled, keyed by property and CSV header: files of the same
+    // extraction share the header, so the column resolution is done once instead of per file/row.
+    private static final int PLAN_CACHE_SIZE = 64;
+    private final Map<PlanKey, ConversionPlan> planCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PlanKey, ConversionPlan> eldest) {
+            return size() > PLAN_CACHE_SIZE;
+        }
+    };
+
+    // Folder conversions run on a bounded pool shared by every extraction. A value of 0 or a
+    // negative value uses one thread per available processor.
+    @Value("${ud.conversion.threads:0}")
+    private int conversionThreads;
+
+    // Files of the same extraction converted at the same time, unless the extraction sets
+    // maxParallelFiles. A value of 0 or a negative value means up to the pool size.
+    @Value("${ud.conversion.maxFilesPerExtraction:0}")
+    private int maxFilesPerExtraction;
+
+    private ExecutorService conversionExecutor;
+
+    // Large CSV files without slot handling are split into byte ranges parsed in parallel on a
+    // ForkJoinPool. parallelism 0 means one worker per processor, 1 disables the split.
+    @Value("${ud.parsing.parallelism:0}")
+    private int parsingParallelism;
+
+    @Value("${ud.parsing.minParallelFileSize:67108864}")
+    private long minParallelFileSize;
+
+    @Value("${ud.parsing.chunkSize:8388608}")
+    private long parsingChunkSize;
+
+    private ForkJoinPool parsingPool;
+
+    // CSV reader engine used when the extraction does not choose one: "opencsv" or "mapped".
+    @Value("${ud.parsing.engine:opencsv}")
+    private String csvEngine;
+
+    // UD parts produced by maxRowsPerUd are serialized and fsynced on a bounded pool shared by all
+    // conversions; each conversion queues at most one part per thread. 0 means one thread per
+    // processor, 1 writes the parts one by one on the conversion thread.
+    @Value("${ud.write.threads:0}")
+    private int writeThreads;
+
+    private ExecutorService partWriterExecutor;
+    private int partWriterThreads;
+
+    // A source file is renamed with this suffix while it is converted (file queue or folder
+    // conversion), so it is taken by one conversion only, on any instance. The modification time
+    // of a claim is refreshed every claimRefreshMs while its conversion runs: claims not refreshed
+    // for claimTimeoutMinutes (instance stopped during the conversion) are released by the next
+    // discovery of the folder.
+    private static final String CLAIM_SUFFIX = ".working";
+
+    @Value("${ud.conversion.claimTimeoutMinutes:60}")
+    private long claimTimeoutMinutes;
+
+    // Claims whose conversion is running on this instance.
+    private final Set<Path> activeClaims = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<String, ExtractionPermits> extractionPermits = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void startConversionExecutor() {
+        int threads = conversionThreads > 0 ? conversionThreads : Runtime.getRuntime().availableProcessors();
+        conversionExecutor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("ud-conversion-", 1).daemon(true).factory());
+        log.info("Transformer Service: folder conversions use {} thread(s)", threads);
+
+        int parsingThreads = parsingParallelism > 0 ? parsingParallelism : Runtime.getRuntime().availableProcessors();
+        parsingPool = new ForkJoinPool(parsingThreads);
+
+        partWriterThreads = writeThreads > 0 ? writeThreads : Runtime.getRuntime().availableProcessors();
+        if (partWriterThreads > 1) {
+            partWriterExecutor = Executors.newFixedThreadPool(partWriterThreads,
+                    Thread.ofPlatform().name("ud-part-writer-", 1).daemon(true).factory());
+        }
+    }
+
+    @PreDestroy
+    void stopConversionExecutor() {
+        conversionExecutor.shutdownNow();
+        parsingPool.shutdownNow();
+        if (partWriterExecutor != null) {
+            partWriterExecutor.shutdownNow();
+        }
+    }
+
     /**
      * Method to convert a csv into UD OWL json
      *
@@ -82,32 +199,312 @@ public class TransformerService {
         log.debug("Transformer Service: files retrieved from {} -> {}", extractionDto.getSourceFilesPath(), filesRetrieved);
 
         RequestResultDto result = RequestResultDto.builder().build();
+        List<FileResultDto> fileResults = new ArrayList<>();
 
         if (!filesRetrieved.isEmpty()) {
 
-            result.setFilesCompleted(filesRetrieved);
-
+            // Every file is converted on its own: a failure is reported in the result and the
+            // source CSV stays in place, while the other files go on. Files are claimed first, so
+            // a file taken by another conversion (or instance) in the meantime is skipped.
+            Semaphore permits = resolveExtractionPermits(extractionDto);
+            List<Future<FileResultDto>> conversions = new ArrayList<>();
+            List<FileClaim> claims = new ArrayList<>();
+            List<String> filesClaimed = new ArrayList<>();
             for (String fileName : filesRetrieved) {
-                String inputFilePath = extractionDto.getSourceFilesPath() + '/' + fileName;
-
-                log.debug("Transformer Service: start conversion for file {}", inputFilePath);
-                ResultUrbanDataset resultUrbanDataset = convertCsvToUrbanDataset(extractionDto, inputFilePath);
+                FileClaim claim;
                 try {
-                    writeJsonFile(resultUrbanDataset, extractionDto, inputFilePath, fileName); // write json result into file
-                    log.debug("Transformer Service: conversion completed for file {}", fileName);
+                    claim = claimFile(Paths.get(extractionDto.getSourceFilesPath(), fileName));
                 } catch (IOException e) {
-                    log.error("Error during write json results");
-                    throw new RuntimeException(e);
+                    fileResults.add(failedFile(fileName, "claim failed: " + e.getMessage()));
+                    continue;
                 }
+                if (claim == null) {
+                    log.debug("Transformer Service: {} taken by another conversion", fileName);
+                    continue;
+                }
+                claims.add(claim);
+                filesClaimed.add(fileName);
+                conversions.add(submitConversion(extractionDto, fileName, claim.claimed().toString(), permits));
+            }
+            for (int i = 0; i < conversions.size(); i++) {
+                FileResultDto fileResult = awaitConversion(conversions.get(i), filesClaimed.get(i));
+                endClaim(claims.get(i), fileResult);
+                fileResults.add(fileResult);
             }
 
         }
 
+        List<String> filesCompleted = fileResults.stream()
+                .filter(fileResult -> Boolean.TRUE.equals(fileResult.getCompleted()))
+                .map(FileResultDto::getFileName)
+                .toList();
+        result.setFilesCompleted(filesCompleted);
+        result.setFiles(fileResults);
+
         // End values UD
-        result.setDescription("Execution completed for " + filesRetrieved.size() + " files");
+        int failed = fileResults.size() - filesCompleted.size();
+        result.setDescription(failed == 0
+                ? "Execution completed for " + fileResults.size() + " files"
+                : "Execution completed for " + filesCompleted.size() + " of " + fileResults.size() + " files, " + failed + " failed");
         return result;
     }
 
+    /**
+     * Elenca i CSV della cartella sorgente dell'estrazione come unita di lavoro, con dimensione
+     * e data di ultima modifica. Prima rilascia i file presi in carico da piu di claimTimeoutMinutes.
+     *
+     * @param extractionDto estrazione
+     * @return file da convertire
+     */
+    public List<FileWorkItemDto> discoverFiles(ExtractionDto extractionDto) {
+        String folder = extractionDto.getSourceFilesPath();
+        if (folder == null) {
+            return List.of();
+        }
+        releaseExpiredClaims(folder);
+
+        List<FileWorkItemDto> items = new ArrayList<>();
+        for (Path file : FileUtils.getFilesFromPath(folder, ".csv")) {
+            try {
+                items.add(FileWorkItemDto.builder()
+                        .extractionName(extractionDto.getExtractionName())
+                        .sourceFilesPath(folder)
+                        .fileName(file.getFileName().toString())
+                        .size(Files.size(file))
+                        .lastModified(Files.getLastModifiedTime(file).toMillis())
+                        .build());
+            } catch (IOException e) {
+                log.debug("Transformer Service: {} not available during discovery: {}", file, e.getMessage());
+            }
+        }
+        log.debug("Transformer Service: discovered {} file(s) in {}", items.size(), folder);
+        return items;
+    }
+
+    /**
+     * Converte un solo file scoperto con {@link #discoverFiles}. Il file viene preso in carico
+     * rinominandolo con il suffisso .working (una sola istanza ci riesce) e torna al nome originale
+     * se la conversione fallisce, cosi puo essere riprovato.
+     *
+     * @param extractionDto estrazione del file
+     * @param item file da convertire
+     * @return esito, vuoto se il file non e piu quello scoperto (gia convertito, preso da un'altra
+     * istanza, modificato o estrazione con un'altra cartella sorgente)
+     */
+    public Optional<FileResultDto> executeConversionOfFile(ExtractionDto extractionDto, FileWorkItemDto item) {
+        log.debug("Transformer Service: file work item -> {}", item);
+
+        if (!Objects.equals(extractionDto.getSourceFilesPath(), item.getSourceFilesPath())) {
+            return Optional.empty();
+        }
+        Path source = Paths.get(item.getSourceFilesPath(), item.getFileName());
+        FileClaim claim;
+        try {
+            if (Files.size(source) != item.getSize()
+                    || Files.getLastModifiedTime(source).toMillis() != item.getLastModified()) {
+                return Optional.empty();
+            }
+            claim = claimFile(source);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            return Optional.of(failedFile(item.getFileName(), "claim failed: " + e.getMessage()));
+        }
+        if (claim == null) {
+            return Optional.empty();
+        }
+
+        FileResultDto result = awaitConversion(
+                submitConversion(extractionDto, item.getFileName(), claim.claimed().toString(), resolveExtractionPermits(extractionDto)),
+                item.getFileName());
+        endClaim(claim, result);
+        return Optional.of(result);
+    }
+
+    /** File sorgente preso in carico: percorso originale, percorso .working e data di modifica originale. */
+    private record FileClaim(Path source, Path claimed, FileTime lastModified) { }
+
+    /**
+     * Prende in carico il file rinominandolo con il suffisso .working: la rinomina e atomica,
+     * quindi una sola conversione (anche su istanze diverse con la cartella condivisa) ci riesce.
+     *
+     * @return presa in carico, null se il file non c'e piu o e gia preso in carico
+     */
+    private FileClaim claimFile(Path source) throws IOException {
+        Path claimed = source.resolveSibling(source.getFileName() + CLAIM_SUFFIX);
+        try {
+            if (Files.exists(claimed)) {
+                return null;
+            }
+            FileTime lastModified = Files.getLastModifiedTime(source);
+            Files.move(source, claimed, StandardCopyOption.ATOMIC_MOVE);
+            // the claim time is kept as modification time, used to release abandoned claims
+            Files.setLastModifiedTime(claimed, FileTime.from(Instant.now()));
+            activeClaims.add(claimed);
+            return new FileClaim(source, claimed, lastModified);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /** Chiude la presa in carico a conversione conclusa, rilasciando il file se e fallita. */
+    private void endClaim(FileClaim claim, FileResultDto result) {
+        activeClaims.remove(claim.claimed());
+        if (!Boolean.TRUE.equals(result.getCompleted())) {
+            releaseClaim(claim.claimed(), claim.source(), claim.lastModified());
+        }
+    }
+
+    /**
+     * Aggiorna la data di modifica dei file presi in carico dalle conversioni in corso, cosi
+     * una conversione piu lunga di claimTimeoutMinutes non viene rilasciata da una scoperta.
+     */
+    @Scheduled(fixedDelayString = "${ud.conversion.claimRefreshMs:60000}")
+    public void refreshClaims() {
+        FileTime now = FileTime.from(Instant.now());
+        for (Path claimed : activeClaims) {
+            try {
+                Files.setLastModifiedTime(claimed, now);
+            } catch (NoSuchFileException e) {
+                // conversion just completed: the file was moved to completed/
+                activeClaims.remove(claimed);
+            } catch (IOException e) {
+                log.warn("Transformer Service: cannot refresh claim {}: {}", claimed, e.getMessage());
+            }
+        }
+    }
+
+    private void releaseExpiredClaims(String folder) {
+        Instant expired = Instant.now().minus(Duration.ofMinutes(claimTimeoutMinutes));
+        for (Path claimed : FileUtils.getFilesFromPath(folder, CLAIM_SUFFIX)) {
+            if (activeClaims.contains(claimed)) {
+                continue;
+            }
+            try {
+                FileTime claimedAt = Files.getLastModifiedTime(claimed);
+                if (claimedAt.toInstant().isBefore(expired)) {
+                    String name = claimed.getFileName().toString();
+                    log.warn("Transformer Service: releasing {} claimed at {}", claimed, claimedAt);
+                    releaseClaim(claimed, claimed.resolveSibling(name.substring(0, name.length() - CLAIM_SUFFIX.length())), claimedAt);
+                }
+            } catch (IOException e) {
+                log.debug("Transformer Service: claim {} not available: {}", claimed, e.getMessage());
+            }
+        }
+    }
+
+    private void releaseClaim(Path claimed, Path source, FileTime lastModified) {
+        try {
+            if (Files.exists(source)) {
+                log.error("Transformer Service: {} cannot be released, {} already exists", claimed, source);
+                return;
+            }
+            Files.move(claimed, source, StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(source, lastModified);
+        } catch (IOException e) {
+            log.error("Transformer Service: cannot release {}: {}", claimed, e.getMessage());
+        }
+    }
+
+    /**
+     * Converte un singolo file della cartella sorgente e ne restituisce l'esito.
+     */
+    private FileResultDto convertFile(ExtractionDto extractionDto, String fileName, String inputFilePath) {
+        log.debug("Transformer Service: start conversion for file {}", inputFilePath);
+        try {
+            RollingUrbanDatasetWriter output;
+            if (isStreamingConversion(extractionDto)) {
+                output = convertCsvToUrbanDatasetFiles(extractionDto, inputFilePath, fileName); // stream rows into json files
+            } else {
+                ResultUrbanDataset resultUrbanDataset = convertCsvToUrbanDataset(extractionDto, inputFilePath);
+                output = writeJsonFile(resultUrbanDataset, extractionDto, inputFilePath, fileName); // write json result into file
+            }
+            log.debug("Transformer Service: conversion completed for file {}", fileName);
+            return completedFile(fileName, output);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error during conversion of file {}: {}", inputFilePath, e.getMessage(), e);
+            return FileResultDto.builder().fileName(fileName).completed(false)
+                    .error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName())
+                    .build();
+        }
+    }
+
+    /**
+     * Esito di un file convertito con i file UD prodotti e le dimensioni scritte: il rapporto di
+     * compressione e il numero di byte JSON diviso per i byte su disco.
+     */
+    private FileResultDto completedFile(String fileName, RollingUrbanDatasetWriter output) {
+        long jsonBytes = output.getJsonBytes();
+        long storedBytes = output.getStoredBytes();
+        Double ratio = storedBytes > 0 ? (double) jsonBytes / storedBytes : null;
+        log.info("Transformer Service: {} written into {} file(s), {} bytes on disk ({} JSON bytes, ratio {})",
+                fileName, output.getFiles().size(), storedBytes, jsonBytes, ratio != null ? String.format(Locale.ROOT, "%.2f", ratio) : "n/a");
+        return FileResultDto.builder()
+                .fileName(fileName)
+                .completed(true)
+                .outputFiles(output.getFiles().stream().map(path -> path.getFileName().toString()).toList())
+                .jsonBytes(jsonBytes)
+                .storedBytes(storedBytes)
+                .compressionRatio(ratio)
+                .build();
+    }
+
+    /**
+     * Accoda la conversione di un file sul pool condiviso. Il permesso dell'estrazione viene preso
+     * dal chiamante prima dell'invio, cosi i thread del pool non restano mai bloccati in attesa.
+     */
+    private Future<FileResultDto> submitConversion(ExtractionDto extractionDto, String fileName, String inputFilePath,
+                                                   Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(failedFile(fileName, "conversion interrupted"));
+        }
+        try {
+            return conversionExecutor.submit(() -> {
+                try {
+                    return convertFile(extractionDto, fileName, inputFilePath);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return CompletableFuture.completedFuture(failedFile(fileName, "conversion rejected"));
+        }
+    }
+
+    private FileResultDto awaitConversion(Future<FileResultDto> conversion, String fileName) {
+        try {
+            return conversion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failedFile(fileName, "conversion interrupted");
+        } catch (ExecutionException e) {
+            log.error("Error during conversion of file {}", fileName, e.getCause());
+            return failedFile(fileName, String.valueOf(e.getCause()));
+        }
+    }
+
+    private FileResultDto failedFile(String fileName, String error) {
+        return FileResultDto.builder().fileName(fileName).completed(false).error(error).build();
+    }
+
+    /**
+     * Permessi di conversione dell'estrazione, condivisi tra richieste concorrenti sulla stessa
+     * estrazione. Se il limite configurato cambia, i permessi vengono ricreati con il nuovo valore.
+     */
+    private Semaphore resolveExtractionPermits(ExtractionDto extractionDto) {
+        int limit = extractionDto.getMaxParallelFiles() != null && extractionDto.getMaxParallelFiles() > 0
+                ? extractionDto.getMaxParallelFiles()
+                : maxFilesPerExtraction > 0 ? maxFilesPerExtraction : Integer.MAX_VALUE;
+        String key = extractionDto.getExtractionName() + '|' + extractionDto.getSourceFilesPath();
+        return extractionPermits.compute(key, (k, current) ->
+                current != null && current.limit() == limit ? current : new ExtractionPermits(limit, new Semaphore(limit)))
+                .semaphore();
+    }
+
     /**
      * Method to execute csv conversions from extraction data retrieved by extractionName
      *
@@ -181,38 +578,12 @@ public class TransformerService {
 
     //Csv Transform Engine
     private ResultUrbanDataset convertCsvToUrbanDataset(ExtractionDto extractionDto, String inputFilePath) {
-        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-
-        PropertyDto propertyDto = retrievePropertyFromFilter(extractionDto); //retrieve found property
-        if (propertyDto == null) {
-            throw new IllegalStateException("Property not found for name " + extractionDto.getPropertyName());
-        }
-        log.debug("Transformer Service: property '{}' loaded (mappings: {})", propertyDto.getName(), propertyDto.getMappings() != null ? propertyDto.getMappings().keySet() : "none");
+        PropertyDto propertyDto = retrieveRequiredProperty(extractionDto);
 
         ResultUrbanDataset resultUrbanDataset = null; // define a new Result Urban Dataset
         int sliceMinutes = resolveSliceMinutes(propertyDto);
 
-        // Start prepared UD
-
-        SpecificationDto specificationDto;
-        ContextDto contextDto;
-
-        try {
-            specificationDto = objectMapper.convertValue(propertyDto.getSpecification(), SpecificationDto.class);
-            contextDto = objectMapper.convertValue(propertyDto.getContext(), ContextDto.class);
-        } catch (IllegalArgumentException e) {
-            log.error("Error during retrieve and set specification/context for Urban Dataset");
-            throw new RuntimeException(e);
-        }
-
-        MappingUtils.updateSpecificationAndContext(specificationDto, contextDto, extractionDto);
-
-        UrbanDatasetDto urbanDataset = UrbanDatasetDto.builder()
-                .specification(specificationDto)
-                .context(contextDto)
-                .build();
-
-        // End prepared UD
+        UrbanDatasetDto urbanDataset = prepareUrbanDataset(propertyDto, extractionDto);
 
         // Start values UD
 
@@ -249,96 +620,188 @@ public class TransformerService {
         return resultUrbanDataset;
     }
 
-    // From this method, we can retrieve data from CSV file
-    private List<ResultValueDto> retrieveValueFromCsv(ExtractionDto retrievePropertyFilterDto, PropertyDto propertyDto, String inputFilePath) throws IOException, CsvValidationException {
+    /**
+     * Converte un CSV scrivendo i file UD in streaming: ogni riga passa da mapping, normalizzazione
+     * temporale e formattazione end-exclusive e viene accodata al file di output, senza costruire
+     * la lista completa dei valori; le parti vengono scritte man mano dal rolling writer.
+     */
+    private RollingUrbanDatasetWriter convertCsvToUrbanDatasetFiles(ExtractionDto extractionDto, String inputFilePath, String fileName) throws IOException {
+        PropertyDto propertyDto = retrieveRequiredProperty(extractionDto);
+        UrbanDatasetDto urbanDataset = prepareUrbanDataset(propertyDto, extractionDto);
 
-        List<ResultValueDto> values = new ArrayList<>(); // initialize result values
+        Instant nowInstant = Instant.now();
+        applyWriteContext(urbanDataset, extractionDto, nowInstant);
+        String basePath = extractionDto.getOutputFilesPath() + "/" + buildBaseFileName(urbanDataset, extractionDto, nowInstant);
 
-        char separator = resolveSeparator(retrievePropertyFilterDto);
-        try (FileReader fileReader = new FileReader(inputFilePath);
-             CSVReader reader = new CSVReaderBuilder(fileReader)
-                     .withCSVParser(new CSVParserBuilder().withSeparator(separator).build())
-                     .build()) {
+        String udUtcStr = extractionDto.getUdUtc();
+        ZoneOffset targetOffset = udUtcStr != null && !udUtcStr.isBlank() ? TimeUtils.parseUtcOffset(udUtcStr) : null;
+        int sliceMinutes = resolveSliceMinutes(propertyDto);
+        List<String> timestampKeys = sliceMinutes > 0 ? List.of("start_ts") : List.of("start_ts", "end_ts");
+
+        StreamingValueSink sink = new StreamingValueSink(newPartWriter(basePath, urbanDataset, extractionDto),
+                targetOffset, timestampKeys, sliceMinutes);
+        if (targetOffset != null && Boolean.TRUE.equals(extractionDto.getHandle())) {
+            boolean allowSingleOverlap = Boolean.TRUE.equals(extractionDto.getFasce());
+            sink.scrubber = timeNormalizationService.newDstScrubber(extractionDto.getTimeZone(), targetOffset,
+                    timestampKeys, allowSingleOverlap, sink::write);
+        }
+        try {
+            retrieveValueFromCsv(extractionDto, propertyDto, inputFilePath, sink);
+            sink.finish();
+        } catch (UncheckedIOException e) {
+            sink.abort();
+            throw e.getCause();
+        } catch (CsvValidationException e) {
+            sink.abort();
+            log.error("Error reading/writing from CSV: {}", e.getMessage());
+            throw new IOException(e);
+        } catch (IOException | RuntimeException e) {
+            sink.abort();
+            throw e;
+        }
+        log.debug("Transformer Service: streamed {} rows from {} into {} file(s) (dropped {})",
+                sink.kept, inputFilePath, sink.writer.getFiles().size(), sink.dropped);
 
-            String[] line;
+        // Move the processed CSV to the completed folder only once every part is on disk
+        String completedPath = extractionDto.getSourceFilesPath() + COMPLETED_PATH + fileName;
+        log.debug("Transformer Service: moving source file to {}", completedPath);
+        FileUtils.moveFile(inputFilePath, completedPath);
+        log.debug("Transformer Service: completed processing for {}", fileName);
+        return sink.writer;
+    }
 
-            String[] header = reader.readNext();
-            if (header == null || header.length == 0) {
-                log.warn("CSV header missing for file {}", inputFilePath);
-                return values;
-            }
+    /**
+     * Lo streaming e possibile quando la normalizzazione non richiede l'intero dataset:
+     * la modalita fasce riordina i record, quindi usa la conversione in memoria. Lo scrubbing
+     * DST tiene in memoria solo le righe delle finestre di overlap; senza timeZone la conversione
+     * in memoria scarta tutti i record come in precedenza.
+     */
+    private boolean isStreamingConversion(ExtractionDto extractionDto) {
+        if (!streaming || Boolean.TRUE.equals(extractionDto.getFasce())) {
+            return false;
+        }
+        boolean normalize = extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank();
+        boolean missingZone = extractionDto.getTimeZone() == null || extractionDto.getTimeZone().isBlank();
+        return !(normalize && Boolean.TRUE.equals(extractionDto.getHandle()) && missingZone);
+    }
 
-            String[] originalHeader = Arrays.copyOf(header, header.length);
+    private PropertyDto retrieveRequiredProperty(ExtractionDto extractionDto) {
+        PropertyDto propertyDto = retrievePropertyFromFilter(extractionDto); //retrieve found property
+        if (propertyDto == null) {
+            throw new IllegalStateException("Property not found for name " + extractionDto.getPropertyName());
+        }
+        log.debug("Transformer Service: property '{}' loaded (mappings: {})", propertyDto.getName(), propertyDto.getMappings() != null ? propertyDto.getMappings().keySet() : "none");
+        return propertyDto;
+    }
 
-            HashMap<String, LinkedList<Integer>> finalHeaderToLine = new HashMap<>();
+    // Start prepared UD: specification and context without values
+    private UrbanDatasetDto prepareUrbanDataset(PropertyDto propertyDto, ExtractionDto extractionDto) {
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
 
-            if (propertyDto.getMappings() == null || propertyDto.getMappings().isEmpty()) {
-                log.warn("No mappings configured for property {}", propertyDto.getName());
-                return values;
-            }
+        SpecificationDto specificationDto;
+        ContextDto contextDto;
+
+        try {
+            specificationDto = objectMapper.convertValue(propertyDto.getSpecification(), SpecificationDto.class);
+            contextDto = objectMapper.convertValue(propertyDto.getContext(), ContextDto.class);
+        } catch (IllegalArgumentException e) {
+            log.error("Error during retrieve and set specification/context for Urban Dataset");
+            throw new RuntimeException(e);
+        }
 
-            convertedHeaderFromMappings(originalHeader, propertyDto.getMappings(), finalHeaderToLine); //done converted header
-            List<ValueDto> dictionary = propertyDto.getMappings().values().stream().toList();
+        MappingUtils.updateSpecificationAndContext(specificationDto, contextDto, extractionDto);
 
-            SpecificationDto specificationDto;
-            try {
-                specificationDto = objectMapper.convertValue(propertyDto.getSpecification(), SpecificationDto.class);
-            } catch (IllegalArgumentException e) {
-                log.error("Error during retrieve and set specification for Urban Dataset");
-                throw new IOException(e);
+        return UrbanDatasetDto.builder()
+                .specification(specificationDto)
+                .context(contextDto)
+                .build();
+    }
+
+    /**
+     * Restituisce il piano di conversione per property e header, compilandolo solo al primo utilizzo.
+     * La chiave include la property serializzata, cosi una modifica della configurazione produce un nuovo piano.
+     */
+    private ConversionPlan resolveConversionPlan(PropertyDto propertyDto, String[] header) throws IOException {
+        PlanKey key = new PlanKey(objectMapper.writeValueAsString(propertyDto), List.of(header));
+        synchronized (planCache) {
+            ConversionPlan cached = planCache.get(key);
+            if (cached != null) {
+                return cached;
             }
+        }
 
-            List<String> propertiesWithoutSubs = new ArrayList<>(specificationDto.getProperties().getPropertyDefinition().stream()
-                    .filter(prp -> prp.getSubProperties() == null)
-                    .map(PropertiesDto::getPropertyName)
-                    .toList());
+        SpecificationDto specificationDto;
+        try {
+            specificationDto = objectMapper.convertValue(propertyDto.getSpecification(), SpecificationDto.class);
+        } catch (IllegalArgumentException e) {
+            log.error("Error during retrieve and set specification for Urban Dataset");
+            throw new IOException(e);
+        }
 
-            List<String> subProperties = specificationDto.getProperties().getPropertyDefinition().stream()
-                    .filter(prp -> prp.getSubProperties() != null)
-                    .flatMap(prp -> prp.getSubProperties().getPropertyName().stream())
-                    .toList();
+        Map<String, Object> configurations = propertyDto.getConfigurations() != null
+                ? propertyDto.getConfigurations()
+                : new HashMap<>();
 
-            propertiesWithoutSubs.removeAll(subProperties);
+        ConversionPlan plan = ConversionPlan.compile(header, propertyDto, specificationDto,
+                normalizePeriodConfig(configurations.get("period")), resolveSliceFromConfig(configurations.get("slice")),
+                exactDecimal);
+        synchronized (planCache) {
+            planCache.put(key, plan);
+        }
+        return plan;
+    }
 
-            Map<String, Object> configurations = propertyDto.getConfigurations() != null
-                    ? propertyDto.getConfigurations()
-                    : new HashMap<>();
+    // From this method, we can retrieve data from CSV file
+    private List<ResultValueDto> retrieveValueFromCsv(ExtractionDto retrievePropertyFilterDto, PropertyDto propertyDto, String inputFilePath) throws IOException, CsvValidationException {
+        List<ResultValueDto> values = new ArrayList<>(); // initialize result values
+        retrieveValueFromCsv(retrievePropertyFilterDto, propertyDto, inputFilePath, values::add);
+        return values;
+    }
 
-            List<String> periods = normalizePeriodConfig(configurations.get("period"));
-            List<Integer> columnsPeriods = retrieveColumnsNumberForHeader(periods, originalHeader);
-            int slice = resolveSliceFromConfig(configurations.get("slice"));
-            boolean slotMode = Boolean.TRUE.equals(retrievePropertyFilterDto.getFasce());
+    // Same as above, but every row is handed to the sink as soon as it is built
+    private void retrieveValueFromCsv(ExtractionDto retrievePropertyFilterDto, PropertyDto propertyDto, String inputFilePath,
+                                      Consumer<ResultValueDto> values) throws IOException, CsvValidationException {
 
-            int dateColumn = -1;
-            Object dateConfig = configurations.get("date");
-            if (dateConfig != null) {
-                List<Integer> dateColumns = retrieveColumnsNumberForHeader(List.of(dateConfig.toString()), originalHeader);
-                if (!dateColumns.isEmpty()) {
-                    dateColumn = dateColumns.getFirst();
-                } else {
-                    log.warn("Date column '{}' not found in header", dateConfig);
-                }
+        if (isParallelParsing(retrievePropertyFilterDto, inputFilePath)) {
+            retrieveValueFromCsvRanges(retrievePropertyFilterDto, propertyDto, inputFilePath, values);
+            return;
+        }
+
+        try (CsvLineReader reader = openCsvReader(retrievePropertyFilterDto, inputFilePath)) {
+
+            String[] line;
+
+            ConversionPlan plan = preparePlan(propertyDto, reader.readNext(), inputFilePath);
+            if (plan == null) {
+                return;
             }
+            reader.retainColumns(plan.getReferencedColumns());
 
-            Map<String, String> nullsFieldMap = MappingUtils.toStringMap(configurations.get("nullsField"));
+            int[] columnsPeriods = plan.getPeriodColumns();
+            DateColumnFormat.Reader dates = new DateColumnFormat().newReader();
+            boolean slotMode = Boolean.TRUE.equals(retrievePropertyFilterDto.getFasce());
+
+            int dateColumn = plan.getDateColumn();
+            if (plan.getDateConfig() != null && dateColumn < 0) {
+                log.warn("Date column '{}' not found in header", plan.getDateConfig());
+            }
 
             int id = 1;
-            HashMap<String, Object> period;
 
-            if (slotMode && columnsPeriods.isEmpty()) {
+            if (slotMode && columnsPeriods.length == 0) {
                 log.warn("Slot mode enabled but no period columns found; falling back to standard processing");
                 slotMode = false;
             }
             if (slotMode && dateColumn < 0) {
                 log.warn("Slot mode enabled but date column missing; skipping conversion");
-                return values;
+                return;
             }
-            if (!slotMode && !columnsPeriods.isEmpty() && dateColumn < 0) {
+            if (!slotMode && columnsPeriods.length > 0 && dateColumn < 0) {
                 log.warn("Period columns configured but date column missing; skipping conversion");
-                return values;
+                return;
             }
 
-            if (slotMode && !columnsPeriods.isEmpty() && dateColumn >= 0) {
+            if (slotMode && columnsPeriods.length > 0 && dateColumn >= 0) {
                 LinkedHashMap<String, List<String[]>> rowsByDate = new LinkedHashMap<>();
                 Map<String, Integer> rowCountByDate = new HashMap<>();
                 while ((line = reader.readNext()) != null) {
@@ -359,95 +822,208 @@ public class TransformerService {
                     }
                     String[] firstLine = dayLines.get(0);
                     String[] secondLine = dayLines.size() > 1 ? dayLines.get(1) : null;
-                    for (int i = 0; i < columnsPeriods.size(); i++) {
-                        int colIdx = columnsPeriods.get(i);
+                    for (int i = 0; i < columnsPeriods.length; i++) {
+                        int colIdx = columnsPeriods[i];
                         if (colIdx < 0) {
                             continue;
                         }
-                        String periodHeader = originalHeader[colIdx];
+                        PeriodTemplate template = plan.periodTemplate(i);
                         String v1 = colIdx < firstLine.length ? firstLine[colIdx] : null;
                         String v2 = secondLine != null && colIdx < secondLine.length ? secondLine[colIdx] : null;
                         boolean v1Has = hasNonZeroValue(v1);
                         boolean v2Has = hasNonZeroValue(v2);
 
                         if (v1Has && v2Has) {
-                            id = appendSlotRecord(firstLine, firstLine[dateColumn], periodHeader, colIdx, slice,
-                                    propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap,
-                                    values, propertyDto, subProperties, id);
-                            id = appendSlotRecord(secondLine, firstLine[dateColumn], periodHeader, colIdx, slice,
-                                    propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap,
-                                    values, propertyDto, subProperties, id);
+                            id = appendSlotRecord(firstLine, firstLine[dateColumn], template, dates, colIdx,
+                                    plan, values, propertyDto, id);
+                            id = appendSlotRecord(secondLine, firstLine[dateColumn], template, dates, colIdx,
+                                    plan, values, propertyDto, id);
                         } else if (v1Has || v2Has) {
                             String[] src = v1Has ? firstLine : secondLine;
-                            id = appendSlotRecord(src, firstLine[dateColumn], periodHeader, colIdx, slice,
-                                    propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap,
-                                    values, propertyDto, subProperties, id);
+                            id = appendSlotRecord(src, firstLine[dateColumn], template, dates, colIdx,
+                                    plan, values, propertyDto, id);
                         } else {
                             // entrambi null/zero: genero un solo record nullo
-                            id = appendSlotRecord(firstLine, firstLine[dateColumn], periodHeader, colIdx, slice,
-                                    propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap,
-                                    values, propertyDto, subProperties, id);
+                            id = appendSlotRecord(firstLine, firstLine[dateColumn], template, dates, colIdx,
+                                    plan, values, propertyDto, id);
                         }
                     }
                 }
             } else {
+                RowNumbering numbered = new RowNumbering(values);
+                reader.reuseLines();
                 while ((line = reader.readNext()) != null) {
-                    if (!columnsPeriods.isEmpty()) {
-                        for (int i = 0; i < columnsPeriods.size(); i++) {
-                            int periodIdx = columnsPeriods.get(i);
-                            if (periodIdx < 0 || periodIdx >= line.length) {
-                                log.warn("Skipping period column {} because line has only {} columns", periodIdx, line.length);
-                                continue;
-                            }
-                            if (dateColumn >= line.length) {
-                                log.warn("Skipping line because date column {} missing (line has {})", dateColumn, line.length);
-                                continue;
-                            }
-                            if (line[dateColumn] == null || line[dateColumn].isBlank()) {
-                                continue;
-                            }
-                            // Effettua le operazioni solo se il datetime è valorizzato
-                            ResultValueDto resultValueDto = ResultValueDto.builder().id(id).build();
-
-                            String periodHeader = originalHeader[periodIdx];
-                            String periodValue = line[periodIdx];
-                            period = TimeUtils.getStartAndEndTimeFromString(line[dateColumn], periodHeader, periodValue, slice);
-
-                            if (!period.isEmpty()) {
-                                resultValueDto.setPeriod(period);
-                            }
-
-                            int columnDataPeriod = -1;
-                            if (periods.size() > 1 && i < periods.size()) { // if there are more than 1 date column
-                                columnDataPeriod = retrieveColumnDataFromPeriod(periods.get(i), originalHeader);
-                            }
-
-                            resultValueDto.setProperty(processPropertiesValue(line, columnDataPeriod, propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap));
-
-                            if (elaborateCoordinates(subProperties)) {
-                                resultValueDto.setCoordinates(getCoordinatesFromLine(finalHeaderToLine, line));
-                            }
-
-                            id = writeResultValueDto(propertyDto, resultValueDto, values, id);
-                        }
-                    } else {
-                        ResultValueDto resultValueDto = ResultValueDto.builder().id(id).build();
+                    plan.convertLine(line, dates, numbered);
+                }
+            }
+        }
+    }
 
-                        List<Integer> columnsToRead = retrieveColumnsNumberForHeader(propertiesWithoutSubs, originalHeader);
+    /**
+     * Variante per file grandi senza fasce: il CSV viene diviso in intervalli di byte che terminano
+     * su fine riga sicuri rispetto alle virgolette, gli intervalli vengono convertiti in parallelo
+     * sul ForkJoinPool e le righe vengono consegnate al sink nell'ordine del file, con id progressivi.
+     * Restano in volo al massimo due intervalli per worker.
+     */
+    private void retrieveValueFromCsvRanges(ExtractionDto retrievePropertyFilterDto, PropertyDto propertyDto, String inputFilePath,
+                                            Consumer<ResultValueDto> values) throws IOException, CsvValidationException {
 
-                        resultValueDto.setProperty(processPropertiesValue(line, columnsToRead.isEmpty() ? -1 : columnsToRead.getFirst(), propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap));
+        char separator = resolveSeparator(retrievePropertyFilterDto);
+        try (CsvRangeSplitter splitter = CsvRangeSplitter.open(Paths.get(inputFilePath), parsingChunkSize)) {
 
-                        if (elaborateCoordinates(subProperties)) {
-                            resultValueDto.setCoordinates(getCoordinatesFromLine(finalHeaderToLine, line));
-                        }
+            CsvRangeSplitter.Range headerRange = splitter.headerRange();
+            String[] header = null;
+            if (headerRange != null) {
+                try (CSVReader reader = openRangeReader(splitter.read(headerRange), separator)) {
+                    header = reader.readNext();
+                }
+            }
 
-                        id = writeResultValueDto(propertyDto, resultValueDto, values, id);
+            ConversionPlan plan = preparePlan(propertyDto, header, inputFilePath);
+            if (plan == null) {
+                return;
+            }
+            if (plan.getDateConfig() != null && plan.getDateColumn() < 0) {
+                log.warn("Date column '{}' not found in header", plan.getDateConfig());
+            }
+            if (plan.getPeriodColumns().length > 0 && plan.getDateColumn() < 0) {
+                log.warn("Period columns configured but date column missing; skipping conversion");
+                return;
+            }
+
+            RowNumbering numbered = new RowNumbering(values);
+            // shared by the workers: the date format is detected once for the whole file
+            DateColumnFormat dates = new DateColumnFormat();
+            Deque<Future<UdValueBlock>> pending = new ArrayDeque<>();
+            int window = parsingPool.getParallelism() * 2;
+            int ranges = 0;
+            try {
+                boolean mapped = isMappedEngine(retrievePropertyFilterDto);
+                Path path = Paths.get(inputFilePath);
+                CsvRangeSplitter.Range range;
+                while ((range = splitter.nextRange()) != null) {
+                    if (mapped) {
+                        // each worker maps its own range, nothing is copied on the caller thread
+                        CsvRangeSplitter.Range mappedRange = range;
+                        pending.addLast(parsingPool.submit(() -> convertRange(
+                                MappedCsvReader.open(path, mappedRange.start(), mappedRange.end(), separator, Charset.defaultCharset()), plan, dates)));
+                    } else {
+                        byte[] bytes = splitter.read(range);
+                        pending.addLast(parsingPool.submit(() -> convertRange(CsvLineReader.of(openRangeReader(bytes, separator)), plan, dates)));
+                    }
+                    ranges++;
+                    if (pending.size() >= window) {
+                        awaitRange(pending.removeFirst()).forEach(numbered);
                     }
                 }
+                while (!pending.isEmpty()) {
+                    awaitRange(pending.removeFirst()).forEach(numbered);
+                }
+            } finally {
+                pending.forEach(task -> task.cancel(true));
             }
+            log.debug("Transformer Service: parsed {} in {} ranges", inputFilePath, ranges);
         }
+    }
 
-        return values;
+    private boolean isParallelParsing(ExtractionDto extractionDto, String inputFilePath) throws IOException {
+        if (parsingPool.getParallelism() < 2 || Boolean.TRUE.equals(extractionDto.getFasce())) {
+            return false;
+        }
+        return Files.size(Paths.get(inputFilePath)) >= minParallelFileSize;
+    }
+
+    /**
+     * Apre il CSV con il motore scelto dall'estrazione: OpenCSV (default) oppure il lettore su
+     * file mappato, che costruisce solo le celle usate dalla conversione.
+     */
+    private CsvLineReader openCsvReader(ExtractionDto extractionDto, String inputFilePath) throws IOException {
+        char separator = resolveSeparator(extractionDto);
+        if (isMappedEngine(extractionDto)) {
+            return MappedCsvReader.open(Paths.get(inputFilePath), separator, Charset.defaultCharset());
+        }
+        return CsvLineReader.of(new CSVReaderBuilder(new FileReader(inputFilePath))
+                .withCSVParser(new CSVParserBuilder().withSeparator(separator).build())
+                .build());
+    }
+
+    private boolean isMappedEngine(ExtractionDto extractionDto) {
+        String engine = extractionDto.getCsvEngine() != null && !extractionDto.getCsvEngine().isBlank()
+                ? extractionDto.getCsvEngine()
+                : csvEngine;
+        if (CSV_ENGINE_MAPPED.equalsIgnoreCase(engine)) {
+            return true;
+        }
+        if (!CSV_ENGINE_OPENCSV.equalsIgnoreCase(engine)) {
+            log.warn("Unknown CSV engine '{}', using {}", engine, CSV_ENGINE_OPENCSV);
+        }
+        return false;
+    }
+
+    private CSVReader openRangeReader(byte[] bytes, char separator) {
+        return new CSVReaderBuilder(new InputStreamReader(new ByteArrayInputStream(bytes), Charset.defaultCharset()))
+                .withCSVParser(new CSVParserBuilder().withSeparator(separator).build())
+                .build();
+    }
+
+    /**
+     * Converte le righe di un intervallo, senza assegnare gli id. Le righe restano in un blocco
+     * colonnare finche gli intervalli precedenti non sono stati consegnati.
+     */
+    private UdValueBlock convertRange(CsvLineReader rangeReader, ConversionPlan plan, DateColumnFormat dates) throws IOException, CsvValidationException {
+        UdValueBlock rows = new UdValueBlock();
+        DateColumnFormat.Reader dateReader = dates.newReader();
+        Consumer<ResultValueDto> sink = rows::append;
+        try (CsvLineReader reader = rangeReader) {
+            reader.retainColumns(plan.getReferencedColumns());
+            reader.reuseLines();
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                plan.convertLine(line, dateReader, sink);
+            }
+        }
+        return rows;
+    }
+
+    private UdValueBlock awaitRange(Future<UdValueBlock> task) throws IOException, CsvValidationException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV parsing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof CsvValidationException csvValidationException) {
+                throw csvValidationException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Verifica header e mappings e restituisce il piano di conversione, null se il file va saltato.
+     */
+    private ConversionPlan preparePlan(PropertyDto propertyDto, String[] header, String inputFilePath) throws IOException {
+        if (header == null || header.length == 0) {
+            log.warn("CSV header missing for file {}", inputFilePath);
+            return null;
+        }
+
+        if (propertyDto.getMappings() == null || propertyDto.getMappings().isEmpty()) {
+            log.warn("No mappings configured for property {}", propertyDto.getName());
+            return null;
+        }
+
+        return resolveConversionPlan(propertyDto, header);
     }
 
     /**
@@ -455,16 +1031,12 @@ public class TransformerService {
      */
     private int appendSlotRecord(String[] sourceLine,
                                  String dateValue,
-                                 String periodHeader,
+                                 PeriodTemplate template,
+                                 DateColumnFormat.Reader dates,
                                  int columnIndex,
-                                 int slice,
-                                 List<String> propertiesWithoutSubs,
-                                 List<ValueDto> dictionary,
-                                 HashMap<String, LinkedList<Integer>> finalHeaderToLine,
-                                 Map<String, String> nullsFieldMap,
-                                 List<ResultValueDto> values,
+                                 ConversionPlan plan,
+                                 Consumer<ResultValueDto> values,
                                  PropertyDto propertyDto,
-                                 List<String> subProperties,
                                  int id) {
         if (sourceLine == null) {
             return id;
@@ -473,18 +1045,17 @@ public class TransformerService {
             log.warn("Skipping slot column {} because line has only {} columns", columnIndex, sourceLine.length);
             return id;
         }
-        String[] lineCopy = Arrays.copyOf(sourceLine, Math.max(sourceLine.length, columnIndex + 1));
         ResultValueDto resultValueDto = ResultValueDto.builder().id(id).build();
 
-        HashMap<String, Object> period = TimeUtils.getStartAndEndTimeFromString(dateValue, periodHeader, lineCopy[columnIndex], slice);
+        HashMap<String, Object> period = template.resolve(dateValue, sourceLine[columnIndex], dates);
         if (!period.isEmpty()) {
             resultValueDto.setPeriod(period);
         }
 
-        resultValueDto.setProperty(processPropertiesValue(lineCopy, columnIndex, propertiesWithoutSubs, dictionary, finalHeaderToLine, nullsFieldMap));
+        resultValueDto.setProperty(plan.buildProperties(sourceLine, columnIndex));
 
-        if (elaborateCoordinates(subProperties)) {
-            resultValueDto.setCoordinates(getCoordinatesFromLine(finalHeaderToLine, lineCopy));
+        if (plan.isElaborateCoordinates()) {
+            resultValueDto.setCoordinates(plan.buildCoordinates(sourceLine));
         }
 
         return writeResultValueDto(propertyDto, resultValueDto, values, id);
@@ -518,38 +1089,20 @@ public class TransformerService {
                 return false;
             }
             LocalDateTime ldt = LocalDateTime.parse(startObj.toString());
-            return zone.getRules().getValidOffsets(ldt).size() > 1;
+            return ZoneTransitionIndex.validOffsets(zone, ldt).size() > 1;
         } catch (Exception e) {
             return false;
         }
     }
 
-    private Boolean elaborateCoordinates(List<String> strings) {
-        return strings.stream().anyMatch(string -> string.equalsIgnoreCase(FORMAT)
-                || string.equalsIgnoreCase(LATITUDE)
-                || string.equalsIgnoreCase(HEIGHT)
-                || string.equalsIgnoreCase(LONGITUDE));
-    }
-
-    private CoordinatesDto getCoordinatesFromLine(HashMap<String, LinkedList<Integer>> headerToLine, String[] line) {
-        CoordinatesDto coordinatesDto = CoordinatesDto.builder()
-                .format(headerToLine.containsKey(FORMAT) ? line[headerToLine.get(FORMAT).getFirst()] : "WGS84-DD")
-                .height(headerToLine.containsKey(HEIGHT) ? Double.parseDouble(line[headerToLine.get(HEIGHT).getFirst()]) : 0D)
-                .longitude(headerToLine.containsKey(LONGITUDE) ? Double.parseDouble(line[headerToLine.get(LONGITUDE).getFirst()]) : 0D)
-                .latitude(headerToLine.containsKey(LATITUDE) ? Double.parseDouble(line[headerToLine.get(LATITUDE).getFirst()]) : 0D)
-                .build();
-
-        return coordinatesDto;
-    }
-
-    private int writeResultValueDto(PropertyDto propertyDto, ResultValueDto resultValueDto, List<ResultValueDto> values, int id) {
+    private int writeResultValueDto(PropertyDto propertyDto, ResultValueDto resultValueDto, Consumer<ResultValueDto> values, int id) {
         //TODO: Write coordinates only if there are into mappings
         /*if (propertyDto.getContext().containsKey("coordinates")) {
             CoordinatesDto coordinatesDto = objectMapper.readValue(objectMapper.writeValueAsString(propertyDto.getContext().get("coordinates")), CoordinatesDto.class);
             resultValueDto.setCoordinates(coordinatesDto);
         }*/
 
-        values.add(resultValueDto);
+        values.accept(resultValueDto);
 
         return ++id;
     }
@@ -562,24 +1115,16 @@ public class TransformerService {
         if (values == null || values.isEmpty()) {
             return values;
         }
-        long slotMinutes = inferSlotMinutes(values);
+        long slotSeconds = inferSlotMinutes(values) * 60;
         for (ResultValueDto v : values) {
-            if (v.getPeriod() == null) {
-                continue;
-            }
-            Object startObj = v.getPeriod().get("start_ts");
-            if (startObj == null) {
+            EpochPeriod period = EpochPeriod.of(v);
+            if (period == null || !period.start().isPresent() || !isLocalTimestamp(period.start())) {
                 continue;
             }
-            LocalDateTime start = parseLdt(startObj.toString());
-            if (start == null) {
-                continue;
-            }
-            LocalDateTime end = start.plusMinutes(slotMinutes);
-            v.getPeriod().put("end_ts", end.toString());
+            EpochPeriod.Timestamp start = period.start();
+            period.end().setLocalToString(start.getEpochSecond() + slotSeconds, start.getNano());
         }
-        values.sort(Comparator.comparing(v -> parseLdt(v.getPeriod() != null ? Objects.toString(v.getPeriod().get("start_ts"), null) : null),
-                Comparator.nullsLast(Comparator.naturalOrder())));
+        values.sort(TransformerService::compareLocalStarts);
         int newId = 1;
         for (ResultValueDto v : values) {
             v.setId(newId++);
@@ -587,6 +1132,19 @@ public class TransformerService {
         return values;
     }
 
+    /** Ordina per start locale (secondi, poi nanosecondi); i record senza start locale vanno in fondo. */
+    private static int compareLocalStarts(ResultValueDto a, ResultValueDto b) {
+        EpochPeriod.Timestamp first = a.getEpochPeriod() != null ? a.getEpochPeriod().start() : null;
+        EpochPeriod.Timestamp second = b.getEpochPeriod() != null ? b.getEpochPeriod().start() : null;
+        boolean firstLocal = first != null && first.isLocal();
+        boolean secondLocal = second != null && second.isLocal();
+        if (!firstLocal || !secondLocal) {
+            return Boolean.compare(!firstLocal, !secondLocal);
+        }
+        int comparison = Long.compare(first.getEpochSecond(), second.getEpochSecond());
+        return comparison != 0 ? comparison : Integer.compare(first.getNano(), second.getNano());
+    }
+
     /**
      * Deduce la durata dello slot cercando la minima differenza positiva tra start ed end.
      * Se non disponibile, default 15 minuti.
@@ -594,20 +1152,18 @@ public class TransformerService {
     private long inferSlotMinutes(List<ResultValueDto> values) {
         long best = Long.MAX_VALUE;
         for (ResultValueDto v : values) {
-            if (v.getPeriod() == null) {
-                continue;
-            }
-            Object startObj = v.getPeriod().get("start_ts");
-            Object endObj = v.getPeriod().get("end_ts");
-            if (startObj == null || endObj == null) {
+            EpochPeriod period = EpochPeriod.of(v);
+            if (period == null || !period.start().isPresent() || !period.end().isPresent()) {
                 continue;
             }
-            LocalDateTime start = parseLdt(startObj.toString());
-            LocalDateTime end = parseLdt(endObj.toString());
-            if (start == null || end == null) {
+            EpochPeriod.Timestamp start = period.start();
+            EpochPeriod.Timestamp end = period.end();
+            if (!isLocalTimestamp(start) || !isLocalTimestamp(end)) {
                 continue;
             }
-            long minutes = Duration.between(start, end).toMinutes();
+            long seconds = end.getEpochSecond() - start.getEpochSecond()
+                    + Math.floorDiv(end.getNano() - start.getNano(), 1_000_000_000);
+            long minutes = seconds / 60;
             if (minutes > 0 && minutes < best) {
                 best = minutes;
             }
@@ -615,114 +1171,16 @@ public class TransformerService {
         return best == Long.MAX_VALUE ? 15 : best;
     }
 
-    private LocalDateTime parseLdt(String ts) {
-        if (ts == null || ts.isBlank()) {
-            return null;
-        }
-        try {
-            return LocalDateTime.parse(ts, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        } catch (DateTimeParseException e) {
-            log.warn("Impossible parsing timestamp {} as LocalDateTime", ts);
-            return null;
-        }
-    }
-
-    private List<PropertyValueDto> processPropertiesValue(String[] originalLine, int columnToRead,
-                    List<String> propertiesWithoutSubs, List<ValueDto> dictionary, HashMap<String, LinkedList<Integer>> finalHeaderToLine,
-                    Map<String, String> nullsField) {
-        List<PropertyValueDto> propertiesValue = new ArrayList<>();
-
-        HashMap<String, String> line = getLineFromOriginalLine(originalLine, finalHeaderToLine, dictionary);
-
-        if (columnToRead >= 0) {
-            if (columnToRead >= originalLine.length) {
-                log.warn("Skipping value for column index {} because line has only {} columns", columnToRead, originalLine.length);
-            } else {
-                String headerName = getKeyByValue(columnToRead, finalHeaderToLine);
-                String raw = originalLine[columnToRead];
-
-                propertiesValue.add(PropertyValueDto.builder()
-                        .name(headerName)
-                        .val(MappingUtils.getCorrectValue(headerName, raw, dictionary))
-                        .build());
-
-                propertiesWithoutSubs.forEach(property -> {
-                    if (!property.equalsIgnoreCase(headerName)) {
-                        MappingUtils.addValueToPropertyList(property, finalHeaderToLine, columnToRead, line, propertiesValue, dictionary);
-                    }
-                });
-            }
-        } else {
-            propertiesWithoutSubs.forEach(property -> {
-                MappingUtils.addValueToPropertyList(property, finalHeaderToLine, columnToRead, line, propertiesValue, dictionary);
-            });
+    /** True se il timestamp e un orario locale ISO; come prima, un valore non leggibile viene segnalato. */
+    private boolean isLocalTimestamp(EpochPeriod.Timestamp timestamp) {
+        if (timestamp.isLocal()) {
+            return true;
         }
-
-        MappingUtils.addNullFields(propertiesValue, nullsField);
-
-        return propertiesValue;
-    }
-
-    private String getKeyByValue(int findValue, HashMap<String, LinkedList<Integer>> finalHeaderToLine) {
-
-        String[] header = finalHeaderToLine.keySet().toArray(new String[0]);
-
-        for (String name : header) {
-            if (finalHeaderToLine.get(name).contains(findValue)) {
-                return name;
-            }
+        String text = timestamp.text();
+        if (text != null && !text.isBlank()) {
+            log.warn("Impossible parsing timestamp {} as LocalDateTime", text);
         }
-
-        throw new IndexOutOfBoundsException("Non ho trovato l'header!");
-
-    }
-
-    private HashMap<String, String> getLineFromOriginalLine(String[] originalLine, HashMap<String, LinkedList<Integer>> finalHeaderToLine,
-                                             List<ValueDto> dictionary) {
-
-        HashMap<String, String> resultMap = new HashMap<>();
-
-        List<String> withoutNegativeHeader = dictionary.stream()
-                .filter(dto -> dto.getNameForNegative() == null || dto.getNameForNegative().isBlank())
-                .map(ValueDto::getName)
-                .toList();
-
-        List<String> withNegativeHeader = dictionary.stream()
-                .filter(dto -> dto.getNameForNegative() != null && !dto.getNameForNegative().isBlank())
-                .map(ValueDto::getName)
-                .toList();
-
-        List<String> negativeHeader = dictionary.stream()
-                .filter(dto -> dto.getNameForNegative() != null && !dto.getNameForNegative().isBlank())
-                .map(ValueDto::getNameForNegative)
-                .toList();
-
-        finalHeaderToLine.forEach((key, item) -> {
-            item.forEach(value -> {
-                if (value >= originalLine.length) {
-                    log.warn("Skipping column '{}' at index {} because line has only {} columns", key, value, originalLine.length);
-                    return;
-                }
-                String rawValue = originalLine[value];
-                if (withoutNegativeHeader.contains(key)) {
-                    resultMap.put(key, rawValue);
-                } else if (withNegativeHeader.contains(key)) {
-                    if (rawValue != null && !rawValue.isEmpty() && rawValue.charAt(0) == '-') {
-                        resultMap.put(key, "null");
-                    } else {
-                        resultMap.put(key, rawValue);
-                    }
-                } else if (negativeHeader.contains(key)) {
-                    if (rawValue != null && !rawValue.isEmpty() && rawValue.charAt(0) == '-') {
-                        resultMap.put(key, rawValue);
-                    } else {
-                        resultMap.put(key, "null");
-                    }
-                }
-            });
-        });
-
-        return resultMap;
+        return false;
     }
 
     private PropertyDto retrievePropertyFromFilter(ExtractionDto retrievePropertyDto) {
@@ -758,18 +1216,7 @@ public class TransformerService {
             return;
         }
         for (ResultValueDto value : values) {
-            HashMap<String, Object> period = value.getPeriod();
-            if (period == null) {
-                continue;
-            }
-            Object startObj = period.get("start_ts");
-            if (startObj == null) {
-                continue;
-            }
-            String updatedEnd = TimeUtils.addMinutesToTimestamp(startObj.toString(), sliceMinutes);
-            if (updatedEnd != null) {
-                period.put("end_ts", updatedEnd);
-            }
+            TimeUtils.enforceSliceDuration(EpochPeriod.of(value), sliceMinutes);
         }
     }
 
@@ -778,10 +1225,15 @@ public class TransformerService {
             return;
         }
         for (ResultValueDto value : values) {
-            if (value == null || value.getPeriod() == null) {
+            if (value == null) {
                 continue;
             }
-            TimeUtils.adjustEndExclusive(value.getPeriod());
+            EpochPeriod period = EpochPeriod.of(value);
+            if (period != null) {
+                TimeUtils.adjustEndExclusive(period);
+                // last time stage: the rows are returned or written with their text period
+                period.flush();
+            }
         }
     }
 
@@ -828,162 +1280,189 @@ public class TransformerService {
 
 
 
-    private void writeJsonFile(ResultUrbanDataset urbanDataset, ExtractionDto extractionDto, String inputFilePath, String fileName) throws IOException {
-        // Determine the UTC offset for the target UD. Fallback to UTC if none provided.
-        String udOffsetStr = extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank() ? extractionDto.getUdUtc() : "0";
-        ZoneOffset udOffset = TimeUtils.parseUtcOffset(udOffsetStr);
-
+    private RollingUrbanDatasetWriter writeJsonFile(ResultUrbanDataset urbanDataset, ExtractionDto extractionDto, String inputFilePath, String fileName) throws IOException {
         // Build timestamps for context (ISO) and file names (safe).
-        java.time.Instant nowInstant = java.time.Instant.now();
-        String contextTimestamp = TimeUtils.formatIsoLocalDateTime(nowInstant, udOffset);
-        String fileTimestamp = TimeUtils.formatAaaaMmGgHhMmSs(nowInstant, udOffset);
+        Instant nowInstant = Instant.now();
 
         // Set context timeZone and timestamp on the UD context
-        if (urbanDataset != null && urbanDataset.getUrbanDataset() != null
-                && urbanDataset.getUrbanDataset().getContext() != null) {
-            // Override the time zone with the extraction config if present
-            if (extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank()) {
-                String label = TimeUtils.formatUtcOffsetLabel(extractionDto.getUdUtc());
-                urbanDataset.getUrbanDataset().getContext().setTimeZone(label != null ? label : extractionDto.getUdUtc());
-            }
-            urbanDataset.getUrbanDataset().getContext().setTimestamp(contextTimestamp);
+        if (urbanDataset != null) {
+            applyWriteContext(urbanDataset.getUrbanDataset(), extractionDto, nowInstant);
         }
 
-        // Determine the safe resourceId from the context producer id
-        String resourceId = "unknown-resource";
-        if (urbanDataset != null
-            && urbanDataset.getUrbanDataset() != null
-            && urbanDataset.getUrbanDataset().getContext() != null
-            && urbanDataset.getUrbanDataset().getContext().getProducer() != null
-            && urbanDataset.getUrbanDataset().getContext().getProducer().getId() != null) {
-                resourceId = urbanDataset.getUrbanDataset().getContext().getProducer().getId();
-        }
-        String safeResourceId = (resourceId == null || resourceId.isBlank())
-            ? "unknown-resource"
-            : resourceId.replaceAll("[\\\\/:*?\"<>|]", "-").trim();
+        String baseName = buildBaseFileName(urbanDataset != null ? urbanDataset.getUrbanDataset() : null, extractionDto, nowInstant);
 
-        // Retrieve all lines
-        List<ResultValueDto> lines = new ArrayList<>();
-        if (urbanDataset != null
-                && urbanDataset.getUrbanDataset() != null
-                && urbanDataset.getUrbanDataset().getValues() != null
-                && urbanDataset.getUrbanDataset().getValues().getLine() != null) {
-            lines = urbanDataset.getUrbanDataset().getValues().getLine();
-        }
-        int totalLines = lines != null ? lines.size() : 0;
-        log.debug("Transformer Service: preparing to write {} total rows", totalLines);
-        // Determine number of parts based on maxRowsPerUd
-        int parts = 1;
-        if (maxRowsPerUd > 0 && totalLines > maxRowsPerUd) {
-            parts = (int) Math.ceil(totalLines / (double) maxRowsPerUd);
-        }
-        int startIndex = 0;
-        for (int part = 1; part <= parts; part++) {
-            int endIndex;
-            if (maxRowsPerUd > 0) {
-                endIndex = Math.min(startIndex + maxRowsPerUd, totalLines);
-            } else {
-                endIndex = totalLines;
-            }
-            // Build a new UrbanDatasetDto using the same specification and context but sliced values
-            UrbanDatasetDto partUd = new UrbanDatasetDto();
-            partUd.setSpecification(urbanDataset.getUrbanDataset().getSpecification());
-            partUd.setContext(urbanDataset.getUrbanDataset().getContext());
-            ValuesDto partValues = new ValuesDto();
-            if (lines != null) {
-                List<ResultValueDto> partLines = new ArrayList<>(lines.subList(startIndex, endIndex));
-                int newId = 1;
-                for (ResultValueDto value : partLines) {
-                    value.setId(newId++);
-                }
-                partValues.setLine(partLines);
-            } else {
-                partValues.setLine(new ArrayList<>());
-            }
-            partUd.setValues(partValues);
-            ResultUrbanDataset partResult = ResultUrbanDataset.builder().urbanDataset(partUd).build();
-            // Compose file name: [resourceId]_-_[timestamp] + optional suffix
-            String baseName = "[" + safeResourceId + "]_-_[" + fileTimestamp + "]";
-            String outName;
-            if (parts > 1) {
-                outName = baseName + "_" + part + ".json";
-            } else {
-                outName = baseName + ".json";
+        if (urbanDataset == null || urbanDataset.getUrbanDataset() == null) {
+            throw new IllegalStateException("No UrbanDataset produced for file " + fileName);
+        }
+        UrbanDatasetDto dataset = urbanDataset.getUrbanDataset();
+        List<ResultValueDto> lines = dataset.getValues() != null && dataset.getValues().getLine() != null
+                ? dataset.getValues().getLine()
+                : List.of();
+        log.debug("Transformer Service: preparing to write {} total rows", lines.size());
+
+        // Rows are streamed into [resourceId]_-_[timestamp]_N.json parts, the ids are renumbered per
+        // part while writing and the suffix is dropped when a single part is written. The writer
+        // reserves the names, so files converted in the same second do not overwrite each other.
+        String basePath = extractionDto.getOutputFilesPath() + "/" + baseName;
+        RollingUrbanDatasetWriter writer = newPartWriter(basePath, dataset, extractionDto);
+        try {
+            for (ResultValueDto value : lines) {
+                writer.writeLine(value);
             }
-            String newFilePath = extractionDto.getOutputFilesPath() + "/" + outName;
-            log.debug("Transformer Service: writing part {}/{} to {}", part, parts, newFilePath);
-            FileUtils.createFile(newFilePath, partResult, objectMapper);
-            startIndex = endIndex;
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
         }
-        // Move the processed CSV to the completed folder only once
+        // Move the processed CSV to the completed folder only once every part is on disk
         String completedPath = extractionDto.getSourceFilesPath() + COMPLETED_PATH + fileName;
         log.debug("Transformer Service: moving source file to {}", completedPath);
         FileUtils.moveFile(inputFilePath, completedPath);
         log.debug("Transformer Service: completed processing for {}", fileName);
+        return writer;
     }
 
 
-    private void convertedHeaderFromMappings(String[] originalHeader, HashMap<String, ValueDto> dictionary, HashMap<String, LinkedList<Integer>> finalHeaderToLine) {
-
-        for (int i = 0; i < originalHeader.length; i++) {
-            if (dictionary.containsKey(originalHeader[i])) {
-
-                addIndexToFinalHeader(finalHeaderToLine, dictionary.get(originalHeader[i]).getName(), i);
-
-                if (dictionary.get(originalHeader[i]).getNameForNegative() != null){
-                    LinkedList<Integer> listIndex = new LinkedList<>();
-                    listIndex.add(i);
-                    finalHeaderToLine.put(dictionary.get(originalHeader[i]).getNameForNegative(), listIndex);
-                }
-                    
-            }
+    /**
+     * Determine the UTC offset for the target UD (fallback to UTC) and set context timeZone and
+     * timestamp on the UD context.
+     */
+    private void applyWriteContext(UrbanDatasetDto urbanDataset, ExtractionDto extractionDto, Instant nowInstant) {
+        if (urbanDataset == null || urbanDataset.getContext() == null) {
+            return;
         }
+        String udOffsetStr = extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank() ? extractionDto.getUdUtc() : "0";
+        ZoneOffset udOffset = TimeUtils.parseUtcOffset(udOffsetStr);
 
+        // Override the time zone with the extraction config if present
+        if (extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank()) {
+            String label = TimeUtils.formatUtcOffsetLabel(extractionDto.getUdUtc());
+            urbanDataset.getContext().setTimeZone(label != null ? label : extractionDto.getUdUtc());
+        }
+        urbanDataset.getContext().setTimestamp(TimeUtils.formatIsoLocalDateTime(nowInstant, udOffset));
     }
 
+    /**
+     * Compose the base file name [resourceId]_-_[timestamp] using the safe resourceId from the
+     * context producer id.
+     */
+    private String buildBaseFileName(UrbanDatasetDto urbanDataset, ExtractionDto extractionDto, Instant nowInstant) {
+        String udOffsetStr = extractionDto.getUdUtc() != null && !extractionDto.getUdUtc().isBlank() ? extractionDto.getUdUtc() : "0";
+        String fileTimestamp = TimeUtils.formatAaaaMmGgHhMmSs(nowInstant, TimeUtils.parseUtcOffset(udOffsetStr));
 
-
-
-    
-    private void addIndexToFinalHeader(HashMap<String, LinkedList<Integer>> finalHeader, String key, int index) {
-    
-        if (finalHeader.containsKey(key)) {
-            finalHeader.get(key).add(index);
-        } else {
-            LinkedList<Integer> list = new LinkedList<>();
-            list.add(index);
-            finalHeader.put(key, list);
+        String resourceId = "unknown-resource";
+        if (urbanDataset != null
+            && urbanDataset.getContext() != null
+            && urbanDataset.getContext().getProducer() != null
+            && urbanDataset.getContext().getProducer().getId() != null) {
+                resourceId = urbanDataset.getContext().getProducer().getId();
         }
+        String safeResourceId = (resourceId == null || resourceId.isBlank())
+            ? "unknown-resource"
+            : resourceId.replaceAll("[\\\\/:*?\"<>|]", "-").trim();
 
+        return "[" + safeResourceId + "]_-_[" + fileTimestamp + "]";
     }
 
-    private List<Integer> retrieveColumnsNumberForHeader(List<String> columns, String[] header) {
-        List<Integer> result = new ArrayList<>();
+    /**
+     * Writer delle parti UD: con il pool di scrittura ogni conversione tiene in coda al massimo
+     * una parte per thread, quindi in memoria restano al piu (thread + 1) * maxRowsPerUd righe.
+     * La compressione dei file e quella scelta dall'estrazione.
+     */
+    private RollingUrbanDatasetWriter newPartWriter(String basePath, UrbanDatasetDto urbanDataset, ExtractionDto extractionDto) {
+        return new RollingUrbanDatasetWriter(basePath, urbanDataset.getSpecification(), urbanDataset.getContext(),
+                objectMapper, maxRowsPerUd, partWriterExecutor, partWriterThreads,
+                OutputCompression.of(extractionDto.getOutputCompression()));
+    }
 
-        if (columns == null)
-            return result;
+    /**
+     * Sink della conversione in streaming: riceve le righe dal parsing CSV, applica normalizzazione,
+     * durata dello slice e formattazione end-exclusive riga per riga e le accoda alle parti UD del
+     * {@link RollingUrbanDatasetWriter}, che tiene in memoria solo le parti in attesa di scrittura.
+     * Con lo scrubbing DST le righe passano prima dallo scrubber, che le consegna a {@link #write}.
+     */
+    private final class StreamingValueSink implements Consumer<ResultValueDto> {
+
+        private final RollingUrbanDatasetWriter writer;
+        private final ZoneOffset targetOffset;
+        private final List<String> timestampKeys;
+        private final int sliceMinutes;
+        private TimeNormalizationService.DstScrubber scrubber;
+        private long kept;
+        private long dropped;
+
+        private StreamingValueSink(RollingUrbanDatasetWriter writer, ZoneOffset targetOffset,
+                                   List<String> timestampKeys, int sliceMinutes) {
+            this.writer = writer;
+            this.targetOffset = targetOffset;
+            this.timestampKeys = timestampKeys;
+            this.sliceMinutes = sliceMinutes;
+        }
 
-        for(String string : columns) {
-            for (int j=0; j < header.length; j++) {
-                if (string.equalsIgnoreCase(header[j])) {
-                    result.add(j);
-                }
+        @Override
+        public void accept(ResultValueDto value) {
+            if (scrubber != null) {
+                scrubber.accept(value);
+                return;
             }
+            if (targetOffset != null && !timeNormalizationService.normalizeWithExplicitUtc(value, targetOffset, timestampKeys)) {
+                dropped++;
+                return;
+            }
+            write(value);
         }
 
-        return result;
+        /** Durata dello slice, end-exclusive e scrittura di una riga gia normalizzata. */
+        private void write(ResultValueDto value) {
+            EpochPeriod period = EpochPeriod.of(value);
+            if (sliceMinutes > 0) {
+                TimeUtils.enforceSliceDuration(period, sliceMinutes);
+            }
+            TimeUtils.adjustEndExclusive(period);
+            kept++;
+            try {
+                writer.writeLine(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
+        /** Consegna le righe ancora in attesa nello scrubber e chiude l'ultima parte (o l'unico UD). */
+        private void finish() throws IOException {
+            if (scrubber != null) {
+                scrubber.finish();
+                dropped += scrubber.getDropped();
+            }
+            writer.close();
+        }
+
+        /** Rimuove i file gia scritti per non lasciare UD parziali. */
+        private void abort() {
+            writer.abort();
+        }
     }
 
-    private int retrieveColumnDataFromPeriod(String column, String[] header) {
+    /** Chiave della cache dei piani di conversione. */
+    private record PlanKey(String property, List<String> header) { }
 
-        for (int i=0; i<header.length; i++) {
-            if (header[i].equalsIgnoreCase(column)) {
-                return i;
-            }
+    /** Assegna id progressivi ai record nell'ordine in cui vengono consegnati al sink. */
+    private static final class RowNumbering implements Consumer<ResultValueDto> {
+
+        private final Consumer<ResultValueDto> values;
+        private int id = 1;
+
+        private RowNumbering(Consumer<ResultValueDto> values) {
+            this.values = values;
         }
 
-        return -1;
+        @Override
+        public void accept(ResultValueDto value) {
+            value.setId(id++);
+            values.accept(value);
+        }
     }
 
+    /** Permessi di conversione di un'estrazione con il limite da cui sono stati creati. */
+    private record ExtractionPermits(int limit, Semaphore semaphore) { }
+
 }
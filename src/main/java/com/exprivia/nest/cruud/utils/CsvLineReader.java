@@ -0,0 +1,61 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sorgente di righe CSV usata dal transformer, indipendente dal motore di lettura.
+ */
+public interface CsvLineReader extends Closeable {
+
+    /**
+     * Legge la riga successiva.
+     *
+     * @return celle della riga, null a fine file
+     *
+     * @throws IOException error
+     * @throws CsvValidationException error
+     */
+    String[] readNext() throws IOException, CsvValidationException;
+
+    /**
+     * Indica le colonne effettivamente usate dalla conversione: i motori che lo supportano
+     * possono lasciare null le altre celle invece di costruirne il valore.
+     *
+     * @param columns true per ogni colonna da valorizzare
+     */
+    default void retainColumns(boolean[] columns) {
+        // OpenCSV valorizza sempre tutte le celle
+    }
+
+    /**
+     * Indica che chi legge non conserva l'array di una riga dopo aver letto la successiva: i motori
+     * che lo supportano possono riusarlo invece di allocarne uno per riga.
+     */
+    default void reuseLines() {
+        // OpenCSV restituisce sempre un array nuovo
+    }
+
+    /**
+     * Adatta un CSVReader di OpenCSV.
+     *
+     * @param reader reader OpenCSV
+     * @return line reader
+     */
+    static CsvLineReader of(CSVReader reader) {
+        return new CsvLineReader() {
+            @Override
+            public String[] readNext() throws IOException, CsvValidationException {
+                return reader.readNext();
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Divide un file CSV in intervalli di byte che terminano sempre su un fine riga esterno ai
+ * campi quotati, cosi ogni intervallo puo essere letto da un CSVReader indipendente.
+ * Lo stato delle virgolette viene seguito con una scansione lineare dei byte (virgolette
+ * raddoppiate e carattere di escape '\' come nel CSVParser di default): la scansione e molto
+ * piu veloce del parsing vero e proprio e procede man mano che vengono chiesti gli intervalli.
+ * I byte '"', '\' e '\n' non compaiono mai dentro sequenze UTF-8 multibyte.
+ */
+public final class CsvRangeSplitter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long chunkSize;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferStart;
+    private long position;
+    private boolean inQuotes;
+    private boolean escaped;
+
+    /** Intervallo [start, end) del file. */
+    public record Range(long start, long end) {
+        public long length() {
+            return end - start;
+        }
+    }
+
+    private CsvRangeSplitter(FileChannel channel, long chunkSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Apre il file da dividere.
+     *
+     * @param path file CSV
+     * @param chunkSize dimensione indicativa di ogni intervallo in byte
+     * @return splitter posizionato all'inizio del file
+     *
+     * @throws IOException error
+     */
+    public static CsvRangeSplitter open(Path path, long chunkSize) throws IOException {
+        return new CsvRangeSplitter(FileChannel.open(path, StandardOpenOption.READ), chunkSize);
+    }
+
+    /**
+     * Intervallo della prima riga (l'header), da chiamare prima di {@link #nextRange()}.
+     *
+     * @return intervallo dell'header, null se il file e vuoto
+     *
+     * @throws IOException error
+     */
+    public Range headerRange() throws IOException {
+        return rangeUntil(position);
+    }
+
+    /**
+     * Prossimo intervallo di circa chunkSize byte, esteso fino al primo fine riga sicuro.
+     *
+     * @return intervallo successivo, null a fine file
+     *
+     * @throws IOException error
+     */
+    public Range nextRange() throws IOException {
+        return rangeUntil(position + chunkSize);
+    }
+
+    /**
+     * Legge i byte di un intervallo.
+     *
+     * @param range intervallo da leggere
+     * @return contenuto dell'intervallo
+     *
+     * @throws IOException error
+     */
+    public byte[] read(Range range) throws IOException {
+        byte[] bytes = new byte[Math.toIntExact(range.length())];
+        ByteBuffer target = ByteBuffer.wrap(bytes);
+        long offset = range.start();
+        while (target.hasRemaining()) {
+            int read = channel.read(target, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at offset " + offset);
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    private Range rangeUntil(long target) throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        long start = position;
+        while (position < size) {
+            byte b = byteAt(position++);
+            if (escaped) {
+                escaped = false;
+            } else if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '\n' && !inQuotes && position > target) {
+                break;
+            }
+        }
+        return new Range(start, position);
+    }
+
+    private byte byteAt(long offset) throws IOException {
+        if (offset >= bufferStart + buffer.limit()) {
+            bufferStart = offset;
+            buffer.clear();
+            while (buffer.position() == 0) {
+                if (channel.read(buffer, offset) < 0) {
+                    throw new IOException("Unexpected end of file at offset " + offset);
+                }
+            }
+            buffer.flip();
+        }
+        return buffer.get((int) (offset - bufferStart));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
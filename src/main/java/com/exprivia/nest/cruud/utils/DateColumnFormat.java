@@ -0,0 +1,106 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+
+/**
+ * Formato della colonna data di un file, rilevato al primo valore e riusato per le righe
+ * successive: il parsing di una riga costa un solo tentativo invece di provare tutti i pattern.
+ * Se un valore non e compatibile con il formato in cache (o ha una lunghezza diversa dal valore
+ * da cui e stato rilevato) il formato viene rilevato di nuovo.
+ * L'istanza puo essere condivisa tra i thread che convertono lo stesso file: il formato e
+ * pubblicato con un campo volatile e ogni formato rilevato e comunque valido.
+ * Ogni thread legge le righe con un proprio {@link Reader}, che ricorda l'ultimo valore letto.
+ */
+public final class DateColumnFormat {
+
+    /** Formatter rilevato, se il pattern contiene l'orario e lunghezza del valore di riferimento. */
+    private record Detected(DateTimeFormatter formatter, boolean withTime, int length) { }
+
+    private volatile Detected detected;
+
+    /**
+     * Lettore per un solo thread, da creare per ogni file o intervallo di righe.
+     *
+     * @return nuovo lettore che condivide il formato rilevato
+     */
+    public Reader newReader() {
+        return new Reader(this);
+    }
+
+    /**
+     * Interpreta il valore della colonna data.
+     *
+     * @param date valore della colonna data
+     * @return LocalDateTime se il formato contiene l'orario, LocalDate altrimenti, null se nessun
+     * formato e compatibile
+     */
+    Temporal parse(String date) {
+        if (date == null) {
+            return null;
+        }
+        Detected current = detected;
+        if (current != null && current.length() == date.length()) {
+            Temporal parsed = parse(current, date);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        String pattern = TimeUtils.getDateTimeFormatter(date);
+        Detected candidate = new Detected(TimeUtils.dateFormatter(pattern), pattern.contains("H"), date.length());
+        Temporal parsed = parse(candidate, date);
+        if (parsed != null) {
+            detected = candidate;
+        }
+        return parsed;
+    }
+
+    private static Temporal parse(Detected format, String date) {
+        return format.withTime()
+                ? TimestampParser.tryParse(format.formatter(), date, LocalDateTime::from)
+                : TimestampParser.tryParse(format.formatter(), date, LocalDate::from);
+    }
+
+    /**
+     * Lettore della colonna data usato da un solo thread: le colonne periodo della stessa riga, e
+     * le righe consecutive con la stessa data, riusano il valore gia letto e il testo del giorno
+     * senza ripetere il parsing. Contiene anche il buffer in cui vengono composti i timestamp.
+     */
+    public static final class Reader {
+
+        private final DateColumnFormat format;
+        private final char[] text = new char[19];
+        private String lastDate;
+        private Temporal lastParsed;
+        private String lastDay;
+
+        private Reader(DateColumnFormat format) {
+            this.format = format;
+        }
+
+        /** Come {@link DateColumnFormat#parse(String)}, senza rileggere un valore uguale al precedente. */
+        Temporal parse(String date) {
+            if (date == null || !date.equals(lastDate)) {
+                lastParsed = format.parse(date);
+                lastDate = date;
+                lastDay = null;
+            }
+            return lastParsed;
+        }
+
+        /** Testo yyyy-MM-dd dell'ultima data letta, che deve essere una LocalDate. */
+        String day() {
+            if (lastDay == null) {
+                lastDay = lastParsed.toString();
+            }
+            return lastDay;
+        }
+
+        /** Buffer per comporre un timestamp, valido fino alla chiamata successiva. */
+        char[] text() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Periodo di un record in forma numerica, usato dalle fasi temporali della conversione
+ * (normalizzazione, durata dello slice, fasce, end esclusivo). Ogni timestamp viene letto una
+ * sola volta dal testo e diventa secondi epoch dell'orario locale, nanosecondi e, se il testo lo
+ * indicava, offset; le fasi lavorano su questi valori e il testo viene prodotto una sola volta,
+ * prima della serializzazione ({@link #flush(ResultValueDto)}), con lo stesso formato che avrebbe
+ * prodotto la fase che ha modificato il valore. Chi scrive direttamente nella mappa period deve
+ * prima staccare il periodo numerico con {@link #detach(ResultValueDto)}.
+ * I valori che non sono timestamp ISO restano nel testo originale: per questi le fasi usano le
+ * funzioni su stringa, con gli stessi risultati di prima.
+ */
+public final class EpochPeriod {
+
+    public static final String START = "start_ts";
+    public static final String END = "end_ts";
+
+    private final HashMap<String, Object> source;
+    private String[] keys = new String[2];
+    private Timestamp[] timestamps = new Timestamp[2];
+    private int size;
+    private boolean modified;
+
+    private EpochPeriod(HashMap<String, Object> source) {
+        this.source = source;
+    }
+
+    /**
+     * Periodo numerico del record, creato dalla mappa period al primo accesso.
+     *
+     * @param value record
+     * @return periodo, null se il record non ha una mappa period
+     */
+    public static EpochPeriod of(ResultValueDto value) {
+        EpochPeriod period = value.getEpochPeriod();
+        if (period == null) {
+            HashMap<String, Object> map = value.getPeriod();
+            if (map == null) {
+                return null;
+            }
+            period = new EpochPeriod(map);
+            value.setEpochPeriod(period);
+        }
+        return period;
+    }
+
+    /**
+     * Riporta nella mappa period del record i timestamp modificati dalle fasi temporali; senza un
+     * periodo numerico associato non fa nulla.
+     *
+     * @param value record
+     */
+    public static void flush(ResultValueDto value) {
+        EpochPeriod period = value.getEpochPeriod();
+        if (period != null) {
+            period.flush();
+        }
+    }
+
+    /**
+     * Riporta nella mappa period le modifiche e stacca il periodo numerico dal record, che verra
+     * riletto dal testo al prossimo accesso: da usare prima di scrivere direttamente nella mappa.
+     *
+     * @param value record
+     */
+    public static void detach(ResultValueDto value) {
+        flush(value);
+        value.setEpochPeriod(null);
+    }
+
+    /**
+     * Periodo numerico di una mappa non associata a un record: le modifiche vanno riportate
+     * nella mappa con {@link #flush()}.
+     *
+     * @param map mappa period
+     * @return periodo
+     */
+    public static EpochPeriod of(HashMap<String, Object> map) {
+        return new EpochPeriod(map);
+    }
+
+    /**
+     * Timestamp della chiave indicata, letto dalla mappa al primo accesso.
+     *
+     * @param key chiave (start_ts, end_ts, ...)
+     * @return timestamp, eventualmente assente
+     */
+    public Timestamp get(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return timestamps[i];
+            }
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+        Timestamp timestamp = new Timestamp(this, source.get(key));
+        keys[size] = key;
+        timestamps[size++] = timestamp;
+        return timestamp;
+    }
+
+    /**
+     * Registra un timestamp gia letto altrove (es. da {@link UdValueBlock}) senza rileggerne il testo.
+     *
+     * @param key chiave del periodo
+     * @param text testo presente nella mappa
+     * @param epochSecond secondi epoch dell'orario locale
+     * @param nano nanosecondi
+     * @param offset offset del testo, null per un orario locale
+     */
+    void preset(String key, String text, long epochSecond, int nano, ZoneOffset offset) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+        Timestamp timestamp = new Timestamp(this, text, epochSecond, nano, offset);
+        keys[size] = key;
+        timestamps[size++] = timestamp;
+    }
+
+    public Timestamp start() {
+        return get(START);
+    }
+
+    public Timestamp end() {
+        return get(END);
+    }
+
+    /** Riporta nella mappa, in testo, i timestamp modificati dall'ultima scrittura. */
+    public void flush() {
+        if (!modified) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Timestamp timestamp = timestamps[i];
+            if (timestamp.style != Style.TEXT) {
+                String text = timestamp.format();
+                source.put(keys[i], text);
+                timestamp.original = text;
+                timestamp.text = text;
+                timestamp.style = Style.TEXT;
+            }
+        }
+        modified = false;
+    }
+
+    /** Come il testo di un timestamp modificato viene prodotto. */
+    private enum Style {
+        /** Testo letto dalla mappa, invariato. */
+        TEXT,
+        /** ISO_LOCAL_DATE_TIME (normalizzazione, end esclusivo). */
+        ISO,
+        /** yyyy-MM-dd'T'HH:mm:ss con un numero fisso di cifre di frazione ed eventuale offset (aggiunta di minuti). */
+        FIXED,
+        /** LocalDateTime.toString() (durata delle fasce). */
+        TO_STRING
+    }
+
+    /**
+     * Un timestamp del periodo: orario locale in secondi epoch e nanosecondi, offset se presente
+     * nel testo. Un timestamp che non e ISO (con o senza offset) conserva solo il testo.
+     */
+    public static final class Timestamp {
+
+        private final EpochPeriod period;
+        private Object original;
+        private String text;
+        private Style style = Style.TEXT;
+        private boolean parsed;
+        private long epochSecond;
+        private int nano;
+        private ZoneOffset offset;
+        private int fractionDigits;
+
+        private Timestamp(EpochPeriod period, Object original) {
+            this.period = period;
+            read(original);
+        }
+
+        private Timestamp(EpochPeriod period, String text, long epochSecond, int nano, ZoneOffset offset) {
+            this.period = period;
+            this.original = text;
+            this.text = text;
+            this.parsed = true;
+            this.epochSecond = epochSecond;
+            this.nano = nano;
+            this.offset = offset;
+        }
+
+        private void read(Object value) {
+            original = value;
+            text = value != null ? value.toString() : null;
+            style = Style.TEXT;
+            parsed = false;
+            offset = null;
+            if (text == null) {
+                return;
+            }
+            OffsetDateTime withOffset = TimestampParser.parseIsoOffset(text);
+            LocalDateTime local = withOffset != null ? withOffset.toLocalDateTime() : TimestampParser.parseIsoLocal(text);
+            if (local != null) {
+                parsed = true;
+                epochSecond = local.toEpochSecond(ZoneOffset.UTC);
+                nano = local.getNano();
+                offset = withOffset != null ? withOffset.getOffset() : null;
+            }
+        }
+
+        /** True se la chiave e presente con un valore non nullo. */
+        public boolean isPresent() {
+            return original != null || style != Style.TEXT;
+        }
+
+        /** True se il valore e presente ma vuoto. */
+        public boolean isBlank() {
+            return style == Style.TEXT && text != null && text.isBlank();
+        }
+
+        /** True se il valore e un timestamp ISO, con o senza offset. */
+        public boolean isParsed() {
+            return parsed;
+        }
+
+        /** True se il valore e un timestamp ISO con offset. */
+        public boolean hasOffset() {
+            return parsed && offset != null;
+        }
+
+        /** True se il valore e un timestamp ISO senza offset. */
+        public boolean isLocal() {
+            return parsed && offset == null;
+        }
+
+        /** Secondi epoch dell'orario locale (come se fosse UTC). */
+        public long getEpochSecond() {
+            return epochSecond;
+        }
+
+        public int getNano() {
+            return nano;
+        }
+
+        /** Offset del testo, null per i timestamp locali. */
+        public ZoneOffset getOffset() {
+            return offset;
+        }
+
+        /** Secondi epoch dell'istante, per i timestamp con offset. */
+        public long getInstantSecond() {
+            return epochSecond - offset.getTotalSeconds();
+        }
+
+        /** Orario locale (l'offset viene ignorato). */
+        public LocalDateTime toLocalDateTime() {
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        }
+
+        /** Testo attuale del valore, null se assente. */
+        public String text() {
+            return style == Style.TEXT ? text : format();
+        }
+
+        /** Cifre di frazione del testo attuale, come le conta {@link TimeUtils#addMinutesToTimestamp}. */
+        public int fractionDigits() {
+            return switch (style) {
+                case TEXT -> TimeUtils.detectFractionDigits(text.trim());
+                case FIXED -> fractionDigits;
+                case ISO -> nano == 0 ? 0 : 9 - trailingZeros(nano);
+                case TO_STRING -> nano == 0 ? 0 : nano % 1_000_000 == 0 ? 3 : nano % 1_000 == 0 ? 6 : 9;
+            };
+        }
+
+        /**
+         * Imposta un orario locale (offset rimosso) scritto come ISO_LOCAL_DATE_TIME.
+         *
+         * @param epochSecond secondi epoch dell'orario locale
+         * @param nano nanosecondi
+         */
+        public void setLocal(long epochSecond, int nano) {
+            set(epochSecond, nano, null, Style.ISO, 0);
+        }
+
+        /**
+         * Imposta un orario scritto con un numero fisso di cifre di frazione, con l'offset se presente.
+         *
+         * @param epochSecond secondi epoch dell'orario locale
+         * @param nano nanosecondi
+         * @param offset offset, null per un orario locale
+         * @param fractionDigits cifre di frazione
+         */
+        public void setFixed(long epochSecond, int nano, ZoneOffset offset, int fractionDigits) {
+            set(epochSecond, nano, offset, Style.FIXED, fractionDigits);
+        }
+
+        /**
+         * Imposta un orario locale scritto come LocalDateTime.toString().
+         *
+         * @param epochSecond secondi epoch dell'orario locale
+         * @param nano nanosecondi
+         */
+        public void setLocalToString(long epochSecond, int nano) {
+            set(epochSecond, nano, null, Style.TO_STRING, 0);
+        }
+
+        /**
+         * Sostituisce il valore con un testo, riletto come al caricamento dalla mappa.
+         *
+         * @param value nuovo testo
+         */
+        public void setText(String value) {
+            read(value);
+            period.source.put(period.keyOf(this), value);
+        }
+
+        private void set(long epochSecond, int nano, ZoneOffset offset, Style style, int fractionDigits) {
+            this.epochSecond = epochSecond;
+            this.nano = nano;
+            this.offset = offset;
+            this.style = style;
+            this.fractionDigits = fractionDigits;
+            this.parsed = true;
+            this.text = null;
+            period.modified = true;
+        }
+
+        private String format() {
+            LocalDateTime local = toLocalDateTime();
+            return switch (style) {
+                case TEXT -> text;
+                case ISO -> DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(local);
+                case FIXED -> offset != null
+                        ? TimeUtils.buildFormatter(true, fractionDigits).format(OffsetDateTime.of(local, offset))
+                        : TimeUtils.buildFormatter(false, fractionDigits).format(local);
+                case TO_STRING -> local.toString();
+            };
+        }
+
+        private static int trailingZeros(int nano) {
+            int zeros = 0;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                zeros++;
+            }
+            return zeros;
+        }
+    }
+
+    private String keyOf(Timestamp timestamp) {
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] == timestamp) {
+                return keys[i];
+            }
+        }
+        throw new IllegalStateException("Timestamp not bound to this period");
+    }
+}
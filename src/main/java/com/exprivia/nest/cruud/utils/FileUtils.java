@@ -1,12 +1,15 @@
 package com.exprivia.nest.cruud.utils;
 
 import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
-import com.fasterxml.jackson.annotation.JsonInclude;
+import com.exprivia.nest.cruud.dto.urbandataset.UrbanDatasetDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -43,6 +46,26 @@ public final class FileUtils {
         return List.of(); // returned void list if files doesn't exist
     }
 
+    /**
+     * Method to get the regular files of a folder whose name ends with an extension (ignoring case).
+     *
+     * @param folderPath that include files
+     * @param extension name suffix, e.g. ".csv"
+     * @return files path, empty when the folder doesn't exist
+     */
+    public static List<Path> getFilesFromPath(String folderPath, String extension) {
+        String suffix = extension.toLowerCase();
+        try (Stream<Path> files = Files.list(Paths.get(folderPath))) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(suffix))
+                    .toList();
+        } catch (IOException e) {
+            log.error("Error: {} -> path doesn't exist or not contains {} files!", e.getMessage(), extension);
+        }
+
+        return List.of();
+    }
+
     /**
      * Method to clean files completed from folder path.
      *
@@ -70,7 +93,8 @@ public final class FileUtils {
     }
 
     /**
-     * Method to create a file into a specific path.
+     * Method to create a file into a specific path. The rows of values.line are streamed one by
+     * one through {@link UrbanDatasetWriter}; the file content is the same as ObjectMapper.writeValue.
      *
      * @param createFilePath file path output
      * @param urbanDataset urban data set that
@@ -79,15 +103,42 @@ public final class FileUtils {
      * @throws IOException error
      */
     public static void createFile(String createFilePath, ResultUrbanDataset urbanDataset, ObjectMapper objectMapper) throws IOException {
-        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        Path path = Paths.get(createFilePath);
+        createFile(createFilePath, urbanDataset, objectMapper, OutputCompression.NONE);
+    }
 
-        // Create parent folders when missing.
-        if (path.getParent() != null) {
-            Files.createDirectories(path.getParent());
+    /**
+     * Method to create a compressed file into a specific path. The compression extension (.gz,
+     * .zst) is appended to the given path and the JSON is compressed while it is written.
+     *
+     * @param createFilePath file path output, without compression extension
+     * @param urbanDataset urban data set that
+     * @param objectMapper object to write a json
+     * @param compression output compression
+     * @return path of the written file
+     *
+     * @throws IOException error
+     */
+    public static Path createFile(String createFilePath, ResultUrbanDataset urbanDataset, ObjectMapper objectMapper,
+                                  OutputCompression compression) throws IOException {
+        Path path = Paths.get(createFilePath + compression.getExtension());
+        UrbanDatasetDto dataset = urbanDataset != null ? urbanDataset.getUrbanDataset() : null;
+
+        if (dataset == null || dataset.getValues() == null || dataset.getValues().getLine() == null) {
+            // Without values.line there is nothing to stream: let Jackson write the whole object.
+            ObjectWriter writer = UrbanDatasetWriter.writerFor(objectMapper);
+            try (OutputStream output = UrbanDatasetWriter.openOutput(path, false, compression)) {
+                writer.writeValue(output, urbanDataset);
+            }
+            return path;
         }
 
-        objectMapper.writeValue(new File(createFilePath), urbanDataset);
+        try (UrbanDatasetWriter writer = UrbanDatasetWriter.open(path.toString(), dataset.getSpecification(),
+                dataset.getContext(), objectMapper, false, compression)) {
+            for (ResultValueDto value : dataset.getValues().getLine()) {
+                writer.writeLine(value);
+            }
+        }
+        return path;
     }
 
     /**
@@ -0,0 +1,255 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.exceptions.CsvMalformedLineException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lettore CSV su file mappato in memoria (FileChannel.map): tokenizza direttamente i byte senza
+ * decodificare l'intero file in char[] e crea le stringhe solo per le colonne indicate con
+ * {@link #retainColumns(boolean[])}; le altre celle restano null.
+ * Le righe che contengono virgolette o il carattere di escape vengono delegate al CSVParser di
+ * OpenCSV, cosi il risultato coincide con quello del CSVReader (fine riga \n, \r o \r\n e campi
+ * quotati su piu righe compresi). Il file viene mappato a finestre, quindi anche oltre 2 GB.
+ */
+public final class MappedCsvReader implements CsvLineReader {
+
+    private static final long DEFAULT_WINDOW = 256L << 20;
+
+    private final FileChannel channel;
+    private final long end;
+    private final long windowSize;
+    private final char separator;
+    private final Charset charset;
+    private final CSVParser parser;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private boolean[] retained;
+    private byte[] scratch = new byte[256];
+    private int[] cellBounds = new int[64];
+    private boolean reuseLines;
+    private String[] lineBuffer;
+
+    private MappedCsvReader(FileChannel channel, long start, long end, long windowSize, char separator, Charset charset) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+        this.windowSize = windowSize;
+        this.separator = separator;
+        this.charset = charset;
+        this.parser = new CSVParserBuilder().withSeparator(separator).build();
+    }
+
+    /**
+     * Apre l'intero file.
+     *
+     * @param path file CSV
+     * @param separator separatore di colonna
+     * @param charset codifica del file
+     * @return reader posizionato sulla prima riga
+     *
+     * @throws IOException error
+     */
+    public static MappedCsvReader open(Path path, char separator, Charset charset) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedCsvReader(channel, 0, channel.size(), DEFAULT_WINDOW, separator, charset);
+    }
+
+    /**
+     * Apre solo l'intervallo [start, end) del file, che deve iniziare e finire su un confine di riga.
+     *
+     * @param path file CSV
+     * @param start primo byte
+     * @param end byte successivo all'ultimo
+     * @param separator separatore di colonna
+     * @param charset codifica del file
+     * @return reader posizionato sulla prima riga dell'intervallo
+     *
+     * @throws IOException error
+     */
+    public static MappedCsvReader open(Path path, long start, long end, char separator, Charset charset) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedCsvReader(channel, start, Math.min(end, channel.size()), DEFAULT_WINDOW, separator, charset);
+    }
+
+    /** Variante con finestra di mappatura esplicita. */
+    static MappedCsvReader open(Path path, char separator, Charset charset, long windowSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedCsvReader(channel, 0, channel.size(), windowSize, separator, charset);
+    }
+
+    @Override
+    public void retainColumns(boolean[] columns) {
+        this.retained = columns != null ? Arrays.copyOf(columns, columns.length) : null;
+    }
+
+    @Override
+    public void reuseLines() {
+        this.reuseLines = true;
+    }
+
+    @Override
+    public String[] readNext() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        int lineStart = mapLine();
+        int lineEnd = lineStart;
+        int limit = (int) Math.min(window.limit(), end - windowStart);
+        int cells = 0;
+        boolean special = false;
+        cellBounds[cells++] = lineStart;
+        while (lineEnd < limit) {
+            byte b = window.get(lineEnd);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            if (b == '"' || b == '\\') {
+                special = true;
+            } else if (b == separator) {
+                if (cells == cellBounds.length) {
+                    cellBounds = Arrays.copyOf(cellBounds, cells * 2);
+                }
+                cellBounds[cells++] = lineEnd + 1;
+            }
+            lineEnd++;
+        }
+        position = windowStart + skipTerminator(lineEnd, limit);
+
+        if (special) {
+            return parseWithOpenCsv(lineStart, lineEnd);
+        }
+
+        String[] line = lineArray(cells);
+        for (int i = 0; i < cells; i++) {
+            if (retained != null && (i >= retained.length || !retained[i])) {
+                continue;
+            }
+            int cellStart = cellBounds[i];
+            int cellEnd = i + 1 < cells ? cellBounds[i + 1] - 1 : lineEnd;
+            line[i] = decode(cellStart, cellEnd);
+        }
+        return line;
+    }
+
+    /**
+     * Array della riga: con {@link #reuseLines()} e lo stesso finche il numero di celle non cambia.
+     * Le celle non trattenute non vengono mai scritte, quindi restano null anche nell'array riusato.
+     */
+    private String[] lineArray(int cells) {
+        if (!reuseLines) {
+            return new String[cells];
+        }
+        if (lineBuffer == null || lineBuffer.length != cells) {
+            lineBuffer = new String[cells];
+        }
+        return lineBuffer;
+    }
+
+    /**
+     * Riga con virgolette o escape: il CSVParser riceve le righe fisiche finche il campo quotato
+     * non e chiuso, esattamente come farebbe il CSVReader.
+     */
+    private String[] parseWithOpenCsv(int lineStart, int lineEnd) throws IOException {
+        String[] result = parser.parseLineMulti(decode(lineStart, lineEnd));
+        while (parser.isPending()) {
+            if (position >= end) {
+                throw new CsvMalformedLineException("Unterminated quoted field at end of CSV line", 0, parser.getPendingText());
+            }
+            int start = mapLine();
+            int limit = (int) Math.min(window.limit(), end - windowStart);
+            int stop = start;
+            while (stop < limit) {
+                byte b = window.get(stop);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                stop++;
+            }
+            position = windowStart + skipTerminator(stop, limit);
+            String[] next = parser.parseLineMulti(decode(start, stop));
+            if (next.length > 0) {
+                String[] combined = Arrays.copyOf(result, result.length + next.length);
+                System.arraycopy(next, 0, combined, result.length, next.length);
+                result = combined;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Garantisce che la riga fisica che parte da position sia interamente nella finestra mappata
+     * e restituisce il suo offset nella finestra.
+     */
+    private int mapLine() throws IOException {
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            remap(position);
+        }
+        while (true) {
+            int offset = (int) (position - windowStart);
+            int limit = (int) Math.min(window.limit(), end - windowStart);
+            for (int i = offset; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    // \r\n a cavallo della finestra: serve anche il byte successivo
+                    if (b == '\r' && i + 1 == window.limit() && windowStart + window.limit() < end) {
+                        break;
+                    }
+                    return offset;
+                }
+            }
+            if (windowStart + limit >= end) {
+                return offset;
+            }
+            if (offset == 0) {
+                throw new IOException("CSV line longer than the mapping window (" + windowSize + " bytes)");
+            }
+            remap(position);
+        }
+    }
+
+    private void remap(long start) throws IOException {
+        long length = Math.min(windowSize, end - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+    }
+
+    private int skipTerminator(int index, int limit) {
+        if (index < limit && window.get(index) == '\r') {
+            index++;
+            if (index < limit && window.get(index) == '\n') {
+                index++;
+            }
+        } else if (index < limit) {
+            index++;
+        }
+        return index;
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        window.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -9,7 +9,6 @@ import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
 import com.exprivia.nest.cruud.utils.TimeUtils;
 
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -95,46 +94,54 @@ public final class MappingUtils {
     }
 
     /**
-     * Method to add new value into property list.
+     * Method to get a correct value after elaboration.
      *
-     * @param property to find
-     * @param header of csv
-     * @param line value from csv
-     * @param propertiesValue list properties value
-     * @param dictionary dictionary from getMapping
+     * @param header from csv
+     * @param value from csv
+     * @param dictionary value from mapping
+     * @return string value
      */
-    public static void addValueToPropertyList(String property,
-                HashMap<String, LinkedList<Integer>> finalHeaderList, int findValue, HashMap<String, String> line,
-                List<PropertyValueDto> propertiesValue, List<ValueDto> dictionary) {
-
-        String[] header = finalHeaderList.keySet().toArray(new String[0]);
-
-        for (int k = 0; k < header.length; k++) {
-            var columnName = header[k];
-
-            if (columnName.equalsIgnoreCase(property)) {
-                String raw = line.get(columnName);
-                if (raw == null) {
-                    return;
-                }
-                propertiesValue.add(PropertyValueDto.builder()
-                        .name(columnName)
-                        .val(getCorrectValue(columnName, raw, dictionary))
-                        .build());
-            }
+    public static String getCorrectValue(String header, String value, List<ValueDto> dictionary) {
+
+        String sanitized = normalizeDecimalSeparator(value);
+
+        if (sanitized == null || sanitized.isBlank()) {
+            return "0";
         }
 
+        return applyValueDto(sanitized, resolveValueDto(header, dictionary));
+
     }
 
     /**
-     * Method to get a correct value after elaboration.
+     * Method to get a correct value after elaboration, with the mapping already resolved.
      *
-     * @param header from csv
      * @param value from csv
-     * @param dictionary value from mapping
+     * @param valueDto mapping of the column (null when the header has no mapping)
      * @return string value
      */
-    public static String getCorrectValue(String header, String value, List<ValueDto> dictionary) {
+    public static String getCorrectValue(String value, ValueDto valueDto) {
+
+        String sanitized = normalizeDecimalSeparator(value);
+
+        if (sanitized == null || sanitized.isBlank()) {
+            return "0";
+        }
+
+        return applyValueDto(sanitized, valueDto);
+
+    }
+
+    /**
+     * Method to get a correct value after elaboration, with the mapping and its function already
+     * compiled.
+     *
+     * @param value from csv
+     * @param valueDto mapping of the column (null when the header has no mapping)
+     * @param function compiled function of the mapping (null when the mapping has none)
+     * @return string value
+     */
+    public static String getCorrectValue(String value, ValueDto valueDto, MathFunction function) {
 
         String sanitized = normalizeDecimalSeparator(value);
 
@@ -142,20 +149,43 @@ public final class MappingUtils {
             return "0";
         }
 
+        if (valueDto == null) {
+            return sanitized;
+        }
+
+        String result = function != null ? function.apply(sanitized) : sanitized;
+
+        return result != null ? result : "0";
+
+    }
+
+    /**
+     * Method to find the mapping of a header, by name or by name for negative values.
+     *
+     * @param header from csv
+     * @param dictionary value from mapping
+     * @return first matching mapping or null
+     */
+    public static ValueDto resolveValueDto(String header, List<ValueDto> dictionary) {
         for (ValueDto valueDto : dictionary) {
             if (valueDto.getName().equalsIgnoreCase(header) ||
                     (valueDto.getNameForNegative() != null && valueDto.getNameForNegative().equalsIgnoreCase(header))) {
-
-                String result = (valueDto.getFunction() == null || valueDto.getFunction().isBlank())
-                        ? sanitized
-                        : Maths.execute(sanitized, valueDto.getFunction(), valueDto.getAlternativeValue());
-
-                return result != null ? result : "0";
+                return valueDto;
             }
         }
+        return null;
+    }
+
+    private static String applyValueDto(String sanitized, ValueDto valueDto) {
+        if (valueDto == null) {
+            return sanitized;
+        }
 
-        return sanitized;
+        String result = (valueDto.getFunction() == null || valueDto.getFunction().isBlank())
+                ? sanitized
+                : Maths.execute(sanitized, valueDto.getFunction(), valueDto.getAlternativeValue());
 
+        return result != null ? result : "0";
     }
 
     /**
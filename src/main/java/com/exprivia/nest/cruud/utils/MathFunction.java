@@ -0,0 +1,392 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Funzione del mapping (ValueDto.function) compilata una sola volta: num, &gt;0, +x, *x, /x, -x
+ * e catene di funzioni separate da ';' (es. "num;*3.6;/1000"), applicate in ordine.
+ * <p>
+ * In modalita esatta il risultato e identico a quello di {@link Maths#execute}: i numeri vengono
+ * letti come decimali scalati su long (valore senza virgola + numero di decimali) e le operazioni
+ * lavorano sui long, passando a BigDecimal solo in caso di overflow o di divisioni non
+ * riconducibili a potenze di dieci. In modalita double le operazioni usano l'aritmetica primitiva
+ * (piu veloce, ma con gli arrotondamenti binari del double).
+ */
+public final class MathFunction {
+
+    /** Separatore delle funzioni in catena. */
+    public static final char CHAIN_SEPARATOR = ';';
+
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final long[] LONG_POW10 = new long[MAX_LONG_DIGITS + 1];
+    private static final double[] DOUBLE_POW10 = new double[23];
+
+    static {
+        LONG_POW10[0] = 1;
+        for (int i = 1; i < LONG_POW10.length; i++) {
+            LONG_POW10[i] = LONG_POW10[i - 1] * 10;
+        }
+        DOUBLE_POW10[0] = 1;
+        for (int i = 1; i < DOUBLE_POW10.length; i++) {
+            DOUBLE_POW10[i] = DOUBLE_POW10[i - 1] * 10;
+        }
+    }
+
+    private final Step[] steps;
+
+    private MathFunction(Step[] steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Compila la funzione configurata sul mapping.
+     *
+     * @param function funzione (o catena di funzioni)
+     * @param alternativeValue valore restituito da num e &gt;0 per input non validi
+     * @param exactDecimal true per risultati decimali esatti, false per l'aritmetica double
+     * @return funzione compilata, null se la funzione e assente
+     */
+    public static MathFunction compile(String function, String alternativeValue, boolean exactDecimal) {
+        if (function == null || function.isBlank()) {
+            return null;
+        }
+        String[] parts = function.indexOf(CHAIN_SEPARATOR) >= 0
+                ? function.split(String.valueOf(CHAIN_SEPARATOR))
+                : new String[]{function};
+        Step[] steps = new Step[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            steps[i] = compileStep(parts.length > 1 ? parts[i].trim() : parts[i], alternativeValue, exactDecimal);
+        }
+        return new MathFunction(steps);
+    }
+
+    /**
+     * Applica la funzione al valore letto dal CSV.
+     *
+     * @param value valore della cella
+     * @return valore trasformato
+     */
+    public String apply(String value) {
+        String result = value;
+        for (Step step : steps) {
+            result = step.apply(result);
+        }
+        return result;
+    }
+
+    private static Step compileStep(String function, String alternativeValue, boolean exactDecimal) {
+        if (function.equalsIgnoreCase("num")) {
+            return value -> isNumber(MappingUtils.normalizeDecimalSeparator(value))
+                    ? MappingUtils.normalizeDecimalSeparator(value)
+                    : alternativeValue;
+        }
+        if (!function.isEmpty() && function.charAt(0) == '>') {
+            return value -> {
+                String normalized = MappingUtils.normalizeDecimalSeparator(value);
+                return isNumber(normalized) && Double.parseDouble(normalized) >= 0 ? normalized : alternativeValue;
+            };
+        }
+        char operator = function.isEmpty() ? 0 : function.charAt(0);
+        String operand = function.isEmpty() ? "" : MappingUtils.normalizeDecimalSeparator(function.substring(1));
+        BigDecimal exactOperand;
+        try {
+            exactOperand = new BigDecimal(operand);
+        } catch (NumberFormatException e) {
+            // Come in Maths.execute l'errore emerge solo quando la funzione incontra un numero.
+            return value -> {
+                if (!isPlainDecimal(MappingUtils.normalizeDecimalSeparator(value))) {
+                    return value;
+                }
+                throw new NumberFormatException("Invalid operand in function '" + function + "'");
+            };
+        }
+        return exactDecimal
+                ? new ExactArithmetic(operator, exactOperand)
+                : new DoubleArithmetic(operator, exactOperand.doubleValue());
+    }
+
+    /** Un passo della catena. */
+    private interface Step {
+        String apply(String value);
+    }
+
+    /**
+     * Aritmetica decimale esatta: stesso risultato (e stessa stringa) di BigDecimal in
+     * Maths.execute, calcolato su long quando possibile.
+     */
+    private static final class ExactArithmetic implements Step {
+
+        private final char operator;
+        private final BigDecimal operand;
+        private final boolean longOperand;
+        private final long operandUnscaled;
+        private final int operandScale;
+        // Divisione per 10^k: il quoziente e lo stesso valore con k decimali in piu.
+        private final int powerOfTenDivisor;
+
+        private ExactArithmetic(char operator, BigDecimal operand) {
+            this.operator = operator;
+            this.operand = operand;
+            this.longOperand = operand.precision() <= MAX_LONG_DIGITS && operand.scale() >= 0;
+            this.operandUnscaled = longOperand ? operand.unscaledValue().longValue() : 0;
+            this.operandScale = operand.scale();
+            this.powerOfTenDivisor = longOperand ? powerOfTen(operandUnscaled) : -1;
+        }
+
+        @Override
+        public String apply(String value) {
+            String normalized = MappingUtils.normalizeDecimalSeparator(value);
+            if (!isPlainDecimal(normalized)) {
+                return value;
+            }
+            if (operator != '+' && operator != '-' && operator != '*' && operator != '/') {
+                // Operatore sconosciuto: il valore resta quello letto, con la sola resa intera.
+                return integralOrText(Double.parseDouble(normalized), normalized);
+            }
+            int scale = scaleOf(normalized);
+            long unscaled = longOperand ? parseUnscaled(normalized) : Long.MIN_VALUE;
+            if (unscaled != Long.MIN_VALUE) {
+                String result = applyOnLongs(unscaled, scale);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return applyOnBigDecimal(new BigDecimal(normalized));
+        }
+
+        private String applyOnLongs(long unscaled, int scale) {
+            try {
+                switch (operator) {
+                    case '+', '-': {
+                        int resultScale = Math.max(scale, operandScale);
+                        long left = Math.multiplyExact(unscaled, pow10(resultScale - scale));
+                        long right = Math.multiplyExact(operandUnscaled, pow10(resultScale - operandScale));
+                        long sum = operator == '+' ? Math.addExact(left, right) : Math.subtractExact(left, right);
+                        return format(sum, resultScale);
+                    }
+                    case '*':
+                        return format(Math.multiplyExact(unscaled, operandUnscaled), scale + operandScale);
+                    case '/': {
+                        if (powerOfTenDivisor < 0) {
+                            return null;
+                        }
+                        // Scala preferita di BigDecimal.divide: scale - operandScale, alzata solo se serve.
+                        int preferred = scale - operandScale;
+                        int resultScale = scale + powerOfTenDivisor - operandScale;
+                        long quotient = unscaled;
+                        while (resultScale > preferred && quotient % 10 == 0) {
+                            quotient /= 10;
+                            resultScale--;
+                        }
+                        return resultScale < 0 ? null : format(quotient, resultScale);
+                    }
+                    default:
+                        return null;
+                }
+            } catch (ArithmeticException overflow) {
+                return null;
+            }
+        }
+
+        private String applyOnBigDecimal(BigDecimal a) {
+            BigDecimal result = switch (operator) {
+                case '+' -> a.add(operand);
+                case '*' -> a.multiply(operand);
+                case '/' -> a.divide(operand);
+                default -> a.subtract(operand);
+            };
+            String text = String.valueOf(result);
+            return integralOrText(Double.parseDouble(text), text);
+        }
+
+        /** Stringa di BigDecimal.valueOf(unscaled, scale), poi la resa intera di Maths.execute. */
+        private static String format(long unscaled, int scale) {
+            if (scale > MAX_LONG_DIGITS) {
+                return formatBig(unscaled, scale);
+            }
+            if (unscaled % LONG_POW10[scale] == 0) {
+                return String.valueOf((int) (double) (unscaled / LONG_POW10[scale]));
+            }
+            int digits = digits(unscaled);
+            if (digits - 1 - scale < -6) {
+                return formatBig(unscaled, scale);
+            }
+            String text = plain(unscaled, scale, digits);
+            double approx = Math.abs(unscaled) < MAX_EXACT_DOUBLE && scale < DOUBLE_POW10.length
+                    ? unscaled / DOUBLE_POW10[scale]
+                    : Double.parseDouble(text);
+            return integralOrText(approx, text);
+        }
+
+        private static String formatBig(long unscaled, int scale) {
+            String text = String.valueOf(BigDecimal.valueOf(unscaled, scale));
+            return integralOrText(Double.parseDouble(text), text);
+        }
+
+        private static String plain(long unscaled, int scale, int digits) {
+            StringBuilder builder = new StringBuilder(digits + 3);
+            String magnitude = unscaled == Long.MIN_VALUE ? "9223372036854775808" : String.valueOf(Math.abs(unscaled));
+            if (unscaled < 0) {
+                builder.append('-');
+            }
+            if (digits > scale) {
+                builder.append(magnitude, 0, digits - scale).append('.').append(magnitude, digits - scale, digits);
+            } else {
+                builder.append("0.");
+                builder.append("0".repeat(scale - digits));
+                builder.append(magnitude);
+            }
+            return builder.toString();
+        }
+
+        private static long pow10(int exponent) {
+            if (exponent > MAX_LONG_DIGITS) {
+                throw new ArithmeticException("scale overflow");
+            }
+            return LONG_POW10[exponent];
+        }
+
+        private static int powerOfTen(long value) {
+            for (int i = 0; i < LONG_POW10.length; i++) {
+                if (LONG_POW10[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int digits(long value) {
+            if (value == Long.MIN_VALUE) {
+                return 19;
+            }
+            long magnitude = Math.abs(value);
+            int digits = 1;
+            while (digits < LONG_POW10.length && magnitude >= LONG_POW10[digits]) {
+                digits++;
+            }
+            return digits;
+        }
+    }
+
+    /** Aritmetica su double primitivi. */
+    private static final class DoubleArithmetic implements Step {
+
+        private final char operator;
+        private final double operand;
+
+        private DoubleArithmetic(char operator, double operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        public String apply(String value) {
+            String normalized = MappingUtils.normalizeDecimalSeparator(value);
+            if (!isPlainDecimal(normalized)) {
+                return value;
+            }
+            double a = Double.parseDouble(normalized);
+            double result = switch (operator) {
+                case '+' -> a + operand;
+                case '*' -> a * operand;
+                case '/' -> {
+                    if (operand == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    yield a / operand;
+                }
+                case '-' -> a - operand;
+                default -> a;
+            };
+            String text = Double.toString(result);
+            if (text.indexOf('E') >= 0) {
+                text = BigDecimal.valueOf(result).stripTrailingZeros().toPlainString();
+            }
+            return integralOrText(result, text);
+        }
+    }
+
+    /** Resa finale di Maths.execute: i valori interi diventano int, gli altri restano testo. */
+    private static String integralOrText(double value, String text) {
+        return value % 1 == 0 ? String.valueOf((int) value) : text;
+    }
+
+    /** Numero senza segni o esponenti: -?\d+(\.\d+)? */
+    static boolean isPlainDecimal(String value) {
+        if (value == null) {
+            return false;
+        }
+        int length = value.length();
+        int i = 0;
+        if (i < length && value.charAt(i) == '-') {
+            i++;
+        }
+        int integerStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        if (i == integerStart) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+        if (value.charAt(i) != '.') {
+            return false;
+        }
+        int fractionStart = ++i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        return i == length && i > fractionStart;
+    }
+
+    /**
+     * Verifica se Double.parseDouble accetterebbe il valore, senza passare dall'eccezione per i
+     * casi comuni.
+     */
+    private static boolean isNumber(String value) {
+        if (value == null) {
+            return false;
+        }
+        if (isPlainDecimal(value)) {
+            return true;
+        }
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int scaleOf(String plainDecimal) {
+        int point = plainDecimal.indexOf('.');
+        return point < 0 ? 0 : plainDecimal.length() - point - 1;
+    }
+
+    /** Valore senza virgola di un decimale semplice, Long.MIN_VALUE se non sta in 18 cifre. */
+    private static long parseUnscaled(String plainDecimal) {
+        boolean negative = plainDecimal.charAt(0) == '-';
+        long unscaled = 0;
+        int significant = 0;
+        for (int i = negative ? 1 : 0; i < plainDecimal.length(); i++) {
+            char c = plainDecimal.charAt(i);
+            if (c == '.') {
+                continue;
+            }
+            if (significant > 0 || c != '0') {
+                if (++significant > MAX_LONG_DIGITS) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            unscaled = unscaled * 10 + (c - '0');
+        }
+        return negative ? -unscaled : unscaled;
+    }
+}
@@ -0,0 +1,66 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressione dei file UD in uscita. La compressione avviene in streaming sull'OutputStream del
+ * file, quindi non viene mai scritta una copia non compressa; zstd usa la libreria zstd-jni.
+ */
+public enum OutputCompression {
+
+    NONE(""),
+    GZIP(".gz"),
+    ZSTD(".zst");
+
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private final String extension;
+
+    OutputCompression(String extension) {
+        this.extension = extension;
+    }
+
+    /** Estensione da aggiungere dopo .json (vuota senza compressione). */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Risolve il valore configurato sull'estrazione: null, vuoto o "none" per nessuna compressione.
+     *
+     * @param value nome della compressione (none, gzip, zstd)
+     * @return compressione
+     */
+    public static OutputCompression of(String value) {
+        if (value == null || value.isBlank()) {
+            return NONE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported output compression: " + value, e);
+        }
+    }
+
+    /**
+     * Avvolge lo stream del file con il compressore; la chiusura dello stream restituito scrive
+     * il trailer e chiude lo stream sottostante.
+     *
+     * @param output stream del file
+     * @return stream in cui scrivere il JSON
+     *
+     * @throws IOException error
+     */
+    public OutputStream wrap(OutputStream output) throws IOException {
+        return switch (this) {
+            case NONE -> output;
+            case GZIP -> new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+            case ZSTD -> new ZstdOutputStream(output);
+        };
+    }
+}
@@ -0,0 +1,191 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Periodo di una colonna CSV compilato una sola volta dal suo header: l'header viene letto al
+ * momento della compilazione (range HH:mm-HH:mm oppure indice eaN) e ridotto ai minuti di inizio
+ * e fine, cosi per ogni riga restano il parsing della data e qualche operazione intera.
+ * Il risultato e lo stesso di {@link TimeUtils#getStartAndEndTimeFromString}; gli header che non
+ * si riducono a minuti validi nella giornata, e le date in un formato non riconosciuto, passano
+ * per quel metodo, che ne conserva anche gli errori.
+ * L'istanza e immutabile e puo essere condivisa tra conversioni concorrenti.
+ */
+public final class PeriodTemplate {
+
+    private static final Pattern SLOT_NUMBER_PATTERN = Pattern.compile("\\d+");
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private enum Kind {
+        /** Minuti di inizio e fine letti da un header HH:mm-HH:mm. */
+        RANGE,
+        /** Slot numerato eaN: fine = inizio + slice. */
+        SLOT,
+        /** L'header non contribuisce: data e periodo vengono uniti riga per riga. */
+        MERGE,
+        /** Header non riducibile: ogni riga usa il calcolo completo. */
+        FALLBACK
+    }
+
+    private final String periodHeader;
+    private final int slice;
+    private final Kind kind;
+    private final int startMinutes;
+    private final int endMinutes;
+
+    private PeriodTemplate(String periodHeader, int slice, Kind kind, int startMinutes, int endMinutes) {
+        this.periodHeader = periodHeader;
+        this.slice = slice;
+        this.kind = kind;
+        this.startMinutes = startMinutes;
+        this.endMinutes = endMinutes;
+    }
+
+    /**
+     * Compila il template di una colonna periodo.
+     *
+     * @param periodHeader header della colonna periodo (es. "00:00-00:15" o "ea1")
+     * @param slice durata slot in minuti (se >0); se <0 indica un range esplicito
+     * @return template della colonna
+     */
+    public static PeriodTemplate compile(String periodHeader, int slice) {
+        try {
+            if (slice < 0) {
+                return range(periodHeader, slice);
+            }
+            if (slice == 0) {
+                if (periodHeader != null && periodHeader.contains("-") && periodHeader.contains(":")
+                        && periodHeader.split("-").length == 2) {
+                    return range(periodHeader, slice);
+                }
+                return new PeriodTemplate(periodHeader, slice, Kind.MERGE, 0, 0);
+            }
+            if (periodHeader == null) {
+                return new PeriodTemplate(null, slice, Kind.FALLBACK, 0, 0);
+            }
+            // Come nel calcolo completo vince l'ultimo numero dell'header
+            Matcher matcher = SLOT_NUMBER_PATTERN.matcher(periodHeader);
+            boolean resolved = false;
+            boolean valid = true;
+            int start = 0;
+            int end = 0;
+            while (matcher.find()) {
+                end = Integer.parseInt(matcher.group()) * slice;
+                start = end - slice;
+                valid &= isMinuteOfDay(start) && isMinuteOfDay(end);
+                resolved = true;
+            }
+            if (!resolved) {
+                return new PeriodTemplate(periodHeader, slice, Kind.MERGE, 0, 0);
+            }
+            return new PeriodTemplate(periodHeader, slice, valid ? Kind.SLOT : Kind.FALLBACK, start, end);
+        } catch (RuntimeException e) {
+            return new PeriodTemplate(periodHeader, slice, Kind.FALLBACK, 0, 0);
+        }
+    }
+
+    /**
+     * Costruisce il periodo di una riga rilevando il formato della data.
+     *
+     * @param date colonna data (puo contenere anche l'orario)
+     * @param periodValue valore della colonna periodo
+     * @return mappa con start_ts/end_ts, vuota se il periodo non e determinabile
+     */
+    public HashMap<String, Object> resolve(String date, String periodValue) {
+        return resolve(date, periodValue, new DateColumnFormat());
+    }
+
+    /**
+     * Costruisce il periodo di una riga usando il formato data gia rilevato per il file.
+     *
+     * @param date colonna data (puo contenere anche l'orario)
+     * @param periodValue valore della colonna periodo
+     * @param dates formato della colonna data del file
+     * @return mappa con start_ts/end_ts, vuota se il periodo non e determinabile
+     */
+    public HashMap<String, Object> resolve(String date, String periodValue, DateColumnFormat dates) {
+        return resolve(date, periodValue, dates.newReader());
+    }
+
+    /**
+     * Costruisce il periodo di una riga con il lettore della colonna data del thread corrente: le
+     * colonne periodo della stessa riga leggono la data una sola volta.
+     *
+     * @param date colonna data (puo contenere anche l'orario)
+     * @param periodValue valore della colonna periodo
+     * @param dates lettore della colonna data
+     * @return mappa con start_ts/end_ts, vuota se il periodo non e determinabile
+     */
+    public HashMap<String, Object> resolve(String date, String periodValue, DateColumnFormat.Reader dates) {
+        if (kind == Kind.FALLBACK) {
+            return TimeUtils.getStartAndEndTimeFromString(date, periodHeader, periodValue, slice);
+        }
+        HashMap<String, Object> period = new HashMap<>();
+        if (kind == Kind.MERGE) {
+            String candidate = TimeUtils.mergeDateAndTimeColumns(date, periodValue);
+            if (candidate != null && !candidate.isBlank()) {
+                period.put("start_ts", candidate);
+                period.put("end_ts", candidate);
+            }
+            TimeUtils.enforceSliceDuration(period, slice);
+            return period;
+        }
+
+        Temporal parsed = dates.parse(date);
+        if (parsed instanceof LocalDateTime dateTime) {
+            // La data contiene gia l'orario: i minuti dell'header non vengono usati
+            String timestamp = dateTime.toString();
+            period.put("start_ts", timestamp);
+            period.put("end_ts", timestamp);
+            TimeUtils.enforceSliceDuration(period, slice);
+            return period;
+        }
+        if (!(parsed instanceof LocalDate localDate) || localDate.getYear() < 1 || localDate.getYear() > 9999) {
+            return TimeUtils.getStartAndEndTimeFromString(date, periodHeader, periodValue, slice);
+        }
+        String day = dates.day();
+        period.put("start_ts", timestamp(dates.text(), day, startMinutes));
+        period.put("end_ts", timestamp(dates.text(), day, kind == Kind.SLOT ? startMinutes + slice : endMinutes));
+        return period;
+    }
+
+    private static PeriodTemplate range(String periodHeader, int slice) {
+        String[] time = periodHeader.split("-");
+        int start = minutes(time[0]);
+        int end = minutes(time[1]);
+        boolean valid = isMinuteOfDay(start) && isMinuteOfDay(end);
+        return new PeriodTemplate(periodHeader, slice, valid ? Kind.RANGE : Kind.FALLBACK, start, end);
+    }
+
+    private static int minutes(String time) {
+        String[] parts = time.split(":");
+        return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+    }
+
+    private static boolean isMinuteOfDay(int minutes) {
+        return minutes >= 0 && minutes < MINUTES_PER_DAY;
+    }
+
+    /** yyyy-MM-ddTHH:mm:00, lo stesso testo prodotto dal calcolo completo, composto nel buffer del lettore. */
+    private static String timestamp(char[] text, String day, int minutes) {
+        day.getChars(0, 10, text, 0);
+        text[10] = 'T';
+        writeTwoDigits(text, 11, minutes / 60);
+        text[13] = ':';
+        writeTwoDigits(text, 14, minutes % 60);
+        text[16] = ':';
+        text[17] = '0';
+        text[18] = '0';
+        return new String(text, 0, 19);
+    }
+
+    private static void writeTwoDigits(char[] text, int index, int value) {
+        text[index] = (char) ('0' + value / 10);
+        text[index + 1] = (char) ('0' + value % 10);
+    }
+}
@@ -0,0 +1,91 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dizionario dei nomi di property di una conversione: ogni nome viene registrato una sola volta
+ * e ha un id intero; tutte le property con quel nome condividono la stessa istanza di stringa.
+ * Ogni id ha anche un gruppo ({@link #fold(int)}) che riunisce i nomi uguali a meno di maiuscole,
+ * per i confronti che la conversione fa con equalsIgnoreCase.
+ * Si popola durante la compilazione del piano e poi si usa solo in lettura, anche da piu thread.
+ */
+public final class PropertyNames {
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, Integer> foldIds = new HashMap<>();
+    private final List<String> foldNames = new ArrayList<>();
+    private int[] folds = new int[8];
+
+    /**
+     * Id del nome, registrandolo se nuovo.
+     *
+     * @param name nome della property (anche null)
+     * @return id del nome
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        id = names.size();
+        names.add(name);
+        ids.put(name, id);
+        if (id == folds.length) {
+            folds = Arrays.copyOf(folds, id * 2);
+        }
+        String folded = name != null ? name.toLowerCase(Locale.ROOT) : null;
+        Integer fold = foldIds.get(folded);
+        if (fold == null || !sameIgnoringCase(foldNames.get(fold), name)) {
+            fold = foldNames.size();
+            foldNames.add(name);
+            foldIds.putIfAbsent(folded, fold);
+        }
+        folds[id] = fold;
+        return id;
+    }
+
+    /**
+     * Id di un nome gia registrato.
+     *
+     * @param name nome della property
+     * @return id, -1 se il nome non e nel dizionario
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /** Istanza condivisa del nome con l'id indicato. */
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    /** Gruppo del nome: due id hanno lo stesso gruppo se i nomi sono uguali a meno di maiuscole. */
+    public int fold(int id) {
+        return folds[id];
+    }
+
+    /** Numero di nomi registrati. */
+    public int size() {
+        return names.size();
+    }
+
+    /** Numero di gruppi di nomi uguali a meno di maiuscole. */
+    public int foldCount() {
+        return foldNames.size();
+    }
+
+    /**
+     * Il gruppo e indicizzato con toLowerCase, che per alcuni caratteri non coincide con
+     * equalsIgnoreCase: in quel caso il nome apre un gruppo suo.
+     */
+    private static boolean sameIgnoringCase(String first, String second) {
+        return first == null ? second == null : first.equalsIgnoreCase(second);
+    }
+}
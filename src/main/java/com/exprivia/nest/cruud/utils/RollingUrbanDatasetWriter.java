@@ -0,0 +1,344 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writer a parti di un UrbanDataset: le righe vengono scritte in un solo passaggio nei file
+ * [base]_N.json, passando alla parte successiva quando quella corrente ha raggiunto maxRowsPerUd
+ * righe. Gli id vengono numerati da 1 in ogni parte al momento della scrittura, senza modificare
+ * i ResultValueDto ricevuti.
+ * Ogni parte viene scritta in un file temporaneo .tmp e forzata su disco; solo alla chiusura,
+ * quando tutte le parti sono durevoli, i temporanei vengono rinominati in modo atomico. Se e stata
+ * scritta una sola parte il file prende il nome senza suffisso, come per gli UD non divisi.
+ * I nomi definitivi vengono prenotati creandoli in modo esclusivo: se un altro writer (anche di
+ * un'altra istanza) ha gia usato lo stesso path di base, le parti prendono la base [base]-2,
+ * [base]-3, ... invece di sovrascrivere i suoi file.
+ * Con un executor le parti piene vengono serializzate in parallelo: il chiamante copia le righe
+ * in un {@link UdValueBlock} colonnare (i DTO non restano in memoria) e al massimo maxPendingParts
+ * parti restano in attesa di scrittura.
+ * Con una compressione i file prendono l'estensione .json.gz o .json.zst; il writer somma i byte
+ * JSON e quelli scritti su disco di tutte le parti.
+ */
+@Slf4j
+public final class RollingUrbanDatasetWriter implements Closeable {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Distinct temporary files for writers started with the same path of base.
+    private final String tempId = UUID.randomUUID().toString();
+
+    private final String basePath;
+    private final SpecificationDto specificationDto;
+    private final ContextDto contextDto;
+    private final ObjectMapper objectMapper;
+    private final int maxRowsPerUd;
+    private final ExecutorService executor;
+    private final int maxPendingParts;
+    private final OutputCompression compression;
+    private final LongAdder jsonBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final List<Path> files = new ArrayList<>();
+    private final Deque<Future<Path>> pendingParts = new ArrayDeque<>();
+    private UdValueBlock partRows = new UdValueBlock();
+    private UrbanDatasetWriter writer;
+    private long lines;
+    private boolean closed;
+    private boolean finished;
+
+    /**
+     * Writer che scrive le parti una alla volta sul thread chiamante.
+     *
+     * @param basePath path di output senza suffisso ne estensione
+     * @param specificationDto specifica dell'UD
+     * @param contextDto contesto dell'UD
+     * @param objectMapper mapper usato per serializzare
+     * @param maxRowsPerUd righe massime per parte, 0 o negativo per un unico UD
+     */
+    public RollingUrbanDatasetWriter(String basePath, SpecificationDto specificationDto, ContextDto contextDto,
+                                     ObjectMapper objectMapper, int maxRowsPerUd) {
+        this(basePath, specificationDto, contextDto, objectMapper, maxRowsPerUd, null, 0, OutputCompression.NONE);
+    }
+
+    /**
+     * Writer che serializza le parti piene sull'executor indicato.
+     *
+     * @param basePath path di output senza suffisso ne estensione
+     * @param specificationDto specifica dell'UD
+     * @param contextDto contesto dell'UD
+     * @param objectMapper mapper usato per serializzare
+     * @param maxRowsPerUd righe massime per parte, 0 o negativo per un unico UD
+     * @param executor pool di scrittura, null per scrivere sul thread chiamante
+     * @param maxPendingParts parti accodate al pool prima di attendere la piu vecchia
+     * @param compression compressione dei file
+     */
+    public RollingUrbanDatasetWriter(String basePath, SpecificationDto specificationDto, ContextDto contextDto,
+                                     ObjectMapper objectMapper, int maxRowsPerUd, ExecutorService executor,
+                                     int maxPendingParts, OutputCompression compression) {
+        this.basePath = basePath;
+        this.specificationDto = specificationDto;
+        this.contextDto = contextDto;
+        this.objectMapper = objectMapper;
+        this.maxRowsPerUd = maxRowsPerUd;
+        // Without a part size there is a single part: nothing to parallelize.
+        this.executor = maxRowsPerUd > 0 ? executor : null;
+        this.maxPendingParts = Math.max(1, maxPendingParts);
+        this.compression = compression != null ? compression : OutputCompression.NONE;
+    }
+
+    /**
+     * Accoda una riga alla parte corrente, passando alla parte successiva se quella corrente e piena.
+     *
+     * @param value riga da scrivere
+     *
+     * @throws IOException error
+     */
+    public void writeLine(ResultValueDto value) throws IOException {
+        if (executor != null) {
+            partRows.append(value);
+            if (partRows.size() == maxRowsPerUd) {
+                submitPart();
+            }
+        } else {
+            if (writer == null) {
+                writer = openPart();
+            } else if (maxRowsPerUd > 0 && writer.getLines() == maxRowsPerUd) {
+                closePart(writer);
+                writer = openPart();
+            }
+            writer.writeLine(value, writer.getLines() + 1);
+        }
+        lines++;
+    }
+
+    /** Numero di righe scritte in tutte le parti. */
+    public long getLines() {
+        return lines;
+    }
+
+    /** Byte JSON scritti in tutte le parti chiuse, prima della compressione. */
+    public long getJsonBytes() {
+        return jsonBytes.sum();
+    }
+
+    /** Byte scritti su disco da tutte le parti chiuse. */
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+
+    /** File delle parti, con il nome definitivo dopo la chiusura. */
+    public List<Path> getFiles() {
+        return List.copyOf(files);
+    }
+
+    /**
+     * Scrive l'ultima parte, attende che tutte le parti siano su disco e le rinomina con il nome
+     * definitivo. Senza righe viene comunque scritto un UD con values.line vuoto.
+     *
+     * @throws IOException error
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (executor != null) {
+            if (partRows.size() > 0 || files.isEmpty()) {
+                submitPart();
+            }
+            while (!pendingParts.isEmpty()) {
+                awaitOldestPart();
+            }
+        } else {
+            if (writer == null) {
+                writer = openPart();
+            }
+            closePart(writer);
+        }
+        closed = true;
+
+        List<Path> targets = reserveTargets();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                Files.move(files.get(i), targets.get(i), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                deleteAll(targets.subList(i, targets.size()));
+                throw e;
+            }
+            files.set(i, targets.get(i));
+        }
+        syncDirectory(Paths.get(basePath).toAbsolutePath().getParent());
+        finished = true;
+        log.debug("Rolling writer: {} rows written into {} file(s), {} JSON bytes stored in {} bytes",
+                lines, files.size(), getJsonBytes(), getStoredBytes());
+    }
+
+    /** Interrompe la scrittura e rimuove le parti gia create, per non lasciare UD parziali. */
+    public void abort() {
+        if (finished) {
+            return;
+        }
+        closed = true;
+        if (writer != null) {
+            writer.abort();
+        }
+        // Parts already queued are awaited (at most maxPendingParts), so no task can recreate a
+        // file after it has been removed.
+        for (Future<Path> part : pendingParts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+                // la parte viene comunque rimossa
+            }
+        }
+        pendingParts.clear();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Unable to delete partial UD file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Prenota i nomi definitivi delle parti creandoli vuoti con createFile, che fallisce se il file
+     * esiste gia: con un nome occupato i file prenotati vengono rimossi e si riprova con la base
+     * successiva. Le parti sostituiscono poi i file vuoti prenotati.
+     */
+    private List<Path> reserveTargets() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            String base = attempt == 1 ? basePath : basePath + "-" + attempt;
+            List<Path> targets = new ArrayList<>();
+            try {
+                for (int i = 0; i < files.size(); i++) {
+                    Path target = Paths.get((files.size() == 1 ? base : base + "_" + (i + 1))
+                            + ".json" + compression.getExtension());
+                    Files.createFile(target);
+                    targets.add(target);
+                }
+                return targets;
+            } catch (FileAlreadyExistsException e) {
+                log.debug("Rolling writer: {} already exists, trying the next name", e.getFile());
+                deleteAll(targets);
+            }
+        }
+    }
+
+    private static void deleteAll(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Unable to delete UD file {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private UrbanDatasetWriter openPart() throws IOException {
+        return openPart(nextTempPath());
+    }
+
+    private UrbanDatasetWriter openPart(Path temp) throws IOException {
+        log.debug("Rolling writer: opening part {}", temp);
+        return UrbanDatasetWriter.open(temp.toString(), specificationDto, contextDto, objectMapper, true, compression);
+    }
+
+    private void closePart(UrbanDatasetWriter partWriter) throws IOException {
+        partWriter.close();
+        jsonBytes.add(partWriter.getJsonBytes());
+        storedBytes.add(partWriter.getStoredBytes());
+    }
+
+    /** Invia la parte corrente al pool, attendendo prima la piu vecchia se la coda e piena. */
+    private void submitPart() throws IOException {
+        if (pendingParts.size() >= maxPendingParts) {
+            awaitOldestPart();
+        }
+        Path temp = nextTempPath();
+        UdValueBlock rows = partRows;
+        partRows = new UdValueBlock();
+        pendingParts.addLast(executor.submit(() -> writePart(temp, rows)));
+    }
+
+    private Path writePart(Path temp, UdValueBlock rows) throws IOException {
+        UrbanDatasetWriter partWriter = openPart(temp);
+        try {
+            for (int row = 0; row < rows.size(); row++) {
+                partWriter.writeLine(rows, row, row + 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            partWriter.abort();
+            throw e;
+        }
+        closePart(partWriter);
+        return temp;
+    }
+
+    private void awaitOldestPart() throws IOException {
+        Future<Path> part = pendingParts.removeFirst();
+        try {
+            part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing UD parts");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Path nextTempPath() {
+        Path temp = Paths.get(basePath + "_" + (files.size() + 1) + ".json" + compression.getExtension()
+                + "." + tempId + TEMP_SUFFIX);
+        files.add(temp);
+        return temp;
+    }
+
+    /** Rende durevoli anche le rinomine; non tutti i file system permettono di aprire una cartella. */
+    private static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Rolling writer: directory {} not synced: {}", directory, e.getMessage());
+        }
+    }
+}
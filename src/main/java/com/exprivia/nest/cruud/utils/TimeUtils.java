@@ -13,13 +13,13 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
-import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoField;
 import java.time.zone.ZoneOffsetTransition;
 import java.time.zone.ZoneRules;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,6 +37,40 @@ public final class TimeUtils {
 
     private static final Pattern TIME_COMPONENT_PATTERN = Pattern.compile("\\d{1,2}:\\d{2}");
     private static final Pattern DATE_COMPONENT_PATTERN = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})|(\\d{2}/\\d{2}/\\d{4})|(\\d{8})");
+    private static final Pattern SLOT_NUMBER_PATTERN = Pattern.compile("\\d+");
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final String DEFAULT_DATE_PATTERN = "dd/MM/yyyy";
+    private static final List<String> DATE_TIME_PATTERNS = List.of(
+            "yyyy-MM-dd HH:mm:ss",
+            "dd/MM/yyyy HH:mm:ss",
+            "yyyyMMddHHmmss",
+            "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm:ss'Z'",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"
+    );
+    private static final List<String> DATE_ONLY_PATTERNS = List.of(
+            "yyyy-MM-dd",
+            "dd/MM/yyyy",
+            "yyyyMMdd"
+    );
+    private static final Map<String, DateTimeFormatter> DATE_FORMATTERS = new HashMap<>();
+    /** Formatter di uscita per [senza/con offset][cifre di frazione 0-9]. */
+    private static final DateTimeFormatter[][] OUTPUT_FORMATTERS = new DateTimeFormatter[2][10];
+
+    static {
+        for (int digits = 0; digits < 10; digits++) {
+            OUTPUT_FORMATTERS[0][digits] = createFormatter(false, digits);
+            OUTPUT_FORMATTERS[1][digits] = createFormatter(true, digits);
+        }
+        for (String pattern : DATE_TIME_PATTERNS) {
+            DATE_FORMATTERS.put(pattern, DateTimeFormatter.ofPattern(pattern));
+        }
+        for (String pattern : DATE_ONLY_PATTERNS) {
+            DATE_FORMATTERS.put(pattern, DateTimeFormatter.ofPattern(pattern));
+        }
+    }
 
     private TimeUtils() {
     }
@@ -91,9 +125,7 @@ public final class TimeUtils {
             }
         } else {
             // Caso "slot numerato": cerca il numero nell'header (es. ea1, ea2, ...)
-            String regex = "\\d+";
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(periodHeader);
+            Matcher matcher = SLOT_NUMBER_PATTERN.matcher(periodHeader);
             boolean slotResolved = false;
 
             while (matcher.find()) {
@@ -124,7 +156,7 @@ public final class TimeUtils {
      * Unisce data e periodo considerando i casi in cui uno dei due
      * contenga gia un timestamp completo (data+ora).
      */
-    private static String mergeDateAndTimeColumns(String date, String periodValue) {
+    static String mergeDateAndTimeColumns(String date, String periodValue) {
         String datePart = trimToNull(date);
         String periodPart = trimToNull(periodValue);
 
@@ -197,7 +229,7 @@ public final class TimeUtils {
         return value;
     }
 
-    private static void enforceSliceDuration(HashMap<String, Object> period, int slice) {
+    static void enforceSliceDuration(HashMap<String, Object> period, int slice) {
         if (slice <= 0 || period == null) {
             return;
         }
@@ -220,18 +252,16 @@ public final class TimeUtils {
         }
         // Conserva il numero di cifre di frazione (millis/nanos) se presenti
         int fractionDigits = detectFractionDigits(trimmed);
-        try {
-            // Timestamp con offset esplicito (es. 2023-10-29T01:00:00+02:00)
-            OffsetDateTime offset = OffsetDateTime.parse(trimmed);
-            DateTimeFormatter formatter = buildFormatter(true, fractionDigits);
-            return offset.plusMinutes(minutes).format(formatter);
-        } catch (DateTimeParseException ignored) { }
-        try {
-            // Timestamp locale senza offset
-            LocalDateTime local = LocalDateTime.parse(trimmed);
-            DateTimeFormatter formatter = buildFormatter(false, fractionDigits);
-            return local.plusMinutes(minutes).format(formatter);
-        } catch (DateTimeParseException ignored) { }
+        // Timestamp con offset esplicito (es. 2023-10-29T01:00:00+02:00)
+        OffsetDateTime offset = TimestampParser.parseIsoOffset(trimmed);
+        if (offset != null) {
+            return offset.plusMinutes(minutes).format(buildFormatter(true, fractionDigits));
+        }
+        // Timestamp locale senza offset
+        LocalDateTime local = TimestampParser.parseIsoLocal(trimmed);
+        if (local != null) {
+            return local.plusMinutes(minutes).format(buildFormatter(false, fractionDigits));
+        }
         return null;
     }
 
@@ -245,16 +275,14 @@ public final class TimeUtils {
             return null;
         }
         int fractionDigits = Math.max(2, detectFractionDigits(trimmed));
-        try {
-            OffsetDateTime offset = OffsetDateTime.parse(trimmed);
-            DateTimeFormatter formatter = buildFormatter(true, fractionDigits);
-            return offset.minusNanos(10_000_000).format(formatter);
-        } catch (DateTimeParseException ignored) { }
-        try {
-            LocalDateTime local = LocalDateTime.parse(trimmed);
-            DateTimeFormatter formatter = buildFormatter(false, fractionDigits);
-            return local.minusNanos(10_000_000).format(formatter);
-        } catch (DateTimeParseException ignored) { }
+        OffsetDateTime offset = TimestampParser.parseIsoOffset(trimmed);
+        if (offset != null) {
+            return offset.minusNanos(10_000_000).format(buildFormatter(true, fractionDigits));
+        }
+        LocalDateTime local = TimestampParser.parseIsoLocal(trimmed);
+        if (local != null) {
+            return local.minusNanos(10_000_000).format(buildFormatter(false, fractionDigits));
+        }
         return null;
     }
 
@@ -266,50 +294,75 @@ public final class TimeUtils {
         if (period == null) {
             return;
         }
-        Object startObj = period.get("start_ts");
-        Object endObj = period.get("end_ts");
-        if (startObj == null || endObj == null) {
+        EpochPeriod epochPeriod = EpochPeriod.of(period);
+        adjustEndExclusive(epochPeriod);
+        epochPeriod.flush();
+    }
+
+    /**
+     * Variante di {@link #adjustEndExclusive(HashMap)} sul periodo numerico: confronta secondi e
+     * nanosecondi senza rileggere il testo.
+     */
+    public static void adjustEndExclusive(EpochPeriod period) {
+        if (period == null) {
             return;
         }
-        String start = startObj.toString();
-        String end = endObj.toString();
-        if (start.isBlank() || end.isBlank()) {
+        EpochPeriod.Timestamp start = period.start();
+        EpochPeriod.Timestamp end = period.end();
+        if (!start.isPresent() || !end.isPresent() || start.isBlank() || end.isBlank() || !end.isParsed()) {
             return;
         }
 
-        LocalDateTime startLdt = parseToLocalDateTime(start);
-        LocalDateTime endLdt = parseToLocalDateTime(end);
-        if (endLdt == null) {
-            return;
+        long endSecond = end.getEpochSecond();
+        if (start.isParsed()) {
+            int comparison = endSecond != start.getEpochSecond()
+                    ? Long.compare(endSecond, start.getEpochSecond())
+                    : Integer.compare(end.getNano(), start.getNano());
+            if (comparison > 0) {
+                endSecond -= 1;
+            } else if (comparison == 0) {
+                start.setLocal(start.getEpochSecond(), 0);
+            }
         }
+        end.setLocal(endSecond, 0);
+    }
 
-        if (startLdt != null) {
-            if (endLdt.isAfter(startLdt)) {
-                endLdt = endLdt.minusSeconds(1);
-            } else if (endLdt.isEqual(startLdt)) {
-                startLdt = startLdt.withNano(0);
-                period.put("start_ts", startLdt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                endLdt = startLdt;
-            }
+    /**
+     * Forza end = start + slice minuti sul periodo numerico, con lo stesso testo di
+     * {@link #addMinutesToTimestamp}; un end non calcolabile resta invariato.
+     */
+    public static void enforceSliceDuration(EpochPeriod period, int slice) {
+        if (slice <= 0 || period == null) {
+            return;
+        }
+        EpochPeriod.Timestamp start = period.start();
+        if (!start.isPresent() || start.isBlank()) {
+            return;
+        }
+        if (start.isParsed()) {
+            period.end().setFixed(start.getEpochSecond() + slice * 60L, start.getNano(), start.getOffset(),
+                    start.fractionDigits());
+            return;
+        }
+        String adjusted = addMinutesToTimestamp(start.text(), slice);
+        if (adjusted != null) {
+            period.end().setText(adjusted);
         }
-        endLdt = endLdt.withNano(0);
-        period.put("end_ts", endLdt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
     }
 
     private static LocalDateTime parseToLocalDateTime(String timestamp) {
         if (timestamp == null || timestamp.isBlank()) {
             return null;
         }
-        try {
-            return OffsetDateTime.parse(timestamp).toLocalDateTime();
-        } catch (DateTimeParseException ignored) { }
-        try {
-            return LocalDateTime.parse(timestamp);
-        } catch (DateTimeParseException ignored) { }
-        return null;
+        OffsetDateTime offset = TimestampParser.parseIsoOffset(timestamp);
+        return offset != null ? offset.toLocalDateTime() : TimestampParser.parseIsoLocal(timestamp);
+    }
+
+    static DateTimeFormatter buildFormatter(boolean withOffset, int fractionDigits) {
+        return OUTPUT_FORMATTERS[withOffset ? 1 : 0][fractionDigits];
     }
 
-    private static DateTimeFormatter buildFormatter(boolean withOffset, int fractionDigits) {
+    private static DateTimeFormatter createFormatter(boolean withOffset, int fractionDigits) {
         DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder()
                 .appendPattern("yyyy-MM-dd'T'HH:mm:ss");
         if (fractionDigits > 0) {
@@ -322,7 +375,7 @@ public final class TimeUtils {
         return builder.toFormatter();
     }
 
-    private static int detectFractionDigits(String value) {
+    static int detectFractionDigits(String value) {
         int dot = value.indexOf('.');
         if (dot < 0) {
             return 0;
@@ -354,62 +407,56 @@ public final class TimeUtils {
     }
 
     private static String convertMinutesInHoursString(String date, int minutes) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Objects.requireNonNull(getDateTimeFormatter(date)));
+        DateTimeFormatter formatter = dateFormatter(Objects.requireNonNull(getDateTimeFormatter(date)));
 
         // Se la data include gia un componente orario, la restituiamo invariata
         if (formatter.toString().contains("H")) {
             return LocalDateTime.parse(date, formatter).toString();
         } else {
-            // Altrimenti costruisce l'orario a partire dai minuti
+            // Altrimenti costruisce l'orario a partire dai minuti; 24:00 (fine dell'ultima fascia
+            // del giorno, es. ea96 da 15 minuti) e la mezzanotte del giorno dopo
             LocalDate localDate = LocalDate.parse(date, formatter);
-            LocalDateTime dateTime = LocalDateTime.of(localDate, LocalTime.of(minutes / 60, minutes % 60));
+            LocalDateTime dateTime = minutes == MINUTES_PER_DAY
+                    ? localDate.plusDays(1).atStartOfDay()
+                    : LocalDateTime.of(localDate, LocalTime.of(minutes / 60, minutes % 60));
             return dateTime.toString().concat(":00");
         }
     }
 
-    private static String getDateTimeFormatter(String datetimeString) {
+    /**
+     * Rileva il pattern della colonna data provando prima i pattern data+ora e poi quelli solo data;
+     * restituisce "dd/MM/yyyy" se nessun pattern e compatibile.
+     */
+    static String getDateTimeFormatter(String datetimeString) {
         if (datetimeString == null) {
             log.debug("pattern non riconosciuto per valore nullo");
-            return "dd/MM/yyyy"; // default pattern
+            return DEFAULT_DATE_PATTERN;
         }
 
         String sanitized = datetimeString.trim();
 
         // Prova prima con pattern data+ora
-        List<String> dateTimePatterns = List.of(
-                "yyyy-MM-dd HH:mm:ss",
-                "dd/MM/yyyy HH:mm:ss",
-                "yyyyMMddHHmmss",
-                "yyyy-MM-dd'T'HH:mm:ss",
-                "yyyy-MM-dd'T'HH:mm:ss'Z'",
-                "yyyy-MM-dd'T'HH:mm:ss.SSS",
-                "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"
-        );
-
-        for (String pattern : dateTimePatterns) {
-            try {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-                LocalDateTime.parse(sanitized, formatter);
+        for (String pattern : DATE_TIME_PATTERNS) {
+            if (TimestampParser.tryParse(dateFormatter(pattern), sanitized, LocalDateTime::from) != null) {
                 return pattern;
-            } catch (DateTimeParseException ignored) { }
+            }
         }
 
         // Poi con pattern solo data
-        List<String> dateOnlyPatterns = List.of(
-                "yyyy-MM-dd",
-                "dd/MM/yyyy",
-                "yyyyMMdd"
-        );
-        for (String pattern : dateOnlyPatterns) {
-            try {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-                LocalDate.parse(sanitized, formatter);
+        for (String pattern : DATE_ONLY_PATTERNS) {
+            if (TimestampParser.tryParse(dateFormatter(pattern), sanitized, LocalDate::from) != null) {
                 return pattern;
-            } catch (DateTimeParseException ignored) { }
+            }
         }
 
         log.debug("pattern non riconosciuto per valore '{}'", sanitized);
-        return "dd/MM/yyyy"; // default pattern
+        return DEFAULT_DATE_PATTERN;
+    }
+
+    /** Formatter precompilato di un pattern della colonna data. */
+    static DateTimeFormatter dateFormatter(String pattern) {
+        DateTimeFormatter formatter = DATE_FORMATTERS.get(pattern);
+        return formatter != null ? formatter : DateTimeFormatter.ofPattern(pattern);
     }
 
     /**
@@ -475,6 +522,7 @@ public final class TimeUtils {
             if (rv == null) {
                 continue;
             }
+            EpochPeriod.detach(rv);
             HashMap<String, Object> period = rv.getPeriod();
             if (period == null) {
                 continue;
@@ -574,7 +622,7 @@ public final class TimeUtils {
     public static java.time.ZonedDateTime resolveWithZoneRules(LocalDateTime ldt, ZoneId zone,
                                                                boolean handle, String overlapPolicy, String gapPolicy) {
         ZoneRules rules = zone.getRules();
-        List<ZoneOffset> validOffsets = rules.getValidOffsets(ldt);
+        List<ZoneOffset> validOffsets = ZoneTransitionIndex.validOffsets(zone, ldt);
         if (!handle) {
             if (validOffsets.isEmpty()) {
                 ZoneOffsetTransition trans = rules.nextTransition(ldt.minusHours(2).atZone(zone).toInstant());
@@ -617,7 +665,7 @@ public final class TimeUtils {
      * Normalizza tutti i periodi verso un offset UD fisso.
      * Strategia:
      * 1) parse start/end con pattern noti
-     * 2) calcola transizioni DST per anno
+     * 2) legge le transizioni DST per anno ({@link ZoneTransitionIndex})
      * 3) applica correzioni "compress/expand" a partire dai confini DST
      * 4) converte all'offset UD e riscrive le stringhe
      */
@@ -631,18 +679,10 @@ public final class TimeUtils {
                 values.size(), csvZone, udOffset, handle);
         List<Integer> years = new ArrayList<>();
         java.util.Set<Integer> yearSet = new java.util.HashSet<>();
-        DateTimeFormatter[] patterns = {
-                DateTimeFormatter.ISO_LOCAL_DATE_TIME,
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
-                DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
-                DateTimeFormatter.ofPattern("yyyyMMddHHmmss"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
-        };
         List<LocalDateTime> starts = new ArrayList<>(values.size());
         List<LocalDateTime> ends = new ArrayList<>(values.size());
         for (ResultValueDto rv : values) {
+            EpochPeriod.detach(rv);
             HashMap<String, Object> period = rv.getPeriod();
             if (period == null) {
                 period = new HashMap<>();
@@ -652,14 +692,14 @@ public final class TimeUtils {
             LocalDateTime endLdt = null;
             Object s = period.get(startKey);
             if (s instanceof String sStr && !sStr.isBlank()) {
-                startLdt = parseLocalDateTime(sStr, patterns);
+                startLdt = parseLocalDateTime(sStr);
                 if (startLdt != null) {
                     yearSet.add(startLdt.getYear());
                 }
             }
             Object e = period.get(endKey);
             if (e instanceof String eStr && !eStr.isBlank()) {
-                endLdt = parseLocalDateTime(eStr, patterns);
+                endLdt = parseLocalDateTime(eStr);
                 if (endLdt != null) {
                     yearSet.add(endLdt.getYear());
                 }
@@ -668,11 +708,10 @@ public final class TimeUtils {
             ends.add(endLdt);
         }
         years.addAll(yearSet);
-        java.util.Map<Integer, DstTransitions> transitionsMap = new java.util.HashMap<>();
+        java.util.Map<Integer, ZoneTransitionIndex> transitionsMap = new java.util.HashMap<>();
         for (int yr : years) {
-            log.debug("Utils: computing DST transitions for {} in {}", yr, csvZone);
-            DstTransitions tr = computeDstTransitions(csvZone, yr);
-            transitionsMap.put(yr, tr);
+            log.debug("Utils: loading DST transitions for {} in {}", yr, csvZone);
+            transitionsMap.put(yr, ZoneTransitionIndex.of(csvZone, yr));
         }
         java.util.Map<Integer, YearCorrectionState> stateMap = new java.util.HashMap<>();
         // Seconda passata: applica correzioni e scrive i nuovi valori
@@ -684,19 +723,19 @@ public final class TimeUtils {
             if (startLdt != null) {
                 int year = startLdt.getYear();
                 YearCorrectionState ys = stateMap.computeIfAbsent(year, y -> new YearCorrectionState());
-                DstTransitions tr = transitionsMap.get(year);
+                ZoneTransitionIndex tr = transitionsMap.get(year);
                 if (handle && tr != null) {
                     // Dopo il salto in avanti: comprimi la linea temporale
-                    if (!ys.springFixed && tr.springForwardLocal != null
-                            && !startLdt.isBefore(tr.springForwardLocal)) {
+                    if (!ys.springFixed && tr.getSpringForwardLocal() != null
+                            && !startLdt.isBefore(tr.getSpringForwardLocal())) {
                         ys.correctionMinutes -= 60;
                         ys.springFixed = true;
                     }
                     // Durante l'overlap: applica l'espansione alla seconda occorrenza
-                    if (!ys.autumnFixed && tr.autumnSecondPassLocal != null) {
-                        if (ys.autumnState == 0 && !startLdt.isBefore(tr.autumnSecondPassLocal)) {
+                    if (!ys.autumnFixed && tr.getAutumnSecondPassLocal() != null) {
+                        if (ys.autumnState == 0 && !startLdt.isBefore(tr.getAutumnSecondPassLocal())) {
                             ys.autumnState = 1;
-                        } else if (ys.autumnState == 1 && !startLdt.isBefore(tr.autumnSecondPassLocal)) {
+                        } else if (ys.autumnState == 1 && !startLdt.isBefore(tr.getAutumnSecondPassLocal())) {
                             ys.correctionMinutes += 60;
                             ys.autumnFixed = true;
                             ys.autumnState = 2;
@@ -712,17 +751,17 @@ public final class TimeUtils {
             if (endLdt != null) {
                 int yearEnd = endLdt.getYear();
                 YearCorrectionState ysEnd = stateMap.computeIfAbsent(yearEnd, y -> new YearCorrectionState());
-                DstTransitions trEnd = transitionsMap.get(yearEnd);
+                ZoneTransitionIndex trEnd = transitionsMap.get(yearEnd);
                 if (handle && trEnd != null) {
-                    if (!ysEnd.springFixed && trEnd.springForwardLocal != null
-                            && !endLdt.isBefore(trEnd.springForwardLocal)) {
+                    if (!ysEnd.springFixed && trEnd.getSpringForwardLocal() != null
+                            && !endLdt.isBefore(trEnd.getSpringForwardLocal())) {
                         ysEnd.correctionMinutes -= 60;
                         ysEnd.springFixed = true;
                     }
-                    if (!ysEnd.autumnFixed && trEnd.autumnSecondPassLocal != null) {
-                        if (ysEnd.autumnState == 0 && !endLdt.isBefore(trEnd.autumnSecondPassLocal)) {
+                    if (!ysEnd.autumnFixed && trEnd.getAutumnSecondPassLocal() != null) {
+                        if (ysEnd.autumnState == 0 && !endLdt.isBefore(trEnd.getAutumnSecondPassLocal())) {
                             ysEnd.autumnState = 1;
-                        } else if (ysEnd.autumnState == 1 && !endLdt.isBefore(trEnd.autumnSecondPassLocal)) {
+                        } else if (ysEnd.autumnState == 1 && !endLdt.isBefore(trEnd.getAutumnSecondPassLocal())) {
                             ysEnd.correctionMinutes += 60;
                             ysEnd.autumnFixed = true;
                             ysEnd.autumnState = 2;
@@ -739,20 +778,6 @@ public final class TimeUtils {
         log.debug("Utils: normalizePeriodsForUd finish");
     }
 
-    /**
-     * Contiene i due punti di transizione rilevanti per un anno:
-     * - springForwardLocal: primo orario valido dopo il gap (salto avanti)
-     * - autumnSecondPassLocal: inizio della seconda occorrenza (overlap)
-     */
-    private static final class DstTransitions {
-        final LocalDateTime springForwardLocal;
-        final LocalDateTime autumnSecondPassLocal;
-        DstTransitions(LocalDateTime springForwardLocal, LocalDateTime autumnSecondPassLocal) {
-            this.springForwardLocal = springForwardLocal;
-            this.autumnSecondPassLocal = autumnSecondPassLocal;
-        }
-    }
-
     private static final class YearCorrectionState {
         boolean springFixed = false;
         boolean autumnFixed = false;
@@ -761,64 +786,9 @@ public final class TimeUtils {
     }
 
     /**
-     * Calcola le transizioni DST per un anno specifico.
-     * Scorre le transizioni della zona finche trova il primo gap e il primo overlap.
-     */
-    private static DstTransitions computeDstTransitions(ZoneId zone, int year) {
-        ZoneRules rules = zone.getRules();
-        java.time.ZonedDateTime zStart = LocalDateTime.of(year, 1, 1, 0, 0).atZone(zone);
-        int foundSpring = 0;
-        LocalDateTime springAfter = null;
-        LocalDateTime autumnSecond = null;
-        java.time.ZonedDateTime search = zStart;
-        while (true) {
-            ZoneOffsetTransition trans = rules.nextTransition(search.toInstant());
-            if (trans == null) {
-                log.debug("Utils: no further transitions after {}", search);
-                break;
-            }
-            LocalDateTime dtBefore = trans.getDateTimeBefore();
-            LocalDateTime dtAfter = trans.getDateTimeAfter();
-            int transYearBefore = dtBefore.getYear();
-            int transYearAfter = dtAfter.getYear();
-            if (transYearBefore > year) {
-                log.debug("Utils: transition {} beyond year {}, stopping", trans, year);
-                break;
-            }
-            if (trans.isGap()) {
-                // Gap (primavera): memorizza il primo orario valido dopo il salto
-                if (springAfter == null && (transYearAfter == year || transYearBefore == year)) {
-                    springAfter = dtAfter;
-                    log.debug("Utils: spring transition for {} -> {}", year, springAfter);
-                }
-            } else if (trans.isOverlap()) {
-                // Overlap (autunno): dtAfter e l'inizio della seconda occorrenza
-                if (autumnSecond == null && (transYearAfter == year || transYearBefore == year)) {
-                    autumnSecond = dtAfter;
-                    log.debug("Utils: autumn transition for {} -> {}", year, autumnSecond);
-                }
-            }
-            if (springAfter != null && autumnSecond != null) {
-                log.debug("Utils: collected both transitions for {}, breaking", year);
-                break;
-            }
-            // Avanza oltre la transizione corrente per evitare loop
-            search = trans.getDateTimeAfter().plusSeconds(1).atZone(zone);
-        }
-        return new DstTransitions(springAfter, autumnSecond);
-    }
-
-    /**
-     * Prova a fare parse con una lista di pattern; torna null se nessuno combacia.
+     * Prova a fare parse con i pattern noti; torna null se nessuno combacia.
      */
-    private static LocalDateTime parseLocalDateTime(String value, DateTimeFormatter[] patterns) {
-        for (DateTimeFormatter formatter : patterns) {
-            try {
-                return LocalDateTime.parse(value, formatter);
-            } catch (DateTimeParseException ignored) {
-                // try next
-            }
-        }
-        return null;
+    private static LocalDateTime parseLocalDateTime(String value) {
+        return TimestampParser.parseLocal(value, true);
     }
 }
@@ -0,0 +1,310 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQuery;
+import java.util.List;
+
+/**
+ * Parsing dei timestamp senza eccezioni sul percorso normale. La forma della stringa viene
+ * riconosciuta guardando pochi caratteri (lunghezza, separatori, 'T', suffisso di offset) e le
+ * forme piu comuni vengono lette da un parser di cifre scritto a mano; le altre, e i valori fuori
+ * intervallo, passano per gli stessi formatter di prima, provati con parseUnresolved cosi un
+ * pattern che non combacia non costruisce una DateTimeParseException.
+ * I risultati sono quelli della sequenza di parse/catch che questi metodi sostituiscono.
+ */
+public final class TimestampParser {
+
+    private static final DateTimeFormatter SPACED = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DAY_FIRST = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    private static final DateTimeFormatter COMPACT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final DateTimeFormatter UTC_MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+    /** Pattern locali noti, nell'ordine in cui vengono provati. */
+    private static final List<DateTimeFormatter> LOCAL_PATTERNS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+            SPACED,
+            DAY_FIRST,
+            COMPACT,
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS")
+    );
+
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    /** Forma del timestamp riconosciuta dai caratteri. */
+    private enum Shape {
+        /** yyyy-MM-ddTHH:mm[:ss[.f]] */
+        ISO_LOCAL,
+        /** ISO_LOCAL seguito da Z */
+        ISO_UTC,
+        /** ISO_LOCAL seguito da +HH:mm / -HH:mm */
+        ISO_OFFSET,
+        /** yyyy-MM-dd HH:mm:ss */
+        SPACED,
+        /** dd/MM/yyyy HH:mm:ss */
+        DAY_FIRST,
+        /** yyyyMMddHHmmss */
+        COMPACT,
+        UNKNOWN
+    }
+
+    private TimestampParser() {
+    }
+
+    /**
+     * Timestamp locale secondo i pattern noti (ISO, "yyyy-MM-dd HH:mm:ss", "dd/MM/yyyy HH:mm:ss",
+     * "yyyyMMddHHmmss", ...).
+     *
+     * @param value timestamp
+     * @return LocalDateTime, null se nessun pattern combacia
+     */
+    public static LocalDateTime parseLocal(String value) {
+        return parseLocal(value, false);
+    }
+
+    /**
+     * Come {@link #parseLocal(String)}; con utcMillisAsLocal accetta anche
+     * "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" ignorando la Z.
+     *
+     * @param value timestamp
+     * @param utcMillisAsLocal true per leggere come locale anche il formato con millisecondi e Z
+     * @return LocalDateTime, null se nessun pattern combacia
+     */
+    public static LocalDateTime parseLocal(String value, boolean utcMillisAsLocal) {
+        if (value == null) {
+            return null;
+        }
+        LocalDateTime parsed = switch (shape(value)) {
+            case ISO_LOCAL -> isoLocal(value, value.length());
+            case ISO_UTC -> utcMillisAsLocal && value.length() == 24 ? isoLocal(value, 23) : null;
+            case SPACED -> fixedLocal(value, 0, 5, 8);
+            case DAY_FIRST -> fixedLocal(value, 6, 3, 0);
+            case COMPACT -> compactLocal(value);
+            default -> null;
+        };
+        if (parsed != null) {
+            return parsed;
+        }
+        for (DateTimeFormatter formatter : LOCAL_PATTERNS) {
+            parsed = tryParse(formatter, value, LocalDateTime::from);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        return utcMillisAsLocal ? tryParse(UTC_MILLIS, value, LocalDateTime::from) : null;
+    }
+
+    /**
+     * Stesso risultato di LocalDateTime.parse(value), null invece dell'eccezione.
+     *
+     * @param value timestamp ISO senza offset
+     * @return LocalDateTime, null se non valido
+     */
+    public static LocalDateTime parseIsoLocal(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (shape(value) == Shape.ISO_LOCAL) {
+            LocalDateTime parsed = isoLocal(value, value.length());
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        return tryParse(DateTimeFormatter.ISO_LOCAL_DATE_TIME, value, LocalDateTime::from);
+    }
+
+    /**
+     * Stesso risultato di OffsetDateTime.parse(value), null invece dell'eccezione.
+     *
+     * @param value timestamp ISO con offset
+     * @return OffsetDateTime, null se non valido
+     */
+    public static OffsetDateTime parseIsoOffset(String value) {
+        if (value == null) {
+            return null;
+        }
+        OffsetDateTime parsed = isoOffset(value);
+        if (parsed != null) {
+            return parsed;
+        }
+        return tryParse(DateTimeFormatter.ISO_OFFSET_DATE_TIME, value, OffsetDateTime::from);
+    }
+
+    /**
+     * Timestamp con offset o UTC: ISO con offset, ISO con zona ("...+01:00[Europe/Rome]") o istante.
+     *
+     * @param value timestamp
+     * @return ZonedDateTime, null se il valore non contiene un offset valido
+     */
+    public static ZonedDateTime parseWithOffset(String value) {
+        if (value == null) {
+            return null;
+        }
+        OffsetDateTime offset = parseIsoOffset(value);
+        if (offset != null) {
+            return offset.toZonedDateTime();
+        }
+        ZonedDateTime zoned = tryParse(DateTimeFormatter.ISO_ZONED_DATE_TIME, value, ZonedDateTime::from);
+        if (zoned != null) {
+            return zoned;
+        }
+        Instant instant = tryParse(DateTimeFormatter.ISO_INSTANT, value, Instant::from);
+        return instant != null ? instant.atZone(ZoneOffset.UTC) : null;
+    }
+
+    /**
+     * Parse con un formatter che restituisce null se il testo non combacia: il confronto usa
+     * parseUnresolved, che non lancia eccezioni; solo la risoluzione di un valore gia letto
+     * (es. un giorno fuori intervallo) puo fallire.
+     *
+     * @param formatter formatter
+     * @param text testo da leggere per intero
+     * @param query tipo del risultato
+     * @return valore, null se il testo non e valido per il formatter
+     */
+    static <T> T tryParse(DateTimeFormatter formatter, String text, TemporalQuery<T> query) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor unresolved = formatter.parseUnresolved(text, position);
+        if (unresolved == null || position.getErrorIndex() >= 0 || position.getIndex() < text.length()) {
+            return null;
+        }
+        try {
+            return formatter.parse(text, query);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static Shape shape(String value) {
+        int length = value.length();
+        if (length >= 16 && value.charAt(4) == '-' && value.charAt(7) == '-' && value.charAt(10) == 'T') {
+            char last = value.charAt(length - 1);
+            if (last == 'Z') {
+                return Shape.ISO_UTC;
+            }
+            char sign = value.charAt(length - 6);
+            if ((sign == '+' || sign == '-') && value.charAt(length - 3) == ':') {
+                return Shape.ISO_OFFSET;
+            }
+            return Shape.ISO_LOCAL;
+        }
+        if (length == 19 && value.charAt(10) == ' ') {
+            if (value.charAt(4) == '-' && value.charAt(7) == '-') {
+                return Shape.SPACED;
+            }
+            if (value.charAt(2) == '/' && value.charAt(5) == '/') {
+                return Shape.DAY_FIRST;
+            }
+        }
+        if (length == 14 && digits(value, 0, 14) >= 0) {
+            return Shape.COMPACT;
+        }
+        return Shape.UNKNOWN;
+    }
+
+    private static OffsetDateTime isoOffset(String value) {
+        int length = value.length();
+        Shape shape = shape(value);
+        if (shape == Shape.ISO_UTC) {
+            LocalDateTime local = isoLocal(value, length - 1);
+            return local != null ? OffsetDateTime.of(local, ZoneOffset.UTC) : null;
+        }
+        if (shape != Shape.ISO_OFFSET) {
+            return null;
+        }
+        int hours = digits(value, length - 5, 2);
+        int minutes = digits(value, length - 2, 2);
+        if (hours < 0 || minutes < 0 || minutes > 59 || hours > 18 || (hours == 18 && minutes > 0)) {
+            return null;
+        }
+        LocalDateTime local = isoLocal(value, length - 6);
+        if (local == null) {
+            return null;
+        }
+        int sign = value.charAt(length - 6) == '-' ? -1 : 1;
+        return OffsetDateTime.of(local, ZoneOffset.ofHoursMinutes(sign * hours, sign * minutes));
+    }
+
+    /** yyyy-MM-ddTHH:mm[:ss[.f{1,9}]] nei primi end caratteri, con le regole di ISO_LOCAL_DATE_TIME. */
+    private static LocalDateTime isoLocal(String value, int end) {
+        if (end < 16 || end == 17 || end == 18 || end == 20 || end > 29 || value.charAt(13) != ':') {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = 0;
+        int nano = 0;
+        if (end > 16) {
+            if (value.charAt(16) != ':') {
+                return null;
+            }
+            second = digits(value, 17, 2);
+            if (end > 19) {
+                if (value.charAt(19) != '.') {
+                    return null;
+                }
+                int fractionDigits = end - 20;
+                int fraction = digits(value, 20, fractionDigits);
+                if (fraction < 0) {
+                    return null;
+                }
+                nano = fraction * POWERS_OF_TEN[9 - fractionDigits];
+            }
+        }
+        return of(year, month, day, hour, minute, second, nano);
+    }
+
+    /** Pattern a 19 caratteri con ora in posizione 11 e anno/mese/giorno alle posizioni indicate. */
+    private static LocalDateTime fixedLocal(String value, int yearAt, int monthAt, int dayAt) {
+        if (value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(value, yearAt, 4);
+        return year >= 1 ? of(year, digits(value, monthAt, 2), digits(value, dayAt, 2),
+                digits(value, 11, 2), digits(value, 14, 2), digits(value, 17, 2), 0) : null;
+    }
+
+    private static LocalDateTime compactLocal(String value) {
+        int year = digits(value, 0, 4);
+        return year >= 1 ? of(year, digits(value, 4, 2), digits(value, 6, 2),
+                digits(value, 8, 2), digits(value, 10, 2), digits(value, 12, 2), 0) : null;
+    }
+
+    /** LocalDateTime se tutti i campi sono presenti e validi, null altrimenti (senza eccezioni). */
+    private static LocalDateTime of(int year, int month, int day, int hour, int minute, int second, int nano) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        int monthLength = month == 2 ? (Year.isLeap(year) ? 29 : 28) : (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+        if (day > monthLength) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    /** Valore delle count cifre a partire da from, -1 se un carattere non e una cifra. */
+    private static int digits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
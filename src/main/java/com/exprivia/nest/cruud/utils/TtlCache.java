@@ -0,0 +1,142 @@
+package com.exprivia.nest.cruud.utils;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache in memoria con numero massimo di voci e scadenza (TTL) dal caricamento: oltre il limite
+ * esce la voce usata meno di recente. I valori null non vengono memorizzati.
+ * Il caricamento avviene fuori dal lock; se nel frattempo la cache viene invalidata il valore
+ * caricato viene restituito ma non memorizzato, cosi un'invalidazione non viene mai persa.
+ * Con maxSize o ttl non positivi la cache e disattivata e ogni lettura carica il valore.
+ *
+ * @param <K> chiave
+ * @param <V> valore
+ */
+public final class TtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<K, Entry<V>> entries;
+    /** Incrementata a ogni invalidazione: un caricamento iniziato prima non viene memorizzato. */
+    private long generation;
+
+    private record Entry<V>(V value, long expiresAt) { }
+
+    /**
+     * @param maxSize numero massimo di voci
+     * @param ttl durata di una voce dal caricamento
+     */
+    public TtlCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    /**
+     * @param maxSize numero massimo di voci
+     * @param ttl durata di una voce dal caricamento
+     * @param clock orologio in nanosecondi
+     */
+    public TtlCache(int maxSize, Duration ttl, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl != null ? ttl.toNanos() : 0;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** True se la cache memorizza i valori. */
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Valore della chiave, caricato con il loader se assente o scaduto.
+     *
+     * @param key chiave
+     * @param loader caricamento del valore (puo restituire null)
+     * @return valore, null se il loader non lo trova
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long loadGeneration;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (clock.getAsLong() - entry.expiresAt() < 0) {
+                    hits.increment();
+                    return entry.value();
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (value != null && isEnabled()) {
+            synchronized (entries) {
+                if (generation == loadGeneration) {
+                    entries.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+                    puts.increment();
+                }
+            }
+        }
+        return value;
+    }
+
+    /** Rimuove la voce della chiave. */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(key);
+        }
+    }
+
+    /** Rimuove tutte le voci. */
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    /** Voci memorizzate (anche scadute, finche non vengono lette). */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    /** Voci uscite per limite di dimensione o per scadenza (non per invalidazione). */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+}
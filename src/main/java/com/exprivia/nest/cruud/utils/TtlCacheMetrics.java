@@ -0,0 +1,64 @@
+package com.exprivia.nest.cruud.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Metriche Micrometer di una {@link TtlCache} con i nomi standard delle cache
+ * (cache.gets con result=hit/miss, cache.puts, cache.evictions, cache.size), taggate con il nome.
+ */
+public final class TtlCacheMetrics extends CacheMeterBinder<TtlCache<?, ?>> {
+
+    private TtlCacheMetrics(TtlCache<?, ?> cache, String name) {
+        super(cache, name, Tags.empty());
+    }
+
+    /**
+     * Registra le metriche della cache, se il registry e disponibile.
+     *
+     * @param registry registry Micrometer (anche null)
+     * @param cache cache da osservare
+     * @param name valore del tag cache
+     */
+    public static void monitor(MeterRegistry registry, TtlCache<?, ?> cache, String name) {
+        if (registry != null) {
+            new TtlCacheMetrics(cache, name).bindTo(registry);
+        }
+    }
+
+    @Override
+    protected Long size() {
+        TtlCache<?, ?> cache = getCache();
+        return cache != null ? (long) cache.size() : null;
+    }
+
+    @Override
+    protected long hitCount() {
+        TtlCache<?, ?> cache = getCache();
+        return cache != null ? cache.hitCount() : 0;
+    }
+
+    @Override
+    protected Long missCount() {
+        TtlCache<?, ?> cache = getCache();
+        return cache != null ? cache.missCount() : null;
+    }
+
+    @Override
+    protected Long evictionCount() {
+        TtlCache<?, ?> cache = getCache();
+        return cache != null ? cache.evictionCount() : null;
+    }
+
+    @Override
+    protected long putCount() {
+        TtlCache<?, ?> cache = getCache();
+        return cache != null ? cache.putCount() : 0;
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        // nessuna metrica oltre a quelle standard
+    }
+}
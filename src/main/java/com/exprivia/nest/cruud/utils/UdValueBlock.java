@@ -0,0 +1,552 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Righe di un UrbanDataset in forma colonnare, per i punti in cui molte righe restano in memoria
+ * (intervalli del parsing parallelo, parti UD in attesa di scrittura). Al posto di un
+ * ResultValueDto con mappa, lista e stringhe per riga:
+ * - nomi delle property e valori testuali sono id di un dizionario del blocco;
+ * - i valori decimali in forma canonica (es. "126.40", "-5") sono un long non scalato e una scala;
+ * - i timestamp del periodo sono secondi epoch locali, nanosecondi e la forma del testo (cifre di
+ *   frazione, secondi, offset), da cui il testo viene riprodotto identico;
+ * - valori che non si riproducono esattamente (zeri iniziali, testi non ISO, oggetti) restano tali.
+ * Le righe tornano DTO con {@link #toDto(int)} oppure vengono scritte direttamente in JSON da
+ * {@link UrbanDatasetWriter#writeLine(UdValueBlock, int, int)}. Il blocco non e thread-safe: viene
+ * riempito da un thread e letto dopo essere stato pubblicato (es. con un Future).
+ */
+public final class UdValueBlock {
+
+    /** Codici dei valori delle property; i valori >= 0 sono la scala di un decimale. */
+    private static final byte NULL_VALUE = -1;
+    private static final byte STRING_VALUE = -2;
+    private static final int MAX_DECIMAL_DIGITS = 18;
+
+    /** Forma di un timestamp: cifre di frazione, secondi omessi, tipo di offset, valore non numerico. */
+    private static final int SHAPE_DIGITS = 0x0F;
+    private static final int SHAPE_MINUTES_ONLY = 0x10;
+    private static final int SHAPE_OFFSET_Z = 0x20;
+    private static final int SHAPE_OFFSET_NUMERIC = 0x40;
+    private static final int SHAPE_OBJECT = 0x80;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_DECIMAL_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private int size;
+    private int[] ids = new int[16];
+    /** Riga senza lista property (null), per distinguerla da una lista vuota. */
+    private boolean[] propertyMissing = new boolean[16];
+    private int[] propertyEnd = new int[16];
+    private int[] periodEnd = new int[16];
+    /** Indice dell'ordine delle chiavi del periodo, -1 se la riga non ha periodo. */
+    private short[] periodLayout = new short[16];
+
+    private int propertyCount;
+    private int[] propertyName = new int[64];
+    private byte[] propertyKind = new byte[64];
+    private long[] propertyBits = new long[64];
+
+    private int timestampCount;
+    private long[] timestampSecond = new long[32];
+    private int[] timestampNano = new int[32];
+    private short[] timestampShape = new short[32];
+    private int[] timestampOffset;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+    private final List<String[]> layouts = new ArrayList<>();
+    /** Valori rari, per posizione: valori del periodo non numerici, coordinate, timestamp. */
+    private final Map<Integer, Object> periodObjects = new HashMap<>();
+    private final Map<Integer, CoordinatesDto> coordinates = new HashMap<>();
+    private final Map<Integer, Object> timestamps = new HashMap<>();
+
+    private final char[] render = new char[48];
+    private String[] keyScratch = new String[4];
+    private long parsedUnscaled;
+
+    /** Numero di righe del blocco. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Aggiunge una riga; il DTO non viene trattenuto dal blocco.
+     *
+     * @param value riga da aggiungere
+     */
+    public void append(ResultValueDto value) {
+        ensureRowCapacity();
+        int row = size;
+        ids[row] = value.getId();
+
+        List<PropertyValueDto> properties = value.getProperty();
+        propertyMissing[row] = properties == null;
+        if (properties != null) {
+            for (int i = 0; i < properties.size(); i++) {
+                appendProperty(properties.get(i));
+            }
+        }
+        propertyEnd[row] = propertyCount;
+
+        EpochPeriod.flush(value);
+        HashMap<String, Object> period = value.getPeriod();
+        if (period == null) {
+            periodLayout[row] = -1;
+        } else {
+            int keyCount = 0;
+            if (keyScratch.length < period.size()) {
+                keyScratch = new String[period.size()];
+            }
+            for (String key : period.keySet()) {
+                keyScratch[keyCount++] = key;
+            }
+            periodLayout[row] = layoutOf(keyScratch, keyCount);
+            String[] keys = layouts.get(periodLayout[row]);
+            EpochPeriod epochPeriod = EpochPeriod.of(value);
+            for (String key : keys) {
+                appendTimestamp(period.get(key), epochPeriod.get(key));
+            }
+        }
+        periodEnd[row] = timestampCount;
+
+        if (value.getCoordinates() != null) {
+            coordinates.put(row, value.getCoordinates());
+        }
+        if (value.getTimestamp() != null) {
+            timestamps.put(row, value.getTimestamp());
+        }
+        size++;
+    }
+
+    /**
+     * Riga come DTO, uguale a quella aggiunta; i timestamp del periodo sono gia letti nel suo
+     * {@link EpochPeriod}, quindi le fasi temporali non li rileggono dal testo.
+     *
+     * @param row indice della riga
+     * @return nuovo DTO
+     */
+    public ResultValueDto toDto(int row) {
+        List<PropertyValueDto> properties = null;
+        if (!propertyMissing[row]) {
+            int from = propertyStart(row);
+            properties = new ArrayList<>(propertyEnd[row] - from);
+            for (int i = from; i < propertyEnd[row]; i++) {
+                properties.add(isNullProperty(i) ? null
+                        : PropertyValueDto.builder().name(propertyName(i)).val(propertyValue(i)).build());
+            }
+        }
+        ResultValueDto value = ResultValueDto.builder()
+                .id(ids[row])
+                .property(properties)
+                .coordinates(coordinates.get(row))
+                .timestamp(timestamps.get(row))
+                .build();
+        String[] keys = periodKeys(row);
+        if (keys != null) {
+            HashMap<String, Object> period = new HashMap<>();
+            int from = periodStart(row);
+            for (int k = 0; k < keys.length; k++) {
+                period.put(keys[k], periodValue(from + k));
+            }
+            value.setPeriod(period);
+            EpochPeriod epochPeriod = EpochPeriod.of(value);
+            for (int k = 0; k < keys.length; k++) {
+                int index = from + k;
+                if ((timestampShape[index] & SHAPE_OBJECT) == 0) {
+                    epochPeriod.preset(keys[k], (String) period.get(keys[k]), timestampSecond[index], timestampNano[index],
+                            (timestampShape[index] & (SHAPE_OFFSET_Z | SHAPE_OFFSET_NUMERIC)) != 0
+                                    ? ZoneOffset.ofTotalSeconds(offsetSeconds(index)) : null);
+                }
+            }
+        }
+        return value;
+    }
+
+    /** Consegna le righe come DTO, nell'ordine in cui sono state aggiunte. */
+    public void forEach(Consumer<ResultValueDto> consumer) {
+        for (int row = 0; row < size; row++) {
+            consumer.accept(toDto(row));
+        }
+    }
+
+    /** Tutte le righe come DTO. */
+    public List<ResultValueDto> toDtos() {
+        List<ResultValueDto> values = new ArrayList<>(size);
+        forEach(values::add);
+        return values;
+    }
+
+    // Accesso per UrbanDatasetWriter
+
+    boolean hasProperties(int row) {
+        return !propertyMissing[row];
+    }
+
+    int propertyStart(int row) {
+        return row == 0 ? 0 : propertyEnd[row - 1];
+    }
+
+    int propertyEnd(int row) {
+        return propertyEnd[row];
+    }
+
+    boolean isNullProperty(int index) {
+        return propertyName[index] < 0;
+    }
+
+    String propertyName(int index) {
+        int id = propertyName[index];
+        return id < 0 ? null : dictionary.get(id);
+    }
+
+    /** Valore della property come testo, null se assente. */
+    String propertyValue(int index) {
+        byte kind = propertyKind[index];
+        if (kind == NULL_VALUE) {
+            return null;
+        }
+        if (kind == STRING_VALUE) {
+            return dictionary.get((int) propertyBits[index]);
+        }
+        return new String(render, 0, renderDecimal(propertyBits[index], kind, render));
+    }
+
+    /** True se il valore e un decimale da scrivere con {@link #renderProperty}. */
+    boolean isDecimalProperty(int index) {
+        return propertyKind[index] >= 0;
+    }
+
+    /** Scrive il decimale nel buffer e ne restituisce la lunghezza. */
+    int renderProperty(int index, char[] buffer) {
+        return renderDecimal(propertyBits[index], propertyKind[index], buffer);
+    }
+
+    CoordinatesDto coordinates(int row) {
+        return coordinates.get(row);
+    }
+
+    Object timestamp(int row) {
+        return timestamps.get(row);
+    }
+
+    String[] periodKeys(int row) {
+        short layout = periodLayout[row];
+        return layout < 0 ? null : layouts.get(layout);
+    }
+
+    int periodStart(int row) {
+        return row == 0 ? 0 : periodEnd[row - 1];
+    }
+
+    /** True se il valore del periodo e un timestamp da scrivere con {@link #renderTimestamp}. */
+    boolean isNumericTimestamp(int index) {
+        return (timestampShape[index] & SHAPE_OBJECT) == 0;
+    }
+
+    Object periodObject(int index) {
+        return periodObjects.get(index);
+    }
+
+    int renderTimestamp(int index, char[] buffer) {
+        return renderTimestamp(timestampSecond[index], timestampNano[index], timestampShape[index], offsetSeconds(index), buffer);
+    }
+
+    private Object periodValue(int index) {
+        if (!isNumericTimestamp(index)) {
+            return periodObjects.get(index);
+        }
+        return new String(render, 0, renderTimestamp(index, render));
+    }
+
+    private void appendProperty(PropertyValueDto property) {
+        ensurePropertyCapacity();
+        int index = propertyCount++;
+        if (property == null) {
+            propertyName[index] = -1;
+            propertyKind[index] = NULL_VALUE;
+            return;
+        }
+        // anche un nome null e una voce del dizionario: -1 indica solo la property null
+        propertyName[index] = intern(property.getName());
+        String val = property.getVal();
+        if (val == null) {
+            propertyKind[index] = NULL_VALUE;
+            return;
+        }
+        int scale = parseDecimal(val);
+        if (scale >= 0) {
+            propertyKind[index] = (byte) scale;
+            propertyBits[index] = parsedUnscaled;
+        } else {
+            propertyKind[index] = STRING_VALUE;
+            propertyBits[index] = intern(val);
+        }
+    }
+
+    private void appendTimestamp(Object raw, EpochPeriod.Timestamp timestamp) {
+        ensureTimestampCapacity();
+        int index = timestampCount++;
+        if (raw instanceof String text && timestamp.isParsed()) {
+            int shape = shapeOf(text, timestamp.getOffset());
+            int offset = timestamp.getOffset() != null ? timestamp.getOffset().getTotalSeconds() : 0;
+            if (shape >= 0 && reproduces(text, timestamp.getEpochSecond(), timestamp.getNano(), shape, offset)) {
+                timestampSecond[index] = timestamp.getEpochSecond();
+                timestampNano[index] = timestamp.getNano();
+                timestampShape[index] = (short) shape;
+                if ((shape & SHAPE_OFFSET_NUMERIC) != 0 && offset != 0) {
+                    if (timestampOffset == null) {
+                        timestampOffset = new int[timestampSecond.length];
+                    }
+                    timestampOffset[index] = offset;
+                }
+                return;
+            }
+        }
+        timestampShape[index] = SHAPE_OBJECT;
+        if (raw != null) {
+            periodObjects.put(index, raw);
+        }
+    }
+
+    private int offsetSeconds(int index) {
+        return timestampOffset != null ? timestampOffset[index] : 0;
+    }
+
+    /** Forma del testo di un timestamp ISO gia letto, -1 se non rappresentabile. */
+    private static int shapeOf(String text, ZoneOffset offset) {
+        if (text.length() < 16) {
+            return -1;
+        }
+        int shape = TimeUtils.detectFractionDigits(text);
+        if (text.length() == 16 || text.charAt(16) != ':') {
+            shape |= SHAPE_MINUTES_ONLY;
+        }
+        if (offset != null) {
+            shape |= text.charAt(text.length() - 1) == 'Z' ? SHAPE_OFFSET_Z : SHAPE_OFFSET_NUMERIC;
+        }
+        return shape;
+    }
+
+    /** True se la forma numerica riproduce esattamente il testo. */
+    private boolean reproduces(String text, long second, int nano, int shape, int offset) {
+        int length = renderTimestamp(second, nano, shape, offset, render);
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (render[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm[:ss][.fff...][Z|+HH:MM[:ss]] senza oggetti java.time; -1 per anni fuori da 1..9999.
+     */
+    private static int renderTimestamp(long localSecond, int nano, int shape, int offset, char[] out) {
+        long day = Math.floorDiv(localSecond, 86_400L);
+        int secondOfDay = (int) Math.floorMod(localSecond, 86_400L);
+        // conversione giorno epoch -> data civile (algoritmo di H. Hinnant)
+        long z = day + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int dayOfMonth = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > 9999) {
+            return -1;
+        }
+        int pos = 0;
+        pos = digits(out, pos, (int) year, 4);
+        out[pos++] = '-';
+        pos = digits(out, pos, month, 2);
+        out[pos++] = '-';
+        pos = digits(out, pos, dayOfMonth, 2);
+        out[pos++] = 'T';
+        pos = digits(out, pos, secondOfDay / 3600, 2);
+        out[pos++] = ':';
+        pos = digits(out, pos, secondOfDay / 60 % 60, 2);
+        if ((shape & SHAPE_MINUTES_ONLY) == 0) {
+            out[pos++] = ':';
+            pos = digits(out, pos, secondOfDay % 60, 2);
+        }
+        int fraction = shape & SHAPE_DIGITS;
+        if (fraction > 0) {
+            out[pos++] = '.';
+            pos = digits(out, pos, (int) (nano / POWERS_OF_TEN[9 - fraction]), fraction);
+        }
+        if ((shape & SHAPE_OFFSET_Z) != 0) {
+            out[pos++] = 'Z';
+        } else if ((shape & SHAPE_OFFSET_NUMERIC) != 0) {
+            int abs = Math.abs(offset);
+            out[pos++] = offset < 0 ? '-' : '+';
+            pos = digits(out, pos, abs / 3600, 2);
+            out[pos++] = ':';
+            pos = digits(out, pos, abs / 60 % 60, 2);
+            if (abs % 60 != 0) {
+                out[pos++] = ':';
+                pos = digits(out, pos, abs % 60, 2);
+            }
+        }
+        return pos;
+    }
+
+    private static int digits(char[] out, int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+
+    /**
+     * Legge un decimale in forma canonica (-?(0|[1-9]\d*)(\.\d+)?, al massimo 18 cifre, non "-0").
+     *
+     * @return scala, con il valore non scalato in parsedUnscaled; -1 se il testo va tenuto come stringa
+     */
+    private int parseDecimal(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && text.charAt(0) == '-') {
+            negative = true;
+            i = 1;
+        }
+        if (i >= length) {
+            return -1;
+        }
+        if (text.charAt(i) == '0' && i + 1 < length && text.charAt(i + 1) != '.') {
+            return -1;
+        }
+        long unscaled = 0;
+        int digitCount = 0;
+        int scale = -1;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (scale >= 0 || digitCount == 0 || i == length - 1) {
+                    return -1;
+                }
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digitCount > MAX_DECIMAL_DIGITS) {
+                return -1;
+            }
+            unscaled = unscaled * 10 + (c - '0');
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digitCount == 0 || (negative && unscaled == 0)) {
+            return -1;
+        }
+        parsedUnscaled = negative ? -unscaled : unscaled;
+        return Math.max(scale, 0);
+    }
+
+    private static int renderDecimal(long unscaled, int scale, char[] out) {
+        int pos = 0;
+        if (unscaled < 0) {
+            out[pos++] = '-';
+            unscaled = -unscaled;
+        }
+        long integerPart = unscaled / POWERS_OF_TEN[scale];
+        long fraction = unscaled % POWERS_OF_TEN[scale];
+        int integerDigits = 1;
+        while (integerDigits < MAX_DECIMAL_DIGITS && integerPart >= POWERS_OF_TEN[integerDigits]) {
+            integerDigits++;
+        }
+        for (int i = pos + integerDigits - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + integerPart % 10);
+            integerPart /= 10;
+        }
+        pos += integerDigits;
+        if (scale > 0) {
+            out[pos++] = '.';
+            for (int i = pos + scale - 1; i >= pos; i--) {
+                out[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            pos += scale;
+        }
+        return pos;
+    }
+
+    private int intern(String text) {
+        Integer id = dictionaryIds.get(text);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(text);
+            dictionaryIds.put(text, id);
+        }
+        return id;
+    }
+
+    /** Layout con le prime count chiavi indicate; l'array viene copiato solo per un layout nuovo. */
+    private short layoutOf(String[] keys, int count) {
+        for (int i = layouts.size() - 1; i >= 0; i--) {
+            String[] layout = layouts.get(i);
+            if (Arrays.equals(layout, 0, layout.length, keys, 0, count)) {
+                return (short) i;
+            }
+        }
+        if (layouts.size() == Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many period layouts in one block");
+        }
+        layouts.add(Arrays.copyOf(keys, count));
+        return (short) (layouts.size() - 1);
+    }
+
+    private void ensureRowCapacity() {
+        if (size == ids.length) {
+            int capacity = size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            propertyMissing = Arrays.copyOf(propertyMissing, capacity);
+            propertyEnd = Arrays.copyOf(propertyEnd, capacity);
+            periodEnd = Arrays.copyOf(periodEnd, capacity);
+            periodLayout = Arrays.copyOf(periodLayout, capacity);
+        }
+    }
+
+    private void ensurePropertyCapacity() {
+        if (propertyCount == propertyName.length) {
+            int capacity = propertyCount + (propertyCount >> 1);
+            propertyName = Arrays.copyOf(propertyName, capacity);
+            propertyKind = Arrays.copyOf(propertyKind, capacity);
+            propertyBits = Arrays.copyOf(propertyBits, capacity);
+        }
+    }
+
+    private void ensureTimestampCapacity() {
+        if (timestampCount == timestampSecond.length) {
+            int capacity = timestampCount + (timestampCount >> 1);
+            timestampSecond = Arrays.copyOf(timestampSecond, capacity);
+            timestampNano = Arrays.copyOf(timestampNano, capacity);
+            timestampShape = Arrays.copyOf(timestampShape, capacity);
+            if (timestampOffset != null) {
+                timestampOffset = Arrays.copyOf(timestampOffset, capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer incrementale di un file UrbanDataset. Scrive specification e context una sola volta
+ * e accoda le righe di values.line man mano che vengono prodotte, cosi il file viene generato
+ * senza tenere in memoria l'elenco completo dei valori. Il JSON prodotto e byte per byte lo
+ * stesso di ObjectMapper.writeValue sul ResultUrbanDataset.
+ * Le righe vengono scritte direttamente sul JsonGenerator (id, period, property) senza passare
+ * dal serializer dei bean, e l'output passa da un FileChannel con un buffer riusato dal thread.
+ */
+public final class UrbanDatasetWriter implements Closeable {
+
+    private final JsonGenerator generator;
+    private final ObjectWriter valueWriter;
+    private final CountingOutputStream output;
+    private final Path path;
+    private final char[] buffer = new char[48];
+    private int lines;
+    private boolean closed;
+
+    private UrbanDatasetWriter(JsonGenerator generator, ObjectWriter valueWriter, CountingOutputStream output, Path path) {
+        this.generator = generator;
+        this.valueWriter = valueWriter;
+        this.output = output;
+        this.path = path;
+    }
+
+    /**
+     * Apre il file di output (creando le cartelle mancanti) e scrive l'intestazione dell'UD.
+     *
+     * @param filePath path del file di output
+     * @param specificationDto specifica dell'UD
+     * @param contextDto contesto dell'UD
+     * @param objectMapper mapper usato per serializzare
+     * @return writer pronto a ricevere le righe
+     *
+     * @throws IOException error
+     */
+    public static UrbanDatasetWriter open(String filePath, SpecificationDto specificationDto, ContextDto contextDto,
+                                          ObjectMapper objectMapper) throws IOException {
+        return open(filePath, specificationDto, contextDto, objectMapper, false, OutputCompression.NONE);
+    }
+
+    /**
+     * Come {@link #open(String, SpecificationDto, ContextDto, ObjectMapper)}; con durable il
+     * contenuto viene forzato su disco (fsync) alla chiusura del file, il JSON passa dal
+     * compressore indicato prima di arrivare al file.
+     *
+     * @param filePath path del file di output, gia comprensivo dell'estensione di compressione
+     * @param specificationDto specifica dell'UD
+     * @param contextDto contesto dell'UD
+     * @param objectMapper mapper usato per serializzare
+     * @param durable true per forzare il file su disco in chiusura
+     * @param compression compressione del file
+     * @return writer pronto a ricevere le righe
+     *
+     * @throws IOException error
+     */
+    public static UrbanDatasetWriter open(String filePath, SpecificationDto specificationDto, ContextDto contextDto,
+                                          ObjectMapper objectMapper, boolean durable,
+                                          OutputCompression compression) throws IOException {
+        Path path = Paths.get(filePath);
+        ObjectWriter valueWriter = writerFor(objectMapper);
+        CountingOutputStream output = openOutput(path, durable, compression);
+        JsonGenerator generator = valueWriter.createGenerator(output, JsonEncoding.UTF8);
+        UrbanDatasetWriter writer = new UrbanDatasetWriter(generator, valueWriter, output, path);
+        try {
+            writer.writeHeader(specificationDto, contextDto);
+        } catch (IOException e) {
+            generator.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * ObjectWriter condiviso da writer e FileUtils: inclusione NON_NULL come in createFile e nessun
+     * flush dopo ogni valore.
+     */
+    static ObjectWriter writerFor(ObjectMapper objectMapper) {
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Apre il file in scrittura (creando le cartelle mancanti) su un FileChannel bufferizzato,
+     * con l'eventuale compressore davanti; lo stream conta i byte JSON e quelli scritti su file.
+     */
+    static CountingOutputStream openOutput(Path path, boolean durable, OutputCompression compression) throws IOException {
+        // Create parent folders when missing.
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        ChannelOutputStream file = new ChannelOutputStream(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), durable);
+        try {
+            return new CountingOutputStream(compression.wrap(file), file);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader(SpecificationDto specificationDto, ContextDto contextDto) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("UrbanDataset");
+        generator.writeStartObject();
+        if (specificationDto != null) {
+            generator.writeFieldName("specification");
+            valueWriter.writeValue(generator, specificationDto);
+        }
+        if (contextDto != null) {
+            generator.writeFieldName("context");
+            valueWriter.writeValue(generator, contextDto);
+        }
+        generator.writeFieldName("values");
+        generator.writeStartObject();
+        generator.writeFieldName("line");
+        generator.writeStartArray();
+    }
+
+    /**
+     * Accoda una riga a values.line.
+     *
+     * @param value riga da scrivere
+     *
+     * @throws IOException error
+     */
+    public void writeLine(ResultValueDto value) throws IOException {
+        writeLine(value, value != null ? value.getId() : 0);
+    }
+
+    /**
+     * Accoda una riga a values.line scrivendo l'id indicato al posto di quello del DTO, che
+     * resta invariato.
+     *
+     * @param value riga da scrivere
+     * @param id id da scrivere nel file
+     *
+     * @throws IOException error
+     */
+    public void writeLine(ResultValueDto value, int id) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            writeValue(value, id);
+        }
+        lines++;
+    }
+
+    /**
+     * Accoda a values.line una riga di un {@link UdValueBlock}, scritta dalle colonne del blocco
+     * con gli stessi campi e lo stesso testo della riga come DTO.
+     *
+     * @param block blocco di righe
+     * @param row indice della riga nel blocco
+     * @param id id da scrivere nel file
+     *
+     * @throws IOException error
+     */
+    public void writeLine(UdValueBlock block, int row, int id) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", id);
+        if (block.hasProperties(row)) {
+            generator.writeFieldName("property");
+            generator.writeStartArray();
+            for (int i = block.propertyStart(row); i < block.propertyEnd(row); i++) {
+                if (block.isNullProperty(i)) {
+                    generator.writeNull();
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("name", block.propertyName(i));
+                generator.writeFieldName("val");
+                if (block.isDecimalProperty(i)) {
+                    generator.writeString(buffer, 0, block.renderProperty(i, buffer));
+                } else {
+                    writeObject(block.propertyValue(i));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (block.coordinates(row) != null) {
+            generator.writeFieldName("coordinates");
+            valueWriter.writeValue(generator, block.coordinates(row));
+        }
+        if (block.timestamp(row) != null) {
+            generator.writeFieldName("timestamp");
+            writeObject(block.timestamp(row));
+        }
+        String[] keys = block.periodKeys(row);
+        if (keys != null) {
+            generator.writeFieldName("period");
+            generator.writeStartObject();
+            int index = block.periodStart(row);
+            for (String key : keys) {
+                if (block.isNumericTimestamp(index)) {
+                    generator.writeFieldName(key);
+                    generator.writeString(buffer, 0, block.renderTimestamp(index, buffer));
+                } else if (block.periodObject(index) != null) {
+                    generator.writeFieldName(key);
+                    writeObject(block.periodObject(index));
+                }
+                index++;
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        lines++;
+    }
+
+    /**
+     * Stessi campi e stesso ordine del serializer di ResultValueDto: period ha un @JsonProperty
+     * esplicito e Jackson lo scrive per ultimo; NON_NULL vale anche per le voci della mappa,
+     * ALWAYS su PropertyValueDto. I valori diversi da String passano dal serializer Jackson.
+     */
+    private void writeValue(ResultValueDto value, int id) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", id);
+        List<PropertyValueDto> properties = value.getProperty();
+        if (properties != null) {
+            generator.writeFieldName("property");
+            generator.writeStartArray();
+            for (PropertyValueDto property : properties) {
+                if (property == null) {
+                    generator.writeNull();
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("name", property.getName());
+                generator.writeStringField("val", property.getVal());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (value.getCoordinates() != null) {
+            generator.writeFieldName("coordinates");
+            valueWriter.writeValue(generator, value.getCoordinates());
+        }
+        if (value.getTimestamp() != null) {
+            generator.writeFieldName("timestamp");
+            writeObject(value.getTimestamp());
+        }
+        EpochPeriod.flush(value);
+        Map<String, Object> period = value.getPeriod();
+        if (period != null) {
+            generator.writeFieldName("period");
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> entry : period.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                generator.writeFieldName(entry.getKey());
+                writeObject(entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeObject(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String text) {
+            generator.writeString(text);
+        } else {
+            valueWriter.writeValue(generator, value);
+        }
+    }
+
+    /** Numero di righe scritte finora. */
+    public int getLines() {
+        return lines;
+    }
+
+    /** Byte JSON scritti finora, prima della compressione. */
+    public long getJsonBytes() {
+        return output.getCount();
+    }
+
+    /** Byte scritti su file; completi solo dopo la chiusura, quando il compressore e svuotato. */
+    public long getStoredBytes() {
+        return output.getStoredBytes();
+    }
+
+    /** Path del file in scrittura. */
+    public Path getPath() {
+        return path;
+    }
+
+    /** Chiude values.line e l'UD e rilascia il file. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+    }
+
+    /** Chiude il file senza completare il JSON, usato quando la conversione fallisce. */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            generator.close();
+        } catch (IOException ignored) {
+            // il file verra comunque rimosso dal chiamante
+        }
+    }
+
+    /**
+     * Conta i byte che attraversano lo stream (JSON non compresso) ed espone quelli arrivati sul
+     * file, per il rapporto di compressione.
+     */
+    static final class CountingOutputStream extends FilterOutputStream {
+
+        private final ChannelOutputStream file;
+        private long count;
+
+        private CountingOutputStream(OutputStream output, ChannelOutputStream file) {
+            super(output);
+            this.file = file;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getStoredBytes() {
+            return file.written;
+        }
+    }
+
+    /**
+     * OutputStream su FileChannel. Il buffer diretto viene preso in prestito dal thread e
+     * restituito alla chiusura, cosi scritture successive sullo stesso thread non ne allocano
+     * uno nuovo; se e gia in uso (due file aperti insieme) se ne crea uno temporaneo. Con durable
+     * la chiusura attende che i dati siano su disco.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+        private final FileChannel channel;
+        private final boolean durable;
+        private ByteBuffer buffer;
+        private long written;
+
+        private ChannelOutputStream(FileChannel channel, boolean durable) {
+            this.channel = channel;
+            this.durable = durable;
+            ByteBuffer pooled = BUFFERS.get();
+            if (pooled != null) {
+                BUFFERS.remove();
+                this.buffer = pooled;
+            } else {
+                this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            written += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                drain();
+                if (durable) {
+                    channel.force(true);
+                }
+            } finally {
+                buffer.clear();
+                if (BUFFERS.get() == null) {
+                    BUFFERS.set(buffer);
+                }
+                buffer = null;
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.exprivia.nest.cruud.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Transizioni di una timeZone in un anno, calcolate una volta e condivise dall'intero processo
+ * (cache per ZoneId e anno). Gap e overlap sono intervalli [inizio, fine) di orari locali espressi
+ * in secondi epoch (l'orario locale letto come UTC, come in {@link EpochPeriod}): un orario fuori
+ * da questi intervalli ha un solo offset valido, trovato con un confronto per intervallo invece
+ * di interrogare {@link ZoneRules} per ogni timestamp.
+ * Gli offset restituiti sono gli stessi di {@link ZoneRules#getValidOffsets(LocalDateTime)}.
+ */
+@Slf4j
+public final class ZoneTransitionIndex {
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final ConcurrentMap<YearKey, ZoneTransitionIndex> CACHE = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+    private final int year;
+    private final long yearStart;
+    private final long yearEnd;
+    /** Intervalli di gap/overlap nell'anno, in ordine. */
+    private final long[] windowStart;
+    private final long[] windowEnd;
+    private final ZoneOffsetTransition[] transitions;
+    private final List<ZoneOffset>[] windowOffsets;
+    /** Offset prima del primo intervallo e dopo ciascun intervallo (length = intervalli + 1). */
+    private final ZoneOffset[] segmentOffset;
+    private final List<ZoneOffset>[] segmentOffsets;
+    private final LocalDateTime springForwardLocal;
+    private final LocalDateTime autumnSecondPassLocal;
+
+    private record YearKey(ZoneId zone, int year) { }
+
+    /**
+     * Transizioni della timeZone nell'anno indicato.
+     *
+     * @param zone timeZone
+     * @param year anno dell'orario locale
+     * @return indice condiviso
+     */
+    public static ZoneTransitionIndex of(ZoneId zone, int year) {
+        return CACHE.computeIfAbsent(new YearKey(zone, year), key -> new ZoneTransitionIndex(key.zone(), key.year()));
+    }
+
+    /**
+     * Transizioni dell'anno che contiene l'orario locale indicato.
+     *
+     * @param zone timeZone
+     * @param localSecond orario locale in secondi epoch
+     * @return indice condiviso
+     */
+    public static ZoneTransitionIndex forLocalSecond(ZoneId zone, long localSecond) {
+        return of(zone, LocalDate.ofEpochDay(Math.floorDiv(localSecond, SECONDS_PER_DAY)).getYear());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ZoneTransitionIndex(ZoneId zone, int year) {
+        this.zone = zone;
+        this.year = year;
+        this.yearStart = LocalDate.of(year, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+        this.yearEnd = LocalDate.of(year + 1, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+        ZoneRules rules = zone.getRules();
+
+        List<ZoneOffsetTransition> found = new ArrayList<>();
+        Instant search = Instant.ofEpochSecond(yearStart - 2 * SECONDS_PER_DAY);
+        ZoneOffsetTransition trans;
+        while ((trans = rules.nextTransition(search)) != null) {
+            if (localStart(trans) >= yearEnd) {
+                break;
+            }
+            if (localEnd(trans) > yearStart) {
+                found.add(trans);
+            }
+            search = trans.getInstant();
+        }
+
+        int size = found.size();
+        this.transitions = found.toArray(new ZoneOffsetTransition[0]);
+        this.windowStart = new long[size];
+        this.windowEnd = new long[size];
+        this.windowOffsets = new List[size];
+        this.segmentOffset = new ZoneOffset[size + 1];
+        this.segmentOffsets = new List[size + 1];
+        segmentOffset[0] = size > 0 ? transitions[0].getOffsetBefore()
+                : rules.getOffset(LocalDateTime.ofEpochSecond(yearStart, 0, ZoneOffset.UTC));
+        segmentOffsets[0] = List.of(segmentOffset[0]);
+        for (int i = 0; i < size; i++) {
+            windowStart[i] = localStart(transitions[i]);
+            windowEnd[i] = localEnd(transitions[i]);
+            windowOffsets[i] = transitions[i].isGap() ? List.of()
+                    : List.of(transitions[i].getOffsetBefore(), transitions[i].getOffsetAfter());
+            segmentOffset[i + 1] = transitions[i].getOffsetAfter();
+            segmentOffsets[i + 1] = List.of(segmentOffset[i + 1]);
+        }
+
+        LocalDateTime[] legacy = firstGapAndOverlap(rules);
+        this.springForwardLocal = legacy[0];
+        this.autumnSecondPassLocal = legacy[1];
+        log.debug("Utils: indexed {} transition(s) for {} in {}", size, zone, year);
+    }
+
+    /**
+     * Primo gap e primo overlap dell'anno cercando le transizioni da inizio anno, come li usa
+     * {@link TimeUtils#normalizePeriodsForUd}.
+     */
+    private LocalDateTime[] firstGapAndOverlap(ZoneRules rules) {
+        Instant search = LocalDateTime.of(year, 1, 1, 0, 0).atZone(zone).toInstant();
+        LocalDateTime springAfter = null;
+        LocalDateTime autumnSecond = null;
+        while (true) {
+            ZoneOffsetTransition trans = rules.nextTransition(search);
+            if (trans == null) {
+                break;
+            }
+            int transYearBefore = trans.getDateTimeBefore().getYear();
+            int transYearAfter = trans.getDateTimeAfter().getYear();
+            if (transYearBefore > year) {
+                break;
+            }
+            boolean inYear = transYearAfter == year || transYearBefore == year;
+            if (trans.isGap()) {
+                // Gap (primavera): primo orario valido dopo il salto
+                if (springAfter == null && inYear) {
+                    springAfter = trans.getDateTimeAfter();
+                }
+            } else if (autumnSecond == null && inYear) {
+                // Overlap (autunno): dateTimeAfter e l'inizio della seconda occorrenza
+                autumnSecond = trans.getDateTimeAfter();
+            }
+            if (springAfter != null && autumnSecond != null) {
+                break;
+            }
+            // Avanza oltre la transizione corrente: ripartire dall'orario locale dopo un overlap
+            // tornerebbe prima della transizione stessa
+            search = trans.getInstant();
+        }
+        return new LocalDateTime[] {springAfter, autumnSecond};
+    }
+
+    /** True se l'orario locale appartiene all'anno di questo indice. */
+    public boolean covers(long localSecond) {
+        return localSecond >= yearStart && localSecond < yearEnd;
+    }
+
+    /**
+     * Intervallo di gap/overlap che contiene l'orario locale.
+     *
+     * @param localSecond orario locale in secondi epoch (i nanosecondi non cambiano il risultato)
+     * @return indice dell'intervallo, -1 se l'orario ha un solo offset valido
+     */
+    public int windowAt(long localSecond) {
+        for (int i = 0; i < windowStart.length; i++) {
+            if (localSecond < windowStart[i]) {
+                return -1;
+            }
+            if (localSecond < windowEnd[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Unico offset valido per l'orario locale.
+     *
+     * @param localSecond orario locale in secondi epoch
+     * @return offset, null se l'orario cade in un gap o in un overlap
+     */
+    public ZoneOffset offsetAt(long localSecond) {
+        int segment = 0;
+        for (int i = 0; i < windowStart.length; i++) {
+            if (localSecond < windowStart[i]) {
+                break;
+            }
+            if (localSecond < windowEnd[i]) {
+                return null;
+            }
+            segment = i + 1;
+        }
+        return segmentOffset[segment];
+    }
+
+    /**
+     * Offset validi per l'orario locale: vuoto nel gap, prima e dopo la transizione nell'overlap.
+     *
+     * @param localSecond orario locale in secondi epoch
+     * @return lista condivisa e immutabile
+     */
+    public List<ZoneOffset> validOffsets(long localSecond) {
+        int segment = 0;
+        for (int i = 0; i < windowStart.length; i++) {
+            if (localSecond < windowStart[i]) {
+                break;
+            }
+            if (localSecond < windowEnd[i]) {
+                return windowOffsets[i];
+            }
+            segment = i + 1;
+        }
+        return segmentOffsets[segment];
+    }
+
+    /** Transizione dell'intervallo indicato da {@link #windowAt(long)}. */
+    public ZoneOffsetTransition transition(int window) {
+        return transitions[window];
+    }
+
+    /** Fine (esclusa) dell'intervallo indicato, in secondi epoch locali. */
+    public long windowEnd(int window) {
+        return windowEnd[window];
+    }
+
+    /** Primo orario valido dopo il primo gap dell'anno, null se assente. */
+    public LocalDateTime getSpringForwardLocal() {
+        return springForwardLocal;
+    }
+
+    /** Inizio della seconda occorrenza nel primo overlap dell'anno, null se assente. */
+    public LocalDateTime getAutumnSecondPassLocal() {
+        return autumnSecondPassLocal;
+    }
+
+    /**
+     * Offset validi per l'orario locale, dall'indice del suo anno.
+     *
+     * @param zone timeZone
+     * @param ldt orario locale
+     * @return come {@link ZoneRules#getValidOffsets(LocalDateTime)}
+     */
+    public static List<ZoneOffset> validOffsets(ZoneId zone, LocalDateTime ldt) {
+        return of(zone, ldt.getYear()).validOffsets(ldt.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static long localStart(ZoneOffsetTransition trans) {
+        return Math.min(trans.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC), trans.getDateTimeAfter().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static long localEnd(ZoneOffsetTransition trans) {
+        return Math.max(trans.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC), trans.getDateTimeAfter().toEpochSecond(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,208 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.PropertyFilterDto;
+import com.exprivia.nest.cruud.dto.RequestResultDto;
+import com.exprivia.nest.cruud.exception.DuplicateNameException;
+import com.exprivia.nest.cruud.mapper.ExtractionMapperImpl;
+import com.exprivia.nest.cruud.mapper.PropertyMapperImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput end-to-end della conversione da cartella (executeConversionFromFolder) su CSV
+ * sintetici grandi, con la property letta da Mongo. Gira solo con il profilo perf:
+ * <pre>
+ * mvn -Pperf test [-Dperf.sizeMb=4096] [-Dperf.width=4] [-Dperf.mongodb.uri=mongodb://localhost:27017/cruud-perf]
+ * </pre>
+ * Senza perf.mongodb.uri il test avvia un Mongo in memoria. Per ogni layout riporta righe/s, MB/s,
+ * picco di heap e tempo di GC nel log e in target/perf/throughput.csv.
+ */
+@Slf4j
+@Tag("perf")
+@DataMongoTest
+@Import({TransformerService.class, TimeNormalizationService.class, ObjectMapper.class,
+        PropertyService.class, PropertyMapperImpl.class, ExtractionService.class, ExtractionMapperImpl.class})
+@TestPropertySource(properties = "temp-folder=target/perf/temp/")
+class TransformerServiceThroughputTest {
+
+    private static final Path ROOT = Path.of(System.getProperty("perf.dir", "target/perf"));
+    private static final long SIZE_MB = Long.getLong("perf.sizeMb", 256);
+    private static final int WIDTH = Integer.getInteger("perf.width", 4);
+    /** File dei layout PLAIN e PERIOD; nel layout SLOT ogni file e un contatore per un anno. */
+    private static final int FILES = Integer.getInteger("perf.files", 4);
+    private static final long MB = 1024 * 1024;
+    private static final LocalDate SLOT_YEAR = LocalDate.of(2024, 1, 1);
+
+    private static MongoServer mongoServer;
+
+    @Autowired
+    private TransformerService transformerService;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        String uri = System.getProperty("perf.mongodb.uri");
+        if (uri == null || uri.isBlank()) {
+            mongoServer = new MongoServer(new MemoryBackend());
+            InetSocketAddress address = mongoServer.bind();
+            uri = "mongodb://" + address.getHostString() + ':' + address.getPort() + "/cruud-perf";
+        }
+        String mongoUri = uri;
+        registry.add("spring.data.mongodb.uri", () -> mongoUri);
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongoServer != null) {
+            mongoServer.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SyntheticDataset.Layout.class)
+    void convertFolder(SyntheticDataset.Layout layout) throws IOException, DuplicateNameException {
+        String name = "perf_" + layout.name().toLowerCase(Locale.ROOT);
+        Path folder = ROOT.resolve(name);
+        FileSystemUtils.deleteRecursively(folder);
+        Path source = Files.createDirectories(folder.resolve("source"));
+        Files.createDirectories(ROOT.resolve("temp"));
+
+        Generated generated = generate(layout, source);
+        SyntheticDataset dataset = dataset(layout, 0);
+        saveProperty(dataset.property(name));
+        ExtractionDto extraction = dataset.extraction(name, source, folder.resolve("output"));
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+        long start = System.nanoTime();
+
+        RequestResultDto result = transformerService.executeConversionFromFolder(extraction);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcTime = gcTime() - gcTimeBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        // Somma dei picchi dei singoli pool: limite superiore del picco di heap
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        assertEquals(generated.files(), result.getFilesCompleted().size(), result.getDescription());
+
+        double rowsPerSecond = generated.rows() / seconds;
+        double valuesPerSecond = generated.rows() * dataset.valuesPerRow() / seconds;
+        double mbPerSecond = generated.bytes() / (double) MB / seconds;
+        log.info("Throughput {}: {} file(s), {} MB, {} rows in {} s -> {} rows/s, {} values/s, {} MB/s, peak heap {} MB, GC {} ms in {} collection(s)",
+                layout, generated.files(), generated.bytes() / MB, generated.rows(), format(seconds),
+                format(rowsPerSecond), format(valuesPerSecond), format(mbPerSecond), peakHeap / MB, gcTime, gcCount);
+        report(String.join(",", layout.name(), String.valueOf(generated.files()), String.valueOf(generated.bytes()),
+                String.valueOf(generated.rows()), format(seconds), format(rowsPerSecond), format(valuesPerSecond),
+                format(mbPerSecond), String.valueOf(peakHeap), String.valueOf(gcTime), String.valueOf(gcCount)));
+    }
+
+    private record Generated(int files, long rows, long bytes) { }
+
+    /**
+     * PLAIN e PERIOD: FILES file che si alternano tra le settimane del cambio ora legale e solare.
+     * SLOT: un file per contatore con un anno di fasce, finche non si raggiunge la dimensione.
+     */
+    private Generated generate(SyntheticDataset.Layout layout, Path source) throws IOException {
+        long target = SIZE_MB * MB;
+        int files = 0;
+        long rows = 0;
+        long bytes = 0;
+        if (layout == SyntheticDataset.Layout.SLOT) {
+            int days = SLOT_YEAR.lengthOfYear();
+            while (bytes < target) {
+                Path file = dataset(layout, files).write(source.resolve("meter_" + files + ".csv"), days);
+                rows += days;
+                bytes += Files.size(file);
+                files++;
+            }
+        } else {
+            for (; files < FILES; files++) {
+                Path file = source.resolve(layout.name().toLowerCase(Locale.ROOT) + '_' + files + ".csv");
+                rows += dataset(layout, files).writeAtLeast(file, target / FILES);
+                bytes += Files.size(file);
+            }
+        }
+        return new Generated(files, rows, bytes);
+    }
+
+    private static SyntheticDataset dataset(SyntheticDataset.Layout layout, int file) {
+        LocalDate firstDay = switch (layout) {
+            case SLOT -> SLOT_YEAR;
+            default -> file % 2 == 0 ? LocalDate.of(2024, 3, 28) : LocalDate.of(2024, 10, 24);
+        };
+        return SyntheticDataset.of(layout, WIDTH, firstDay)
+                .withMeters(layout == SyntheticDataset.Layout.PERIOD ? 1000 : 16)
+                .withSeed(file)
+                .withNegativeValues()
+                .withCoordinates();
+    }
+
+    /** Registra la property in Mongo, sostituendo quella di un'esecuzione precedente. */
+    private void saveProperty(PropertyDto property) throws DuplicateNameException {
+        propertyService.getFilteredProperties(PropertyFilterDto.builder().propertiesName(List.of(property.getName())).build())
+                .forEach(existing -> propertyService.remove(existing.getId()));
+        propertyService.create(property);
+    }
+
+    private static void report(String line) throws IOException {
+        Path report = ROOT.resolve("throughput.csv");
+        if (Files.notExists(report)) {
+            Files.writeString(report, "layout,files,bytes,rows,seconds,rowsPerSecond,valuesPerSecond,mbPerSecond,peakHeapBytes,gcMillis,gcCount\n",
+                    StandardCharsets.UTF_8);
+        }
+        Files.writeString(report, line + '\n', StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,86 @@
+package com.exprivia.nest.cruud.config;
+
+import com.exprivia.nest.cruud.model.Extraction;
+import com.exprivia.nest.cruud.model.Property;
+import com.exprivia.nest.cruud.service.ExtractionService;
+import com.exprivia.nest.cruud.service.PropertyService;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache invalidation config test: the change stream container is running once the context is
+ * started and every event on a collection clears the cache of its service.
+ */
+@ExtendWith(SpringExtension.class)
+@Import({CacheInvalidationConfig.class, CacheInvalidationConfigTest.MongoConfig.class})
+class CacheInvalidationConfigTest {
+
+    @TestConfiguration
+    static class MongoConfig {
+
+        @Bean
+        MongoTemplate mongoTemplate() {
+            MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+            Mockito.when(mongoTemplate.getCollectionName(Property.class)).thenReturn("Properties");
+            Mockito.when(mongoTemplate.getCollectionName(Extraction.class)).thenReturn("Extractions");
+            Mockito.when(mongoTemplate.getConverter())
+                    .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+            return mongoTemplate;
+        }
+
+    }
+
+    @MockitoBean
+    private PropertyService propertyService;
+
+    @MockitoBean
+    private ExtractionService extractionService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MessageListenerContainer cacheInvalidationContainer;
+
+    @Test
+    void containerIsRunningAfterContextStart() {
+        assertTrue(cacheInvalidationContainer.isRunning());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changeEventsClearTheCacheOfTheirCollection() {
+        List<ChangeStreamRequest<Document>> requests =
+                CacheInvalidationConfig.invalidationRequests(mongoTemplate, propertyService, extractionService);
+        assertEquals(List.of("Properties", "Extractions"),
+                requests.stream().map(request -> request.getRequestOptions().getCollectionName()).toList());
+
+        requests.get(0).getMessageListener().onMessage(Mockito.mock(Message.class));
+        Mockito.verify(propertyService).invalidateCache();
+        Mockito.verifyNoInteractions(extractionService);
+
+        requests.get(1).getMessageListener().onMessage(Mockito.mock(Message.class));
+        Mockito.verify(extractionService).invalidateCache();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.exprivia.nest.cruud.handler;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
+import com.exprivia.nest.cruud.service.ExternalService;
+import com.exprivia.nest.cruud.service.ExtractionService;
+import com.exprivia.nest.cruud.service.LeaseService;
+import com.exprivia.nest.cruud.service.RabbitPublisher;
+import com.exprivia.nest.cruud.service.TransformerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rabbit handler test: an extraction is discovered by one consumer thread at a time.
+ */
+@ExtendWith(SpringExtension.class)
+@Import({RabbitHandler.class, ObjectMapper.class})
+class RabbitHandlerTest {
+
+    private static final String EXTRACTION_NAME = "lab_extraction";
+
+    @Autowired
+    private RabbitHandler rabbitHandler;
+
+    @MockitoBean
+    private ExtractionService extractionService;
+
+    @MockitoBean
+    private ExternalService externalService;
+
+    @MockitoBean
+    private TransformerService transformerService;
+
+    @MockitoBean
+    private RabbitPublisher rabbitPublisher;
+
+    @MockitoBean
+    private LeaseService leaseService;
+
+    @Test
+    void concurrentConvertEventsOfOneExtractionDiscoverItOnce() throws Exception {
+        ExtractionDto extraction = ExtractionDto.builder()
+                .extractionName(EXTRACTION_NAME)
+                .propertyName("lab_load")
+                .sourceFilesPath("/data/lab")
+                .autoConvert(true)
+                .build();
+        Mockito.when(extractionService.getByExtractionName(EXTRACTION_NAME)).thenReturn(Optional.of(extraction));
+        // the lease is held per instance: both threads of this instance get it
+        Mockito.when(leaseService.tryAcquire(Mockito.anyString())).thenReturn(true);
+
+        CountDownLatch discovering = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.when(transformerService.discoverFiles(extraction)).thenAnswer(invocation -> {
+            discovering.countDown();
+            assertTrue(finish.await(10, TimeUnit.SECONDS));
+            return List.<FileWorkItemDto>of();
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> rabbitHandler.consumeConvertCsv(EXTRACTION_NAME));
+        assertTrue(discovering.await(10, TimeUnit.SECONDS));
+
+        rabbitHandler.consumeConvertCsv(EXTRACTION_NAME);
+        Mockito.verify(leaseService, Mockito.never()).release(Mockito.anyString());
+
+        finish.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        Mockito.verify(transformerService, Mockito.times(1)).discoverFiles(extraction);
+        Mockito.verify(leaseService, Mockito.times(1)).release("extraction:" + EXTRACTION_NAME);
+
+        // once the first discovery is over the extraction can be discovered again
+        Mockito.reset(transformerService);
+        rabbitHandler.consumeConvertCsv(EXTRACTION_NAME);
+        Mockito.verify(transformerService, Mockito.times(1)).discoverFiles(extraction);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.exprivia.nest.cruud.repository;
+
+import com.exprivia.nest.cruud.model.Lease;
+import com.exprivia.nest.cruud.repository.impl.CustomLeaseRepositoryImpl;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lease Repository Test Class
+ */
+@ExtendWith(SpringExtension.class)
+@Import(CustomLeaseRepositoryImpl.class)
+public class LeaseRepositoryTest {
+
+    @MockitoBean
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CustomLeaseRepositoryImpl leaseRepository;
+
+    @Test
+    void testTryAcquireUpsertsExpiredOrOwnLease() {
+        Date now = new Date(1_000);
+        Date expiresAt = new Date(31_000);
+
+        assertTrue(leaseRepository.tryAcquire("scheduler", "node-a", now, expiresAt));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).upsert(query.capture(), update.capture(), Mockito.eq(Lease.class));
+        assertEquals("scheduler", query.getValue().getQueryObject().get("id"));
+        assertTrue(query.getValue().getQueryObject().containsKey("$or"));
+        assertEquals("node-a", update.getValue().getUpdateObject().get("$set", Document.class).get("holder"));
+        assertEquals(expiresAt, update.getValue().getUpdateObject().get("$set", Document.class).get("expiresAt"));
+    }
+
+    @Test
+    void testTryAcquireFailsWhenHeldByAnotherInstance() {
+        Mockito.when(mongoTemplate.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Lease.class)))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        assertFalse(leaseRepository.tryAcquire("scheduler", "node-b", new Date(), new Date()));
+    }
+
+    @Test
+    void testReleaseRemovesOnlyOwnLease() {
+        leaseRepository.release("scheduler", "node-a");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).remove(query.capture(), Mockito.eq(Lease.class));
+        assertEquals("node-a", query.getValue().getQueryObject().get("holder"));
+    }
+
+}
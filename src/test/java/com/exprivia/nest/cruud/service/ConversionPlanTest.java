@@ -0,0 +1,118 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversionPlanTest {
+
+    private static final String[] HEADER = {"entity_id", "power", "last_changed"};
+
+    private ConversionPlan plan;
+
+    @BeforeEach
+    void setUp() {
+        plan = compile(Map.of("Voltage", "null"));
+    }
+
+    private static ConversionPlan compile(Map<String, String> nullsField) {
+        HashMap<String, ValueDto> mappings = new HashMap<>();
+        mappings.put("entity_id", ValueDto.builder().name("EnergyMeterID").build());
+        mappings.put("power", ValueDto.builder().name("ConsumedPower").nameForNegative("ProducedPower").build());
+
+        HashMap<String, Object> configurations = new HashMap<>();
+        configurations.put("date", "last_changed");
+        configurations.put("nullsField", nullsField);
+
+        PropertyDto propertyDto = PropertyDto.builder()
+                .name("meter")
+                .mappings(mappings)
+                .configurations(configurations)
+                .build();
+
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("propertyDefinition", List.of(
+                Map.of("propertyName", "EnergyMeterID"),
+                Map.of("propertyName", "ConsumedPower"),
+                Map.of("propertyName", "ProducedPower")
+        ));
+        SpecificationDto specificationDto = new ObjectMapper()
+                .convertValue(Map.of("properties", properties), SpecificationDto.class);
+
+        return ConversionPlan.compile(HEADER, propertyDto, specificationDto, List.of("last_changed"), 15);
+    }
+
+    @Test
+    void resolvesColumnsOnceFromHeader() {
+        assertEquals(2, plan.getDateColumn());
+        assertArrayEquals(new int[]{2}, plan.getPeriodColumns());
+        assertEquals(-1, plan.periodDataColumn(0));
+        assertEquals(-1, plan.getFirstPropertyColumn());
+        assertEquals(15, plan.getSlice());
+    }
+
+    @Test
+    void positiveValueGoesToNameAndNullToNegativeName() {
+        List<PropertyValueDto> values = plan.buildProperties(new String[]{"meter.1", "12,5", "2024-01-01"}, -1);
+
+        assertEquals("12.5", valueOf(values, "ConsumedPower"));
+        assertEquals("null", valueOf(values, "ProducedPower"));
+        assertEquals("meter.1", valueOf(values, "EnergyMeterID"));
+        assertEquals("null", valueOf(values, "Voltage"));
+    }
+
+    @Test
+    void negativeValueGoesToNegativeName() {
+        List<PropertyValueDto> values = plan.buildProperties(new String[]{"meter.1", "-3", "2024-01-01"}, -1);
+
+        assertEquals("null", valueOf(values, "ConsumedPower"));
+        assertEquals("-3", valueOf(values, "ProducedPower"));
+    }
+
+    @Test
+    void unmappedColumnToReadFails() {
+        String[] line = {"meter.1", "1", "2024-01-01"};
+
+        assertThrows(IndexOutOfBoundsException.class, () -> plan.buildProperties(line, 2));
+    }
+
+    @Test
+    void nullFieldsAreMatchedIgnoringCaseAndNamesAreShared() {
+        HashMap<String, String> nulls = new HashMap<>();
+        nulls.put("consumedpower", "x");
+        nulls.put("Voltage", "null");
+        nulls.put("VOLTAGE", "y");
+        ConversionPlan withNulls = compile(nulls);
+
+        List<PropertyValueDto> first = withNulls.buildProperties(new String[]{"meter.1", "5", "2024-01-01"}, -1);
+        List<PropertyValueDto> second = withNulls.buildProperties(new String[]{"meter.2", "-5", "2024-01-01"}, -1);
+
+        assertEquals(4, first.size());
+        assertEquals("5", valueOf(first, "ConsumedPower"));
+        assertEquals(1, first.stream().filter(value -> value.getName().equalsIgnoreCase("voltage")).count());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i).getName(), second.get(i).getName());
+        }
+    }
+
+    private String valueOf(List<PropertyValueDto> values, String name) {
+        return values.stream()
+                .filter(value -> value.getName().equals(name))
+                .map(PropertyValueDto::getVal)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Extraction Service Test
@@ -40,6 +41,15 @@ public class ExtractionServiceTest extends ExtractionBaseTest {
         assertEquals(create, extractionDto);
     }
 
+    @Test
+    void createRejectsAnUnsupportedOutputCompression() {
+        var dto = extractionMapper.modelToDto(extractionMapper.dtoToModel(extractionDto));
+        dto.setOutputCompression("brotli");
+
+        assertThrows(IllegalArgumentException.class, () -> extractionService.create(dto));
+        Mockito.verify(extractionRepository, Mockito.never()).save(Mockito.any(Extraction.class));
+    }
+
     @Test
     void getAllTest() {
         Mockito.when(extractionRepository.findAll()).thenReturn(List.of(extractionMapper.dtoToModel(extractionDto)));
@@ -83,6 +83,22 @@ public class PropertyServiceTest extends PropertyBaseTest {
         assertEquals(List.of(propertyDto), result);
     }
 
+    @Test
+    void getFilteredPropertiesByNameIsCachedUntilWrite() {
+        PropertyFilterDto filterDto = PropertyFilterDto.builder().propertiesName(List.of("cached-name")).build();
+
+        Mockito.when(propertyRepository.getFilteredProperties(filterDto)).thenReturn(List.of(propertyMapper.dtoToModel(propertyDto)));
+
+        var first = propertyService.getFilteredProperties(filterDto);
+        var second = propertyService.getFilteredProperties(filterDto);
+        assertSame(first.get(0), second.get(0));
+        Mockito.verify(propertyRepository, Mockito.times(1)).getFilteredProperties(filterDto);
+
+        propertyService.remove(ID);
+        propertyService.getFilteredProperties(filterDto);
+        Mockito.verify(propertyRepository, Mockito.times(2)).getFilteredProperties(filterDto);
+    }
+
     @Test
     void testDtoToModel_NullDto_ReturnsNull() {
         // Act
@@ -0,0 +1,161 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.utils.CsvLineReader;
+import com.exprivia.nest.cruud.utils.DateColumnFormat;
+import com.exprivia.nest.cruud.utils.MappedCsvReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Misura con il ThreadMXBean i byte allocati per riga dal ciclo reader mappato + piano di
+ * conversione: oltre ai record prodotti e alle celle lette devono restare pochi byte per riga.
+ */
+class RowAllocationTest {
+
+    private static final int ROWS = 20_000;
+    private static final String[] HEADER = {"entity_id", "date", "00:00-00:15", "00:15-00:30", "unused"};
+    /** Margine per riga oltre agli oggetti di riferimento (crescite di buffer, riallineamenti). */
+    private static final long SLACK_PER_ROW = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void steadyStateAllocatesOnlyTheRecordsAndTheCells() throws Exception {
+        Path csv = tempDir.resolve("rows.csv");
+        StringBuilder content = new StringBuilder(String.join(",", HEADER)).append('\n');
+        for (int i = 0; i < ROWS; i++) {
+            content.append("meter.").append(i % 7).append(",2024-01-").append(10 + i / 2000).append(',')
+                    .append(i % 1000).append(".5,").append(i % 100).append(".25,ignored\n");
+        }
+        Files.writeString(csv, content, StandardCharsets.ISO_8859_1);
+        ConversionPlan plan = compile();
+
+        RecordCounter records = new RecordCounter();
+        for (int warmup = 0; warmup < 10; warmup++) {
+            convert(csv, plan, records);
+        }
+        records.count = 0;
+        long loop = Long.MAX_VALUE;
+        long reference = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            loop = Math.min(loop, measure(() -> convert(csv, plan, records)));
+            reference = Math.min(reference, measure(RowAllocationTest::allocateReference));
+        }
+
+        assertEquals(5L * ROWS * 2, records.count);
+        long loopPerRow = loop / ROWS;
+        long referencePerRow = reference / ROWS;
+        assertTrue(loopPerRow <= referencePerRow + SLACK_PER_ROW,
+                "row loop allocates " + loopPerRow + " bytes/row, records and cells take " + referencePerRow);
+    }
+
+    private static void convert(Path csv, ConversionPlan plan, Consumer<ResultValueDto> records) {
+        try (CsvLineReader reader = MappedCsvReader.open(csv, ',', StandardCharsets.ISO_8859_1)) {
+            reader.readNext();
+            reader.retainColumns(plan.getReferencedColumns());
+            reader.reuseLines();
+            DateColumnFormat.Reader dates = new DateColumnFormat().newReader();
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                plan.convertLine(line, dates, records);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gli stessi oggetti che il ciclo non puo evitare: le celle lette (tranne quella non usata) e,
+     * per ognuno dei due periodi, record, mappa period con due timestamp e lista di due property
+     * (il valore della colonna periodo e il contatore).
+     */
+    private static void allocateReference() {
+        byte[] cell = "2024-01-10".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] timestamp = "2024-01-10T00:00:00".getBytes(StandardCharsets.ISO_8859_1);
+        Object sink = null;
+        for (int i = 0; i < ROWS; i++) {
+            String entity = new String(cell, 0, 7, StandardCharsets.ISO_8859_1);
+            new String(cell, 0, 10, StandardCharsets.ISO_8859_1);
+            String[] powers = {new String(cell, 0, 5, StandardCharsets.ISO_8859_1), new String(cell, 0, 5, StandardCharsets.ISO_8859_1)};
+            for (int p = 0; p < 2; p++) {
+                HashMap<String, Object> period = new HashMap<>();
+                period.put("start_ts", new String(timestamp, StandardCharsets.ISO_8859_1));
+                period.put("end_ts", new String(timestamp, StandardCharsets.ISO_8859_1));
+                List<PropertyValueDto> properties = new ArrayList<>(2);
+                properties.add(new PropertyValueDto("ConsumedPower", powers[p]));
+                properties.add(new PropertyValueDto("EnergyMeterID", entity));
+                ResultValueDto value = new ResultValueDto();
+                value.setPeriod(period);
+                value.setProperty(properties);
+                sink = value;
+            }
+        }
+        if (sink == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long measure(Runnable work) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        work.run();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    private static ConversionPlan compile() {
+        HashMap<String, ValueDto> mappings = new HashMap<>();
+        mappings.put("entity_id", ValueDto.builder().name("EnergyMeterID").build());
+        mappings.put("00:00-00:15", ValueDto.builder().name("ConsumedPower").build());
+        mappings.put("00:15-00:30", ValueDto.builder().name("ConsumedPower").build());
+
+        HashMap<String, Object> configurations = new HashMap<>();
+        configurations.put("date", "date");
+
+        PropertyDto propertyDto = PropertyDto.builder()
+                .name("meter")
+                .mappings(mappings)
+                .configurations(configurations)
+                .build();
+
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("propertyDefinition", List.of(
+                Map.of("propertyName", "EnergyMeterID"),
+                Map.of("propertyName", "ConsumedPower")
+        ));
+        SpecificationDto specificationDto = new ObjectMapper()
+                .convertValue(Map.of("properties", properties), SpecificationDto.class);
+
+        return ConversionPlan.compile(HEADER, propertyDto, specificationDto, List.of("00:00-00:15", "00:15-00:30"), 0);
+    }
+
+    private static final class RecordCounter implements Consumer<ResultValueDto> {
+
+        private long count;
+
+        @Override
+        public void accept(ResultValueDto value) {
+            count++;
+        }
+    }
+}
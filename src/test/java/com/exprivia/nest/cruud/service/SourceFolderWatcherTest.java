@@ -0,0 +1,134 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Source folder watcher test: files are published once they stop changing.
+ */
+@ExtendWith(SpringExtension.class)
+@Import(SourceFolderWatcher.class)
+@TestPropertySource(properties = {
+        "ud.watch.enabled=true",
+        "ud.watch.quietMs=200"
+})
+class SourceFolderWatcherTest {
+
+    @Autowired
+    private SourceFolderWatcher watcher;
+
+    @MockitoBean
+    private ExtractionService extractionService;
+
+    @MockitoBean
+    private RabbitPublisher rabbitPublisher;
+
+    @TempDir
+    Path sourceDir;
+
+    @Test
+    void stableFileIsPublishedOnce() throws Exception {
+        Files.writeString(sourceDir.resolve("ignored.txt"), "not a csv");
+        watch(sourceDir);
+
+        Path csv = sourceDir.resolve("meter.csv");
+        Files.writeString(csv, "entity_id,state\n");
+        List<FileWorkItemDto> items = awaitPublished(1);
+        assertEquals("meter.csv", items.getFirst().getFileName());
+        assertEquals("watched", items.getFirst().getExtractionName());
+        assertEquals(sourceDir.toString(), items.getFirst().getSourceFilesPath());
+        assertEquals(Files.size(csv), items.getFirst().getSize());
+
+        // nothing changed: a new event does not publish the same file again
+        Files.setLastModifiedTime(csv, Files.getLastModifiedTime(csv));
+        checkFor(600);
+        assertEquals(1, published().size());
+
+        Files.writeString(csv, "entity_id,state\nsensor,1\n");
+        assertEquals(Files.size(csv), awaitPublished(2).getLast().getSize());
+    }
+
+    @Test
+    void existingFilesArePublishedWhenTheFolderIsWatched() throws Exception {
+        Files.writeString(sourceDir.resolve("old.csv"), "entity_id,state\n");
+
+        watch(sourceDir);
+
+        assertEquals("old.csv", awaitPublished(1).getFirst().getFileName());
+    }
+
+    @Test
+    void fileOfASharedFolderIsPublishedForTheFirstExtractionOnly() throws Exception {
+        watch(sourceDir, "watched", "also_watched");
+
+        Files.writeString(sourceDir.resolve("shared.csv"), "entity_id,state\n");
+        awaitPublished(1);
+        checkFor(600);
+
+        List<FileWorkItemDto> items = published();
+        assertEquals(1, items.size());
+        assertEquals("watched", items.getFirst().getExtractionName());
+    }
+
+    private void watch(Path folder) {
+        watch(folder, "watched");
+    }
+
+    private void watch(Path folder, String... extractionNames) {
+        Mockito.clearInvocations(rabbitPublisher);
+        List<ExtractionDto> extractions = new ArrayList<>();
+        for (String extractionName : extractionNames) {
+            extractions.add(ExtractionDto.builder()
+                    .extractionName(extractionName)
+                    .propertyName("lab_load")
+                    .sourceFilesPath(folder.toString())
+                    .autoConvert(true)
+                    .build());
+        }
+        Mockito.when(extractionService.getAll()).thenReturn(extractions);
+        watcher.refreshFolders();
+    }
+
+    private List<FileWorkItemDto> awaitPublished(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (published().size() < count && System.currentTimeMillis() < deadline) {
+            checkFor(100);
+        }
+        return published();
+    }
+
+    private void checkFor(long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        do {
+            watcher.publishStableFiles();
+            Thread.sleep(50);
+        } while (System.currentTimeMillis() < end);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<FileWorkItemDto> published() {
+        ArgumentCaptor<List<FileWorkItemDto>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(rabbitPublisher, Mockito.atLeast(0)).publishFileWork(captor.capture());
+        List<FileWorkItemDto> items = new ArrayList<>();
+        captor.getAllValues().forEach(items::addAll);
+        return items;
+    }
+
+}
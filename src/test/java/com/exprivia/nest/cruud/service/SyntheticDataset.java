@@ -0,0 +1,455 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * CSV sintetici con la property e l'estrazione che li convertono, per benchmark e test di
+ * throughput. I valori sono deterministici (seed fisso), quindi due file con gli stessi
+ * parametri sono identici.
+ * La larghezza e il numero di colonne valore oltre a quelle richieste dal layout.
+ * Gli orari locali seguono la timeZone Europe/Rome: i giorni di cambio ora hanno le righe che
+ * avrebbe un export reale (orari del gap assenti, orari dell'overlap ripetuti).
+ */
+public final class SyntheticDataset {
+
+    public static final String TIME_ZONE = "Europe/Rome";
+    public static final String UD_UTC = "+2";
+
+    /** Fasce da 15 minuti per riga nel layout SLOT. */
+    public static final int SLOTS = 96;
+
+    private static final int SLOT_MINUTES = 15;
+    private static final ZoneId ZONE = ZoneId.of(TIME_ZONE);
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /** Forma del CSV, con la configurazione della property che la legge. */
+    public enum Layout {
+        /** Una riga per misura con timestamp ISO in UTC ogni 30 secondi (entity_id,state,last_changed). */
+        PLAIN,
+        /** Colonne data e orario locali, una riga per contatore ogni 15 minuti (slice 15). */
+        PERIOD,
+        /**
+         * Fasce: una riga per giorno con le colonne ea1..ea96 da 15 minuti (fasce=true). Nel giorno
+         * del cambio ora solare le fasce dell'ora ripetuta hanno una seconda riga con la stessa data,
+         * in quello dell'ora legale le fasce dell'ora saltata sono vuote.
+         */
+        SLOT
+    }
+
+    private final Layout layout;
+    private final int width;
+    private final LocalDate firstDay;
+    private int meters = 16;
+    private long seed = 42;
+    private boolean negativeValues;
+    private boolean coordinates;
+
+    private SyntheticDataset(Layout layout, int width, LocalDate firstDay) {
+        this.layout = layout;
+        this.width = width;
+        this.firstDay = firstDay;
+    }
+
+    /**
+     * Dataset con la forma e la larghezza indicate, a partire dal 1 marzo 2024.
+     *
+     * @param layout forma del CSV
+     * @param width colonne valore aggiuntive
+     * @return dataset
+     */
+    public static SyntheticDataset of(Layout layout, int width) {
+        return of(layout, width, LocalDate.of(2024, 3, 1));
+    }
+
+    /**
+     * Dataset con la forma e la larghezza indicate, a partire dal giorno indicato.
+     *
+     * @param layout forma del CSV
+     * @param width colonne valore aggiuntive
+     * @param firstDay primo giorno dei dati
+     * @return dataset
+     */
+    public static SyntheticDataset of(Layout layout, int width, LocalDate firstDay) {
+        return new SyntheticDataset(layout, width, firstDay);
+    }
+
+    /**
+     * Contatori che misurano nello stesso istante (PLAIN, PERIOD): un file con piu contatori copre
+     * un periodo piu corto a parita di righe.
+     *
+     * @param meters numero di contatori (default 16)
+     * @return questo dataset
+     */
+    public SyntheticDataset withMeters(int meters) {
+        this.meters = Math.max(1, meters);
+        return this;
+    }
+
+    /**
+     * Seed dei valori, per file diversi con la stessa forma (es. un file per contatore nel layout SLOT).
+     *
+     * @param seed seed del generatore
+     * @return questo dataset
+     */
+    public SyntheticDataset withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Valori con segno, come gli export dei contatori bidirezionali. Nei layout PLAIN e PERIOD la
+     * colonna state e divisa con nameForNegative (ElectricPower per i positivi, ProducedPower per
+     * i negativi); nel layout SLOT le fasce restano in ElectricPower, perche la conversione a fasce
+     * legge solo il nome della colonna.
+     *
+     * @return questo dataset
+     */
+    public SyntheticDataset withNegativeValues() {
+        this.negativeValues = true;
+        return this;
+    }
+
+    /**
+     * Colonne lat/lon per riga, lette come coordinate del record.
+     *
+     * @return questo dataset
+     */
+    public SyntheticDataset withCoordinates() {
+        this.coordinates = true;
+        return this;
+    }
+
+    /** Separatore di colonna del CSV. */
+    public char separator() {
+        return layout == Layout.SLOT ? ';' : ',';
+    }
+
+    /** Valori (record UD) prodotti da una riga dati. */
+    public int valuesPerRow() {
+        return layout == Layout.SLOT ? SLOTS : 1;
+    }
+
+    /**
+     * Scrive il CSV.
+     *
+     * @param target file da creare
+     * @param rows righe dati (giorni per il layout SLOT)
+     * @return file scritto
+     *
+     * @throws IOException error
+     */
+    public Path write(Path target, long rows) throws IOException {
+        write(target, rows, Long.MAX_VALUE);
+        return target;
+    }
+
+    /**
+     * Scrive il CSV fino a raggiungere almeno la dimensione indicata, per file da qualche GB.
+     *
+     * @param target file da creare
+     * @param minBytes dimensione minima del file
+     * @return righe dati scritte (giorni per il layout SLOT)
+     *
+     * @throws IOException error
+     */
+    public long writeAtLeast(Path target, long minBytes) throws IOException {
+        return write(target, Long.MAX_VALUE, minBytes);
+    }
+
+    private long write(Path target, long rows, long minBytes) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        char separator = separator();
+        long bytes = 0;
+        long row = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            String header = String.join(String.valueOf(separator), header());
+            writer.write(header);
+            writer.write('\n');
+            bytes += header.length() + 1;
+            StringBuilder line = new StringBuilder(1024);
+            for (; row < rows && bytes < minBytes; row++) {
+                line.setLength(0);
+                appendRow(line, row, random, separator);
+                bytes += line.length();
+                writer.append(line);
+            }
+        }
+        return row;
+    }
+
+    /** Header del CSV. */
+    public List<String> header() {
+        List<String> header = new ArrayList<>();
+        switch (layout) {
+            case PLAIN -> header.addAll(List.of("entity_id", "state", "last_changed"));
+            case PERIOD -> header.addAll(List.of("entity_id", "state", "data", "orario"));
+            case SLOT -> {
+                header.add("Giorno");
+                header.addAll(slotColumns());
+            }
+        }
+        if (coordinates) {
+            header.addAll(List.of("lat", "lon"));
+        }
+        for (int i = 1; i <= width; i++) {
+            header.add("extra" + i);
+        }
+        return header;
+    }
+
+    /**
+     * Property che converte il CSV, con specifica e contesto minimi.
+     *
+     * @param name nome della property
+     * @return property
+     */
+    public PropertyDto property(String name) {
+        boolean split = negativeValues && layout != Layout.SLOT;
+        List<Object> definitions = new ArrayList<>();
+        if (layout != Layout.SLOT) {
+            definitions.add(specProperty("EnergyConsumerID", "string"));
+        }
+        definitions.add(subProperties("period", List.of("start_ts", "end_ts")));
+        definitions.add(specProperty("ElectricPower", "double"));
+        if (split) {
+            definitions.add(specProperty("ProducedPower", "double"));
+        }
+        definitions.add(specProperty("start_ts", "dateTime"));
+        definitions.add(specProperty("end_ts", "dateTime"));
+        if (coordinates) {
+            definitions.add(subProperties("coordinates", List.of("format", "latitude", "longitude", "height")));
+        }
+
+        ValueDto state = ValueDto.builder().name("ElectricPower").nameForNegative(split ? "ProducedPower" : null)
+                .function("num").alternativeValue("null").build();
+        HashMap<String, ValueDto> mappings = new HashMap<>();
+        HashMap<String, Object> configurations = new HashMap<>();
+        switch (layout) {
+            case PLAIN -> {
+                mappings.put("entity_id", ValueDto.builder().name("EnergyConsumerID").build());
+                mappings.put("state", state);
+                configurations.put("slice", 0);
+                configurations.put("period", List.of("last_changed"));
+                configurations.put("date", "last_changed");
+            }
+            case PERIOD -> {
+                mappings.put("entity_id", ValueDto.builder().name("EnergyConsumerID").build());
+                mappings.put("state", state);
+                configurations.put("slice", SLOT_MINUTES);
+                configurations.put("period", List.of("orario"));
+                configurations.put("date", "data");
+            }
+            case SLOT -> {
+                for (String slot : slotColumns()) {
+                    mappings.put(slot, ValueDto.builder().name("ElectricPower").function("num").alternativeValue("null").build());
+                }
+                configurations.put("slice", SLOT_MINUTES);
+                configurations.put("period", slotColumns());
+                configurations.put("date", "Giorno");
+            }
+        }
+        if (coordinates) {
+            mappings.put("lat", ValueDto.builder().name("latitude").coordinates(true).build());
+            mappings.put("lon", ValueDto.builder().name("longitude").coordinates(true).build());
+        }
+        for (int i = 1; i <= width; i++) {
+            definitions.add(specProperty("Extra" + i, "double"));
+            mappings.put("extra" + i, ValueDto.builder().name("Extra" + i).function("*1000").build());
+        }
+        HashMap<String, String> nullsField = new HashMap<>();
+        nullsField.put("ElectricPower", "null");
+        if (split) {
+            nullsField.put("ProducedPower", "null");
+        }
+        configurations.put("nullsField", nullsField);
+
+        HashMap<String, Object> id = new HashMap<>();
+        id.put("value", "synthetic-id");
+        id.put("schemeID", "SCPS");
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("propertyDefinition", definitions);
+        HashMap<String, Object> specification = new HashMap<>();
+        specification.put("properties", properties);
+        specification.put("id", id);
+        specification.put("name", name);
+        specification.put("version", "1.0");
+        specification.put("uri", "synthetic-uri");
+
+        HashMap<String, Object> producer = new HashMap<>();
+        producer.put("id", "Solution-ID");
+        producer.put("schemeID", "SCPS");
+        HashMap<String, Object> context = new HashMap<>();
+        context.put("producer", producer);
+        context.put("timeZone", "UTC+1");
+
+        return PropertyDto.builder()
+                .name(name)
+                .specification(specification)
+                .context(context)
+                .mappings(mappings)
+                .configurations(configurations)
+                .build();
+    }
+
+    /**
+     * Estrazione della property, con destinazione UTC+2: i timestamp locali (PERIOD, SLOT) sono
+     * normalizzati dalla timeZone Europe/Rome con la gestione DST, quelli in UTC (PLAIN) con
+     * l'offset esplicito.
+     *
+     * @param name nome dell'estrazione e della property
+     * @param sourceFolder cartella dei CSV
+     * @param outputFolder cartella degli UD
+     * @return estrazione
+     */
+    public ExtractionDto extraction(String name, Path sourceFolder, Path outputFolder) {
+        return ExtractionDto.builder()
+                .extractionName(name)
+                .propertyName(name)
+                .sourceFilesPath(sourceFolder.toString())
+                .outputFilesPath(outputFolder.toString())
+                .separator(separator())
+                .timeZone(TIME_ZONE)
+                .udUtc(UD_UTC)
+                .handle(layout != Layout.PLAIN)
+                .fasce(layout == Layout.SLOT)
+                .build();
+    }
+
+    /** Aggiunge una riga dati (due nel giorno con l'ora ripetuta del layout SLOT), con i fine riga. */
+    private void appendRow(StringBuilder line, long row, SplittableRandom random, char separator) {
+        int meter = (int) (row % meters);
+        switch (layout) {
+            case PLAIN -> {
+                Instant instant = firstDay.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(row / meters * 30);
+                line.append("sensor.meter_").append(meter).append(separator);
+                appendValue(line, random);
+                line.append(separator).append(instant.toString());
+                appendTail(line, meter, random, separator);
+            }
+            case PERIOD -> {
+                // Istanti consecutivi letti nell'orario locale: il gap manca, l'overlap si ripete
+                Instant instant = firstDay.atStartOfDay(ZONE).toInstant().plusSeconds(row / meters * SLOT_MINUTES * 60);
+                LocalDateTime local = LocalDateTime.ofInstant(instant, ZONE);
+                line.append("sensor.meter_").append(meter).append(separator);
+                appendValue(line, random);
+                line.append(separator).append(local.toLocalDate()).append(separator).append(local.toLocalTime()).append(":00");
+                appendTail(line, meter, random, separator);
+            }
+            case SLOT -> {
+                LocalDate day = firstDay.plusDays(row);
+                int[] window = transitionSlots(day);
+                boolean gap = window != null && window[2] == 1;
+                line.append(DAY.format(day));
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    line.append(separator);
+                    if (!gap || slot < window[0] || slot >= window[1]) {
+                        appendValue(line, random);
+                    }
+                }
+                appendTail(line, 0, random, separator);
+                if (window != null && !gap) {
+                    // Seconda occorrenza dell'ora ripetuta
+                    line.append(DAY.format(day));
+                    for (int slot = 0; slot < SLOTS; slot++) {
+                        line.append(separator);
+                        if (slot >= window[0] && slot < window[1]) {
+                            appendValue(line, random);
+                        }
+                    }
+                    appendTail(line, 0, random, separator);
+                }
+            }
+        }
+    }
+
+    private void appendTail(StringBuilder line, int meter, SplittableRandom random, char separator) {
+        if (coordinates) {
+            line.append(separator).append(41 + meter / 100.0).append(separator).append(16 + meter / 100.0);
+        }
+        for (int i = 0; i < width; i++) {
+            line.append(separator);
+            appendDecimal(line, random);
+        }
+        line.append('\n');
+    }
+
+    private void appendValue(StringBuilder line, SplittableRandom random) {
+        if (negativeValues && random.nextInt(4) == 0) {
+            line.append('-');
+        }
+        appendDecimal(line, random);
+    }
+
+    private static void appendDecimal(StringBuilder line, SplittableRandom random) {
+        int value = random.nextInt(100_000);
+        line.append(value / 100).append('.');
+        int cents = value % 100;
+        if (cents < 10) {
+            line.append('0');
+        }
+        line.append(cents);
+    }
+
+    /**
+     * Fasce del giorno toccate dal cambio ora: {prima fascia, fascia dopo l'ultima, 1 se gap}, null
+     * se il giorno non ha transizioni.
+     */
+    private static int[] transitionSlots(LocalDate day) {
+        ZoneOffsetTransition transition = ZONE.getRules().nextTransition(day.atStartOfDay(ZONE).toInstant().minusSeconds(1));
+        if (transition == null || !transition.getDateTimeBefore().toLocalDate().equals(day)) {
+            return null;
+        }
+        LocalDateTime before = transition.getDateTimeBefore();
+        LocalDateTime after = transition.getDateTimeAfter();
+        LocalDateTime from = before.isBefore(after) ? before : after;
+        LocalDateTime to = before.isBefore(after) ? after : before;
+        int first = (from.getHour() * 60 + from.getMinute()) / SLOT_MINUTES;
+        int last = (to.getHour() * 60 + to.getMinute()) / SLOT_MINUTES;
+        return new int[] {first, last, transition.isGap() ? 1 : 0};
+    }
+
+    private static List<String> slotColumns() {
+        List<String> slots = new ArrayList<>(SLOTS);
+        for (int i = 1; i <= SLOTS; i++) {
+            slots.add("ea" + i);
+        }
+        return slots;
+    }
+
+    private static HashMap<String, Object> specProperty(String name, String dataType) {
+        HashMap<String, Object> prop = new HashMap<>();
+        prop.put("propertyName", name);
+        prop.put("propertyDescription", name);
+        prop.put("dataType", dataType);
+        prop.put("unitOfMeasure", "dimensionless");
+        return prop;
+    }
+
+    private static HashMap<String, Object> subProperties(String name, List<String> names) {
+        HashMap<String, Object> property = new HashMap<>();
+        property.put("propertyName", name);
+        HashMap<String, Object> sub = new HashMap<>();
+        sub.put("propertyName", names);
+        property.put("subProperties", sub);
+        return property;
+    }
+}
@@ -1,15 +1,21 @@
 package com.exprivia.nest.cruud.service;
 
 import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.utils.EpochPeriod;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TimeNormalizationServiceTest {
 
@@ -80,6 +86,61 @@ class TimeNormalizationServiceTest {
         assertEquals(0, normalized.size());
     }
 
+    @Test
+    void streamingScrubber_buffersOnlyTheOverlapWindowAndMatchesTheList() {
+        List<ResultValueDto> kept = new ArrayList<>();
+        TimeNormalizationService.DstScrubber scrubber =
+                service.newDstScrubber("Europe/Rome", ZoneOffset.ofHours(1), List.of("start_ts", "end_ts"), false, kept::add);
+        int maxBuffered = 0;
+        for (ResultValueDto row : fallBackDay()) {
+            scrubber.accept(row);
+            maxBuffered = Math.max(maxBuffered, scrubber.getBuffered());
+        }
+        scrubber.finish();
+
+        List<ResultValueDto> normalized = service.normalizePeriods(fallBackDay(), "Europe/Rome", "+1", true);
+
+        assertEquals(normalized.size(), kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            // rows handed to the sink keep the normalized period in numeric form until they are written
+            EpochPeriod.flush(kept.get(i));
+            assertEquals(normalized.get(i).getPeriod(), kept.get(i).getPeriod());
+        }
+        assertEquals(0, scrubber.getDropped());
+        assertTrue(maxBuffered <= 9, "buffered " + maxBuffered);
+    }
+
+    @Test
+    void streamingScrubber_dropsSingleOccurrenceWhenTheWindowCloses() {
+        List<ResultValueDto> kept = new ArrayList<>();
+        TimeNormalizationService.DstScrubber scrubber =
+                service.newDstScrubber("Europe/Rome", ZoneOffset.ofHours(1), List.of("start_ts"), false, kept::add);
+
+        scrubber.accept(rowWithTimestamp("2024-10-27T02:15:00", 1));
+        assertEquals(1, scrubber.getBuffered());
+        scrubber.accept(rowWithTimestamp("2024-10-27T03:00:00", 2));
+
+        assertEquals(0, scrubber.getBuffered());
+        assertEquals(1, scrubber.getDropped());
+        assertEquals(List.of(2), kept.stream().map(ResultValueDto::getId).toList());
+        assertEquals("2024-10-27T03:00:00", kept.get(0).getPeriod().get("start_ts"));
+    }
+
+    /** Righe di 15 minuti nell'ordine in cui le scrive un contatore durante il ritorno all'ora solare. */
+    private List<ResultValueDto> fallBackDay() {
+        List<ResultValueDto> rows = new ArrayList<>();
+        ZonedDateTime start = ZonedDateTime.of(2024, 10, 26, 22, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < 40; i++) {
+            LocalDateTime from = start.plusMinutes(15L * i).withZoneSameInstant(ZoneId.of("Europe/Rome")).toLocalDateTime();
+            LocalDateTime to = start.plusMinutes(15L * (i + 1)).withZoneSameInstant(ZoneId.of("Europe/Rome")).toLocalDateTime();
+            HashMap<String, Object> period = new HashMap<>();
+            period.put("start_ts", from.toString() + ":00");
+            period.put("end_ts", to.toString() + ":00");
+            rows.add(ResultValueDto.builder().id(i + 1).period(period).build());
+        }
+        return rows;
+    }
+
     private ResultValueDto rowWithTimestamp(String timestamp, int id) {
         HashMap<String, Object> period = new HashMap<>();
         period.put("start_ts", timestamp);
@@ -0,0 +1,126 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.PropertyFilterDto;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Parsing parallelo per intervalli di byte: le righe devono arrivare nell'ordine del file
+ * con id progressivi, anche con campi quotati che contengono fine riga.
+ */
+@ExtendWith(SpringExtension.class)
+@Import({TransformerService.class, ObjectMapper.class, TimeNormalizationService.class})
+@TestPropertySource(properties = {
+        "ud.parsing.parallelism=4",
+        "ud.parsing.minParallelFileSize=1",
+        "ud.parsing.chunkSize=256",
+        "temp-folder=src/test/resources/temp/"
+})
+class TransformerServiceParallelParsingTest {
+
+    @Autowired
+    private TransformerService transformerService;
+
+    @MockitoBean
+    private PropertyService propertyService;
+
+    @MockitoBean
+    private ExtractionService extractionService;
+
+    @BeforeEach
+    void setUp() {
+        HashMap<String, ValueDto> mappings = new HashMap<>();
+        mappings.put("entity_id", ValueDto.builder().name("EnergyConsumerID").build());
+        mappings.put("state", ValueDto.builder().name("ElectricPower").function("num").alternativeValue("null").build());
+
+        HashMap<String, Object> configurations = new HashMap<>();
+        configurations.put("date", "last_changed");
+        configurations.put("period", List.of("last_changed"));
+        configurations.put("slice", 0);
+
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("propertyDefinition", List.of(
+                Map.of("propertyName", "EnergyConsumerID"),
+                Map.of("propertyName", "ElectricPower"),
+                Map.of("propertyName", "period", "subProperties", Map.of("propertyName", List.of("start_ts", "end_ts")))
+        ));
+        HashMap<String, Object> specification = new HashMap<>();
+        specification.put("properties", properties);
+        specification.put("id", Map.of("value", "test-id", "schemeID", "SCPS"));
+
+        PropertyDto propertyDto = PropertyDto.builder()
+                .name("lab_load")
+                .specification(specification)
+                .context(new HashMap<>())
+                .mappings(mappings)
+                .configurations(configurations)
+                .build();
+
+        ExtractionDto extraction = ExtractionDto.builder()
+                .propertyName(propertyDto.getName())
+                .extractionName("lab_load")
+                .separator(',')
+                .sourceFilesPath("source/lab_load")
+                .build();
+
+        Mockito.when(propertyService.getFilteredProperties(Mockito.any(PropertyFilterDto.class)))
+                .thenReturn(List.of(propertyDto));
+        Mockito.when(extractionService.getByExtractionName(Mockito.anyString()))
+                .thenReturn(Optional.of(extraction));
+    }
+
+    @Test
+    void rangesAreReassembledInFileOrder() {
+        int rows = 500;
+        StringBuilder csv = new StringBuilder("entity_id,state,last_changed\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i % 5 == 0 ? "\"sensor\nlab\"" : "sensor.lab")
+                    .append(',')
+                    .append(i)
+                    .append(',')
+                    .append(String.format("2023-10-23T%02d:%02d:00", (i / 60) % 24, i % 60))
+                    .append('\n');
+        }
+        MockMultipartFile upload = new MockMultipartFile("file", "lab_load_parallel.csv", "text/csv", csv.toString().getBytes());
+
+        List<ResultValueDto> lines = transformerService.executeConversionFromUpload(upload, "lab_load")
+                .getUrbanDataset().getValues().getLine();
+
+        assertEquals(rows, lines.size());
+        for (int i = 0; i < rows; i++) {
+            ResultValueDto line = lines.get(i);
+            assertEquals(i + 1, line.getId());
+            assertEquals(String.valueOf(i), valueOf(line, "ElectricPower"));
+            assertEquals(i % 5 == 0 ? "sensor\nlab" : "sensor.lab", valueOf(line, "EnergyConsumerID"));
+        }
+    }
+
+    private String valueOf(ResultValueDto line, String name) {
+        return line.getProperty().stream()
+                .filter(value -> value.getName().equals(name))
+                .map(PropertyValueDto::getVal)
+                .findFirst()
+                .orElse(null);
+    }
+}
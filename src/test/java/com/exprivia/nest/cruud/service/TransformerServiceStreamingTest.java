@@ -0,0 +1,425 @@
+package com.exprivia.nest.cruud.service;
+
+import com.exprivia.nest.cruud.dto.ExtractionDto;
+import com.exprivia.nest.cruud.dto.FileResultDto;
+import com.exprivia.nest.cruud.dto.FileWorkItemDto;
+import com.exprivia.nest.cruud.dto.PropertyDto;
+import com.exprivia.nest.cruud.dto.PropertyFilterDto;
+import com.exprivia.nest.cruud.dto.RequestResultDto;
+import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
+import com.exprivia.nest.cruud.dto.sourcedataset.ValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streaming conversion test: the UD parts written while reading the CSV must contain the same
+ * rows produced by the in-memory conversion.
+ */
+@ExtendWith(SpringExtension.class)
+@Import({TransformerService.class, ObjectMapper.class, TimeNormalizationService.class})
+@TestPropertySource(properties = {
+        "ud.maxRowsPerUd=1000",
+        "ud.streaming=true",
+        "ud.conversion.threads=4",
+        "ud.conversion.maxFilesPerExtraction=2",
+        "temp-folder=src/test/resources/temp/"
+})
+class TransformerServiceStreamingTest {
+
+    @Autowired
+    private TransformerService transformerService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private PropertyService propertyService;
+
+    @MockitoBean
+    private ExtractionService extractionService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceDir;
+    private Path outputDir;
+    private ExtractionDto extraction;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceDir = Files.createDirectories(tempDir.resolve("source"));
+        outputDir = Files.createDirectories(tempDir.resolve("output"));
+
+        HashMap<String, ValueDto> mappings = new HashMap<>();
+        mappings.put("entity_id", ValueDto.builder().name("EnergyConsumerID").build());
+        mappings.put("state", ValueDto.builder().name("ElectricPower").function("num").alternativeValue("null").build());
+
+        HashMap<String, Object> configurations = new HashMap<>();
+        configurations.put("date", "last_changed");
+        configurations.put("period", List.of("last_changed"));
+        configurations.put("slice", 0);
+        configurations.put("nullsField", Map.of("ElectricPower", "null"));
+
+        PropertyDto propertyDto = PropertyDto.builder()
+                .name("lab_load")
+                .specification(baseSpecification())
+                .context(baseContext())
+                .mappings(mappings)
+                .configurations(configurations)
+                .build();
+
+        extraction = ExtractionDto.builder()
+                .propertyName(propertyDto.getName())
+                .extractionName("lab_load")
+                .separator(',')
+                .sourceFilesPath(sourceDir.toString())
+                .outputFilesPath(outputDir.toString())
+                .timeZone("Europe/Rome")
+                .udUtc("+2")
+                .handle(false)
+                .build();
+
+        Mockito.when(propertyService.getFilteredProperties(Mockito.any(PropertyFilterDto.class)))
+                .thenReturn(List.of(propertyDto));
+        Mockito.when(extractionService.getByExtractionName(Mockito.anyString()))
+                .thenReturn(Optional.of(extraction));
+    }
+
+    @Test
+    void streamedPartsMatchInMemoryConversion() throws Exception {
+        String csvContent = buildCsv(2500);
+        Files.writeString(sourceDir.resolve("lab_load_stream.csv"), csvContent);
+
+        transformerService.executeConversionFromFolder(extraction);
+
+        List<Path> outputs = listOutputs();
+        assertEquals(3, outputs.size());
+        assertTrue(outputs.get(0).getFileName().toString().endsWith("_1.json"));
+        assertTrue(Files.exists(sourceDir.resolve("completed").resolve("lab_load_stream.csv")));
+
+        List<ResultValueDto> streamed = new ArrayList<>();
+        for (Path path : outputs) {
+            ResultUrbanDataset ud = objectMapper.readValue(path.toFile(), ResultUrbanDataset.class);
+            List<ResultValueDto> lines = ud.getUrbanDataset().getValues().getLine();
+            assertEquals("UTC+2", ud.getUrbanDataset().getContext().getTimeZone());
+            int expectedId = 1;
+            for (ResultValueDto line : lines) {
+                assertEquals(expectedId++, line.getId());
+            }
+            streamed.addAll(lines);
+        }
+
+        MockMultipartFile upload = new MockMultipartFile("file", "lab_load_stream.csv", "text/csv", csvContent.getBytes());
+        List<ResultValueDto> inMemory = transformerService.executeConversionFromUpload(upload, "lab_load")
+                .getUrbanDataset().getValues().getLine();
+
+        assertEquals(inMemory.size(), streamed.size());
+        for (int i = 0; i < inMemory.size(); i++) {
+            assertEquals(inMemory.get(i).getPeriod(), streamed.get(i).getPeriod());
+            assertEquals(inMemory.get(i).getProperty(), streamed.get(i).getProperty());
+        }
+    }
+
+    @Test
+    void dstScrubbingIsStreamedWithTheSameRows() throws Exception {
+        extraction.setHandle(true);
+        StringBuilder csv = new StringBuilder("entity_id,state,last_changed\n");
+        ZonedDateTime start = ZonedDateTime.of(2023, 10, 28, 20, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < 48; i++) {
+            LocalDateTime local = start.plusMinutes(15L * i).withZoneSameInstant(ZoneId.of("Europe/Rome")).toLocalDateTime();
+            csv.append("sensor.lab_active_power,\"0,").append(i).append("\",").append(local).append(":00\n");
+        }
+        // orario dell'overlap presente una sola volta: va scartato
+        csv.append("sensor.lab_active_power,1,2023-10-29T02:05:00\n");
+        csv.append("sensor.lab_active_power,2,2023-10-29T08:00:00\n");
+        Files.writeString(sourceDir.resolve("lab_load_dst.csv"), csv.toString());
+
+        transformerService.executeConversionFromFolder(extraction);
+
+        List<ResultValueDto> streamed = objectMapper.readValue(listOutputs().getFirst().toFile(), ResultUrbanDataset.class)
+                .getUrbanDataset().getValues().getLine();
+        MockMultipartFile upload = new MockMultipartFile("file", "lab_load_dst.csv", "text/csv", csv.toString().getBytes());
+        List<ResultValueDto> inMemory = transformerService.executeConversionFromUpload(upload, "lab_load")
+                .getUrbanDataset().getValues().getLine();
+
+        assertEquals(49, streamed.size());
+        assertEquals(inMemory.size(), streamed.size());
+        for (int i = 0; i < inMemory.size(); i++) {
+            assertEquals(inMemory.get(i).getPeriod(), streamed.get(i).getPeriod());
+            assertEquals(inMemory.get(i).getProperty(), streamed.get(i).getProperty());
+        }
+    }
+
+    @Test
+    void fileWithExactlyMaxRowsIsWrittenWithoutSuffix() throws Exception {
+        Files.writeString(sourceDir.resolve("lab_load_exact.csv"), buildCsv(1000));
+
+        transformerService.executeConversionFromFolder(extraction);
+
+        List<Path> outputs = listOutputs();
+        assertEquals(1, outputs.size());
+        assertFalse(outputs.getFirst().getFileName().toString().endsWith("_1.json"));
+        ResultUrbanDataset ud = objectMapper.readValue(outputs.getFirst().toFile(), ResultUrbanDataset.class);
+        assertEquals(1000, ud.getUrbanDataset().getValues().getLine().size());
+    }
+
+    @Test
+    void failedFileIsReportedWithoutStoppingTheOthers() throws Exception {
+        Files.writeString(sourceDir.resolve("lab_load_a.csv"), buildCsv(10));
+        Files.writeString(sourceDir.resolve("lab_load_b.csv"), "entity_id,state,last_changed\nsensor.lab_active_power,\"0,5");
+        Files.writeString(sourceDir.resolve("lab_load_c.csv"), buildCsv(20));
+
+        RequestResultDto result = transformerService.executeConversionFromFolder(extraction);
+
+        assertEquals(2, result.getFilesCompleted().size());
+        assertEquals(3, result.getFiles().size());
+        FileResultDto failed = result.getFiles().stream()
+                .filter(file -> !file.getCompleted())
+                .findFirst()
+                .orElseThrow();
+        assertEquals("lab_load_b.csv", failed.getFileName());
+        assertTrue(Files.exists(sourceDir.resolve("lab_load_b.csv")));
+        assertTrue(Files.exists(sourceDir.resolve("completed").resolve("lab_load_a.csv")));
+        assertTrue(Files.exists(sourceDir.resolve("completed").resolve("lab_load_c.csv")));
+
+        // files converted in the same second must not overwrite each other, and keep the real
+        // generation time in their context
+        List<Path> outputs = listOutputs();
+        assertEquals(2, outputs.size());
+        long lines = 0;
+        for (Path path : outputs) {
+            ResultUrbanDataset ud = objectMapper.readValue(path.toFile(), ResultUrbanDataset.class);
+            lines += ud.getUrbanDataset().getValues().getLine().size();
+            Instant generatedAt = LocalDateTime.parse(ud.getUrbanDataset().getContext().getTimestamp())
+                    .toInstant(ZoneOffset.ofHours(2));
+            assertFalse(generatedAt.isAfter(Instant.now()));
+        }
+        assertEquals(30, lines);
+    }
+
+    @Test
+    void discoveredFileIsConvertedOnceFromItsWorkItem() throws Exception {
+        Files.writeString(sourceDir.resolve("lab_load_item.csv"), buildCsv(10));
+
+        List<FileWorkItemDto> items = transformerService.discoverFiles(extraction);
+        assertEquals(1, items.size());
+
+        Optional<FileResultDto> result = transformerService.executeConversionOfFile(extraction, items.getFirst());
+        assertTrue(result.isPresent());
+        assertTrue(result.get().getCompleted());
+        assertEquals(1, listOutputs().size());
+        assertTrue(Files.exists(sourceDir.resolve("completed").resolve("lab_load_item.csv")));
+
+        // redelivered or duplicated item: the file is no longer there
+        assertTrue(transformerService.executeConversionOfFile(extraction, items.getFirst()).isEmpty());
+        assertEquals(1, listOutputs().size());
+    }
+
+    @Test
+    void changedFileIsLeftToTheNextDiscovery() throws Exception {
+        Path csv = Files.writeString(sourceDir.resolve("lab_load_changed.csv"), buildCsv(10));
+        FileWorkItemDto item = transformerService.discoverFiles(extraction).getFirst();
+
+        Files.writeString(csv, buildCsv(20));
+
+        assertTrue(transformerService.executeConversionOfFile(extraction, item).isEmpty());
+        assertTrue(Files.exists(csv));
+        assertTrue(listOutputs().isEmpty());
+    }
+
+    @Test
+    void failedFileIsReleasedForRetry() throws Exception {
+        Path csv = Files.writeString(sourceDir.resolve("lab_load_broken.csv"), "entity_id,state,last_changed\nsensor.lab_active_power,\"0,5");
+        FileWorkItemDto item = transformerService.discoverFiles(extraction).getFirst();
+
+        Optional<FileResultDto> result = transformerService.executeConversionOfFile(extraction, item);
+
+        assertTrue(result.isPresent());
+        assertFalse(result.get().getCompleted());
+        assertTrue(Files.exists(csv));
+        assertEquals(item.getLastModified(), Files.getLastModifiedTime(csv).toMillis());
+        assertEquals(List.of(item), transformerService.discoverFiles(extraction));
+    }
+
+    @Test
+    void abandonedClaimIsReleasedByDiscovery() throws Exception {
+        Path claimed = Files.writeString(sourceDir.resolve("lab_load_claimed.csv.working"), buildCsv(10));
+        Files.setLastModifiedTime(claimed, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        Files.writeString(sourceDir.resolve("lab_load_recent.csv.working"), buildCsv(10));
+
+        List<FileWorkItemDto> items = transformerService.discoverFiles(extraction);
+
+        assertEquals(List.of("lab_load_claimed.csv"), items.stream().map(FileWorkItemDto::getFileName).toList());
+        assertTrue(Files.exists(sourceDir.resolve("lab_load_recent.csv.working")));
+    }
+
+    @Test
+    void claimOfARunningConversionIsRefreshedAndKept() throws Exception {
+        Files.writeString(sourceDir.resolve("lab_load_long.csv"), buildCsv(10));
+        FileWorkItemDto item = transformerService.discoverFiles(extraction).getFirst();
+
+        List<PropertyDto> properties = propertyService.getFilteredProperties(PropertyFilterDto.builder().build());
+        CountDownLatch converting = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.when(propertyService.getFilteredProperties(Mockito.any(PropertyFilterDto.class))).thenAnswer(invocation -> {
+            converting.countDown();
+            assertTrue(finish.await(10, TimeUnit.SECONDS));
+            return properties;
+        });
+        CompletableFuture<Optional<FileResultDto>> conversion =
+                CompletableFuture.supplyAsync(() -> transformerService.executeConversionOfFile(extraction, item));
+        assertTrue(converting.await(10, TimeUnit.SECONDS));
+
+        // the conversion runs longer than claimTimeoutMinutes
+        Path claimed = sourceDir.resolve("lab_load_long.csv.working");
+        Files.setLastModifiedTime(claimed, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        transformerService.refreshClaims();
+        assertTrue(Files.getLastModifiedTime(claimed).toInstant().isAfter(Instant.now().minus(Duration.ofMinutes(1))));
+
+        Files.setLastModifiedTime(claimed, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        assertTrue(transformerService.discoverFiles(extraction).isEmpty());
+        assertTrue(Files.exists(claimed));
+
+        finish.countDown();
+        assertTrue(conversion.get(10, TimeUnit.SECONDS).orElseThrow().getCompleted());
+        assertEquals(1, listOutputs().size());
+    }
+
+    @Test
+    void folderConversionSkipsFilesClaimedElsewhere() throws Exception {
+        Files.writeString(sourceDir.resolve("lab_load_free.csv"), buildCsv(10));
+        Files.writeString(sourceDir.resolve("lab_load_taken.csv"), buildCsv(10));
+        Files.writeString(sourceDir.resolve("lab_load_taken.csv.working"), buildCsv(10));
+
+        RequestResultDto result = transformerService.executeConversionFromFolder(extraction);
+
+        assertEquals(List.of("lab_load_free.csv"), result.getFilesCompleted());
+        assertEquals(1, result.getFiles().size());
+        assertTrue(Files.exists(sourceDir.resolve("lab_load_taken.csv")));
+        assertTrue(Files.exists(sourceDir.resolve("lab_load_taken.csv.working")));
+    }
+
+    @Test
+    void mappedEngineProducesTheSameRows() throws Exception {
+        String csvContent = buildCsv(300);
+        MockMultipartFile upload = new MockMultipartFile("file", "lab_load_mapped.csv", "text/csv", csvContent.getBytes());
+        List<ResultValueDto> openCsv = transformerService.executeConversionFromUpload(upload, "lab_load")
+                .getUrbanDataset().getValues().getLine();
+
+        extraction.setCsvEngine("mapped");
+        Files.writeString(sourceDir.resolve("lab_load_mapped.csv"), csvContent);
+        transformerService.executeConversionFromFolder(extraction);
+
+        List<ResultValueDto> mapped = objectMapper.readValue(listOutputs().getFirst().toFile(), ResultUrbanDataset.class)
+                .getUrbanDataset().getValues().getLine();
+        assertEquals(openCsv.size(), mapped.size());
+        for (int i = 0; i < openCsv.size(); i++) {
+            assertEquals(openCsv.get(i).getPeriod(), mapped.get(i).getPeriod());
+            assertEquals(openCsv.get(i).getProperty(), mapped.get(i).getProperty());
+        }
+    }
+
+    private List<Path> listOutputs() throws IOException {
+        try (var files = Files.list(outputDir)) {
+            return files.filter(p -> p.toString().endsWith(".json"))
+                    .sorted(Comparator.comparing(Path::toString))
+                    .toList();
+        }
+    }
+
+    private String buildCsv(int rows) {
+        StringBuilder csv = new StringBuilder("entity_id,state,last_changed\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("sensor.lab_active_power,")
+                    .append(i % 7 == 0 ? "n/a" : "\"0," + (i % 100) + "\"")
+                    .append(',')
+                    .append(String.format("2023-10-23T%02d:%02d:%02d.%03dZ", (i / 3600) % 24, (i / 60) % 60, i % 60, i % 1000))
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private HashMap<String, Object> baseSpecification() {
+        HashMap<String, Object> specification = new HashMap<>();
+        HashMap<String, Object> id = new HashMap<>();
+        id.put("value", "test-id");
+        id.put("schemeID", "SCPS");
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("propertyDefinition", List.of(
+                specProperty("EnergyConsumerID", "string"),
+                specSubPropertyPeriod(),
+                specProperty("ElectricPower", "double"),
+                specProperty("start_ts", "dateTime"),
+                specProperty("end_ts", "dateTime")
+        ));
+        specification.put("properties", properties);
+        specification.put("id", id);
+        specification.put("name", "test");
+        specification.put("version", "1.0");
+        specification.put("uri", "test-uri");
+        return specification;
+    }
+
+    private HashMap<String, Object> baseContext() {
+        HashMap<String, Object> context = new HashMap<>();
+        HashMap<String, Object> producer = new HashMap<>();
+        producer.put("id", "Solution-ID");
+        producer.put("schemeID", "SCPS");
+        context.put("producer", producer);
+        context.put("timeZone", "UTC+1");
+        return context;
+    }
+
+    private HashMap<String, Object> specProperty(String name, String dataType) {
+        HashMap<String, Object> prop = new HashMap<>();
+        prop.put("propertyName", name);
+        prop.put("propertyDescription", name);
+        prop.put("dataType", dataType);
+        prop.put("unitOfMeasure", "dimensionless");
+        return prop;
+    }
+
+    private HashMap<String, Object> specSubPropertyPeriod() {
+        HashMap<String, Object> period = new HashMap<>();
+        period.put("propertyName", "period");
+        HashMap<String, Object> sub = new HashMap<>();
+        sub.put("propertyName", List.of("start_ts", "end_ts"));
+        period.put("subProperties", sub);
+        return period;
+    }
+}
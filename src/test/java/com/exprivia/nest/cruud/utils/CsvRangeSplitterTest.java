@@ -0,0 +1,69 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.opencsv.CSVReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvRangeSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rangesCoverTheFileAndNeverSplitQuotedFields() throws Exception {
+        StringBuilder csv = new StringBuilder("id,note\n");
+        for (int i = 0; i < 200; i++) {
+            csv.append(i).append(',');
+            if (i % 3 == 0) {
+                csv.append("\"multi\nline \"\"quoted\"\" value\"");
+            } else {
+                csv.append("plain");
+            }
+            csv.append('\n');
+        }
+        Path file = tempDir.resolve("split.csv");
+        Files.writeString(file, csv.toString());
+
+        List<String[]> rows = new ArrayList<>();
+        int ranges = 0;
+        try (CsvRangeSplitter splitter = CsvRangeSplitter.open(file, 64)) {
+            CsvRangeSplitter.Range header = splitter.headerRange();
+            assertEquals(0, header.start());
+            assertEquals("id,note\n", new String(splitter.read(header), StandardCharsets.UTF_8));
+
+            long expectedStart = header.end();
+            CsvRangeSplitter.Range range;
+            while ((range = splitter.nextRange()) != null) {
+                assertEquals(expectedStart, range.start());
+                expectedStart = range.end();
+                ranges++;
+                try (CSVReader reader = new CSVReader(new InputStreamReader(
+                        new ByteArrayInputStream(splitter.read(range)), StandardCharsets.UTF_8))) {
+                    rows.addAll(reader.readAll());
+                }
+            }
+            assertEquals(Files.size(file), expectedStart);
+            assertNull(splitter.nextRange());
+        }
+
+        assertTrue(ranges > 1);
+        assertEquals(200, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            String note = i % 3 == 0 ? "multi\nline \"quoted\" value" : "plain";
+            assertArrayEquals(new String[]{String.valueOf(i), note}, rows.get(i));
+        }
+    }
+}
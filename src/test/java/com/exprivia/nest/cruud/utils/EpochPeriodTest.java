@@ -0,0 +1,96 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EpochPeriodTest {
+
+    @Test
+    void sliceDurationKeepsFractionDigitsAndOffset() {
+        ResultValueDto value = row("2023-10-29T01:00:00.500+02:00", null);
+
+        TimeUtils.enforceSliceDuration(EpochPeriod.of(value), 15);
+        EpochPeriod.flush(value);
+
+        assertEquals("2023-10-29T01:15:00.500+02:00", value.getPeriod().get("end_ts"));
+        assertEquals("2023-10-29T01:00:00.500+02:00", value.getPeriod().get("start_ts"));
+    }
+
+    @Test
+    void stagesAreFormattedOnceWhenThePeriodIsFlushed() {
+        ResultValueDto value = row("2022-07-01T10:00:00.25", "2022-07-01T10:00");
+        EpochPeriod period = EpochPeriod.of(value);
+
+        TimeUtils.enforceSliceDuration(period, 15);
+        assertEquals(10 * 3600 + 15 * 60, period.end().getEpochSecond() % 86_400);
+        assertEquals(250_000_000, period.end().getNano());
+        TimeUtils.adjustEndExclusive(period);
+        // reading the map has no side effects: the text is written by flush only
+        assertEquals(Map.of("start_ts", "2022-07-01T10:00:00.25", "end_ts", "2022-07-01T10:00"), value.getPeriod());
+
+        EpochPeriod.flush(value);
+        assertEquals(Map.of("start_ts", "2022-07-01T10:00:00.25", "end_ts", "2022-07-01T10:14:59"), value.getPeriod());
+    }
+
+    @Test
+    void equalStartAndEndAreTruncatedToTheSecond() {
+        HashMap<String, Object> period = new HashMap<>(Map.of("start_ts", "2022-07-01T10:00:00.123", "end_ts", "2022-07-01T10:00:00.123"));
+
+        TimeUtils.adjustEndExclusive(period);
+
+        assertEquals(Map.of("start_ts", "2022-07-01T10:00:00", "end_ts", "2022-07-01T10:00:00"), period);
+    }
+
+    @Test
+    void textThatIsNotIsoIsKeptAsIs() {
+        ResultValueDto value = row("01/07/2022T10:00", "01/07/2022T10:15");
+        EpochPeriod period = EpochPeriod.of(value);
+
+        assertFalse(period.start().isParsed());
+        TimeUtils.enforceSliceDuration(period, 15);
+        TimeUtils.adjustEndExclusive(period);
+
+        assertEquals(Map.of("start_ts", "01/07/2022T10:00", "end_ts", "01/07/2022T10:15"), value.getPeriod());
+    }
+
+    @Test
+    void settingANewMapDropsTheNumericPeriod() {
+        ResultValueDto value = row("2022-07-01T10:00:00", null);
+        EpochPeriod.of(value).end().setLocal(0, 0);
+        EpochPeriod.flush(value);
+        assertTrue(value.getPeriod().containsKey("end_ts"));
+
+        value.setPeriod(new HashMap<>(Map.of("start_ts", "2022-07-02T10:00:00")));
+
+        assertEquals(Map.of("start_ts", "2022-07-02T10:00:00"), value.getPeriod());
+        assertFalse(EpochPeriod.of(value).end().isPresent());
+    }
+
+    @Test
+    void writersOfTheMapSeeTheStagesAndDropTheNumericPeriod() {
+        ResultValueDto value = row("2022-07-01T10:00:00", null);
+        TimeUtils.enforceSliceDuration(EpochPeriod.of(value), 15);
+
+        TimeUtils.adjustPeriods(List.of(value), "+1", "+2");
+
+        assertEquals(Map.of("start_ts", "2022-07-01T11:00:00", "end_ts", "2022-07-01T11:15:00"), value.getPeriod());
+        assertEquals(11 * 3600, EpochPeriod.of(value).start().getEpochSecond() % 86_400);
+    }
+
+    private static ResultValueDto row(String start, String end) {
+        HashMap<String, Object> period = new HashMap<>();
+        period.put("start_ts", start);
+        if (end != null) {
+            period.put("end_ts", end);
+        }
+        return ResultValueDto.builder().id(1).period(period).build();
+    }
+}
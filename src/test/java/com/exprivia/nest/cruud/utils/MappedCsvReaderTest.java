@@ -0,0 +1,107 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedCsvReaderTest {
+
+    private static final String TRICKY_CSV = "id;value;note\n"
+            + "1;10,5;plain\n"
+            + "2;;\n"
+            + "\n"
+            + "3; spaced ;trailing;\r\n"
+            + "4;\"quoted;value\";\"doubled \"\"quote\"\"\"\r"
+            + "5;\"multi\nline\";àèé\n"
+            + "6;mid\"quo\"te;esc\\\"aped\n"
+            + "7;\"a\\\\b\";last";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsTheSameRowsAsOpenCsv() throws Exception {
+        Path file = write(TRICKY_CSV);
+
+        assertEquals(readWithOpenCsv(TRICKY_CSV), readAll(MappedCsvReader.open(file, ';', StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void remapsLinesCrossingTheWindow() throws Exception {
+        StringBuilder csv = new StringBuilder("id;value\n");
+        for (int i = 0; i < 300; i++) {
+            csv.append(i).append(';').append(i % 4 == 0 ? "\"x\r\ny\"" : "value-" + i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write(csv.toString());
+
+        assertEquals(readWithOpenCsv(csv.toString()), readAll(MappedCsvReader.open(file, ';', StandardCharsets.UTF_8, 40)));
+    }
+
+    @Test
+    void materializesOnlyRetainedColumns() throws Exception {
+        Path file = write("a;b;c\n1;2;3\n4;5\n");
+
+        try (MappedCsvReader reader = MappedCsvReader.open(file, ';', StandardCharsets.UTF_8)) {
+            assertArrayEquals(new String[]{"a", "b", "c"}, reader.readNext());
+            reader.retainColumns(new boolean[]{false, true, false});
+            assertArrayEquals(new String[]{null, "2", null}, reader.readNext());
+            assertArrayEquals(new String[]{null, "5"}, reader.readNext());
+            assertNull(reader.readNext());
+        }
+    }
+
+    @Test
+    void unterminatedQuoteFails() throws Exception {
+        Path file = write("a;b\n1;\"open\n");
+
+        try (MappedCsvReader reader = MappedCsvReader.open(file, ';', StandardCharsets.UTF_8)) {
+            reader.readNext();
+            assertThrows(IOException.class, reader::readNext);
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = tempDir.resolve("mapped.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private List<List<String>> readAll(MappedCsvReader reader) throws Exception {
+        List<List<String>> rows = new ArrayList<>();
+        try (reader) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                rows.add(List.of(line));
+            }
+        }
+        return rows;
+    }
+
+    private List<List<String>> readWithOpenCsv(String content) throws Exception {
+        List<List<String>> rows = new ArrayList<>();
+        try (CSVReader reader = new CSVReaderBuilder(new StringReader(content))
+                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                .build()) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                rows.add(List.of(line));
+            }
+        }
+        return rows;
+    }
+}
@@ -37,4 +37,17 @@ class MappingUtilsTest {
 
         assertEquals("10.5", MappingUtils.getCorrectValue("Power", "10,5", dictionary));
     }
+
+    @Test
+    void getCorrectValueWithResolvedMapping() {
+        ValueDto valueDto = ValueDto.builder()
+                .name("Power")
+                .function("num")
+                .alternativeValue("null")
+                .build();
+
+        assertEquals("10.5", MappingUtils.getCorrectValue("10,5", valueDto));
+        assertEquals("10.5", MappingUtils.getCorrectValue("10,5", (ValueDto) null));
+        assertEquals("0", MappingUtils.getCorrectValue(" ", valueDto));
+    }
 }
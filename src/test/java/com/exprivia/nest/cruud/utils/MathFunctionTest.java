@@ -0,0 +1,110 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MathFunctionTest {
+
+    private static final List<String> FUNCTIONS = List.of(
+            "num", ">0", "+10", "-0.40", "*3.6", "*0.001", "/10", "/1000", "/0.1", "/4", "/0.25", "+0",
+            "-123456789.123", "*1000000000", "/1", "/3", "%5");
+
+    @Test
+    void exactModeMatchesTheBigDecimalImplementation() {
+        Random random = new Random(42);
+        List<String> values = new ArrayList<>(List.of("0", "-0", "0.00", "126.41", "120", "12", "007.50", "-5",
+                "1.00000000000000001", "999999999999999999", "-999999999999999999.5", "0.0000001", "0.10",
+                "123456789012345678901234", "abc", "1e5", "NaN", "", "-", "1.", ".5"));
+        for (int i = 0; i < 2000; i++) {
+            values.add(randomDecimal(random));
+        }
+
+        for (String function : FUNCTIONS) {
+            MathFunction compiled = MathFunction.compile(function, "null", true);
+            for (String value : values) {
+                String expected;
+                try {
+                    expected = legacyExecute(value, function, "null");
+                } catch (ArithmeticException | NumberFormatException e) {
+                    Class<? extends RuntimeException> type = e.getClass();
+                    assertThrows(type, () -> compiled.apply(value), function + " on " + value);
+                    continue;
+                }
+                assertEquals(expected, compiled.apply(value), function + " on " + value);
+            }
+        }
+    }
+
+    @Test
+    void chainedFunctionsAreAppliedInOrder() {
+        MathFunction function = MathFunction.compile("num; *3.6 ;/1000", "null", true);
+
+        assertEquals("0.036", function.apply("10"));
+        assertEquals("null", function.apply("n/a"));
+    }
+
+    @Test
+    void doubleModeUsesPrimitiveArithmetic() {
+        assertEquals("0.30000000000000004", MathFunction.compile("+0.2", "null", false).apply("0.1"));
+        assertEquals("36", MathFunction.compile("*3.6", "null", false).apply("10"));
+        assertEquals("1.2", MathFunction.compile("/10", "null", false).apply("12"));
+        assertEquals("0.0000001", MathFunction.compile("/10", "null", false).apply("0.000001"));
+        assertEquals("abc", MathFunction.compile("+1", "null", false).apply("abc"));
+        assertThrows(ArithmeticException.class, () -> MathFunction.compile("/0", "null", false).apply("1"));
+    }
+
+    @Test
+    void blankFunctionIsNotCompiled() {
+        assertNull(MathFunction.compile(null, "null", true));
+        assertNull(MathFunction.compile(" ", "null", true));
+    }
+
+    private static String randomDecimal(Random random) {
+        StringBuilder builder = new StringBuilder();
+        if (random.nextBoolean()) {
+            builder.append('-');
+        }
+        builder.append(random.nextLong(0, (long) Math.pow(10, random.nextInt(1, 14))));
+        if (random.nextInt(3) > 0) {
+            int scale = random.nextInt(1, 9);
+            builder.append('.');
+            for (int i = 0; i < scale; i++) {
+                builder.append(random.nextInt(10));
+            }
+        }
+        return builder.toString();
+    }
+
+    /** Implementazione precedente di Maths.execute, usata come riferimento. */
+    private static String legacyExecute(String value, String function, String alternativeValue) {
+        if (function.equalsIgnoreCase("num")) {
+            return MappingUtils.getNumberOrNullString(value, alternativeValue);
+        } else if (function.charAt(0) == '>') {
+            return MappingUtils.getPositiveOrNullString(value, alternativeValue);
+        }
+        String normalized = MappingUtils.normalizeDecimalSeparator(value);
+        if (!Pattern.matches("-?\\d+(\\.\\d+)?", normalized)) {
+            return value;
+        }
+        BigDecimal a = new BigDecimal(normalized);
+        BigDecimal b = new BigDecimal(MappingUtils.normalizeDecimalSeparator(function.substring(1)));
+        switch (function.charAt(0)) {
+            case '+' -> value = String.valueOf(a.add(b));
+            case '*' -> value = String.valueOf(a.multiply(b));
+            case '/' -> value = String.valueOf(a.divide(b));
+            case '-' -> value = String.valueOf(a.subtract(b));
+            default -> {
+            }
+        }
+        return ((Double.parseDouble(value) % 1) == 0) ? Integer.valueOf((int) Double.parseDouble(value)).toString() : value;
+    }
+}
@@ -0,0 +1,71 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeriodTemplateTest {
+
+    private static final List<String> HEADERS = Arrays.asList(
+            "ea1", "ea4", "ea95", "ea96", "ea0", "EA12", "ea1_2", "energia", "00:00-00:15", "23:45-24:00",
+            "10:30-11:00", "a:b-c:d", "00:00", "1-2", "ea99999999999", null);
+    private static final List<String> DATES = Arrays.asList(
+            "01/07/2022", "2022-07-01", "20220701", "2022-07-01 10:15:00", "01/07/2022 10:15:00",
+            "2022-07-01T10:15:00", "2022-07-01T10:15:00.250", "2022-07-01T10:15:00Z", "20220701101500",
+            " 01/07/2022", "1/7/2022", "2022-13-01", "", null);
+    private static final List<String> PERIOD_VALUES = Arrays.asList("01:15:00", "T01:15", "12.5", "", null);
+
+    @Test
+    void templateMatchesTheFullComputation() {
+        int cases = 0;
+        for (int slice : new int[]{-1, 0, 15, 60}) {
+            for (String header : HEADERS) {
+                PeriodTemplate template = PeriodTemplate.compile(header, slice);
+                DateColumnFormat.Reader dates = new DateColumnFormat().newReader();
+                for (String date : DATES) {
+                    for (String periodValue : PERIOD_VALUES) {
+                        String label = slice + " " + header + " " + date + " " + periodValue;
+                        HashMap<String, Object> expected;
+                        try {
+                            expected = TimeUtils.getStartAndEndTimeFromString(date, header, periodValue, slice);
+                        } catch (RuntimeException e) {
+                            assertThrows(e.getClass(), () -> template.resolve(date, periodValue, dates), label);
+                            continue;
+                        }
+                        assertEquals(expected, template.resolve(date, periodValue, dates), label);
+                        cases++;
+                    }
+                }
+            }
+        }
+        assertTrue(cases > 0);
+    }
+
+    @Test
+    void dateFormatIsDetectedAgainWhenTheFileChangesFormat() {
+        PeriodTemplate template = PeriodTemplate.compile("ea2", 15);
+        DateColumnFormat dates = new DateColumnFormat();
+        List<Object> starts = new ArrayList<>();
+        for (String date : List.of("01/07/2022", "02/07/2022", "2022-07-03", "2022-07-04 08:00:00", "05/07/2022")) {
+            starts.add(template.resolve(date, null, dates).get("start_ts"));
+        }
+
+        assertEquals(List.of("2022-07-01T00:15:00", "2022-07-02T00:15:00", "2022-07-03T00:15:00",
+                "2022-07-04T08:00", "2022-07-05T00:15:00"), starts);
+    }
+
+    @Test
+    void rangeHeaderIsReducedToMinutes() {
+        HashMap<String, Object> period = PeriodTemplate.compile("10:30-11:00", -1).resolve("20220701", null);
+
+        assertEquals("2022-07-01T10:30:00", period.get("start_ts"));
+        assertEquals("2022-07-01T11:00:00", period.get("end_ts"));
+    }
+}
@@ -0,0 +1,30 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PropertyNamesTest {
+
+    @Test
+    void namesAreInternedOnceAndGroupedIgnoringCase() {
+        PropertyNames names = new PropertyNames();
+
+        int power = names.intern("Power");
+        int lower = names.intern("power");
+        int voltage = names.intern("Voltage");
+        int missing = names.intern(null);
+
+        assertEquals(power, names.intern(new String("Power")));
+        assertSame(names.name(power), names.name(names.idOf("Power")));
+        assertNotEquals(power, lower);
+        assertEquals(names.fold(power), names.fold(lower));
+        assertNotEquals(names.fold(power), names.fold(voltage));
+        assertNotEquals(names.fold(missing), names.fold(voltage));
+        assertEquals(-1, names.idOf("Current"));
+        assertEquals(4, names.size());
+        assertEquals(3, names.foldCount());
+    }
+}
@@ -0,0 +1,238 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollingUrbanDatasetWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rollsPartsAndRenumbersIdsWithoutTouchingTheRows() throws Exception {
+        List<ResultValueDto> rows = rows(5);
+
+        List<Path> files = write(rows, 2);
+
+        assertEquals(List.of("ud_1.json", "ud_2.json", "ud_3.json"), fileNames());
+        assertEquals(files, List.of(tempDir.resolve("ud_1.json"), tempDir.resolve("ud_2.json"), tempDir.resolve("ud_3.json")));
+        assertEquals(List.of(1, 2), ids(tempDir.resolve("ud_1.json")));
+        assertEquals(List.of(1, 2), ids(tempDir.resolve("ud_2.json")));
+        assertEquals(List.of(1), ids(tempDir.resolve("ud_3.json")));
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(100 + i, rows.get(i).getId());
+        }
+    }
+
+    @Test
+    void partsWrittenOnAPoolMatchTheSequentialOutput() throws Exception {
+        List<ResultValueDto> rows = rows(23);
+        write(rows, 4);
+        Map<String, byte[]> sequential = contents();
+        for (Path file : sequential.keySet().stream().map(tempDir::resolve).toList()) {
+            Files.delete(file);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            RollingUrbanDatasetWriter writer = new RollingUrbanDatasetWriter(tempDir.resolve("ud").toString(),
+                    specification(), context(), objectMapper, 4, executor, 2, OutputCompression.NONE);
+            for (ResultValueDto row : rows) {
+                writer.writeLine(row);
+            }
+            writer.close();
+            assertEquals(6, writer.getFiles().size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, byte[]> parallel = contents();
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (String name : sequential.keySet()) {
+            assertArrayEquals(sequential.get(name), parallel.get(name), name);
+        }
+    }
+
+    @Test
+    void gzipPartsDecompressToTheSameJsonAndReportTheirSizes() throws Exception {
+        List<ResultValueDto> rows = rows(9);
+        write(rows, 4);
+        Map<String, byte[]> plain = contents();
+        for (Path file : plain.keySet().stream().map(tempDir::resolve).toList()) {
+            Files.delete(file);
+        }
+
+        RollingUrbanDatasetWriter writer = new RollingUrbanDatasetWriter(tempDir.resolve("ud").toString(),
+                specification(), context(), objectMapper, 4, null, 0, OutputCompression.GZIP);
+        for (ResultValueDto row : rows) {
+            writer.writeLine(row);
+        }
+        writer.close();
+
+        assertEquals(List.of("ud_1.json.gz", "ud_2.json.gz", "ud_3.json.gz"), fileNames());
+        long jsonBytes = 0;
+        long storedBytes = 0;
+        for (String name : plain.keySet()) {
+            Path compressed = tempDir.resolve(name + ".gz");
+            try (InputStream input = new GZIPInputStream(Files.newInputStream(compressed))) {
+                assertArrayEquals(plain.get(name), input.readAllBytes(), name);
+            }
+            jsonBytes += plain.get(name).length;
+            storedBytes += Files.size(compressed);
+        }
+        assertEquals(jsonBytes, writer.getJsonBytes());
+        assertEquals(storedBytes, writer.getStoredBytes());
+    }
+
+    @Test
+    void zstdPartsDecompressToTheSameJson() throws Exception {
+        List<ResultValueDto> rows = rows(9);
+        write(rows, 4);
+        Map<String, byte[]> plain = contents();
+        for (Path file : plain.keySet().stream().map(tempDir::resolve).toList()) {
+            Files.delete(file);
+        }
+
+        RollingUrbanDatasetWriter writer = new RollingUrbanDatasetWriter(tempDir.resolve("ud").toString(),
+                specification(), context(), objectMapper, 4, null, 0, OutputCompression.ZSTD);
+        for (ResultValueDto row : rows) {
+            writer.writeLine(row);
+        }
+        writer.close();
+
+        assertEquals(List.of("ud_1.json.zst", "ud_2.json.zst", "ud_3.json.zst"), fileNames());
+        for (String name : plain.keySet()) {
+            try (InputStream input = new ZstdInputStream(Files.newInputStream(tempDir.resolve(name + ".zst")))) {
+                assertArrayEquals(plain.get(name), input.readAllBytes(), name);
+            }
+        }
+        assertTrue(writer.getStoredBytes() < writer.getJsonBytes());
+    }
+
+    @Test
+    void singlePartIsWrittenWithoutSuffix() throws Exception {
+        write(rows(2), 2);
+
+        assertEquals(List.of("ud.json"), fileNames());
+        assertEquals(List.of(1, 2), ids(tempDir.resolve("ud.json")));
+    }
+
+    @Test
+    void emptyDatasetProducesOneFile() throws Exception {
+        write(List.of(), 0);
+
+        assertEquals(List.of("ud.json"), fileNames());
+        assertTrue(ids(tempDir.resolve("ud.json")).isEmpty());
+    }
+
+    @Test
+    void writersWithTheSameBasePathDoNotOverwriteEachOther() throws Exception {
+        RollingUrbanDatasetWriter first = newWriter(2);
+        RollingUrbanDatasetWriter second = newWriter(2);
+        for (ResultValueDto row : rows(3)) {
+            first.writeLine(row);
+            second.writeLine(row);
+        }
+        second.writeLine(rows(1).getFirst());
+        first.close();
+        second.close();
+
+        assertEquals(List.of("ud-2_1.json", "ud-2_2.json", "ud_1.json", "ud_2.json"), fileNames());
+        assertEquals(List.of(tempDir.resolve("ud-2_1.json"), tempDir.resolve("ud-2_2.json")), second.getFiles());
+        assertEquals(List.of(1), ids(tempDir.resolve("ud_2.json")));
+        assertEquals(List.of(1, 2), ids(tempDir.resolve("ud-2_2.json")));
+
+        write(rows(1), 2);
+        write(rows(1), 2);
+        assertEquals(List.of("ud-2.json", "ud-2_1.json", "ud-2_2.json", "ud.json", "ud_1.json", "ud_2.json"), fileNames());
+    }
+
+    @Test
+    void abortRemovesTheWrittenParts() throws Exception {
+        RollingUrbanDatasetWriter writer = newWriter(1);
+        for (ResultValueDto row : rows(3)) {
+            writer.writeLine(row);
+        }
+        writer.abort();
+
+        assertTrue(fileNames().isEmpty());
+    }
+
+    private List<Path> write(List<ResultValueDto> rows, int maxRowsPerUd) throws Exception {
+        RollingUrbanDatasetWriter writer = newWriter(maxRowsPerUd);
+        for (ResultValueDto row : rows) {
+            writer.writeLine(row);
+        }
+        writer.close();
+        assertEquals(rows.size(), writer.getLines());
+        return writer.getFiles();
+    }
+
+    private RollingUrbanDatasetWriter newWriter(int maxRowsPerUd) {
+        return new RollingUrbanDatasetWriter(tempDir.resolve("ud").toString(), specification(), context(),
+                objectMapper, maxRowsPerUd);
+    }
+
+    private SpecificationDto specification() {
+        return SpecificationDto.builder().name("test").version("1.0").build();
+    }
+
+    private ContextDto context() {
+        return ContextDto.builder().timeZone("UTC+1").build();
+    }
+
+    private Map<String, byte[]> contents() throws Exception {
+        Map<String, byte[]> contents = new TreeMap<>();
+        for (String name : fileNames()) {
+            contents.put(name, Files.readAllBytes(tempDir.resolve(name)));
+        }
+        return contents;
+    }
+
+    private List<ResultValueDto> rows(int count) {
+        List<ResultValueDto> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(ResultValueDto.builder()
+                    .id(100 + i)
+                    .property(List.of(PropertyValueDto.builder().name("Power").val(String.valueOf(i)).build()))
+                    .build());
+        }
+        return rows;
+    }
+
+    private List<String> fileNames() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private List<Integer> ids(Path file) throws Exception {
+        ResultUrbanDataset ud = objectMapper.readValue(file.toFile(), ResultUrbanDataset.class);
+        return ud.getUrbanDataset().getValues().getLine().stream().map(ResultValueDto::getId).toList();
+    }
+}
@@ -58,6 +58,15 @@ public class TimeUtilsTest {
         assertEquals(result, TimeUtils.getStartAndEndTimeFromString(date, string, string, slice));
     }
 
+    @Test
+    void testGetStartAndEndTimeFromStringLastSlotEndsAtNextMidnight() {
+        result.put("start_ts", "2022-07-01T23:45:00");
+        result.put("end_ts", "2022-07-02T00:00:00");
+
+        assertEquals(result, TimeUtils.getStartAndEndTimeFromString(date, "ea96", "ea96", slice));
+        assertEquals(result, TimeUtils.getStartAndEndTimeFromString(date, "23:45-24:00", "1.0", -1));
+    }
+
     @Test
     void testGetStartAndEndTimeFromStringMergesDateAndTimeColumns() {
         result.put("start_ts", "2023-10-29T01:00:00.000Z");
@@ -0,0 +1,128 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TimestampParserTest {
+
+    private static final List<DateTimeFormatter> LEGACY_LOCAL_PATTERNS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+
+    @Test
+    void parsersMatchTheExceptionBasedImplementation() {
+        for (String value : samples()) {
+            assertEquals(legacyLocal(value, 6), TimestampParser.parseLocal(value), value);
+            assertEquals(legacyLocal(value, 7), TimestampParser.parseLocal(value, true), value);
+            assertEquals(legacyWithOffset(value), TimestampParser.parseWithOffset(value), value);
+            assertEquals(legacyIsoLocal(value), TimestampParser.parseIsoLocal(value), value);
+        }
+    }
+
+    @Test
+    void commonShapesAreReadByTheDigitParser() {
+        assertEquals(LocalDateTime.of(2024, 2, 29, 23, 45, 1, 120_000_000),
+                TimestampParser.parseIsoLocal("2024-02-29T23:45:01.12"));
+        assertEquals(OffsetDateTime.of(2023, 10, 29, 2, 30, 0, 0, ZoneOffset.ofHoursMinutes(-5, -30)),
+                TimestampParser.parseIsoOffset("2023-10-29T02:30-05:30"));
+        assertEquals(LocalDateTime.of(2022, 7, 1, 10, 15), TimestampParser.parseLocal("01/07/2022 10:15:00"));
+        assertEquals(LocalDateTime.of(2022, 7, 1, 10, 15), TimestampParser.parseLocal("20220701101500"));
+        // giorno fuori intervallo: i pattern SMART lo riportano all'ultimo giorno del mese
+        assertEquals(LocalDateTime.of(2023, 2, 28, 10, 0), TimestampParser.parseLocal("2023-02-30 10:00:00"));
+        assertNull(TimestampParser.parseIsoLocal("2023-02-30T10:00:00"));
+    }
+
+    @Test
+    void timeUtilsKeepsFractionAndOffset() {
+        assertEquals("2023-10-29T01:15:00.500+02:00", TimeUtils.addMinutesToTimestamp("2023-10-29T01:00:00.500+02:00", 15));
+        assertEquals("2022-07-01T00:15:00", TimeUtils.addMinutesToTimestamp(" 2022-07-01T00:00 ", 15));
+        assertEquals("2022-07-01T23:59:59.99Z", TimeUtils.subtractCentisecondFromTimestamp("2022-07-02T00:00:00Z"));
+        assertNull(TimeUtils.addMinutesToTimestamp("01/07/2022", 15));
+    }
+
+    private static List<String> samples() {
+        List<String> values = new ArrayList<>(List.of(
+                "2022-07-01T10:15", "2022-07-01T10:15:00", "2022-07-01T10:15:00.1", "2022-07-01T10:15:00.123456789",
+                "2022-07-01T10:15:00.1234567891", "2022-07-01T10:15:00.", "2022-07-01t10:15:00", "2022-07-01T10:15:00Z",
+                "2022-07-01T10:15:00.250Z", "2022-07-01T10:15:00z", "2022-07-01T10:15:00+02:00", "2022-07-01T10:15:00-05:30",
+                "2022-07-01T10:15:00+0200", "2022-07-01T10:15:00+02", "2022-07-01T10:15:00+18:00", "2022-07-01T10:15:00+19:00",
+                "2022-07-01T10:15:00+02:00[Europe/Rome]", "2022-07-01T10:15:00+02:00:30", "2022-02-29T10:15:00",
+                "2024-02-29T10:15:00", "2022-04-31T10:15:00", "2022-13-01T10:15:00", "2022-07-01T24:00:00",
+                "2022-07-01T23:60:00", "2022-07-01T23:59:60", "0000-01-01T00:00:00", "+12022-07-01T10:15:00",
+                "2022-07-01 10:15:00", "2022-07-01 24:00:00", "2022-02-30 10:15:00", "0000-07-01 10:15:00",
+                "01/07/2022 10:15:00", "31/04/2022 10:15:00", "1/07/2022 10:15:00", "20220701101500", "20221301101500",
+                "00000701101500", "2022070110150", "2022-07-01", "01/07/2022", "", " ", "abc", "2022-07-01T10:1a:00",
+                "2022-07-01T10:15:00 ", " 2022-07-01T10:15:00"));
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            values.add(randomTimestamp(random));
+        }
+        return values;
+    }
+
+    private static String randomTimestamp(Random random) {
+        String date = String.format("%04d-%02d-%02d", random.nextInt(1990, 2040), random.nextInt(0, 14), random.nextInt(0, 33));
+        String time = String.format("%02d:%02d", random.nextInt(0, 26), random.nextInt(0, 62));
+        String value = switch (random.nextInt(6)) {
+            case 0 -> date + "T" + time;
+            case 1 -> date + "T" + time + String.format(":%02d", random.nextInt(0, 61));
+            case 2 -> date + " " + time + String.format(":%02d", random.nextInt(0, 61));
+            case 3 -> date.substring(8) + "/" + date.substring(5, 7) + "/" + date.substring(0, 4) + " " + time + ":00";
+            case 4 -> date.replace("-", "") + time.replace(":", "") + "00";
+            default -> date + "T" + time + ":00." + Integer.toString(random.nextInt(1, 1_000_000));
+        };
+        return switch (random.nextInt(4)) {
+            case 0 -> value + "Z";
+            case 1 -> value + String.format("%s%02d:%02d", random.nextBoolean() ? "+" : "-", random.nextInt(0, 20), random.nextInt(0, 61));
+            default -> value;
+        };
+    }
+
+    /** Implementazioni precedenti, usate come riferimento. */
+    private static LocalDateTime legacyLocal(String raw, int patterns) {
+        for (DateTimeFormatter formatter : LEGACY_LOCAL_PATTERNS.subList(0, patterns)) {
+            try {
+                return LocalDateTime.parse(raw, formatter);
+            } catch (DateTimeParseException ignored) { }
+        }
+        return null;
+    }
+
+    private static ZonedDateTime legacyWithOffset(String raw) {
+        try {
+            return OffsetDateTime.parse(raw).toZonedDateTime();
+        } catch (DateTimeParseException ignored) { }
+        try {
+            return ZonedDateTime.parse(raw);
+        } catch (DateTimeParseException ignored) { }
+        try {
+            return Instant.parse(raw).atZone(ZoneOffset.UTC);
+        } catch (DateTimeParseException ignored) { }
+        return null;
+    }
+
+    private static LocalDateTime legacyIsoLocal(String raw) {
+        try {
+            return LocalDateTime.parse(raw);
+        } catch (DateTimeParseException ignored) { }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * TtlCache test class.
+ */
+public class TtlCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(String key) {
+        loads.incrementAndGet();
+        return key.toUpperCase();
+    }
+
+    @Test
+    void testGetLoadsOnceUntilExpired() {
+        TtlCache<String, String> cache = new TtlCache<>(10, Duration.ofSeconds(60), now::get);
+
+        assertEquals("A", cache.get("a", this::load));
+        assertEquals("A", cache.get("a", this::load));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        now.addAndGet(Duration.ofSeconds(60).toNanos());
+        assertEquals("A", cache.get("a", this::load));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.putCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        TtlCache<String, String> cache = new TtlCache<>(2, Duration.ofSeconds(60), now::get);
+
+        cache.get("a", this::load);
+        cache.get("b", this::load);
+        cache.get("a", this::load);
+        cache.get("c", this::load);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        cache.get("a", this::load);
+        cache.get("b", this::load);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testNullValuesAreNotCached() {
+        TtlCache<String, String> cache = new TtlCache<>(10, Duration.ofSeconds(60), now::get);
+
+        assertNull(cache.get("a", key -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidateDuringLoadDoesNotStoreStaleValue() {
+        TtlCache<String, String> cache = new TtlCache<>(10, Duration.ofSeconds(60), now::get);
+
+        assertEquals("A", cache.get("a", key -> {
+            cache.invalidateAll();
+            return load(key);
+        }));
+        assertEquals(0, cache.size());
+
+        cache.get("a", this::load);
+        cache.invalidate("a");
+        cache.get("a", this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        TtlCache<String, String> cache = new TtlCache<>(10, Duration.ZERO, now::get);
+
+        assertFalse(cache.isEnabled());
+        cache.get("a", this::load);
+        cache.get("a", this::load);
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+}
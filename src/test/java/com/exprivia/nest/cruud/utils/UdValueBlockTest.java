@@ -0,0 +1,162 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UdValueBlockTest {
+
+    private static final List<String> VALUES = Arrays.asList("0", "-0", "126.41", "126.40", "007.50", "-5", "0.0000001",
+            "1.", ".5", "-", "", "null", "n/a", "1e5", "123456789012345678", "1234567890123456789", "-0.5", "sensor.lab",
+            null, "3,5", "9223372036854775807");
+
+    private static final List<String> TIMESTAMPS = Arrays.asList("2023-10-23T00:00:01.001Z", "2023-10-23T00:00:01Z",
+            "2024-10-27T02:15:00", "2024-10-27T02:15", "2024-10-27T02:15:00.250", "2024-10-27T02:15:00.123456789",
+            "2023-10-29T01:00:00.500+02:00", "2023-10-29T01:00:00-05:30", "2023-10-29T01:00:00+00:00", "01/07/2022T10:00",
+            "2022-07-01 10:00:00", "0001-01-01T00:00:00", "9999-12-31T23:59:59.999", "", null, "1999-02-28T23:59:59.1");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rowsComeBackAsEqualDtosAndTheSameJson() throws Exception {
+        List<ResultValueDto> rows = randomRows(new Random(11), 3000);
+        UdValueBlock block = new UdValueBlock();
+        for (ResultValueDto row : rows) {
+            block.append(row);
+        }
+
+        assertEquals(rows.size(), block.size());
+        assertEquals(rows, block.toDtos());
+
+        Path fromDtos = tempDir.resolve("dtos.json");
+        Path fromBlock = tempDir.resolve("block.json");
+        try (UrbanDatasetWriter writer = open(fromDtos)) {
+            for (int i = 0; i < rows.size(); i++) {
+                writer.writeLine(rows.get(i), i + 1);
+            }
+        }
+        try (UrbanDatasetWriter writer = open(fromBlock)) {
+            for (int i = 0; i < block.size(); i++) {
+                writer.writeLine(block, i, i + 1);
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(fromDtos), Files.readAllBytes(fromBlock));
+    }
+
+    @Test
+    void timestampsAreReturnedAlreadyParsed() {
+        HashMap<String, Object> period = new HashMap<>();
+        period.put("start_ts", "2023-10-29T01:00:00.500+02:00");
+        period.put("end_ts", "01/07/2022T10:00");
+        UdValueBlock block = new UdValueBlock();
+        block.append(ResultValueDto.builder().id(3).period(period).build());
+
+        ResultValueDto row = block.toDto(0);
+        EpochPeriod.Timestamp start = EpochPeriod.of(row).start();
+
+        assertTrue(start.hasOffset());
+        assertEquals(2 * 3600, start.getOffset().getTotalSeconds());
+        assertEquals(500_000_000, start.getNano());
+        assertEquals("2023-10-29T01:00:00.500+02:00", start.text());
+        assertEquals("01/07/2022T10:00", EpochPeriod.of(row).end().text());
+        assertEquals(period, row.getPeriod());
+    }
+
+    @Test
+    void numericPeriodsAreCopiedWithoutLosingTheStageFormat() {
+        HashMap<String, Object> period = new HashMap<>();
+        period.put("start_ts", "2022-07-01T10:00:00.25");
+        ResultValueDto value = ResultValueDto.builder().id(1).period(period).build();
+        TimeUtils.enforceSliceDuration(EpochPeriod.of(value), 15);
+        EpochPeriod.of(value).get("other").setLocalToString(EpochPeriod.of(value).start().getEpochSecond() + 45, 0);
+        UdValueBlock block = new UdValueBlock();
+        block.append(value);
+
+        assertEquals(value.getPeriod(), block.toDto(0).getPeriod());
+        assertEquals("2022-07-01T10:00:45", block.toDto(0).getPeriod().get("other"));
+    }
+
+    private List<ResultValueDto> randomRows(Random random, int count) {
+        List<ResultValueDto> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ResultValueDto.ResultValueDtoBuilder row = ResultValueDto.builder().id(random.nextInt(1000));
+            if (random.nextInt(20) > 0) {
+                List<PropertyValueDto> properties = new ArrayList<>();
+                int size = random.nextInt(4);
+                for (int p = 0; p < size; p++) {
+                    if (random.nextInt(50) == 0) {
+                        properties.add(null);
+                        continue;
+                    }
+                    String val = random.nextBoolean() ? pick(random, VALUES) : randomDecimal(random);
+                    properties.add(PropertyValueDto.builder().name(random.nextInt(30) == 0 ? null : "Property" + p).val(val).build());
+                }
+                row.property(properties);
+            }
+            if (random.nextInt(10) > 0) {
+                HashMap<String, Object> period = new HashMap<>();
+                period.put("start_ts", pick(random, TIMESTAMPS));
+                if (random.nextBoolean()) {
+                    period.put("end_ts", pick(random, TIMESTAMPS));
+                }
+                if (random.nextInt(40) == 0) {
+                    period.put("slot", random.nextInt(96));
+                }
+                row.period(period);
+            }
+            if (random.nextInt(50) == 0) {
+                row.coordinates(CoordinatesDto.builder().latitude(41.1).longitude(16.8).build());
+            }
+            if (random.nextInt(50) == 0) {
+                row.timestamp("2024-01-01T00:00:00");
+            }
+            rows.add(row.build());
+        }
+        return rows;
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String randomDecimal(Random random) {
+        StringBuilder builder = new StringBuilder();
+        if (random.nextBoolean()) {
+            builder.append('-');
+        }
+        builder.append(random.nextLong(0, (long) Math.pow(10, random.nextInt(1, 16))));
+        if (random.nextBoolean()) {
+            builder.append('.');
+            int scale = random.nextInt(1, 8);
+            for (int i = 0; i < scale; i++) {
+                builder.append(random.nextInt(10));
+            }
+        }
+        return builder.toString();
+    }
+
+    private UrbanDatasetWriter open(Path path) throws Exception {
+        return UrbanDatasetWriter.open(path.toString(), SpecificationDto.builder().name("test").build(),
+                ContextDto.builder().timeZone("UTC+1").timestamp("Mon Oct 23 00:00:00 UTC 2023").build(), objectMapper);
+    }
+}
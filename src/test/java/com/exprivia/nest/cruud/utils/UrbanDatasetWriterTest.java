@@ -0,0 +1,132 @@
+package com.exprivia.nest.cruud.utils;
+
+import com.exprivia.nest.cruud.dto.ResultUrbanDataset;
+import com.exprivia.nest.cruud.dto.urbandataset.UrbanDatasetDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.ContextDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.CoordinatesDto;
+import com.exprivia.nest.cruud.dto.urbandataset.context.ProducerDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.IdDto;
+import com.exprivia.nest.cruud.dto.urbandataset.specification.SpecificationDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.PropertyValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ResultValueDto;
+import com.exprivia.nest.cruud.dto.urbandataset.values.ValuesDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrbanDatasetWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void createFileIsByteIdenticalToObjectMapper() throws Exception {
+        assertSameBytes(new ObjectMapper(), dataset(buildLines(500)));
+    }
+
+    @Test
+    void createFileIsByteIdenticalWithIndentation() throws Exception {
+        assertSameBytes(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT), dataset(buildLines(40)));
+    }
+
+    @Test
+    void datasetWithoutLinesIsWrittenAsIs() throws Exception {
+        ResultUrbanDataset withoutValues = dataset(null);
+        withoutValues.getUrbanDataset().setValues(null);
+        assertSameBytes(new ObjectMapper(), withoutValues);
+        assertSameBytes(new ObjectMapper(), dataset(null));
+        assertSameBytes(new ObjectMapper(), dataset(new ArrayList<>()));
+    }
+
+    @Test
+    void gzipFileDecompressesToTheSameJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ResultUrbanDataset urbanDataset = dataset(buildLines(50));
+
+        Path written = FileUtils.createFile(tempDir.resolve("ud.json").toString(), urbanDataset, objectMapper,
+                OutputCompression.GZIP);
+
+        assertEquals(tempDir.resolve("ud.json.gz"), written);
+        byte[] expected = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writeValueAsBytes(urbanDataset);
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(written))) {
+            assertArrayEquals(expected, input.readAllBytes());
+        }
+    }
+
+    private void assertSameBytes(ObjectMapper objectMapper, ResultUrbanDataset urbanDataset) throws Exception {
+        Path file = tempDir.resolve("out/ud.json");
+
+        FileUtils.createFile(file.toString(), urbanDataset, objectMapper);
+
+        byte[] expected = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writeValueAsBytes(urbanDataset);
+        assertArrayEquals(expected, Files.readAllBytes(file));
+    }
+
+    private ResultUrbanDataset dataset(List<ResultValueDto> lines) {
+        SpecificationDto specification = SpecificationDto.builder()
+                .name("test \"quoted\" àè")
+                .version("1.0")
+                .id(IdDto.builder().schemeID("SCPS").value("test-id").build())
+                .build();
+        ContextDto context = ContextDto.builder()
+                .producer(ProducerDto.builder().id("producer").schemeID("SCPS").build())
+                .timeZone("UTC+1")
+                .timestamp("2024-01-01T00:00:00")
+                .build();
+        return ResultUrbanDataset.builder()
+                .urbanDataset(UrbanDatasetDto.builder()
+                        .specification(specification)
+                        .context(context)
+                        .values(ValuesDto.builder().line(lines).build())
+                        .build())
+                .build();
+    }
+
+    private List<ResultValueDto> buildLines(int count) {
+        List<ResultValueDto> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ResultValueDto value = ResultValueDto.builder().id(i + 1).build();
+            if (i % 5 != 0) {
+                HashMap<String, Object> period = new HashMap<>();
+                period.put("start_ts", "2024-01-01T00:" + (i % 60) + ":00");
+                period.put("end_ts", i % 7 == 0 ? null : "2024-01-01T01:00:00");
+                if (i % 11 == 0) {
+                    period.put("slot", i);
+                }
+                value.setPeriod(period);
+            }
+            if (i % 9 != 0) {
+                List<PropertyValueDto> properties = new ArrayList<>();
+                properties.add(PropertyValueDto.builder().name("Power").val(String.valueOf(i * 0.5)).build());
+                properties.add(PropertyValueDto.builder().name("Note").val(i % 3 == 0 ? null : "è \"x\"\n").build());
+                value.setProperty(properties);
+            }
+            if (i % 13 == 0) {
+                value.setCoordinates(CoordinatesDto.builder().format("WGS84-DD").latitude(41.1).longitude(16.8).build());
+            }
+            if (i % 17 == 0) {
+                value.setTimestamp(Map.of("at", i));
+            }
+            lines.add(value);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,60 @@
+package com.exprivia.nest.cruud.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ZoneTransitionIndexTest {
+
+    private static final List<String> ZONES = List.of("Europe/Rome", "America/New_York", "Australia/Lord_Howe",
+            "America/Santiago", "Asia/Kolkata", "UTC", "Pacific/Apia", "Europe/Dublin");
+
+    @Test
+    void validOffsetsMatchTheZoneRules() {
+        Random random = new Random(7);
+        for (String name : ZONES) {
+            ZoneId zone = ZoneId.of(name);
+            for (int i = 0; i < 20_000; i++) {
+                LocalDateTime ldt = LocalDateTime.of(random.nextInt(1990, 2040), 1, 1, 0, 0)
+                        .plusSeconds(random.nextLong(0, 366L * 86_400));
+                assertEquals(zone.getRules().getValidOffsets(ldt), ZoneTransitionIndex.validOffsets(zone, ldt), name + " " + ldt);
+            }
+            // attorno a ogni transizione, secondo per secondo ai bordi
+            var transition = zone.getRules().nextTransition(LocalDateTime.of(2011, 1, 1, 0, 0).toInstant(ZoneOffset.UTC));
+            for (int t = 0; t < 30 && transition != null; t++) {
+                LocalDateTime from = transition.getDateTimeBefore().isBefore(transition.getDateTimeAfter())
+                        ? transition.getDateTimeBefore() : transition.getDateTimeAfter();
+                for (int s = -2; s <= 2; s++) {
+                    for (LocalDateTime ldt : List.of(transition.getDateTimeBefore().plusSeconds(s), transition.getDateTimeAfter().plusSeconds(s), from.plusNanos(1))) {
+                        assertEquals(zone.getRules().getValidOffsets(ldt), ZoneTransitionIndex.validOffsets(zone, ldt), name + " " + ldt);
+                    }
+                }
+                transition = zone.getRules().nextTransition(transition.getInstant());
+            }
+        }
+    }
+
+    @Test
+    void overlapIsIndexedAsALocalEpochRange() {
+        ZoneTransitionIndex index = ZoneTransitionIndex.of(ZoneId.of("Europe/Rome"), 2024);
+        long inOverlap = LocalDateTime.of(2024, 10, 27, 2, 15).toEpochSecond(ZoneOffset.UTC);
+        long afterOverlap = LocalDateTime.of(2024, 10, 27, 3, 0).toEpochSecond(ZoneOffset.UTC);
+
+        int window = index.windowAt(inOverlap);
+        assertNull(index.offsetAt(inOverlap));
+        assertEquals(afterOverlap, index.windowEnd(window));
+        assertEquals(ZoneOffset.ofHours(1), index.offsetAt(afterOverlap));
+        assertEquals(-1, index.windowAt(afterOverlap));
+        assertEquals(LocalDateTime.of(2024, 3, 31, 3, 0), index.getSpringForwardLocal());
+        assertEquals(LocalDateTime.of(2024, 10, 27, 2, 0), index.getAutumnSecondPassLocal());
+        assertSame(index, ZoneTransitionIndex.forLocalSecond(ZoneId.of("Europe/Rome"), inOverlap));
+    }
+}